@@ -0,0 +1,69 @@
+package net.ivpn.client.common.utils;
+
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.content.Intent;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.filters.LargeTest;
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+
+import net.ivpn.client.IVPNApplication;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures time from the start of the process to the first idle moment of the launcher activity
+ * and reports it together with initialisation time of every component. The orchestrator starts
+ * a new process for every test, so the start is cold.
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class ColdStartBenchmarkTest {
+
+    private static final String TAG = ColdStartBenchmarkTest.class.getSimpleName();
+
+    //Deferred components are done shortly after the first frame.
+    private static final long DEFERRED_TIMEOUT = 10000;
+
+    @Test
+    public void coldStart() throws InterruptedException {
+        Assume.assumeTrue(Build.VERSION.SDK_INT >= Build.VERSION_CODES.N);
+        Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+        ComponentUtil componentUtil = IVPNApplication.getApplication().appComponent.provideComponentUtil();
+
+        Intent intent = instrumentation.getTargetContext().getPackageManager()
+                .getLaunchIntentForPackage(instrumentation.getTargetContext().getPackageName());
+        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        Activity activity = instrumentation.startActivitySync(intent);
+        instrumentation.waitForIdleSync();
+        long startTime = SystemClock.uptimeMillis() - Process.getStartUptimeMillis();
+        boolean isDeferredDone = componentUtil.awaitStartup(DEFERRED_TIMEOUT, TimeUnit.MILLISECONDS);
+        Map<String, Long> timings = componentUtil.getStartupTimings();
+        activity.finish();
+
+        Bundle results = new Bundle();
+        results.putLong("cold_start_ms", startTime);
+        StringBuilder report = new StringBuilder("Cold start: " + startTime + " ms");
+        for (Map.Entry<String, Long> timing : timings.entrySet()) {
+            results.putLong(timing.getKey(), timing.getValue());
+            report.append(", ").append(timing.getKey()).append(": ").append(timing.getValue()).append(" ms");
+        }
+        Log.i(TAG, report.toString());
+        instrumentation.sendStatus(0, results);
+
+        assertTrue("Deferred components are not initialised", isDeferredDone);
+    }
+}
@@ -0,0 +1,184 @@
+package net.ivpn.client.ui.connect.animation;
+
+import android.animation.ValueAnimator;
+import android.app.Instrumentation;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Build;
+import android.os.Debug;
+import android.util.Log;
+import android.view.View;
+
+import androidx.test.filters.LargeTest;
+import androidx.test.filters.SdkSuppress;
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+
+import net.ivpn.client.ui.connect.ConnectionState;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Draws {@link ConnectionView} into an offscreen canvas, static states as well as the frames of
+ * the connect and wave animations, and checks that frames don't allocate once drawables are
+ * warmed up. Animators are paused and their play time is set by the test, so every frame is
+ * drawn from a known point of the animation. Average frame time is logged.
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+@SdkSuppress(minSdkVersion = Build.VERSION_CODES.M)
+public class ConnectionViewRenderTest {
+
+    private static final String TAG = ConnectionViewRenderTest.class.getSimpleName();
+
+    private static final String BYTES_ALLOCATED = "art.gc.bytes-allocated";
+    private static final int WIDTH = 540;
+    private static final int HEIGHT = 960;
+    private static final int WARM_UP_FRAMES = 10;
+    //Runtime counts allocated bytes per thread-local buffer rather than per object, so a pass draws
+    //enough frames for even one small object per frame to take a new buffer.
+    private static final int FRAMES = 16 * 1024;
+    //Other threads may take a buffer during a pass too, the quietest pass is the one checked.
+    private static final int PASSES = 3;
+    private static final long FRAME_INTERVAL = 16;
+
+    private Instrumentation instrumentation;
+    private ConnectionView view;
+    private Bitmap bitmap;
+    private Canvas canvas;
+
+    @Before
+    public void setup() {
+        instrumentation = InstrumentationRegistry.getInstrumentation();
+        instrumentation.runOnMainSync(() -> {
+            view = new ConnectionView(instrumentation.getTargetContext());
+            view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                    View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+            view.layout(0, 0, WIDTH, HEIGHT);
+        });
+        bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        canvas = new Canvas(bitmap);
+    }
+
+    @After
+    public void release() {
+        instrumentation.runOnMainSync(() -> view.updateConnectionState(ConnectionState.NOT_CONNECTED));
+        bitmap.recycle();
+    }
+
+    @Test
+    public void notConnectedFramesDoNotAllocate() {
+        assertNoAllocations("NOT_CONNECTED", null);
+    }
+
+    @Test
+    public void pausedFramesDoNotAllocate() {
+        instrumentation.runOnMainSync(() -> view.updateConnectionState(ConnectionState.PAUSED));
+        assertNoAllocations("PAUSED", null);
+    }
+
+    @Test
+    public void connectFramesDoNotAllocate() {
+        ValueAnimator progressAnimator = updateConnectionState(ConnectionState.CONNECTING);
+        assertEquals(ConnectionAnimationState.CONNECTION_PROGRESS, view.getState());
+        assertNotNull(progressAnimator);
+        assertNoAllocations("CONNECTION_PROGRESS", progressAnimator);
+
+        ValueAnimator finalProgressAnimator = updateConnectionState(ConnectionState.CONNECTED);
+        assertNotNull(finalProgressAnimator);
+        assertNoAllocations("FINAL_CONNECTION_PROGRESS", finalProgressAnimator);
+
+        ValueAnimator connectingAnimator = endAnimation(finalProgressAnimator);
+        assertEquals(ConnectionAnimationState.CONNECTING_ANIMATION, view.getState());
+        assertNotNull(connectingAnimator);
+        assertNoAllocations("CONNECTING_ANIMATION", connectingAnimator);
+
+        endAnimation(connectingAnimator);
+        assertEquals(ConnectionAnimationState.CONNECTED, view.getState());
+    }
+
+    @Test
+    public void waveFramesDoNotAllocate() {
+        ValueAnimator[] waveAnimator = new ValueAnimator[1];
+        instrumentation.runOnMainSync(() -> {
+            view.updateConnectionState(ConnectionState.CONNECTED);
+            //Wave loop is only scheduled on screen, so a wave is started by hand.
+            view.startWaveAnimation();
+            waveAnimator[0] = pauseRunningAnimator();
+        });
+        assertNotNull(waveAnimator[0]);
+        assertNoAllocations("WAVE", waveAnimator[0]);
+    }
+
+    private ValueAnimator updateConnectionState(ConnectionState connectionState) {
+        ValueAnimator[] animator = new ValueAnimator[1];
+        instrumentation.runOnMainSync(() -> {
+            view.updateConnectionState(connectionState);
+            animator[0] = pauseRunningAnimator();
+        });
+        return animator[0];
+    }
+
+    /**
+     * @return Animator started when the given one has ended, {@code null} if there is none.
+     */
+    private ValueAnimator endAnimation(ValueAnimator animator) {
+        ValueAnimator[] next = new ValueAnimator[1];
+        instrumentation.runOnMainSync(() -> {
+            animator.resume();
+            animator.end();
+            next[0] = pauseRunningAnimator();
+        });
+        return next[0];
+    }
+
+    //Frames are driven by the test only, not by the choreographer, so the animator is paused
+    //in the same main thread task which started it.
+    private ValueAnimator pauseRunningAnimator() {
+        ValueAnimator animator = view.getRunningAnimator();
+        if (animator != null) {
+            animator.pause();
+        }
+        return animator;
+    }
+
+    private void assertNoAllocations(String name, ValueAnimator animator) {
+        long[] result = new long[2];
+        instrumentation.runOnMainSync(() -> {
+            drawFrames(animator, WARM_UP_FRAMES);
+
+            result[1] = Long.MAX_VALUE;
+            long startTime = System.nanoTime();
+            for (int pass = 0; pass < PASSES; pass++) {
+                long allocated = getBytesAllocated();
+                drawFrames(animator, FRAMES);
+                result[1] = Math.min(result[1], getBytesAllocated() - allocated);
+            }
+            result[0] = System.nanoTime() - startTime;
+        });
+
+        Log.i(TAG, name + ": " + (result[0] / (PASSES * FRAMES) / 1000) + " us per frame, "
+                + result[1] + " bytes allocated in " + FRAMES + " frames");
+        assertEquals(name + " allocates in " + FRAMES + " frames", 0, result[1]);
+    }
+
+    private void drawFrames(ValueAnimator animator, int frames) {
+        long duration = animator != null ? animator.getDuration() : 0;
+        for (int i = 0; i < frames; i++) {
+            if (animator != null) {
+                animator.setCurrentPlayTime(i * FRAME_INTERVAL % (duration + 1));
+            }
+            view.draw(canvas);
+        }
+    }
+
+    private static long getBytesAllocated() {
+        return Long.parseLong(Debug.getRuntimeStat(BYTES_ALLOCATED));
+    }
+}
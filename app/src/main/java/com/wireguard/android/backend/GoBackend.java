@@ -35,6 +35,7 @@ import org.slf4j.LoggerFactory;
 
 import java.net.InetAddress;
 import java.util.Formatter;
+import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
@@ -49,6 +50,7 @@ import java9.util.concurrent.CompletableFuture;
 @ApplicationScope
 public final class GoBackend implements Backend {
     private static final Logger LOGGER = LoggerFactory.getLogger(GoBackend.class);
+    private static final long STATISTICS_MAX_AGE = 1000;
 
     private static CompletableFuture<WireGuardVpnService> vpnService = new CompletableFuture<>();
     private ExecutorService executorService = Executors.newSingleThreadExecutor();
@@ -60,6 +62,8 @@ public final class GoBackend implements Backend {
     @Nullable
     private Tunnel currentTunnel;
     private int currentTunnelHandle = -1;
+    @Nullable
+    private volatile Statistics cachedStatistics;
 
     @Inject
     GoBackend(Context context, VpnBehaviorController vpnBehaviorController,
@@ -81,6 +85,12 @@ public final class GoBackend implements Backend {
 
     private static native int wgTurnOn(String ifName, int tunFd, String settings);
 
+    private static native int wgSetConfig(int handle, String settings);
+
+    private static native String wgGetConfig(int handle);
+
+    private static native int wgBindUpdate(int handle);
+
     private static native String wgVersion();
 
     @Override
@@ -93,6 +103,98 @@ public final class GoBackend implements Backend {
         return currentTunnel == tunnel ? State.UP : State.DOWN;
     }
 
+    /**
+     * @return Future of statistics read from the tunnel on the backend thread, or of the cached ones
+     * if they are fresh.
+     */
+    public CompletableFuture<Statistics> readStatistics(final Tunnel tunnel) {
+        if (currentTunnel != tunnel || tunnel == null) {
+            return CompletableFuture.completedFuture(new Statistics());
+        }
+        final Statistics statistics = cachedStatistics;
+        if (statistics != null && !statistics.isStale(STATISTICS_MAX_AGE)) {
+            return CompletableFuture.completedFuture(statistics);
+        }
+        //Config is read on the backend thread, so the cache is updated before a queued turn off clears it.
+        final CompletableFuture<Statistics> result = new CompletableFuture<>();
+        executorService.execute(() -> {
+            if (currentTunnelHandle == -1 || currentTunnel != tunnel) {
+                result.complete(new Statistics());
+                return;
+            }
+            try {
+                final String config = wgGetConfig(currentTunnelHandle);
+                final Statistics fresh = config == null ? new Statistics() : Statistics.parse(config);
+                cachedStatistics = fresh;
+                result.complete(fresh);
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Start the Android VPN service ahead of time, so it is already running when the tunnel is turned on.
+     *
+     * @return Future that is completed when the service is created.
+     */
+    public CompletableFuture<WireGuardVpnService> prepareVpnService() {
+        if (WireGuardVpnService.prepare(context) != null)
+            return CompletableFuture.failedFuture(new Exception("VPN service not authorized by user"));
+        if (!vpnService.isDone())
+            startVpnService();
+        //Callers may complete or time out their future, the shared one should stay untouched.
+        return vpnService.copy();
+    }
+
+    /**
+     * Bring the tunnel up with the config that is already formatted to UAPI and the list of
+     * disallowed apps that is already resolved, so the slow parts can be prepared in parallel.
+     *
+     * @param tunnel         The tunnel to bring up.
+     * @param goConfig       Result of {@link Config#format()} for the tunnel config.
+     * @param disallowedApps Result of {@link #resolveDisallowedApps()}.
+     * @return Future that is completed with the state of the tunnel.
+     */
+    public CompletableFuture<State> turnOn(final Tunnel tunnel, final String goConfig,
+                                           final Set<String> disallowedApps) {
+        final CompletableFuture<State> result = new CompletableFuture<>();
+        executorService.execute(() -> {
+            try {
+                LOGGER.info("Bringing tunnel up");
+                if (currentTunnel != null && currentTunnel != tunnel)
+                    throw new IllegalStateException("Only one userspace tunnel can run at a time");
+                Objects.requireNonNull(tunnel.getConfig(), "Trying to bring up a tunnel with no config");
+                turnOnInternal(tunnel, tunnel.getConfig(), goConfig, disallowedApps);
+                result.complete(getState(tunnel));
+            } catch (Exception e) {
+                LOGGER.error("turnOn: unable to bring tunnel up", e);
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Get disallowed apps that are still installed. Removed apps are allowed again,
+     * because VpnService.Builder refuses unknown packages.
+     */
+    public Set<String> resolveDisallowedApps() {
+        final PackageManager packageManager = context.getPackageManager();
+        final Set<String> disallowedApps = new HashSet<>();
+        for (final String app : packagesPreference.getDisallowedPackages()) {
+            try {
+                packageManager.getApplicationInfo(app, 0);
+                disallowedApps.add(app);
+            } catch (final PackageManager.NameNotFoundException exception) {
+                LOGGER.info("Disallowed app " + app + " is not installed anymore");
+                packagesPreference.allowPackage(app);
+            }
+        }
+        return disallowedApps;
+    }
+
     @Override
     public State setState(final Tunnel tunnel, State state) {
         LOGGER.info("setState tunnel = " + tunnel);
@@ -101,7 +203,8 @@ public final class GoBackend implements Backend {
         LOGGER.info("setState originalState = " + originalState);
         if (state == State.TOGGLE)
             state = originalState == State.UP ? State.DOWN : State.UP;
-        if (state == originalState)
+        //Tunnel can be still on its way up in the executor, so DOWN is always queued after it.
+        if (state == originalState && state == State.UP)
             return originalState;
         if (state == State.UP && currentTunnel != null)
             throw new IllegalStateException("Only one userspace tunnel can run at a time");
@@ -117,6 +220,24 @@ public final class GoBackend implements Backend {
         return getState(tunnel);
     }
 
+    /**
+     * Turn the tunnel off if it is still the running one. Check is made on the backend thread,
+     * so a newer tunnel brought up in the meantime is left untouched.
+     */
+    public void turnOffIfCurrent(final Tunnel tunnel) {
+        executorService.execute(() -> {
+            if (currentTunnel != tunnel) {
+                LOGGER.info("turnOffIfCurrent: tunnel isn't running anymore");
+                return;
+            }
+            try {
+                setStateInternal(tunnel, tunnel.getConfig(), State.DOWN);
+            } catch (Exception e) {
+                LOGGER.error(e.getLocalizedMessage());
+            }
+        });
+    }
+
     private void setStateInternal(final Tunnel tunnel, @Nullable final Config config, final State state)
             throws Exception {
 
@@ -124,88 +245,161 @@ public final class GoBackend implements Backend {
             LOGGER.info("Bringing tunnel up");
 
             Objects.requireNonNull(config, "Trying to bring up a tunnel with no config");
+            turnOnInternal(tunnel, config, config.format(), resolveDisallowedApps());
+        } else {
+            LOGGER.info("Bringing tunnel down");
+
+            if (currentTunnelHandle == -1) {
+                LOGGER.info("Tunnel already down");
+                return;
+            }
 
-            if (WireGuardVpnService.prepare(context) != null)
-                throw new Exception("VPN service not authorized by user");
+            wgTurnOff(currentTunnelHandle);
+            cachedStatistics = null;
+            currentTunnel = null;
+            currentTunnelHandle = -1;
+        }
+    }
 
-            final WireGuardVpnService service;
-            if (!vpnService.isDone())
-                startVpnService();
+    private void turnOnInternal(final Tunnel tunnel, final Config config, final String goConfig,
+                                final Set<String> disallowedApps) throws Exception {
+        if (WireGuardVpnService.prepare(context) != null)
+            throw new Exception("VPN service not authorized by user");
 
-            try {
-                service = vpnService.get(2, TimeUnit.SECONDS);
-            } catch (final TimeoutException e) {
-                LOGGER.error("Error while starting VPN service", e);
-                throw new Exception("Unable to start Android VPN service", e);
-            }
+        final WireGuardVpnService service;
+        if (!vpnService.isDone())
+            startVpnService();
 
-            if (currentTunnelHandle != -1) {
-                LOGGER.info("Tunnel already up");
-                return;
-            }
+        try {
+            service = vpnService.get(2, TimeUnit.SECONDS);
+        } catch (final TimeoutException e) {
+            LOGGER.error("Error while starting VPN service", e);
+            throw new Exception("Unable to start Android VPN service", e);
+        }
 
-            // Build config
-            final String goConfig = config.format();
+        if (currentTunnelHandle != -1) {
+            LOGGER.info("Tunnel already up");
+            return;
+        }
 
-            // Create the vpn tunnel with android API
-            final WireGuardVpnService.Builder builder = service.getBuilder();
-            builder.setSession(tunnel.getName());
+        // Create the vpn tunnel with android API
+        final WireGuardVpnService.Builder builder = service.getBuilder();
+        builder.setSession(tunnel.getName());
 
-            final Intent configureIntent = new Intent(context, ConnectActivity.class);
-            configureIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-            builder.setConfigureIntent(PendingIntent.getActivity(context, 0, configureIntent, 0));
+        final Intent configureIntent = new Intent(context, ConnectActivity.class);
+        configureIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        builder.setConfigureIntent(PendingIntent.getActivity(context, 0, configureIntent, 0));
 
-            addNotAllowedApps(builder);
-//            for (final String excludedApplication : config.getInterface().getExcludedApplications())
-//                builder.addDisallowedApplication(excludedApplication);
+        addNotAllowedApps(builder, disallowedApps);
+//        for (final String excludedApplication : config.getInterface().getExcludedApplications())
+//            builder.addDisallowedApplication(excludedApplication);
 
-            for (final InetNetwork addr : config.getInterface().getAddresses())
-                builder.addAddress(addr.getAddress(), addr.getMask());
+        for (final InetNetwork addr : config.getInterface().getAddresses())
+            builder.addAddress(addr.getAddress(), addr.getMask());
 
-            for (final InetAddress addr : config.getInterface().getDnses())
-                builder.addDnsServer(addr.getHostAddress());
+        for (final InetAddress addr : config.getInterface().getDnses())
+            builder.addDnsServer(addr.getHostAddress());
 
-            for (final Peer peer : config.getPeers()) {
-                for (final InetNetwork addr : peer.getAllowedIPs())
-                    builder.addRoute(addr.getAddress(), addr.getMask());
-            }
+        for (final Peer peer : config.getPeers()) {
+            for (final InetNetwork addr : peer.getAllowedIPs())
+                builder.addRoute(addr.getAddress(), addr.getMask());
+        }
 
-            int mtu = config.getInterface().getMtu();
-            if (mtu == 0)
-                mtu = 1280;
-            builder.setMtu(mtu);
-
-            builder.setBlocking(true);
-            try (final ParcelFileDescriptor tun = builder.establish()) {
-                if (tun == null)
-                    throw new Exception("Go backend v" + wgVersion());
-                LOGGER.info("Tunnel already up");
-                currentTunnelHandle = wgTurnOn(tunnel.getName(), tun.detachFd(), goConfig);
-            }
-            if (currentTunnelHandle < 0)
-                throw new Exception("Unable to turn tunnel on (wgTurnOn return " + currentTunnelHandle + ')');
+        int mtu = config.getInterface().getMtu();
+        if (mtu == 0)
+            mtu = 1280;
+        builder.setMtu(mtu);
+
+        builder.setBlocking(true);
+        try (final ParcelFileDescriptor tun = builder.establish()) {
+            if (tun == null)
+                throw new Exception("Go backend v" + wgVersion());
+            LOGGER.info("Tunnel already up");
+            currentTunnelHandle = wgTurnOn(tunnel.getName(), tun.detachFd(), goConfig);
+        }
+        if (currentTunnelHandle < 0)
+            throw new Exception("Unable to turn tunnel on (wgTurnOn return " + currentTunnelHandle + ')');
 
-            currentTunnel = tunnel;
-            vpnBehaviorController.connectActionByRules();
+        currentTunnel = tunnel;
+        vpnBehaviorController.connectActionByRules();
 
-            service.protect(wgGetSocketV4(currentTunnelHandle));
-            service.protect(wgGetSocketV6(currentTunnelHandle));
-        } else {
-            LOGGER.info("Bringing tunnel down");
+        service.protect(wgGetSocketV4(currentTunnelHandle));
+        service.protect(wgGetSocketV6(currentTunnelHandle));
+    }
 
+    /**
+     * Replace the private key of the running tunnel without tearing it down.
+     * Peers and the TUN interface stay as they are, the next handshake is done with the new key.
+     *
+     * @param privateKey The new private key in base64.
+     * @return Future that is completed with {@code true} if the key was applied to a live tunnel.
+     */
+    public CompletableFuture<Boolean> updatePrivateKey(final String privateKey) {
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        executorService.execute(() -> {
             if (currentTunnelHandle == -1) {
-                LOGGER.info("Tunnel already down");
+                LOGGER.info("updatePrivateKey: there is no live tunnel");
+                result.complete(false);
                 return;
             }
+            try {
+                String settings = "private_key=" + KeyEncoding.keyToHex(KeyEncoding.keyFromBase64(privateKey)) + "\n";
+                int status = wgSetConfig(currentTunnelHandle, settings);
+                LOGGER.info("updatePrivateKey: wgSetConfig return " + status);
+                result.complete(status == 0);
+            } catch (Exception e) {
+                LOGGER.error("updatePrivateKey: unable to apply key", e);
+                result.complete(false);
+            }
+        });
+        return result;
+    }
 
-            wgTurnOff(currentTunnelHandle);
-            currentTunnel = null;
-            currentTunnelHandle = -1;
-        }
+    /**
+     * Replace the peer of the running tunnel. Used to refresh endpoint address or to switch to another host.
+     */
+    public CompletableFuture<Boolean> updatePeer(final Peer peer) {
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        executorService.execute(() -> {
+            if (currentTunnelHandle == -1 || currentTunnel == null || currentTunnel.getConfig() == null) {
+                result.complete(false);
+                return;
+            }
+            try {
+                int status = wgSetConfig(currentTunnelHandle, currentTunnel.getConfig().formatPeer(peer));
+                LOGGER.info("updatePeer: wgSetConfig return " + status);
+                result.complete(status == 0);
+            } catch (Exception e) {
+                LOGGER.error("updatePeer: unable to apply peer", e);
+                result.complete(false);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Recreate UDP sockets of the running tunnel, e.g. after the underlying network is changed.
+     */
+    public CompletableFuture<Boolean> rebindSockets() {
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        executorService.execute(() -> {
+            final WireGuardVpnService service = vpnService.getNow(null);
+            if (currentTunnelHandle == -1 || service == null) {
+                result.complete(false);
+                return;
+            }
+            int status = wgBindUpdate(currentTunnelHandle);
+            LOGGER.info("rebindSockets: wgBindUpdate return " + status);
+            if (status == 0) {
+                service.protect(wgGetSocketV4(currentTunnelHandle));
+                service.protect(wgGetSocketV6(currentTunnelHandle));
+            }
+            result.complete(status == 0);
+        });
+        return result;
     }
 
-    private void addNotAllowedApps(android.net.VpnService.Builder builder) {
-        Set<String> disallowedApps = packagesPreference.getDisallowedPackages();
+    private void addNotAllowedApps(android.net.VpnService.Builder builder, Set<String> disallowedApps) {
         for (String app : disallowedApps) {
             try {
                 builder.addDisallowedApplication(app);
@@ -0,0 +1,134 @@
+/*
+ * Copyright © 2020 WireGuard LLC. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.wireguard.android.backend;
+
+import android.os.SystemClock;
+
+import com.wireguard.android.crypto.KeyEncoding;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Snapshot of the transfer statistics of a tunnel, taken from the UAPI {@code get=1} output.
+ */
+public class Statistics {
+
+    private final Map<String, PeerStats> peers = new LinkedHashMap<>();
+    private final long timestamp = SystemClock.elapsedRealtime();
+
+    Statistics() {
+    }
+
+    /**
+     * Parse UAPI output of the backend.
+     *
+     * @param uapi Output of {@code get=1} operation.
+     * @return Statistics for every peer of the tunnel.
+     */
+    public static Statistics parse(final String uapi) {
+        final Statistics statistics = new Statistics();
+        String publicKey = null;
+        long rx = 0;
+        long tx = 0;
+        long handshakeSeconds = 0;
+        long handshakeNanoseconds = 0;
+
+        for (final String line : uapi.split("\n")) {
+            final int index = line.indexOf('=');
+            if (index == -1)
+                continue;
+            final String key = line.substring(0, index);
+            final String value = line.substring(index + 1);
+            try {
+                switch (key) {
+                    case "public_key":
+                        if (publicKey != null)
+                            statistics.add(publicKey, rx, tx, handshakeSeconds * 1000 + handshakeNanoseconds / 1000000);
+                        //Peer with a malformed key is skipped as a whole, its values aren't given to another one.
+                        publicKey = null;
+                        rx = 0;
+                        tx = 0;
+                        handshakeSeconds = 0;
+                        handshakeNanoseconds = 0;
+                        publicKey = KeyEncoding.keyToBase64(KeyEncoding.keyFromHex(value));
+                        break;
+                    case "rx_bytes":
+                        rx = Long.parseLong(value);
+                        break;
+                    case "tx_bytes":
+                        tx = Long.parseLong(value);
+                        break;
+                    case "last_handshake_time_sec":
+                        handshakeSeconds = Long.parseLong(value);
+                        break;
+                    case "last_handshake_time_nsec":
+                        handshakeNanoseconds = Long.parseLong(value);
+                        break;
+                }
+            } catch (final IllegalArgumentException ignored) {
+                //Skip malformed line, the rest of the peer is still useful.
+            }
+        }
+        if (publicKey != null)
+            statistics.add(publicKey, rx, tx, handshakeSeconds * 1000 + handshakeNanoseconds / 1000000);
+        return statistics;
+    }
+
+    void add(final String publicKey, final long rx, final long tx, final long latestHandshake) {
+        peers.put(publicKey, new PeerStats(publicKey, rx, tx, latestHandshake));
+    }
+
+    /**
+     * Check if the statistics are older than the given age.
+     *
+     * @param maxAge Age in milliseconds.
+     * @return {@code true} if statistics should be read again.
+     */
+    public boolean isStale(final long maxAge) {
+        return SystemClock.elapsedRealtime() - timestamp > maxAge;
+    }
+
+    public Collection<PeerStats> peers() {
+        return Collections.unmodifiableCollection(peers.values());
+    }
+
+    public static final class PeerStats {
+        private final String publicKey;
+        private final long rxBytes;
+        private final long txBytes;
+        private final long latestHandshakeEpochMillis;
+
+        PeerStats(final String publicKey, final long rxBytes, final long txBytes,
+                  final long latestHandshakeEpochMillis) {
+            this.publicKey = publicKey;
+            this.rxBytes = rxBytes;
+            this.txBytes = txBytes;
+            this.latestHandshakeEpochMillis = latestHandshakeEpochMillis;
+        }
+
+        public String getPublicKey() {
+            return publicKey;
+        }
+
+        public long getRxBytes() {
+            return rxBytes;
+        }
+
+        public long getTxBytes() {
+            return txBytes;
+        }
+
+        /**
+         * @return Time of the latest handshake in milliseconds since epoch, {@code 0} if there was none.
+         */
+        public long getLatestHandshakeEpochMillis() {
+            return latestHandshakeEpochMillis;
+        }
+    }
+}
@@ -110,16 +110,19 @@ public class Config implements Parcelable{
     }
 
     public String format() throws Exception {
-        Peer peer;
-
         try (final Formatter fmt = new Formatter(new StringBuilder())) {
-            fmt.format("replace_peers=true\n");
             if (interfaceSection.getPrivateKey() != null)
                 fmt.format("private_key=%s\n", KeyEncoding.keyToHex(KeyEncoding.keyFromBase64(interfaceSection.getPrivateKey())));
             if (interfaceSection.getListenPort() != 0)
                 fmt.format("listen_port=%d\n", interfaceSection.getListenPort());
 
-            peer = gerRandomPeer();
+            return fmt.toString() + formatPeer(gerRandomPeer());
+        }
+    }
+
+    public String formatPeer(final Peer peer) throws Exception {
+        try (final Formatter fmt = new Formatter(new StringBuilder())) {
+            fmt.format("replace_peers=true\n");
             if (peer.getPublicKey() != null)
                 fmt.format("public_key=%s\n", KeyEncoding.keyToHex(KeyEncoding.keyFromBase64(peer.getPublicKey())));
             if (peer.getPreSharedKey() != null)
@@ -126,6 +126,14 @@ public class Peer implements Parcelable{
                 endpoint.getPort());
     }
 
+    /**
+     * Forget the resolved address, so the next {@link #getResolvedEndpointString()} resolves host again.
+     */
+    public void resetResolvedEndpoint() {
+        if (endpoint != null)
+            endpoint = InetSocketAddress.createUnresolved(endpoint.getHostString(), endpoint.getPort());
+    }
+
     public void parse(final String line) {
         final Attribute key = Attribute.match(line);
         if (key == null)
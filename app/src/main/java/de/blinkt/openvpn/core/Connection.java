@@ -9,11 +9,14 @@ import android.text.TextUtils;
 import android.util.Log;
 
 import net.ivpn.client.IVPNApplication;
-import net.ivpn.client.common.prefs.Settings;
 import net.ivpn.client.common.utils.DomainResolver;
 import net.ivpn.client.ui.protocol.port.Port;
+import net.ivpn.client.vpn.Protocol;
+import net.ivpn.client.vpn.fallback.PortSelector;
 
 import java.io.Serializable;
+import java.net.InetAddress;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 
@@ -29,10 +32,10 @@ public class Connection implements Serializable, Cloneable {
     public boolean mEnabled = true;
     public int mConnectTimeout = 0;
 
-    @Inject
-    transient Settings settings;
     @Inject
     transient DomainResolver domainResolver;
+    @Inject
+    transient PortSelector portSelector;
 
     public Connection() {
         IVPNApplication.getApplication().appComponent.provideActivityComponent().create().inject(this);
@@ -42,10 +45,18 @@ public class Connection implements Serializable, Cloneable {
         applyAppSettings();
         String cfg = "";
 
-        if (domainResolver.isResolved() || (ipAddresses == null || ipAddresses.isEmpty())) {
+        //Addresses resolved in advance save OpenVPN a blocking lookup, known IPs are the fallback.
+        List<InetAddress> resolvedAddresses = domainResolver.getCachedAddresses(mServerName);
+        if (resolvedAddresses != null) {
+            List<String> addresses = new ArrayList<>();
+            for (InetAddress address : resolvedAddresses) {
+                addresses.add(address.getHostAddress());
+            }
+            cfg += getServerConnectionConfWithIpAddresses(addresses);
+        } else if (ipAddresses == null || ipAddresses.isEmpty()) {
             cfg += getServerConnectionConfWithDomain();
         } else {
-            cfg += getServerConnectionConfWithIpAddresses();
+            cfg += getServerConnectionConfWithIpAddresses(ipAddresses);
         }
 
         if (mConnectTimeout != 0)
@@ -75,9 +86,9 @@ public class Connection implements Serializable, Cloneable {
         return cfg.toString();
     }
 
-    private String getServerConnectionConfWithIpAddresses() {
+    private String getServerConnectionConfWithIpAddresses(List<String> addresses) {
         StringBuilder cfg = new StringBuilder();
-        for (String ip : ipAddresses) {
+        for (String ip : addresses) {
             cfg.append("remote ");
             cfg.append(ip);
             cfg.append(" ");
@@ -95,7 +106,7 @@ public class Connection implements Serializable, Cloneable {
     }
 
     private void applyAppSettings() {
-        Port port = settings.getOpenVpnPort();
+        Port port = portSelector.getPort(Protocol.OPENVPN);
         mServerPort = String.valueOf(port.getPortNumber());
         mUseUdp = port.isUDP();
     }
@@ -8,15 +8,20 @@ package de.blinkt.openvpn.core;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.SharedPreferences;
-import android.net.ConnectivityManager;
-import android.net.NetworkInfo;
-import android.net.NetworkInfo.State;
+import android.net.Network;
+import android.os.BatteryManager;
 import android.os.Handler;
+import android.os.PowerManager;
+import android.os.SystemClock;
 import android.preference.PreferenceManager;
 
 import net.ivpn.client.IVPNApplication;
 import net.ivpn.client.R;
+import net.ivpn.client.common.connectivity.ConnectivityEvent;
+import net.ivpn.client.common.connectivity.OnConnectivityChangedListener;
+import net.ivpn.client.vpn.TrafficIdleDetector;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,12 +30,23 @@ import java.util.Objects;
 
 import static de.blinkt.openvpn.core.OpenVPNManagement.pauseReason;
 
-public class DeviceStateReceiver extends BroadcastReceiver implements OpenVPNManagement.PausedStateCallback {
+/**
+ * Pauses the connection when there is no network and, if it is enabled, when the device is idle:
+ * screen is off, charger is disconnected and less than {@link TrafficIdleDetector#DEFAULT_LIMIT}
+ * went through the tunnel during the last minute according to the management byte counts.
+ * Idle connection is resumed as soon as the screen is turned on or charger is connected.
+ */
+public class DeviceStateReceiver extends BroadcastReceiver implements OpenVPNManagement.PausedStateCallback,
+        OpenVPNManagement.ByteCountListener, OnConnectivityChangedListener {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DeviceStateReceiver.class);
 
     private final Handler mDisconnectHandler;
-    private int lastNetwork = -1;
+    private final TrafficIdleDetector mTrafficDetector = new TrafficIdleDetector();
+    private final boolean mIdlePauseEnabled;
+    private boolean mScreenOn;
+    private boolean mCharging;
+    private Network lastNetwork = null;
     private OpenVPNManagement mManagement;
 
     connectState network = connectState.DISCONNECTED;
@@ -54,7 +70,7 @@ public class DeviceStateReceiver extends BroadcastReceiver implements OpenVPNMan
             mManagement.pause(getPauseReason());
         }
     };
-    private NetworkInfo lastConnectedNetwork;
+    private Network lastConnectedNetwork;
 
     @Override
     public boolean shouldBeRunning() {
@@ -67,62 +83,108 @@ public class DeviceStateReceiver extends BroadcastReceiver implements OpenVPNMan
         DISCONNECTED
     }
 
-    public DeviceStateReceiver(OpenVPNManagement management) {
+    public DeviceStateReceiver(OpenVPNManagement management, boolean idlePauseEnabled) {
         super();
         mManagement = management;
+        mIdlePauseEnabled = idlePauseEnabled;
         mManagement.setPauseCallback(this);
+        mManagement.setByteCountListener(this);
         mDisconnectHandler = new Handler();
+
+        Context context = IVPNApplication.getApplication();
+        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        mScreenOn = powerManager == null || powerManager.isInteractive();
+        Intent battery = context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        mCharging = battery != null && battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+        mTrafficDetector.reset(SystemClock.elapsedRealtime());
+        if (shouldPauseWhenIdle()) {
+            screen = connectState.PENDINGDISCONNECT;
+        }
     }
 
     @Override
     public void onReceive(Context context, Intent intent) {
-        if (ConnectivityManager.CONNECTIVITY_ACTION.equals(intent.getAction())) {
-            networkStateChange(context);
-        } else if (Intent.ACTION_SCREEN_ON.equals(intent.getAction())) {
-            // Network was disabled because screen off
-            boolean connected = shouldBeConnected();
-            screen = connectState.SHOULDBECONNECTED;
-
-            /* We should connect now, cancel any outstanding disconnect timer */
-            mDisconnectHandler.removeCallbacks(mDelayDisconnectRunnable);
-            /* should be connected has changed because the screen is on now, connect the VPN */
-            if (shouldBeConnected() != connected)
-                mManagement.resume();
-            else if (!shouldBeConnected())
-                /*Update the reason why we are still paused */
-                mManagement.pause(getPauseReason());
+        String action = intent.getAction();
+        if (Intent.ACTION_SCREEN_ON.equals(action)) {
+            mScreenOn = true;
+            wakeUp();
+        } else if (Intent.ACTION_POWER_CONNECTED.equals(action)) {
+            mCharging = true;
+            wakeUp();
+        } else if (Intent.ACTION_SCREEN_OFF.equals(action)) {
+            mScreenOn = false;
+            waitForIdle();
+        } else if (Intent.ACTION_POWER_DISCONNECTED.equals(action)) {
+            mCharging = false;
+            waitForIdle();
         }
     }
 
+    @Override
+    public void updateByteCount(long in, long out, long diffIn, long diffOut) {
+        long now = SystemClock.elapsedRealtime();
+        mTrafficDetector.add(now, diffIn + diffOut);
+        if (screen != connectState.PENDINGDISCONNECT || !mTrafficDetector.isIdle(now)) {
+            return;
+        }
+        LOGGER.info("Connection is idle, " + mTrafficDetector.getTraffic(now) + " bytes during the last minute");
+        screen = connectState.DISCONNECTED;
+        if (network != connectState.DISCONNECTED && userpause != connectState.DISCONNECTED) {
+            mManagement.pause(getPauseReason());
+        }
+    }
+
+    private void wakeUp() {
+        // Network was disabled because screen off
+        boolean connected = shouldBeConnected();
+        screen = connectState.SHOULDBECONNECTED;
+
+        /* We should connect now, cancel any outstanding disconnect timer */
+        mDisconnectHandler.removeCallbacks(mDelayDisconnectRunnable);
+        /* should be connected has changed because the screen is on now, connect the VPN */
+        if (shouldBeConnected() != connected)
+            mManagement.resume();
+        else if (!shouldBeConnected())
+            /*Update the reason why we are still paused */
+            mManagement.pause(getPauseReason());
+    }
+
+    private void waitForIdle() {
+        if (!shouldPauseWhenIdle() || screen != connectState.SHOULDBECONNECTED) {
+            return;
+        }
+        LOGGER.info("Pause when connection gets idle");
+        //Connection is paused by the next byte count which finds the traffic of the last minute low enough.
+        screen = connectState.PENDINGDISCONNECT;
+    }
+
+    private boolean shouldPauseWhenIdle() {
+        return mIdlePauseEnabled && !mScreenOn && !mCharging;
+    }
+
     public static boolean equalsObj(Object a, Object b) {
         return Objects.equals(a, b);
     }
 
-    public void networkStateChange(Context context) {
-        LOGGER.info("networkStateChange: ");
-        NetworkInfo networkInfo = getCurrentNetworkInfo(context);
-        LOGGER.info("networkStateChange: networkInfo = " + networkInfo);
+    @Override
+    public void onConnectivityChanged(ConnectivityEvent event) {
+        networkStateChange(event);
+    }
+
+    public void networkStateChange(ConnectivityEvent event) {
+        LOGGER.info("networkStateChange: event = " + event);
 
         String netstatestring;
-        if (networkInfo == null) {
+        if (!event.isConnected()) {
             netstatestring = "not connected";
         } else {
-            String subtype = networkInfo.getSubtypeName();
-            LOGGER.info("networkStateChange: subtype = " + subtype);
-            if (subtype == null)
-                subtype = "";
-            String extrainfo = networkInfo.getExtraInfo();
-            LOGGER.info("networkStateChange: extrainfo = " + extrainfo);
-            if (extrainfo == null)
-                extrainfo = "";
-
-            netstatestring = String.format("%2$s %4$s to %1$s %3$s", networkInfo.getTypeName(),
-                    networkInfo.getDetailedState(), extrainfo, subtype);
+            String ssid = event.getSsid();
+            netstatestring = String.format("CONNECTED to %1$s %2$s", event.getSource(), ssid == null ? "" : ssid);
             LOGGER.info("networkStateChange: netstatestring = " + netstatestring);
         }
 
-        if (networkInfo != null && networkInfo.getState() == State.CONNECTED) {
-            int newnet = networkInfo.getType();
+        if (event.isConnected()) {
+            Network newnet = event.getNetwork();
             LOGGER.info("networkStateChange: newnet = " + newnet);
 
             boolean pendingDisconnect = (network == connectState.PENDINGDISCONNECT);
@@ -130,14 +192,11 @@ public class DeviceStateReceiver extends BroadcastReceiver implements OpenVPNMan
             network = connectState.SHOULDBECONNECTED;
 
             boolean sameNetwork;
-            if (lastConnectedNetwork == null
-                    || lastConnectedNetwork.getType() != networkInfo.getType()
-                    || !equalsObj(lastConnectedNetwork.getExtraInfo(), networkInfo.getExtraInfo())
-                    ) {
+            if (lastConnectedNetwork == null || !equalsObj(lastConnectedNetwork, newnet)) {
                 sameNetwork = false;
                 LOGGER.info("networkStateChange: lastNetwork = " + lastNetwork);
-                if (lastNetwork != -1) {
-                    disconnect(context);
+                if (lastNetwork != null) {
+                    disconnect();
                 }
             } else {
                 sameNetwork = true;
@@ -168,10 +227,10 @@ public class DeviceStateReceiver extends BroadcastReceiver implements OpenVPNMan
                 }
 
                 lastNetwork = newnet;
-                lastConnectedNetwork = networkInfo;
+                lastConnectedNetwork = newnet;
             }
-        } else if (networkInfo == null) {
-            disconnect(context);
+        } else {
+            disconnect();
         }
 
         if (!netstatestring.equals(lastStateMsg)) {
@@ -180,13 +239,13 @@ public class DeviceStateReceiver extends BroadcastReceiver implements OpenVPNMan
         lastStateMsg = netstatestring;
     }
 
-    private void disconnect(Context context) {
+    private void disconnect() {
         LOGGER.info("disconnect: ");
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(IVPNApplication.getApplication());
         boolean sendusr1 = prefs.getBoolean("netchangereconnect", true);
-        LOGGER.info("networkStateChange: networkInfo == null");
+        LOGGER.info("networkStateChange: no network");
         // Not connected, stop openvpn, set last connected network to no network
-        lastNetwork = -1;
+        lastNetwork = null;
         LOGGER.info("networkStateChange: ");
         if (sendusr1) {
             network = connectState.DISCONNECTED;
@@ -201,7 +260,8 @@ public class DeviceStateReceiver extends BroadcastReceiver implements OpenVPNMan
     }
 
     private boolean shouldBeConnected() {
-        return (screen == connectState.SHOULDBECONNECTED && userpause == connectState.SHOULDBECONNECTED &&
+        //Connection keeps running while it is only waiting to get idle.
+        return (screen != connectState.DISCONNECTED && userpause == connectState.SHOULDBECONNECTED &&
                 network == connectState.SHOULDBECONNECTED);
     }
 
@@ -218,13 +278,6 @@ public class DeviceStateReceiver extends BroadcastReceiver implements OpenVPNMan
         return pauseReason.userPause;
     }
 
-    private NetworkInfo getCurrentNetworkInfo(Context context) {
-        ConnectivityManager conn = (ConnectivityManager)
-                context.getSystemService(Context.CONNECTIVITY_SERVICE);
-
-        return conn.getActiveNetworkInfo();
-    }
-
     private static String getString(int resId) {
         return IVPNApplication.getApplication().getString(resId);
     }
@@ -10,6 +10,10 @@ public interface OpenVPNManagement {
         boolean shouldBeRunning();
     }
 
+    interface ByteCountListener {
+        void updateByteCount(long in, long out, long diffIn, long diffOut);
+    }
+
     enum pauseReason {
         killSwitch,
         noNetwork,
@@ -35,4 +39,9 @@ public interface OpenVPNManagement {
     void networkChange(boolean sameNetwork);
 
     void setPauseCallback(PausedStateCallback callback);
+
+    /**
+     * Listener is called on the main thread every {@link #mBytecountInterval} seconds while connected.
+     */
+    void setByteCountListener(ByteCountListener callback);
 }
\ No newline at end of file
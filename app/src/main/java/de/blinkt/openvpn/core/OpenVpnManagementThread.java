@@ -57,6 +57,9 @@ public class OpenVpnManagementThread implements Runnable, OpenVPNManagement {
 
     private pauseReason lastPauseReason = pauseReason.noNetwork;
     private PausedStateCallback mPauseCallback;
+    private ByteCountListener mByteCountListener;
+    private long mLastIn = -1;
+    private long mLastOut = -1;
     private boolean mShuttingDown;
 
     public OpenVpnManagementThread(VpnProfile profile, IOpenVpnService openVpnService) {
@@ -380,7 +383,27 @@ public class OpenVpnManagementThread implements Runnable, OpenVPNManagement {
 
 
     private void processByteCount(String argument) {
-        //Nothing to do here right now.
+        //BYTECOUNT:{BYTES_IN},{BYTES_OUT}
+        int comma = argument.indexOf(',');
+        long in;
+        long out;
+        try {
+            in = Long.parseLong(argument.substring(0, comma));
+            out = Long.parseLong(argument.substring(comma + 1));
+        } catch (NumberFormatException | IndexOutOfBoundsException exception) {
+            LOGGER.error("Unable to parse byte count: " + argument);
+            return;
+        }
+        //Counters start from zero after every reconnection.
+        long diffIn = mLastIn < 0 || in < mLastIn ? in : in - mLastIn;
+        long diffOut = mLastOut < 0 || out < mLastOut ? out : out - mLastOut;
+        mLastIn = in;
+        mLastOut = out;
+
+        final ByteCountListener listener = mByteCountListener;
+        if (listener != null) {
+            mResumeHandler.post(() -> listener.updateByteCount(in, out, diffIn, diffOut));
+        }
     }
 
     private void processNeedCommand(String argument) {
@@ -574,6 +597,11 @@ public class OpenVpnManagementThread implements Runnable, OpenVPNManagement {
         mPauseCallback = callback;
     }
 
+    @Override
+    public void setByteCountListener(ByteCountListener callback) {
+        mByteCountListener = callback;
+    }
+
     private void signalusr1() {
         Log.d(TAG, "signalusr1: ");
         mResumeHandler.removeCallbacks(mResumeHoldRunnable);
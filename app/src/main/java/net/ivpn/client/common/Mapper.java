@@ -8,6 +8,7 @@ import net.ivpn.client.common.updater.Update;
 import net.ivpn.client.rest.data.model.Server;
 import net.ivpn.client.rest.data.ServersListResponse;
 import net.ivpn.client.rest.data.wireguard.ErrorResponse;
+import net.ivpn.client.vpn.wireguard.KeyRotation;
 
 import java.lang.reflect.Type;
 import java.util.LinkedList;
@@ -62,4 +63,17 @@ public class Mapper {
         if (json == null || json.isEmpty()) return null;
         return new Gson().fromJson(json, Update.class);
     }
+
+    public static KeyRotation keyRotationFrom(String json) {
+        if (json == null || json.isEmpty()) return null;
+        try {
+            return new Gson().fromJson(json, KeyRotation.class);
+        } catch (JsonSyntaxException | IllegalStateException jsonSyntaxException) {
+            return null;
+        }
+    }
+
+    public static String stringFrom(KeyRotation keyRotation) {
+        return new Gson().toJson(keyRotation);
+    }
 }
@@ -0,0 +1,159 @@
+package net.ivpn.client.common.apps;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+
+import androidx.core.content.pm.PackageInfoCompat;
+
+import net.ivpn.client.common.dagger.ApplicationScope;
+import net.ivpn.client.common.prefs.AppCatalogPreference;
+import net.ivpn.client.ui.split.data.ApplicationItem;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.inject.Inject;
+
+import java9.util.concurrent.CompletableFuture;
+
+/**
+ * Catalog of installed applications for split tunneling. Label and launchability of every package
+ * are persisted together with its version code and update time, so only new and updated packages
+ * are queried on the next start. Once loaded, the catalog is kept up to date by package broadcasts.
+ * Catalog is touched on its own thread only, icons are loaded separately by {@link AppIconCache}.
+ */
+@ApplicationScope
+public class AppCatalog {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AppCatalog.class);
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Map<String, AppCatalogEntry> entries = new HashMap<>();
+    private boolean isLoaded;
+    private boolean isReceiverRegistered;
+
+    private Context context;
+    private AppCatalogPreference preference;
+    private AppIconCache iconCache;
+
+    @Inject
+    AppCatalog(Context context, AppCatalogPreference preference, AppIconCache iconCache) {
+        this.context = context;
+        this.preference = preference;
+        this.iconCache = iconCache;
+    }
+
+    /**
+     * @return Future of launchable applications sorted by name.
+     */
+    public CompletableFuture<List<ApplicationItem>> getApplications() {
+        registerReceiver();
+        return CompletableFuture.supplyAsync(() -> {
+            if (!isLoaded) {
+                load();
+            }
+            List<ApplicationItem> items = new ArrayList<>();
+            for (Map.Entry<String, AppCatalogEntry> entry : entries.entrySet()) {
+                if (entry.getValue().isLaunchable()) {
+                    items.add(new ApplicationItem(entry.getValue().getLabel(), entry.getKey()));
+                }
+            }
+            Collections.sort(items, ApplicationItem.comparator);
+            return items;
+        }, executor);
+    }
+
+    private void load() {
+        long startTime = System.currentTimeMillis();
+        for (Map.Entry<String, String> stored : preference.getEntries().entrySet()) {
+            AppCatalogEntry entry = AppCatalogEntry.from(stored.getValue());
+            if (entry != null) {
+                entries.put(stored.getKey(), entry);
+            }
+        }
+
+        PackageManager packageManager = context.getPackageManager();
+        Map<String, String> changedEntries = new HashMap<>();
+        Set<String> removedPackages = new HashSet<>(entries.keySet());
+        for (PackageInfo info : packageManager.getInstalledPackages(0)) {
+            removedPackages.remove(info.packageName);
+            AppCatalogEntry entry = entries.get(info.packageName);
+            if (entry != null && entry.isUpToDate(PackageInfoCompat.getLongVersionCode(info), info.lastUpdateTime)) {
+                continue;
+            }
+            entry = createEntry(packageManager, info);
+            entries.put(info.packageName, entry);
+            changedEntries.put(info.packageName, entry.toJson());
+        }
+        entries.keySet().removeAll(removedPackages);
+        preference.putEntries(changedEntries, removedPackages);
+        isLoaded = true;
+        LOGGER.info("Catalog is loaded in " + (System.currentTimeMillis() - startTime) + " ms, "
+                + changedEntries.size() + " updated, " + removedPackages.size() + " removed");
+    }
+
+    private void update(String packageName) {
+        if (!isLoaded) {
+            //The whole catalog is checked on load anyway.
+            return;
+        }
+        PackageManager packageManager = context.getPackageManager();
+        try {
+            PackageInfo info = packageManager.getPackageInfo(packageName, 0);
+            AppCatalogEntry entry = createEntry(packageManager, info);
+            entries.put(packageName, entry);
+            preference.putEntries(Collections.singletonMap(packageName, entry.toJson()),
+                    Collections.emptySet());
+        } catch (PackageManager.NameNotFoundException exception) {
+            entries.remove(packageName);
+            preference.putEntries(Collections.emptyMap(), Collections.singleton(packageName));
+        }
+    }
+
+    private AppCatalogEntry createEntry(PackageManager packageManager, PackageInfo info) {
+        String label = info.applicationInfo != null
+                ? info.applicationInfo.loadLabel(packageManager).toString() : info.packageName;
+        boolean isLaunchable = packageManager.getLaunchIntentForPackage(info.packageName) != null;
+        return new AppCatalogEntry(label, isLaunchable, PackageInfoCompat.getLongVersionCode(info),
+                info.lastUpdateTime);
+    }
+
+    private synchronized void registerReceiver() {
+        if (isReceiverRegistered) {
+            return;
+        }
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addDataScheme("package");
+        context.registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                if (intent.getData() == null) {
+                    return;
+                }
+                String packageName = intent.getData().getSchemeSpecificPart();
+                LOGGER.info(intent.getAction() + ": " + packageName);
+                iconCache.invalidate(packageName);
+                executor.execute(() -> update(packageName));
+            }
+        }, filter);
+        isReceiverRegistered = true;
+    }
+}
@@ -0,0 +1,55 @@
+package net.ivpn.client.common.apps;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.annotations.Expose;
+
+/**
+ * Cached description of one installed package. It is valid while version code
+ * and update time of the package stay the same.
+ */
+public class AppCatalogEntry {
+
+    @Expose
+    private String label;
+    @Expose
+    private boolean isLaunchable;
+    @Expose
+    private long versionCode;
+    @Expose
+    private long lastUpdateTime;
+
+    AppCatalogEntry(String label, boolean isLaunchable, long versionCode, long lastUpdateTime) {
+        this.label = label;
+        this.isLaunchable = isLaunchable;
+        this.versionCode = versionCode;
+        this.lastUpdateTime = lastUpdateTime;
+    }
+
+    static AppCatalogEntry from(String json) {
+        if (json == null || json.isEmpty()) {
+            return null;
+        }
+        try {
+            return new Gson().fromJson(json, AppCatalogEntry.class);
+        } catch (JsonParseException exception) {
+            return null;
+        }
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public boolean isLaunchable() {
+        return isLaunchable;
+    }
+
+    boolean isUpToDate(long versionCode, long lastUpdateTime) {
+        return this.versionCode == versionCode && this.lastUpdateTime == lastUpdateTime && label != null;
+    }
+
+    String toJson() {
+        return new Gson().toJson(this);
+    }
+}
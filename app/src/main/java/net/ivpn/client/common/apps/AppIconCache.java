@@ -0,0 +1,50 @@
+package net.ivpn.client.common.apps;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.drawable.Drawable;
+
+import net.ivpn.client.common.dagger.ApplicationScope;
+import net.ivpn.client.common.utils.AsyncBitmapCache;
+
+import javax.inject.Inject;
+
+/**
+ * Application icons keyed by package name, rendered at the size of the row instead of
+ * keeping full-size drawables of every installed application.
+ */
+@ApplicationScope
+public class AppIconCache extends AsyncBitmapCache {
+
+    private static final int MAX_CACHE_SIZE = 4 * 1024 * 1024;
+
+    private Context context;
+
+    @Inject
+    AppIconCache(Context context) {
+        super(MAX_CACHE_SIZE);
+        this.context = context;
+    }
+
+    @Override
+    protected Bitmap decode(String packageName, int size) {
+        Drawable icon;
+        try {
+            icon = context.getPackageManager().getApplicationIcon(packageName);
+        } catch (PackageManager.NameNotFoundException exception) {
+            return null;
+        }
+        int width = size > 0 ? size : icon.getIntrinsicWidth();
+        int height = size > 0 ? size : icon.getIntrinsicHeight();
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        icon.setBounds(0, 0, width, height);
+        icon.draw(canvas);
+        return bitmap;
+    }
+}
@@ -1,14 +1,11 @@
 package net.ivpn.client.common.bindings;
 
-import android.content.Context;
 import androidx.databinding.BindingAdapter;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
 import android.widget.ImageView;
 
-import java.io.File;
-import java.io.IOException;
-
+import net.ivpn.client.IVPNApplication;
 import net.ivpn.client.ui.split.data.ApplicationItem;
 import net.ivpn.client.rest.data.model.Server;
 
@@ -39,49 +36,17 @@ public class ImageViewSrcBindingAdapter {
 
     @BindingAdapter("android:src")
     public static void setImageResource(ImageView imageView, Server server) {
-        if (server == null) return;
-
-        Context context = imageView.getContext();
-        String countryCode = server.getCountryCode();
-        if (countryCode.equalsIgnoreCase("uk")) {
-            countryCode = "gb";
-        }
-        String path = "flag" + File.separator
-                + countryCode.toLowerCase() + ".png";
-        Drawable drawable;
-        try {
-            drawable = Drawable.createFromStream(context.getAssets().open(path), null);
-            imageView.setImageDrawable(drawable);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        setImageResource(imageView, server != null ? server.getCountryCode() : null);
     }
 
     @BindingAdapter("android:src")
     public static void setImageResource(ImageView imageView, ApplicationItem info) {
-        if (info == null) return;
-
-        imageView.setImageDrawable(info.getIcon());
+        IVPNApplication.getApplication().appComponent.provideAppIconCache()
+                .load(imageView, info != null ? info.getPackageName() : null);
     }
 
     @BindingAdapter("android:src")
     public static void setImageResource(ImageView imageView, String countryCode) {
-        if (countryCode == null) {
-            return;
-        }
-
-        Context context = imageView.getContext();
-        if (countryCode.equalsIgnoreCase("uk")) {
-            countryCode = "gb";
-        }
-        String path = "flag" + File.separator
-                + countryCode.toLowerCase() + ".png";
-        Drawable drawable;
-        try {
-            drawable = Drawable.createFromStream(context.getAssets().open(path), null);
-            imageView.setImageDrawable(drawable);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        IVPNApplication.getApplication().appComponent.provideFlagCache().load(imageView, countryCode);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,255 @@
+package net.ivpn.client.common.connectivity;
+
+import android.net.Network;
+
+import net.ivpn.client.common.dagger.ApplicationScope;
+import net.ivpn.client.common.pinger.Ping;
+import net.ivpn.client.common.pinger.PingResult;
+import net.ivpn.client.common.pinger.PingStats;
+import net.ivpn.client.common.prefs.ServerType;
+import net.ivpn.client.common.prefs.ServersRepository;
+import net.ivpn.client.common.utils.DateUtil;
+import net.ivpn.client.common.utils.DomainResolver;
+import net.ivpn.client.rest.data.model.Server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URL;
+import java.net.UnknownServiceException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import java9.util.concurrent.CompletableFuture;
+
+/**
+ * Checks the current network before connection started by network rules: first for a captive portal,
+ * then round trip time and loss to the gateway of the entry server. Verdicts are cached per network
+ * fingerprint, so returning to a known network doesn't probe it again.
+ */
+@ApplicationScope
+public class ConnectionProbe {
+
+    public static final String CHECK_URL = "captivePortalCheckUrl";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionProbe.class);
+
+    private static final long RESULT_TTL = 5 * DateUtil.MINUTE;
+    private static final int HTTP_TIMEOUT = 3000;
+    private static final int PING_TIMES = 4;
+    private static final int PING_TIMEOUT = 1000;
+    private static final long PROBE_TIMEOUT = 10 * DateUtil.SECOND;
+    private static final float MAX_LOSS = 0.5f;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Map<String, Result> results = new HashMap<>();
+
+    private ConnectivityEngine connectivityEngine;
+    private ServersRepository serversRepository;
+    private DomainResolver domainResolver;
+    private String checkUrl;
+
+    @Inject
+    ConnectionProbe(ConnectivityEngine connectivityEngine, ServersRepository serversRepository,
+                    DomainResolver domainResolver, @Named(CHECK_URL) String checkUrl) {
+        this.connectivityEngine = connectivityEngine;
+        this.serversRepository = serversRepository;
+        this.domainResolver = domainResolver;
+        this.checkUrl = checkUrl;
+    }
+
+    /**
+     * @return Future of the verdict for the current network, it never completes exceptionally.
+     */
+    public CompletableFuture<Result> probe() {
+        ConnectivityEvent event = connectivityEngine.getCurrentEvent();
+        if (!event.isConnected()) {
+            return CompletableFuture.completedFuture(new Result(Verdict.DEFER, Result.CaptivePortal.UNREACHABLE, -1, 1f));
+        }
+        String fingerprint = event.getFingerprint();
+        synchronized (results) {
+            Result result = results.get(fingerprint);
+            if (result != null && System.currentTimeMillis() - result.timestamp < RESULT_TTL) {
+                LOGGER.info("Cached result for " + fingerprint + ": " + result);
+                return CompletableFuture.completedFuture(result);
+            }
+        }
+
+        Server server = serversRepository.getCurrentServer(ServerType.ENTRY);
+        return CompletableFuture.supplyAsync(() -> probe(event.getNetwork(), server), executor)
+                .completeOnTimeout(new Result(Verdict.CONNECT, Result.CaptivePortal.UNKNOWN, -1, 0f), PROBE_TIMEOUT, TimeUnit.MILLISECONDS)
+                .exceptionally(throwable -> new Result(Verdict.CONNECT, Result.CaptivePortal.UNKNOWN, -1, 0f))
+                .thenApply(result -> {
+                    LOGGER.info("Probe result for " + fingerprint + ": " + result);
+                    //Captive portal is left soon, so it is probed again next time.
+                    if (result.verdict != Verdict.DEFER) {
+                        synchronized (results) {
+                            results.put(fingerprint, result);
+                        }
+                    }
+                    return result;
+                });
+    }
+
+    public void invalidate() {
+        synchronized (results) {
+            results.clear();
+        }
+    }
+
+    private Result probe(Network network, Server server) {
+        Result.CaptivePortal captivePortal = checkCaptivePortal(network);
+        if (captivePortal.getVerdict() == Verdict.DEFER) {
+            return new Result(Verdict.DEFER, captivePortal, -1, 1f);
+        }
+
+        PingStats stats = pingGateway(server);
+        if (stats == null) {
+            return new Result(Verdict.CONNECT, captivePortal, -1, 0f);
+        }
+        float loss = stats.getNoPings() == 0 ? 1f : (float) stats.getPacketsLost() / stats.getNoPings();
+        long rtt = stats.isReachable() ? stats.getAverageTimeTakenMillis() : -1;
+        Verdict verdict = loss >= MAX_LOSS ? Verdict.ANOTHER_PORT : Verdict.CONNECT;
+        return new Result(verdict, captivePortal, rtt, loss);
+    }
+
+    private Result.CaptivePortal checkCaptivePortal(Network network) {
+        HttpURLConnection connection = null;
+        try {
+            URL url = new URL(checkUrl);
+            connection = (HttpURLConnection) (network != null ? network.openConnection(url) : url.openConnection());
+            connection.setInstanceFollowRedirects(false);
+            connection.setConnectTimeout(HTTP_TIMEOUT);
+            connection.setReadTimeout(HTTP_TIMEOUT);
+            connection.setUseCaches(false);
+            return Result.CaptivePortal.of(connection.getResponseCode());
+        } catch (IOException exception) {
+            LOGGER.info("Captive portal check failed: " + exception.getMessage());
+            return Result.CaptivePortal.of(exception);
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    private PingStats pingGateway(Server server) {
+        if (server == null) {
+            return null;
+        }
+        List<InetAddress> addresses = domainResolver.resolve(server.getGateway()).join();
+        if (addresses.isEmpty()) {
+            return null;
+        }
+        CompletableFuture<PingStats> future = new CompletableFuture<>();
+        Ping.onAddress(addresses.get(0), executor)
+                .setTimes(PING_TIMES)
+                .setTimeOutMillis(PING_TIMEOUT)
+                .doPing(new Ping.PingListener() {
+                    @Override
+                    public void onResult(PingResult pingResult) {
+                    }
+
+                    @Override
+                    public void onFinished(PingStats pingStats) {
+                        future.complete(pingStats);
+                    }
+
+                    @Override
+                    public void onError(Exception exception) {
+                        future.complete(null);
+                    }
+                });
+        return future.join();
+    }
+
+    public enum Verdict {
+        CONNECT,
+        DEFER,
+        ANOTHER_PORT
+    }
+
+    public static final class Result {
+        private final Verdict verdict;
+        private final CaptivePortal captivePortal;
+        private final long rtt;
+        private final float loss;
+        private final long timestamp = System.currentTimeMillis();
+
+        Result(Verdict verdict, CaptivePortal captivePortal, long rtt, float loss) {
+            this.verdict = verdict;
+            this.captivePortal = captivePortal;
+            this.rtt = rtt;
+            this.loss = loss;
+        }
+
+        public Verdict getVerdict() {
+            return verdict;
+        }
+
+        public CaptivePortal getCaptivePortal() {
+            return captivePortal;
+        }
+
+        /**
+         * @return Average round trip time to the gateway in milliseconds, {@code -1} if unknown.
+         */
+        public long getRtt() {
+            return rtt;
+        }
+
+        public float getLoss() {
+            return loss;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{verdict=" + verdict + ", captivePortal=" + captivePortal
+                    + ", rtt=" + rtt + ", loss=" + loss + "}";
+        }
+
+        public enum CaptivePortal {
+            //Check URL answered with no content, the network has open internet.
+            NONE(Verdict.CONNECT),
+            //Anything else answered, the network intercepts HTTP.
+            DETECTED(Verdict.DEFER),
+            //Check URL is unreachable, the network may have no internet at all.
+            UNREACHABLE(Verdict.DEFER),
+            //Nothing is known about the network.
+            UNKNOWN(Verdict.CONNECT);
+
+            private final Verdict verdict;
+
+            CaptivePortal(Verdict verdict) {
+                this.verdict = verdict;
+            }
+
+            Verdict getVerdict() {
+                return verdict;
+            }
+
+            static CaptivePortal of(int responseCode) {
+                return responseCode == HttpURLConnection.HTTP_NO_CONTENT ? NONE : DETECTED;
+            }
+
+            static CaptivePortal of(IOException exception) {
+                //Cleartext is refused by the security policy of the platform, not by the network,
+                //so nothing is known about a portal and the connection must not be held back.
+                if (exception instanceof UnknownServiceException) {
+                    return UNKNOWN;
+                }
+                return UNREACHABLE;
+            }
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package net.ivpn.client.common.connectivity;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+import android.net.NetworkRequest;
+import android.net.wifi.WifiInfo;
+import android.net.wifi.WifiManager;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.Nullable;
+
+import net.ivpn.client.common.dagger.ApplicationScope;
+import net.ivpn.client.vpn.model.NetworkSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.inject.Inject;
+
+/**
+ * Single source of connectivity changes for the whole app.
+ * Underlying networks are tracked by {@link ConnectivityManager.NetworkCallback} handles, callbacks of
+ * one network flap are coalesced during {@link #DEBOUNCE_DELAY} and only real transitions are
+ * published to listeners on the main thread. The last event is delivered to every new listener,
+ * the same way as it was done by sticky CONNECTIVITY_ACTION broadcast.
+ * Network callback is registered only while there is at least one listener.
+ */
+@ApplicationScope
+public class ConnectivityEngine {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConnectivityEngine.class);
+    private static final long DEBOUNCE_DELAY = 300;
+
+    private final Context context;
+    private final ConnectivityManager connectivityManager;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Map<Network, NetworkCapabilities> networks = new HashMap<>();
+    private final Set<OnConnectivityChangedListener> listeners = new LinkedHashSet<>();
+    private final Runnable evaluateRunnable = this::evaluate;
+
+    private ConnectivityManager.NetworkCallback networkCallback;
+    @Nullable
+    private ConnectivityEvent lastEvent;
+
+    @Inject
+    ConnectivityEngine(Context context) {
+        this.context = context.getApplicationContext();
+        connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+    }
+
+    public void addListener(OnConnectivityChangedListener listener) {
+        if (!listeners.add(listener)) {
+            return;
+        }
+        if (networkCallback == null) {
+            register();
+        } else if (lastEvent != null) {
+            ConnectivityEvent event = lastEvent;
+            handler.post(() -> {
+                if (listeners.contains(listener)) {
+                    listener.onConnectivityChanged(event);
+                }
+            });
+        }
+    }
+
+    public void removeListener(OnConnectivityChangedListener listener) {
+        if (listeners.remove(listener) && listeners.isEmpty()) {
+            unregister();
+        }
+    }
+
+    /**
+     * @return The last published event, or the current state queried once if nobody listens to connectivity.
+     */
+    public ConnectivityEvent getCurrentEvent() {
+        if (lastEvent != null) {
+            return lastEvent;
+        }
+        NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
+        if (networkInfo == null) {
+            return ConnectivityEvent.noNetwork();
+        }
+        if (networkInfo.getState() != NetworkInfo.State.CONNECTED) {
+            return new ConnectivityEvent(NetworkSource.UNDEFINED, null, null);
+        }
+        switch (networkInfo.getType()) {
+            case ConnectivityManager.TYPE_WIFI:
+                return new ConnectivityEvent(NetworkSource.WIFI, null, getWifiSsid());
+            case ConnectivityManager.TYPE_MOBILE:
+                return new ConnectivityEvent(NetworkSource.MOBILE_DATA, null, null);
+            default:
+                return ConnectivityEvent.noNetwork();
+        }
+    }
+
+    private void register() {
+        LOGGER.info("Register network callback");
+        networkCallback = new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onAvailable(Network network) {
+                handler.post(() -> onNetworkChanged(this, network, null));
+            }
+
+            @Override
+            public void onCapabilitiesChanged(Network network, NetworkCapabilities capabilities) {
+                handler.post(() -> onNetworkChanged(this, network, capabilities));
+            }
+
+            @Override
+            public void onLost(Network network) {
+                handler.post(() -> onNetworkLost(this, network));
+            }
+        };
+        //Default request doesn't include VPN networks, so only underlying networks are tracked.
+        NetworkRequest request = new NetworkRequest.Builder()
+                .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                .build();
+        try {
+            connectivityManager.registerNetworkCallback(request, networkCallback);
+        } catch (RuntimeException exception) {
+            LOGGER.error("Unable to register network callback", exception);
+            networkCallback = null;
+            return;
+        }
+        //Callback reports nothing if there is no network at all, so publish the initial state anyway.
+        schedule();
+    }
+
+    private void unregister() {
+        LOGGER.info("Unregister network callback");
+        handler.removeCallbacks(evaluateRunnable);
+        if (networkCallback != null) {
+            try {
+                connectivityManager.unregisterNetworkCallback(networkCallback);
+            } catch (RuntimeException exception) {
+                LOGGER.error("Unable to unregister network callback", exception);
+            }
+        }
+        networkCallback = null;
+        networks.clear();
+        lastEvent = null;
+    }
+
+    private void onNetworkChanged(ConnectivityManager.NetworkCallback callback, Network network,
+                                  @Nullable NetworkCapabilities capabilities) {
+        //Callbacks can be still queued from the previous registration.
+        if (callback != networkCallback) {
+            return;
+        }
+        if (capabilities == null) {
+            capabilities = connectivityManager.getNetworkCapabilities(network);
+        }
+        if (capabilities != null) {
+            networks.put(network, capabilities);
+        }
+        schedule();
+    }
+
+    private void onNetworkLost(ConnectivityManager.NetworkCallback callback, Network network) {
+        if (callback != networkCallback) {
+            return;
+        }
+        networks.remove(network);
+        schedule();
+    }
+
+    private void schedule() {
+        handler.removeCallbacks(evaluateRunnable);
+        handler.postDelayed(evaluateRunnable, DEBOUNCE_DELAY);
+    }
+
+    private void evaluate() {
+        if (networkCallback == null) {
+            return;
+        }
+        ConnectivityEvent event = buildEvent();
+        if (event.equals(lastEvent)) {
+            return;
+        }
+        LOGGER.info("Connectivity is changed: " + event);
+        lastEvent = event;
+        for (OnConnectivityChangedListener listener : listeners.toArray(new OnConnectivityChangedListener[0])) {
+            listener.onConnectivityChanged(event);
+        }
+    }
+
+    //System prefers Wi-Fi over mobile data, so the same order is used to pick the current network.
+    private ConnectivityEvent buildEvent() {
+        Network mobileNetwork = null;
+        for (Map.Entry<Network, NetworkCapabilities> entry : networks.entrySet()) {
+            NetworkCapabilities capabilities = entry.getValue();
+            if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_WIFI)) {
+                return new ConnectivityEvent(NetworkSource.WIFI, entry.getKey(), getWifiSsid());
+            }
+            if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_CELLULAR)) {
+                mobileNetwork = entry.getKey();
+            }
+        }
+        if (mobileNetwork != null) {
+            return new ConnectivityEvent(NetworkSource.MOBILE_DATA, mobileNetwork, null);
+        }
+        return ConnectivityEvent.noNetwork();
+    }
+
+    @Nullable
+    private String getWifiSsid() {
+        WifiManager wifiManager = (WifiManager) context.getSystemService(Context.WIFI_SERVICE);
+        WifiInfo wifiInfo = wifiManager != null ? wifiManager.getConnectionInfo() : null;
+        return wifiInfo != null ? wifiInfo.getSSID() : null;
+    }
+}
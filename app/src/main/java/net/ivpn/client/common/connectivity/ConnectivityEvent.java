@@ -0,0 +1,80 @@
+package net.ivpn.client.common.connectivity;
+
+import android.net.Network;
+
+import androidx.annotation.Nullable;
+
+import net.ivpn.client.vpn.model.NetworkSource;
+
+import java.util.Objects;
+
+/**
+ * Immutable snapshot of the current underlying network, published by {@link ConnectivityEngine}.
+ */
+public class ConnectivityEvent {
+
+    private final NetworkSource source;
+    @Nullable
+    private final Network network;
+    @Nullable
+    private final String ssid;
+
+    ConnectivityEvent(NetworkSource source, @Nullable Network network, @Nullable String ssid) {
+        this.source = source;
+        this.network = network;
+        this.ssid = ssid;
+    }
+
+    static ConnectivityEvent noNetwork() {
+        return new ConnectivityEvent(NetworkSource.NO_NETWORK, null, null);
+    }
+
+    public NetworkSource getSource() {
+        return source;
+    }
+
+    /**
+     * @return Stable identity of the network, the same Wi-Fi gets the same fingerprint after reconnection.
+     */
+    public String getFingerprint() {
+        return source + ":" + (ssid != null ? ssid : "");
+    }
+
+    @Nullable
+    public Network getNetwork() {
+        return network;
+    }
+
+    @Nullable
+    public String getSsid() {
+        return ssid;
+    }
+
+    public boolean isConnected() {
+        return source == NetworkSource.WIFI || source == NetworkSource.MOBILE_DATA;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ConnectivityEvent that = (ConnectivityEvent) o;
+        return source == that.source
+                && Objects.equals(network, that.network)
+                && Objects.equals(ssid, that.ssid);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(source, network, ssid);
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectivityEvent{" +
+                "source=" + source +
+                ", network=" + network +
+                ", ssid='" + ssid + '\'' +
+                '}';
+    }
+}
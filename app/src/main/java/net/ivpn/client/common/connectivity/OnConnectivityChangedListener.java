@@ -0,0 +1,6 @@
+package net.ivpn.client.common.connectivity;
+
+public interface OnConnectivityChangedListener {
+
+    void onConnectivityChanged(ConnectivityEvent event);
+}
@@ -34,7 +34,6 @@ import net.ivpn.client.ui.timepicker.TimePickerActivity;
 import net.ivpn.client.ui.updates.UpdatesActivity;
 import net.ivpn.client.vpn.AlwaysOnVpnService;
 import net.ivpn.client.vpn.OnBootBroadcastReceiver;
-import net.ivpn.client.vpn.controller.WireGuardKeyBroadcastReceiver;
 import net.ivpn.client.vpn.local.PermissionActivity;
 import net.ivpn.client.vpn.openvpn.IVPNService;
 
@@ -104,7 +103,6 @@ public interface ActivityComponent {
 
     void inject(MonthlySubscriptionFragment fragment);
 
-    void inject(WireGuardKeyBroadcastReceiver receiver);
 
     void inject(OnBootBroadcastReceiver receiver);
 
@@ -118,7 +116,7 @@ public interface ActivityComponent {
 
     void inject(NetworkRecyclerViewAdapter.WifiItemViewHolder viewHolder);
 
-    void inject(ServersRecyclerViewAdapter.ServerViewHolder viewHolder);
+    void inject(ServersRecyclerViewAdapter adapter);
 
     void inject(Connection connection);
 
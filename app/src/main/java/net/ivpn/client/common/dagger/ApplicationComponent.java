@@ -4,10 +4,12 @@ import android.content.Context;
 
 import com.wireguard.android.backend.GoBackend;
 
-import net.ivpn.client.common.alarm.GlobalWireGuardAlarm;
+import net.ivpn.client.common.apps.AppIconCache;
+import net.ivpn.client.common.scheduler.MaintenanceJobService;
+import net.ivpn.client.common.scheduler.MaintenanceScheduler;
 import net.ivpn.client.common.utils.ComponentUtil;
+import net.ivpn.client.common.utils.FlagCache;
 import net.ivpn.client.common.utils.NotificationChannelUtil;
-import net.ivpn.client.ui.updates.UpdatesJobService;
 
 import dagger.BindsInstance;
 import dagger.Component;
@@ -27,13 +29,17 @@ public interface ApplicationComponent {
 
     GoBackend provideGoBackend();
 
-    GlobalWireGuardAlarm provideGlobalWireGuardAlarm();
+    MaintenanceScheduler provideMaintenanceScheduler();
 
     NotificationChannelUtil provideNotificationUtil();
 
     ComponentUtil provideComponentUtil();
 
-    void inject(UpdatesJobService service);
+    FlagCache provideFlagCache();
+
+    AppIconCache provideAppIconCache();
+
+    void inject(MaintenanceJobService service);
 
     void inject(GoBackend.WireGuardVpnService service);
 
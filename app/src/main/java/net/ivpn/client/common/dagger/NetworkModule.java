@@ -1,7 +1,11 @@
 package net.ivpn.client.common.dagger;
 
+import net.ivpn.client.BuildConfig;
+import net.ivpn.client.common.connectivity.ConnectionProbe;
 import net.ivpn.client.rest.HttpClientFactory;
 
+import javax.inject.Named;
+
 import dagger.Module;
 import dagger.Provides;
 
@@ -13,4 +17,10 @@ public class NetworkModule {
     public HttpClientFactory provideFactory() {
         return new HttpClientFactory();
     }
+
+    @Provides
+    @Named(ConnectionProbe.CHECK_URL)
+    public String provideCaptivePortalCheckUrl() {
+        return BuildConfig.CAPTIVE_PORTAL_CHECK_URL;
+    }
 }
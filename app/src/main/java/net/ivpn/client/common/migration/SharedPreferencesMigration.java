@@ -0,0 +1,58 @@
+package net.ivpn.client.common.migration;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+
+import net.ivpn.client.common.prefs.SettingsStore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Moves values of the SharedPreferences files into {@link SettingsStore}, one section per file.
+ * Files are removed once the store is written, so the import is done only once.
+ */
+public class SharedPreferencesMigration implements SettingsStore.Importer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SharedPreferencesMigration.class);
+
+    private Context context;
+    private String[] names;
+
+    public SharedPreferencesMigration(Context context, String... names) {
+        this.context = context;
+        this.names = names;
+    }
+
+    @Override
+    public Map<String, Map<String, ?>> read() {
+        Map<String, Map<String, ?>> sections = new HashMap<>();
+        for (String name : names) {
+            Map<String, ?> values = getSharedPreferences(name).getAll();
+            LOGGER.info("read: " + name + " has " + values.size() + " values");
+            if (!values.isEmpty()) {
+                sections.put(name, values);
+            }
+        }
+        return sections;
+    }
+
+    @Override
+    public void onImported() {
+        for (String name : names) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+                context.deleteSharedPreferences(name);
+            } else {
+                getSharedPreferences(name).edit().clear().commit();
+            }
+        }
+    }
+
+    private SharedPreferences getSharedPreferences(String name) {
+        return context.getSharedPreferences(name, Context.MODE_PRIVATE);
+    }
+}
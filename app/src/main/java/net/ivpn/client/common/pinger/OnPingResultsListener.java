@@ -0,0 +1,12 @@
+package net.ivpn.client.common.pinger;
+
+import java.util.Map;
+
+public interface OnPingResultsListener {
+    /**
+     * Called on the main thread with results finished since the previous call.
+     *
+     * @param results Ping results keyed by server gateway.
+     */
+    void onPingResults(Map<String, PingResultFormatter> results);
+}
@@ -2,7 +2,8 @@ package net.ivpn.client.common.pinger;
 
 import android.util.Log;
 
-import java.util.concurrent.Executor;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 
 class PingFuture {
@@ -12,17 +13,21 @@ class PingFuture {
     private static final int TIMEOUT = 1000;
 
     private boolean isFinished;
-    private volatile PingResultFormatter result;
-    private volatile OnPingFinishListener listener;
+    private PingResultFormatter result;
+    private final List<OnPingFinishListener> listeners = new ArrayList<>();
+    private final OnPingFinishListener finishListener;
     private ExecutorService executor;
 
-    PingFuture(ExecutorService executor) {
+    /**
+     * @param finishListener Called on the ping thread once the result is known.
+     */
+    PingFuture(ExecutorService executor, OnPingFinishListener finishListener) {
         this.executor = executor;
+        this.finishListener = finishListener;
         isFinished = false;
     }
 
-    Runnable getPingRunnable(final String ipAddress, final OnPingFinishListener listener) {
-        this.listener = listener;
+    Runnable getPingRunnable(final String ipAddress) {
         return new Thread(() -> Ping.onAddress(ipAddress, executor)
                 .setTimeOutMillis(TIMEOUT)
                 .setTimes(TIMES)
@@ -33,40 +38,59 @@ class PingFuture {
 
                     @Override
                     public void onFinished(PingStats pingStats) {
-                        isFinished = true;
                         if (pingStats.getPacketsLost() == TIMES) {
-                            result = new PingResultFormatter(PingResultFormatter.PingResult.OFFLINE, -1);
+                            finish(new PingResultFormatter(PingResultFormatter.PingResult.OFFLINE, -1));
                         } else {
-                            result = new PingResultFormatter(PingResultFormatter.PingResult.OK, (long) pingStats.getMinTimeTaken());
+                            finish(new PingResultFormatter(PingResultFormatter.PingResult.OK, (long) pingStats.getMinTimeTaken()));
                         }
-                        if (PingFuture.this.listener != null) {
-                            PingFuture.this.listener.onPingFinish(result);
-                        }
-                        Log.d(TAG, "onFinished: pingStats = " + pingStats);
                         Log.d(TAG, "onFinished: ip = " + ipAddress + " ping = " + pingStats.getMinTimeTaken());
                     }
 
                     @Override
                     public void onError(Exception e) {
-                        isFinished = true;
-                        result = new PingResultFormatter(PingResultFormatter.PingResult.OFFLINE, -1);
-                        if (PingFuture.this.listener != null) {
-                            PingFuture.this.listener.onPingFinish(result);
-                        }
+                        finish(new PingResultFormatter(PingResultFormatter.PingResult.OFFLINE, -1));
                         e.printStackTrace();
                     }
                 }));
     }
 
-    boolean isFinished() {
+    synchronized boolean isFinished() {
         return isFinished;
     }
 
-    PingResultFormatter getResult() {
+    synchronized PingResultFormatter getResult() {
         return result;
     }
 
-    void updateOnPingFinishListener(OnPingFinishListener listener) {
-        this.listener = listener;
+    /**
+     * Listener is called once with the result, immediately if the ping is finished already.
+     */
+    void addOnPingFinishListener(OnPingFinishListener listener) {
+        if (listener == null) {
+            return;
+        }
+        PingResultFormatter finishedResult;
+        synchronized (this) {
+            if (!isFinished) {
+                listeners.add(listener);
+                return;
+            }
+            finishedResult = result;
+        }
+        listener.onPingFinish(finishedResult);
+    }
+
+    private void finish(PingResultFormatter result) {
+        List<OnPingFinishListener> finishedListeners;
+        synchronized (this) {
+            this.result = result;
+            isFinished = true;
+            finishedListeners = new ArrayList<>(listeners);
+            listeners.clear();
+        }
+        finishListener.onPingFinish(result);
+        for (OnPingFinishListener listener : finishedListeners) {
+            listener.onPingFinish(result);
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,9 +1,12 @@
 package net.ivpn.client.common.pinger;
 
 import android.os.Handler;
+import android.os.Looper;
 
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -22,12 +25,19 @@ import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 
+/**
+ * Pings servers and keeps the results. Besides per-server listeners, results are published
+ * as a stream: finished pings are collected and delivered to {@link OnPingResultsListener}s
+ * on the main thread at most once per {@link #BATCH_PERIOD}, so a full ping round doesn't
+ * post a separate update for every server.
+ */
 @ApplicationScope
 public class PingProvider {
 
     private static final long VALIDITY_PERIOD = DateUtil.HOUR;
     private static final long CALCULATION_PERIOD = 3 * 1000;
     private static final int THREAD_COUNTS = 5;
+    private static final long BATCH_PERIOD = 100;
     private static final Logger LOGGER = LoggerFactory.getLogger(PingProvider.class);
     private long lastCalculationTimeStamp;
 
@@ -37,6 +47,12 @@ public class PingProvider {
     private Protocol lastPingedProtocol;
     private boolean needToFindNewlyFastestServer = false;
 
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final List<OnPingResultsListener> resultsListeners = new CopyOnWriteArrayList<>();
+    private final Object batchLock = new Object();
+    private Map<String, PingResultFormatter> batch = new HashMap<>();
+    private boolean isBatchScheduled;
+
     private ProtocolController protocolController;
     private ServersRepository serversRepository;
 
@@ -78,20 +94,57 @@ public class PingProvider {
         }
         PingFuture pingFutures = pings.get(server);
         if (pingFutures == null) {
-            pingFutures = new PingFuture(pingExecutor);
+            pingFutures = new PingFuture(pingExecutor, result -> publish(server, result));
+            pingFutures.addOnPingFinishListener(listener);
             String ipAddress;
             if (server.getType() == null || server.getType().equals(Protocol.OPENVPN)) {
                 ipAddress = server.getIpAddresses().get(0);
             } else {
                 ipAddress = server.getHosts().get(0).getHost();
             }
-            featureExecutor.execute(pingFutures.getPingRunnable(ipAddress, listener));
+            featureExecutor.execute(pingFutures.getPingRunnable(ipAddress));
             pings.put(server, pingFutures);
-        } else if (pingFutures.isFinished()) {
-            if (listener != null)
-                listener.onPingFinish(pingFutures.getResult());
         } else {
-            pingFutures.updateOnPingFinishListener(listener);
+            pingFutures.addOnPingFinishListener(listener);
+        }
+    }
+
+    /**
+     * @return Result of the finished ping of the server, {@code null} if it isn't pinged yet.
+     */
+    public PingResultFormatter getPingResult(Server server) {
+        PingFuture future = server != null ? pings.get(server) : null;
+        return future != null && future.isFinished() ? future.getResult() : null;
+    }
+
+    public void addOnPingResultsListener(OnPingResultsListener listener) {
+        resultsListeners.add(listener);
+    }
+
+    public void removeOnPingResultsListener(OnPingResultsListener listener) {
+        resultsListeners.remove(listener);
+    }
+
+    private void publish(Server server, PingResultFormatter result) {
+        synchronized (batchLock) {
+            batch.put(server.getGateway(), result);
+            if (isBatchScheduled) {
+                return;
+            }
+            isBatchScheduled = true;
+        }
+        handler.postDelayed(this::deliverBatch, BATCH_PERIOD);
+    }
+
+    private void deliverBatch() {
+        Map<String, PingResultFormatter> results;
+        synchronized (batchLock) {
+            results = batch;
+            batch = new HashMap<>();
+            isBatchScheduled = false;
+        }
+        for (OnPingResultsListener listener : resultsListeners) {
+            listener.onPingResults(results);
         }
     }
 
@@ -0,0 +1,40 @@
+package net.ivpn.client.common.prefs;
+
+import android.content.SharedPreferences;
+
+import java.util.Collection;
+import java.util.Map;
+
+import javax.inject.Inject;
+
+/**
+ * Keeps the installed applications catalog, keyed by the package name.
+ * It describes the device rather than the account, so it survives log out.
+ */
+public class AppCatalogPreference {
+
+    private Preference preference;
+
+    @Inject
+    public AppCatalogPreference(Preference preference) {
+        this.preference = preference;
+    }
+
+    @SuppressWarnings("unchecked")
+    public Map<String, String> getEntries() {
+        SharedPreferences sharedPreferences = preference.getAppCatalogSharedPreferences();
+        return (Map<String, String>) sharedPreferences.getAll();
+    }
+
+    public void putEntries(Map<String, String> entries, Collection<String> removedPackages) {
+        SharedPreferences sharedPreferences = preference.getAppCatalogSharedPreferences();
+        SharedPreferences.Editor editor = sharedPreferences.edit();
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            editor.putString(entry.getKey(), entry.getValue());
+        }
+        for (String packageName : removedPackages) {
+            editor.remove(packageName);
+        }
+        editor.apply();
+    }
+}
@@ -0,0 +1,45 @@
+package net.ivpn.client.common.prefs;
+
+import android.content.SharedPreferences;
+
+import java.util.Map;
+
+import javax.inject.Inject;
+
+/**
+ * Keeps connection history of every known network, keyed by the network fingerprint.
+ */
+public class ConnectionHistoryPreference {
+
+    private Preference preference;
+
+    @Inject
+    public ConnectionHistoryPreference(Preference preference) {
+        this.preference = preference;
+    }
+
+    public String getHistory(String fingerprint) {
+        SharedPreferences sharedPreferences = preference.getConnectionHistorySharedPreferences();
+        return sharedPreferences.getString(fingerprint, null);
+    }
+
+    public void putHistory(String fingerprint, String history) {
+        SharedPreferences sharedPreferences = preference.getConnectionHistorySharedPreferences();
+        sharedPreferences.edit()
+                .putString(fingerprint, history)
+                .apply();
+    }
+
+    public void removeHistory(String fingerprint) {
+        SharedPreferences sharedPreferences = preference.getConnectionHistorySharedPreferences();
+        sharedPreferences.edit()
+                .remove(fingerprint)
+                .apply();
+    }
+
+    @SuppressWarnings("unchecked")
+    public Map<String, String> getAll() {
+        SharedPreferences sharedPreferences = preference.getConnectionHistorySharedPreferences();
+        return (Map<String, String>) sharedPreferences.getAll();
+    }
+}
@@ -2,13 +2,24 @@ package net.ivpn.client.common.prefs;
 
 import android.content.SharedPreferences;
 
+import net.ivpn.client.common.dagger.ApplicationScope;
 import net.ivpn.client.vpn.model.NetworkState;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import javax.inject.Inject;
 
+/**
+ * Wi-Fi marks are kept in memory as an immutable map, which is swapped on every edit.
+ * Every edit is applied to {@link SettingsStore} under the same lock and its write to the disk is
+ * started at once on the store thread, so the caller never waits for the disk and there is no
+ * edit that lives only in this class.
+ */
+@ApplicationScope
 public class NetworkProtectionPreference {
 
     private static final String SETTINGS_TRUSTED_WIFI_LIST = "SETTINGS_TRUSTED_WIFI_LIST";
@@ -20,136 +31,97 @@ public class NetworkProtectionPreference {
 
     private Preference preference;
 
+    private Map<String, NetworkState> wifiMarks;
+    private NetworkState defaultNetworkState;
+    private NetworkState mobileDataNetworkState;
+
     @Inject
     public NetworkProtectionPreference(Preference preference) {
         this.preference = preference;
     }
 
     public void markWifiAsTrusted(String wifiSsid) {
-        Set<String> trustedWifi = getTrustedWifiList();
-        if (wifiSsid == null || trustedWifi.contains(wifiSsid)) {
-            return;
-        }
-        Set<String> newTrustedWifiList = new HashSet<>(trustedWifi);
-        newTrustedWifiList.add(wifiSsid);
-
-        SharedPreferences sharedPreferences = preference.getNetworkRulesSharedPreferences();
-        sharedPreferences.edit()
-                .putStringSet(SETTINGS_TRUSTED_WIFI_LIST, newTrustedWifiList)
-                .apply();
+        mark(wifiSsid, NetworkState.TRUSTED);
     }
 
     public void removeMarkWifiAsTrusted(String wifiSsid) {
-        Set<String> trustedWifi = getTrustedWifiList();
-        if (wifiSsid == null || !trustedWifi.contains(wifiSsid)) {
-            return;
-        }
-        Set<String> newTrustedWifiList = new HashSet<>(trustedWifi);
-        newTrustedWifiList.remove(wifiSsid);
-
-        SharedPreferences sharedPreferences = preference.getNetworkRulesSharedPreferences();
-        sharedPreferences.edit()
-                .putStringSet(SETTINGS_TRUSTED_WIFI_LIST, newTrustedWifiList)
-                .apply();
+        removeMark(wifiSsid, NetworkState.TRUSTED);
     }
 
     public Set<String> getTrustedWifiList() {
-        SharedPreferences sharedPreferences = preference.getNetworkRulesSharedPreferences();
-        return sharedPreferences.getStringSet(SETTINGS_TRUSTED_WIFI_LIST, new HashSet<String>());
+        return getWifiList(NetworkState.TRUSTED);
     }
 
     public void markWifiAsUntrusted(String wifiSsid) {
-        Set<String> untrustedWifi = getUntrustedWifiList();
-        if (wifiSsid == null || untrustedWifi.contains(wifiSsid)) {
-            return;
-        }
-        Set<String> newTrustedWifiList = new HashSet<>(untrustedWifi);
-        newTrustedWifiList.add(wifiSsid);
-
-        SharedPreferences sharedPreferences = preference.getNetworkRulesSharedPreferences();
-        sharedPreferences.edit()
-                .putStringSet(SETTINGS_UNTRUSTED_WIFI_LIST, newTrustedWifiList)
-                .apply();
+        mark(wifiSsid, NetworkState.UNTRUSTED);
     }
 
     public void removeMarkWifiAsUntrusted(String wifiSsid) {
-        Set<String> untrustedWifi = getUntrustedWifiList();
-        if (wifiSsid == null || !untrustedWifi.contains(wifiSsid)) {
-            return;
-        }
-        Set<String> newTrustedWifiList = new HashSet<>(untrustedWifi);
-        newTrustedWifiList.remove(wifiSsid);
-
-        SharedPreferences sharedPreferences = preference.getNetworkRulesSharedPreferences();
-        sharedPreferences.edit()
-                .putStringSet(SETTINGS_UNTRUSTED_WIFI_LIST, newTrustedWifiList)
-                .apply();
+        removeMark(wifiSsid, NetworkState.UNTRUSTED);
     }
 
     public Set<String> getUntrustedWifiList() {
-        SharedPreferences sharedPreferences = preference.getNetworkRulesSharedPreferences();
-        return sharedPreferences.getStringSet(SETTINGS_UNTRUSTED_WIFI_LIST, new HashSet<String>());
+        return getWifiList(NetworkState.UNTRUSTED);
     }
 
     public void markWifiAsNone(String wifiSsid) {
-        Set<String> noneWifis = getNoneWifiList();
-        if (wifiSsid == null || noneWifis.contains(wifiSsid)) {
-            return;
-        }
-        Set<String> newTrustedWifiList = new HashSet<>(noneWifis);
-        newTrustedWifiList.add(wifiSsid);
-
-        SharedPreferences sharedPreferences = preference.getNetworkRulesSharedPreferences();
-        sharedPreferences.edit()
-                .putStringSet(SETTINGS_NONE_WIFI_LIST, newTrustedWifiList)
-                .apply();
+        mark(wifiSsid, NetworkState.NONE);
     }
 
     public void removeMarkWifiAsNone(String wifiSsid) {
-        Set<String> noneWifis = getNoneWifiList();
-        if (wifiSsid == null || !noneWifis.contains(wifiSsid)) {
-            return;
-        }
-        Set<String> newTrustedWifiList = new HashSet<>(noneWifis);
-        newTrustedWifiList.remove(wifiSsid);
-
-        SharedPreferences sharedPreferences = preference.getNetworkRulesSharedPreferences();
-        sharedPreferences.edit()
-                .putStringSet(SETTINGS_NONE_WIFI_LIST, newTrustedWifiList)
-                .apply();
+        removeMark(wifiSsid, NetworkState.NONE);
     }
 
     public Set<String> getNoneWifiList() {
-        SharedPreferences sharedPreferences = preference.getNetworkRulesSharedPreferences();
-        return sharedPreferences.getStringSet(SETTINGS_NONE_WIFI_LIST, new HashSet<>());
+        return getWifiList(NetworkState.NONE);
     }
 
-    public void setDefaultNetworkState(NetworkState defaultNetworkState) {
+    /**
+     * @return Immutable snapshot of all Wi-Fi marks.
+     */
+    public synchronized Map<String, NetworkState> getWifiMarks() {
+        if (wifiMarks == null) {
+            wifiMarks = readWifiMarks();
+        }
+        return wifiMarks;
+    }
+
+    public synchronized void setDefaultNetworkState(NetworkState defaultNetworkState) {
+        this.defaultNetworkState = defaultNetworkState;
         SharedPreferences sharedPreferences = preference.getNetworkRulesSharedPreferences();
         sharedPreferences.edit()
                 .putString(SETTINGS_DEFAULT_NETWORK_STATE, defaultNetworkState.name())
                 .apply();
+        preference.flush();
     }
 
-    public NetworkState getDefaultNetworkState() {
-        SharedPreferences sharedPreferences = preference.getNetworkRulesSharedPreferences();
-        String defaultNetworkStateName = sharedPreferences.getString(SETTINGS_DEFAULT_NETWORK_STATE,
-                NetworkState.NONE.name());
-        return NetworkState.valueOf(defaultNetworkStateName);
+    public synchronized NetworkState getDefaultNetworkState() {
+        if (defaultNetworkState == null) {
+            SharedPreferences sharedPreferences = preference.getNetworkRulesSharedPreferences();
+            String defaultNetworkStateName = sharedPreferences.getString(SETTINGS_DEFAULT_NETWORK_STATE,
+                    NetworkState.NONE.name());
+            defaultNetworkState = NetworkState.valueOf(defaultNetworkStateName);
+        }
+        return defaultNetworkState;
     }
 
-    public void setMobileDataNetworkState(NetworkState mobileDataNetworkState) {
+    public synchronized void setMobileDataNetworkState(NetworkState mobileDataNetworkState) {
+        this.mobileDataNetworkState = mobileDataNetworkState;
         SharedPreferences sharedPreferences = preference.getNetworkRulesSharedPreferences();
         sharedPreferences.edit()
                 .putString(SETTINGS_MOBILE_DATE_NETWORK_STATE, mobileDataNetworkState.name())
                 .apply();
+        preference.flush();
     }
 
-    public NetworkState getMobileDataNetworkState() {
-        SharedPreferences sharedPreferences = preference.getNetworkRulesSharedPreferences();
-        String mobileDataNetworkStateName = sharedPreferences.getString(SETTINGS_MOBILE_DATE_NETWORK_STATE,
-                NetworkState.DEFAULT.name());
-        return NetworkState.valueOf(mobileDataNetworkStateName);
+    public synchronized NetworkState getMobileDataNetworkState() {
+        if (mobileDataNetworkState == null) {
+            SharedPreferences sharedPreferences = preference.getNetworkRulesSharedPreferences();
+            String mobileDataNetworkStateName = sharedPreferences.getString(SETTINGS_MOBILE_DATE_NETWORK_STATE,
+                    NetworkState.DEFAULT.name());
+            mobileDataNetworkState = NetworkState.valueOf(mobileDataNetworkStateName);
+        }
+        return mobileDataNetworkState;
     }
 
     public boolean isDefaultBehaviourExist() {
@@ -161,4 +133,90 @@ public class NetworkProtectionPreference {
         SharedPreferences sharedPreferences = preference.getNetworkRulesSharedPreferences();
         return sharedPreferences.contains(SETTINGS_MOBILE_DATE_NETWORK_STATE);
     }
+
+    /**
+     * Drop cached values, should be called after the shared preferences are cleared.
+     */
+    public synchronized void reset() {
+        wifiMarks = null;
+        defaultNetworkState = null;
+        mobileDataNetworkState = null;
+    }
+
+    private synchronized void mark(String wifiSsid, NetworkState state) {
+        if (wifiSsid == null || getWifiMarks().get(wifiSsid) == state) {
+            return;
+        }
+        Map<String, NetworkState> marks = new HashMap<>(getWifiMarks());
+        marks.put(wifiSsid, state);
+        wifiMarks = Collections.unmodifiableMap(marks);
+        write(marks);
+    }
+
+    private synchronized void removeMark(String wifiSsid, NetworkState state) {
+        if (wifiSsid == null || getWifiMarks().get(wifiSsid) != state) {
+            return;
+        }
+        Map<String, NetworkState> marks = new HashMap<>(getWifiMarks());
+        marks.remove(wifiSsid);
+        wifiMarks = Collections.unmodifiableMap(marks);
+        write(marks);
+    }
+
+    private Set<String> getWifiList(NetworkState state) {
+        Set<String> wifiList = new HashSet<>();
+        for (Map.Entry<String, NetworkState> entry : getWifiMarks().entrySet()) {
+            if (entry.getValue() == state) {
+                wifiList.add(entry.getKey());
+            }
+        }
+        return wifiList;
+    }
+
+    private Map<String, NetworkState> readWifiMarks() {
+        SharedPreferences sharedPreferences = preference.getNetworkRulesSharedPreferences();
+        Map<String, NetworkState> marks = new HashMap<>();
+        //Order matters, the same SSID could be in several lists in older versions, trusted mark wins.
+        putAll(marks, sharedPreferences.getStringSet(SETTINGS_NONE_WIFI_LIST, null), NetworkState.NONE);
+        putAll(marks, sharedPreferences.getStringSet(SETTINGS_UNTRUSTED_WIFI_LIST, null), NetworkState.UNTRUSTED);
+        putAll(marks, sharedPreferences.getStringSet(SETTINGS_TRUSTED_WIFI_LIST, null), NetworkState.TRUSTED);
+        return Collections.unmodifiableMap(marks);
+    }
+
+    private void putAll(Map<String, NetworkState> marks, Set<String> wifiList, NetworkState state) {
+        if (wifiList == null) {
+            return;
+        }
+        for (String wifiSsid : wifiList) {
+            marks.put(wifiSsid, state);
+        }
+    }
+
+    //Should be called with the lock held, so a write never outlives reset().
+    private void write(Map<String, NetworkState> marks) {
+        Set<String> trustedWifiList = new HashSet<>();
+        Set<String> untrustedWifiList = new HashSet<>();
+        Set<String> noneWifiList = new HashSet<>();
+        for (Map.Entry<String, NetworkState> entry : marks.entrySet()) {
+            switch (entry.getValue()) {
+                case TRUSTED:
+                    trustedWifiList.add(entry.getKey());
+                    break;
+                case UNTRUSTED:
+                    untrustedWifiList.add(entry.getKey());
+                    break;
+                case NONE:
+                    noneWifiList.add(entry.getKey());
+                    break;
+            }
+        }
+
+        SharedPreferences sharedPreferences = preference.getNetworkRulesSharedPreferences();
+        sharedPreferences.edit()
+                .putStringSet(SETTINGS_TRUSTED_WIFI_LIST, trustedWifiList)
+                .putStringSet(SETTINGS_UNTRUSTED_WIFI_LIST, untrustedWifiList)
+                .putStringSet(SETTINGS_NONE_WIFI_LIST, noneWifiList)
+                .apply();
+        preference.flush();
+    }
 }
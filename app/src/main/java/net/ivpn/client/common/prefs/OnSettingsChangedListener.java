@@ -0,0 +1,6 @@
+package net.ivpn.client.common.prefs;
+
+public interface OnSettingsChangedListener {
+
+    void onSettingsChanged(SettingsSnapshot snapshot);
+}
@@ -0,0 +1,7 @@
+package net.ivpn.client.common.prefs;
+
+import java.util.Set;
+
+public interface OnStoreChangedListener {
+    void onStoreChanged(String section, Set<String> keys);
+}
@@ -6,10 +6,18 @@ import android.util.Log;
 
 import net.ivpn.client.IVPNApplication;
 import net.ivpn.client.common.dagger.ApplicationScope;
+import net.ivpn.client.common.migration.SharedPreferencesMigration;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import java9.util.concurrent.CompletableFuture;
+
 @ApplicationScope
 public class Preference {
 
@@ -26,13 +34,40 @@ public class Preference {
     private static final String DISALLOWED_APPS_PREF = "DISALLOWED_APPS_PREF";
     private static final String ACCOUNT_PREF = "ACCOUNT_PREF";
     private static final String PURCHASE_PREF = "PURCHASE_PREF";
+    private static final String CONNECTION_HISTORY_PREF = "CONNECTION_HISTORY_PREF";
+    private static final String APP_CATALOG_PREF = "APP_CATALOG_PREF";
     //Don't clear this shared preference after logout
     private static final String STICKY_PREF = "STICKY_PREF";
 
+    private static final String SETTINGS_STORE_FILE = "settings_store.json";
+    private static final String[] SECTIONS = {COMMON_PREF, TRUSTED_WIFI_PREF, SETTINGS_PREF, SERVERS_PREF,
+            WIREGUARD_SERVERS_PREF, FAVOURITES_SERVERS_PREF, DISALLOWED_APPS_PREF, ACCOUNT_PREF, PURCHASE_PREF,
+            CONNECTION_HISTORY_PREF, APP_CATALOG_PREF, STICKY_PREF};
+    //Large lists that are replaced as a whole are kept in files of their own.
+    private static final String[] SEPARATE_SECTIONS = {SERVERS_PREF, WIREGUARD_SERVERS_PREF, APP_CATALOG_PREF};
+
+    private final Map<String, SharedPreferences> sections = new HashMap<>();
+    private SettingsStore store;
+
     @Inject
     public Preference() {
     }
 
+    /**
+     * Run the action so that preferences changed by it are applied and written as one change.
+     */
+    public void inTransaction(Runnable action) {
+        getStore().inTransaction(action);
+    }
+
+    /**
+     * @return Future that is completed once applied preferences are on the disk, with false if
+     * they can't be written.
+     */
+    public CompletableFuture<Boolean> flush() {
+        return getStore().flushAsync();
+    }
+
     public boolean isLogicVersionExist() {
         SharedPreferences sharedPreferences = getCommonSharedPreferences();
         return sharedPreferences.contains(CURRENT_LOGIC_VERSION);
@@ -51,6 +86,10 @@ public class Preference {
     }
 
     public void removeAll() {
+        getStore().inTransaction(this::clearAll);
+    }
+
+    private void clearAll() {
         clear(getCommonSharedPreferences());
         clear(getSettingsSharedPreferences());
         clear(getServersSharedPreferences());
@@ -59,6 +98,7 @@ public class Preference {
         clear(getNetworkRulesSharedPreferences());
         clear(getAccountSharedPreferences());
         clear(getWireguardServersSharedPreferences());
+        clear(getConnectionHistorySharedPreferences());
     }
 
     private void clear(SharedPreferences sharedPreferences) {
@@ -69,42 +109,70 @@ public class Preference {
     }
 
     private SharedPreferences getCommonSharedPreferences() {
-        return IVPNApplication.getApplication().getSharedPreferences(COMMON_PREF, Context.MODE_PRIVATE);
+        return getSection(COMMON_PREF);
     }
 
     SharedPreferences getNetworkRulesSharedPreferences() {
-        return IVPNApplication.getApplication().getSharedPreferences(TRUSTED_WIFI_PREF, Context.MODE_PRIVATE);
+        return getSection(TRUSTED_WIFI_PREF);
     }
 
     SharedPreferences getSettingsSharedPreferences() {
-        return IVPNApplication.getApplication().getSharedPreferences(SETTINGS_PREF, Context.MODE_PRIVATE);
+        return getSection(SETTINGS_PREF);
     }
 
     SharedPreferences getServersSharedPreferences() {
-        return IVPNApplication.getApplication().getSharedPreferences(SERVERS_PREF, Context.MODE_PRIVATE);
+        return getSection(SERVERS_PREF);
     }
 
     SharedPreferences getWireguardServersSharedPreferences() {
-        return IVPNApplication.getApplication().getSharedPreferences(WIREGUARD_SERVERS_PREF, Context.MODE_PRIVATE);
+        return getSection(WIREGUARD_SERVERS_PREF);
     }
 
     SharedPreferences getFavouritesServersSharedPreferences() {
-        return IVPNApplication.getApplication().getSharedPreferences(FAVOURITES_SERVERS_PREF, Context.MODE_PRIVATE);
+        return getSection(FAVOURITES_SERVERS_PREF);
     }
 
     SharedPreferences getPurchaseSharedPreferences() {
-        return IVPNApplication.getApplication().getSharedPreferences(PURCHASE_PREF, Context.MODE_PRIVATE);
+        return getSection(PURCHASE_PREF);
     }
 
     SharedPreferences getDisallowedAppsSharedPreferences() {
-        return IVPNApplication.getApplication().getSharedPreferences(DISALLOWED_APPS_PREF, Context.MODE_PRIVATE);
+        return getSection(DISALLOWED_APPS_PREF);
     }
 
     SharedPreferences getAccountSharedPreferences() {
-        return IVPNApplication.getApplication().getSharedPreferences(ACCOUNT_PREF, Context.MODE_PRIVATE);
+        return getSection(ACCOUNT_PREF);
+    }
+
+    SharedPreferences getConnectionHistorySharedPreferences() {
+        return getSection(CONNECTION_HISTORY_PREF);
+    }
+
+    SharedPreferences getAppCatalogSharedPreferences() {
+        return getSection(APP_CATALOG_PREF);
     }
 
     SharedPreferences getStickySharedPreferences() {
-        return IVPNApplication.getApplication().getSharedPreferences(STICKY_PREF, Context.MODE_PRIVATE);
+        return getSection(STICKY_PREF);
+    }
+
+    private synchronized SharedPreferences getSection(String name) {
+        SharedPreferences section = sections.get(name);
+        if (section == null) {
+            section = new StoreSharedPreferences(getStore(), name);
+            sections.put(name, section);
+        }
+        return section;
+    }
+
+    //Store is created on the first use, the application context isn't ready while the graph is built.
+    private synchronized SettingsStore getStore() {
+        if (store == null) {
+            Context context = IVPNApplication.getApplication();
+            store = new SettingsStore(new File(context.getFilesDir(), SETTINGS_STORE_FILE),
+                    new SharedPreferencesMigration(context, SECTIONS), Executors.newSingleThreadScheduledExecutor(),
+                    SEPARATE_SECTIONS);
+        }
+        return store;
     }
 }
\ No newline at end of file
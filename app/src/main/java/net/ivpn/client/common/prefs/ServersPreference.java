@@ -20,6 +20,7 @@ public class ServersPreference {
     private static final String SERVERS_LIST = "SERVERS_LIST";
     private static final String FAVOURITES_SERVERS_LIST = "FAVOURITES_SERVERS_LIST";
     private static final String EXCLUDED_FASTEST_SERVERS = "EXCLUDED_FASTEST_SERVERS";
+    private static final String SERVERS_LIST_UPDATE_TIME = "SERVERS_LIST_UPDATE_TIME";
 
     private Preference preference;
     private ProtocolController protocolController;
@@ -53,6 +54,18 @@ public class ServersPreference {
                 .apply();
     }
 
+    void putServersListUpdateTime(long updateTime) {
+        SharedPreferences sharedPreferences = preference.getServersSharedPreferences();
+        sharedPreferences.edit()
+                .putLong(SERVERS_LIST_UPDATE_TIME, updateTime)
+                .apply();
+    }
+
+    long getServersListUpdateTime() {
+        SharedPreferences sharedPreferences = preference.getServersSharedPreferences();
+        return sharedPreferences.getLong(SERVERS_LIST_UPDATE_TIME, 0);
+    }
+
     List<Server> getServersList() {
         SharedPreferences sharedPreferences = getProperSharedPreference();
         return Mapper.serverListFrom(sharedPreferences.getString(SERVERS_LIST, null));
@@ -121,6 +121,10 @@ public class ServersRepository implements Serializable {
         return servers;
     }
 
+    public long getServersListUpdateTime() {
+        return serversPreference.getServersListUpdateTime();
+    }
+
     public List<Server> getFavouritesServers() {
         return serversPreference.getFavouritesServersList();
     }
@@ -161,6 +165,7 @@ public class ServersRepository implements Serializable {
                 settings.setAntiTrackerDefaultDNSMulti(response.getConfig().getAntiTracker().getDefault().getMultihopIp());
                 settings.setAntiTrackerHardcoreDNSMulti(response.getConfig().getAntiTracker().getHardcore().getMultihopIp());
                 settings.setIpList(Mapper.stringFromIps(response.getConfig().getApi().getIps()));
+                serversPreference.putServersListUpdateTime(System.currentTimeMillis());
 
                 for (OnServerListUpdatedListener listener : onServerListUpdatedListeners) {
                     listener.onSuccess(getSuitableServers(response), isForced);
@@ -5,17 +5,20 @@ import android.util.Log;
 import com.wireguard.android.crypto.Keypair;
 
 import net.ivpn.client.IVPNApplication;
-import net.ivpn.client.common.alarm.GlobalWireGuardAlarm;
+import net.ivpn.client.common.Mapper;
 import net.ivpn.client.common.dagger.ApplicationScope;
 import net.ivpn.client.common.utils.LogUtil;
 import net.ivpn.client.ui.protocol.port.Port;
 import net.ivpn.client.vpn.Protocol;
+import net.ivpn.client.vpn.wireguard.KeyRotation;
 
 import java.io.Serializable;
 import java.util.LinkedList;
 
 import javax.inject.Inject;
 
+import java9.util.concurrent.CompletableFuture;
+
 @ApplicationScope
 public class Settings {
 
@@ -57,6 +60,10 @@ public class Settings {
         settingsPreference.putSettingStartOnBoot(value);
     }
 
+    public void enableIdlePause(boolean value) {
+        settingsPreference.putSettingIdlePause(value);
+    }
+
     public void enableAdvancedKillSwitchDialog(boolean value) {
         settingsPreference.putSettingAdvancedKillSwitch(value);
     }
@@ -117,6 +124,10 @@ public class Settings {
         return settingsPreference.getSettingStartOnBoot();
     }
 
+    public boolean isIdlePauseEnabled() {
+        return settingsPreference.getSettingIdlePause();
+    }
+
     public boolean isNewForPrivateEmails() {
         return settingsPreference.getIsNewForPrivateEmails();
     }
@@ -244,9 +255,22 @@ public class Settings {
         settingsPreference.setSettingsWgPrivateKey(keypair.getPrivateKey());
         settingsPreference.setSettingsWgPublicKey(keypair.getPublicKey());
         settingsPreference.putGenerationTime(System.currentTimeMillis());
-        GlobalWireGuardAlarm alarm = IVPNApplication.getApplication().appComponent.provideGlobalWireGuardAlarm();
-        alarm.stop();
-        alarm.start();
+        IVPNApplication.getApplication().appComponent.provideMaintenanceScheduler().scheduleKeyRotation();
+    }
+
+    public KeyRotation getWireGuardKeyRotation() {
+        return Mapper.keyRotationFrom(settingsPreference.getWgKeyRotation());
+    }
+
+    /**
+     * @return Future that is completed once the rotation is on the disk, with false if it can't be written.
+     */
+    public CompletableFuture<Boolean> putWireGuardKeyRotation(KeyRotation keyRotation) {
+        return settingsPreference.putWgKeyRotation(Mapper.stringFrom(keyRotation));
+    }
+
+    public void removeWireGuardKeyRotation() {
+        settingsPreference.removeWgKeyRotation();
     }
 
     public void setWireGuardIpAddress(String ipAddress) {
@@ -273,6 +297,18 @@ public class Settings {
         return settingsPreference.getCustomDNSValue();
     }
 
+    public void setCustomDNSUpstream(String upstream) {
+        settingsPreference.setCustomDNSUpstream(upstream);
+    }
+
+    /**
+     * @return DNS over HTTPS or TLS upstream used to look up server names while custom DNS
+     * is enabled, empty if there is none.
+     */
+    public String getCustomDNSUpstream() {
+        return settingsPreference.getCustomDNSUpstream();
+    }
+
     public void setWgPort(Port port) {
         settingsPreference.setWgPort(port.toJson());
     }
@@ -13,6 +13,8 @@ import java.util.Set;
 
 import javax.inject.Inject;
 
+import java9.util.concurrent.CompletableFuture;
+
 @ApplicationScope
 public class SettingsPreference {
 
@@ -23,6 +25,7 @@ public class SettingsPreference {
     private static final String SETTINGS_KILL_SWITCH = "SETTINGS_KILL_SWITCH";
     private static final String SETTINGS_ADVANCED_KILL_SWITCH_DIALOG = "SETTINGS_ADVANCED_KILL_SWITCH_DIALOG";
     private static final String SETTINGS_START_ON_BOOT = "SETTINGS_START_ON_BOOT";
+    private static final String SETTINGS_IDLE_PAUSE = "SETTINGS_IDLE_PAUSE";
     private static final String SETTINGS_IS_NEW_FOR_PRIVATE_EMAILS = "SETTINGS_IS_NEW_FOR_PRIVATE_EMAILS";
     private static final String SETTINGS_NETWORK_RULES = "SETTINGS_NETWORK_RULES";
     private static final String SETTINGS_WG_PRIVATE_KEY = "SETTINGS_WG_PRIVATE_KEY";
@@ -36,12 +39,14 @@ public class SettingsPreference {
     private static final String SETTINGS_ANTI_SURVEILLANCE_DNS_MULTI = "SETTINGS_ANTI_SURVEILLANCE_DNS_MULTI";
     private static final String SETTINGS_ANTI_SURVEILLANCE_HARDCORE_DNS_MULTI = "SETTINGS_ANTI_SURVEILLANCE_HARDCORE_DNS_MULTI";
     private static final String SETTINGS_CUSTOM_DNS_VALUE = "SETTINGS_CUSTOM_DNS_VALUE";
+    private static final String SETTINGS_CUSTOM_DNS_UPSTREAM = "SETTINGS_CUSTOM_DNS_UPSTREAM";
     private static final String SETTINGS_AUTO_UPDATE = "SETTINGS_AUTO_UPDATE";
     private static final String SETTINGS_NEXT_VERSION = "SETTINGS_NEXT_VERSION";
     private static final String OV_PORT = "OV_PORT";
     private static final String WG_PORT = "WG_PORT";
     private static final String WIREGUARD_KEY_GENERATION_TIME = "WIREGUARD_KEY_GENERATION_TIME";
     private static final String WIREGUARD_KEY_REGENERATION_PERIOD = "WIREGUARD_KEY_REGENERATION_PERIOD";
+    private static final String WIREGUARD_KEY_ROTATION = "WIREGUARD_KEY_ROTATION";
     private static final String RULE_CONNECT_TO_VPN = "RULE_CONNECT_TO_VPN";
     private static final String RULE_DISCONNECT_FROM_VPN = "RULE_DISCONNECT_FROM_VPN";
     private static final String RULE_ENABLE_KILL_SWITCH = "RULE_ENABLE_KILL_SWITCH";
@@ -81,6 +86,11 @@ public class SettingsPreference {
         return sharedPreferences.getBoolean(SETTINGS_START_ON_BOOT, false);
     }
 
+    public boolean getSettingIdlePause() {
+        SharedPreferences sharedPreferences = preference.getSettingsSharedPreferences();
+        return sharedPreferences.getBoolean(SETTINGS_IDLE_PAUSE, false);
+    }
+
     public boolean getIsNewForPrivateEmails() {
         SharedPreferences sharedPreferences = preference.getSettingsSharedPreferences();
         return sharedPreferences.getBoolean(SETTINGS_IS_NEW_FOR_PRIVATE_EMAILS, true);
@@ -214,6 +224,13 @@ public class SettingsPreference {
                 .apply();
     }
 
+    public void putSettingIdlePause(boolean value) {
+        SharedPreferences sharedPreferences = preference.getSettingsSharedPreferences();
+        sharedPreferences.edit()
+                .putBoolean(SETTINGS_IDLE_PAUSE, value)
+                .apply();
+    }
+
     public void putAntiSurveillance(boolean value) {
         SharedPreferences sharedPreferences = preference.getSettingsSharedPreferences();
         sharedPreferences.edit()
@@ -296,6 +313,18 @@ public class SettingsPreference {
         return sharedPreferences.getString(SETTINGS_CUSTOM_DNS_VALUE, "");
     }
 
+    public void setCustomDNSUpstream(String upstream) {
+        SharedPreferences sharedPreferences = preference.getSettingsSharedPreferences();
+        sharedPreferences.edit()
+                .putString(SETTINGS_CUSTOM_DNS_UPSTREAM, upstream)
+                .apply();
+    }
+
+    public String getCustomDNSUpstream() {
+        SharedPreferences sharedPreferences = preference.getSettingsSharedPreferences();
+        return sharedPreferences.getString(SETTINGS_CUSTOM_DNS_UPSTREAM, "");
+    }
+
     public String getOpenvpnPort() {
         SharedPreferences sharedPreferences = preference.getSettingsSharedPreferences();
         return sharedPreferences.getString(OV_PORT, "");
@@ -349,6 +378,29 @@ public class SettingsPreference {
         return sharedPreferences.getString(SETTINGS_WG_IP_ADDRESS, "");
     }
 
+    public String getWgKeyRotation() {
+        SharedPreferences sharedPreferences = preference.getSettingsSharedPreferences();
+        return sharedPreferences.getString(WIREGUARD_KEY_ROTATION, "");
+    }
+
+    /**
+     * @return Future that is completed once the journal is on the disk, it is written in background.
+     */
+    public CompletableFuture<Boolean> putWgKeyRotation(String json) {
+        SharedPreferences sharedPreferences = preference.getSettingsSharedPreferences();
+        sharedPreferences.edit()
+                .putString(WIREGUARD_KEY_ROTATION, json)
+                .apply();
+        return preference.flush();
+    }
+
+    public void removeWgKeyRotation() {
+        SharedPreferences sharedPreferences = preference.getSettingsSharedPreferences();
+        sharedPreferences.edit()
+                .remove(WIREGUARD_KEY_ROTATION)
+                .apply();
+    }
+
     public boolean isAutoUpdateEnabled() {
         SharedPreferences sharedPreferences = preference.getSettingsSharedPreferences();
         return sharedPreferences.getBoolean(SETTINGS_AUTO_UPDATE, true);
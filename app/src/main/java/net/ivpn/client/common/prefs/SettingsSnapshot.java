@@ -0,0 +1,129 @@
+package net.ivpn.client.common.prefs;
+
+import net.ivpn.client.BuildConfig;
+import net.ivpn.client.rest.data.model.Server;
+
+/**
+ * Immutable copy of the settings and account state shown on the settings screen,
+ * see {@link SettingsSnapshotProvider}.
+ */
+public class SettingsSnapshot {
+
+    private final boolean isLoggingEnabled;
+    private final boolean isIdlePauseEnabled;
+    private final boolean isMultiHopEnabled;
+    private final boolean isKillSwitchEnabled;
+    private final boolean isFastestServerEnabled;
+    private final boolean isAdvancedKillSwitchDialogEnabled;
+    private final String userLogin;
+    private final String currentPlan;
+    private final String paymentMethod;
+    private final String sessionToken;
+    private final boolean isUserOnTrial;
+    private final boolean isActive;
+    private final boolean isMultiHopCapable;
+    private final long availableUntil;
+    private final Server entryServer;
+    private final Server exitServer;
+    private final boolean isAntiTrackerEnabled;
+    private final boolean isSentryEnabled;
+    private final boolean isUpdatesEnabled;
+
+    SettingsSnapshot(Settings settings, UserPreference userPreference, ServersRepository serversRepository) {
+        isLoggingEnabled = settings.isLoggingEnabled();
+        isIdlePauseEnabled = settings.isIdlePauseEnabled();
+        isMultiHopEnabled = settings.isMultiHopEnabled();
+        isKillSwitchEnabled = settings.isKillSwitchEnabled();
+        isFastestServerEnabled = settings.isFastestServerEnabled();
+        isAdvancedKillSwitchDialogEnabled = settings.isAdvancedKillSwitchDialogEnabled();
+        userLogin = userPreference.getUserLogin();
+        currentPlan = userPreference.getCurrentPlan();
+        paymentMethod = userPreference.getPaymentMethod();
+        sessionToken = userPreference.getSessionToken();
+        isUserOnTrial = userPreference.isUserOnTrial();
+        isActive = userPreference.getIsActive();
+        isMultiHopCapable = userPreference.getCapabilityMultiHop();
+        availableUntil = userPreference.getAvailableUntil();
+        entryServer = serversRepository.getCurrentServer(ServerType.ENTRY);
+        exitServer = serversRepository.getCurrentServer(ServerType.EXIT);
+        isAntiTrackerEnabled = BuildConfig.BUILD_VARIANT.equals("site") || BuildConfig.BUILD_VARIANT.equals("fdroid");
+        isSentryEnabled = !BuildConfig.BUILD_VARIANT.equals("fdroid");
+        isUpdatesEnabled = BuildConfig.BUILD_VARIANT.equals("site");
+    }
+
+    public boolean isLoggingEnabled() {
+        return isLoggingEnabled;
+    }
+
+    public boolean isIdlePauseEnabled() {
+        return isIdlePauseEnabled;
+    }
+
+    public boolean isMultiHopEnabled() {
+        return isMultiHopEnabled;
+    }
+
+    public boolean isKillSwitchEnabled() {
+        return isKillSwitchEnabled;
+    }
+
+    public boolean isFastestServerEnabled() {
+        return isFastestServerEnabled;
+    }
+
+    public boolean isAdvancedKillSwitchDialogEnabled() {
+        return isAdvancedKillSwitchDialogEnabled;
+    }
+
+    public String getUserLogin() {
+        return userLogin;
+    }
+
+    public String getCurrentPlan() {
+        return currentPlan;
+    }
+
+    public String getPaymentMethod() {
+        return paymentMethod;
+    }
+
+    public String getSessionToken() {
+        return sessionToken;
+    }
+
+    public boolean isUserOnTrial() {
+        return isUserOnTrial;
+    }
+
+    public boolean isActive() {
+        return isActive;
+    }
+
+    public boolean isMultiHopCapable() {
+        return isMultiHopCapable;
+    }
+
+    public long getAvailableUntil() {
+        return availableUntil;
+    }
+
+    public Server getEntryServer() {
+        return entryServer;
+    }
+
+    public Server getExitServer() {
+        return exitServer;
+    }
+
+    public boolean isAntiTrackerEnabled() {
+        return isAntiTrackerEnabled;
+    }
+
+    public boolean isSentryEnabled() {
+        return isSentryEnabled;
+    }
+
+    public boolean isUpdatesEnabled() {
+        return isUpdatesEnabled;
+    }
+}
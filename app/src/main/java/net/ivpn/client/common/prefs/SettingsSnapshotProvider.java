@@ -0,0 +1,85 @@
+package net.ivpn.client.common.prefs;
+
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+
+import net.ivpn.client.common.dagger.ApplicationScope;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.inject.Inject;
+
+import java9.util.concurrent.CompletableFuture;
+
+/**
+ * Reads {@link SettingsSnapshot} on a background thread, so the settings screen doesn't touch
+ * preference files on the main thread. Listeners are notified with a new snapshot on the main
+ * thread while settings or account preferences are changed.
+ */
+@ApplicationScope
+public class SettingsSnapshotProvider {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final List<OnSettingsChangedListener> listeners = new ArrayList<>();
+    private final Runnable notifyChange = this::notifyChange;
+    //Kept in a field, the same instance has to be unregistered.
+    private final SharedPreferences.OnSharedPreferenceChangeListener preferenceListener =
+            (sharedPreferences, key) -> onPreferenceChanged();
+
+    private Preference preference;
+    private Settings settings;
+    private UserPreference userPreference;
+    private ServersRepository serversRepository;
+
+    @Inject
+    SettingsSnapshotProvider(Preference preference, Settings settings, UserPreference userPreference,
+                             ServersRepository serversRepository) {
+        this.preference = preference;
+        this.settings = settings;
+        this.userPreference = userPreference;
+        this.serversRepository = serversRepository;
+    }
+
+    /**
+     * @return Future of the current settings, completed on a background thread.
+     */
+    public CompletableFuture<SettingsSnapshot> getSnapshot() {
+        return CompletableFuture.supplyAsync(() -> new SettingsSnapshot(settings, userPreference, serversRepository), executor);
+    }
+
+    public void addOnSettingsChangedListener(OnSettingsChangedListener listener) {
+        if (listeners.isEmpty()) {
+            preference.getSettingsSharedPreferences().registerOnSharedPreferenceChangeListener(preferenceListener);
+            preference.getAccountSharedPreferences().registerOnSharedPreferenceChangeListener(preferenceListener);
+        }
+        listeners.add(listener);
+    }
+
+    public void removeOnSettingsChangedListener(OnSettingsChangedListener listener) {
+        listeners.remove(listener);
+        if (listeners.isEmpty()) {
+            preference.getSettingsSharedPreferences().unregisterOnSharedPreferenceChangeListener(preferenceListener);
+            preference.getAccountSharedPreferences().unregisterOnSharedPreferenceChangeListener(preferenceListener);
+            handler.removeCallbacks(notifyChange);
+        }
+    }
+
+    //Preferences are changed one key at a time, changes made in one go are read once.
+    private void onPreferenceChanged() {
+        handler.removeCallbacks(notifyChange);
+        handler.post(notifyChange);
+    }
+
+    private void notifyChange() {
+        getSnapshot().thenAcceptAsync(snapshot -> {
+            for (OnSettingsChangedListener listener : new ArrayList<>(listeners)) {
+                listener.onSettingsChanged(snapshot);
+            }
+        }, handler::post);
+    }
+}
@@ -0,0 +1,598 @@
+package net.ivpn.client.common.prefs;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import java9.util.concurrent.CompletableFuture;
+
+/**
+ * Key-value store that keeps the sections of the application preferences in one file. Large
+ * sections that are replaced as a whole, like server lists, can be kept in files of their own,
+ * so a small change doesn't rewrite them and they don't rewrite the rest of the settings.
+ * The whole store is held in memory once it is read, so reads never touch the disk. Changes are
+ * applied to the memory at once and written to the disk on a background thread, changes that are
+ * made in a burst are written once. Unlike SharedPreferences, pending writes are never flushed on
+ * the main thread when an activity or a service is paused, {@link Transaction#commit()} is used
+ * when a change has to be on the disk before the caller goes on.
+ * Values are Boolean, Integer, Long, Float, String or Set of Strings. A file that can't be read
+ * is moved aside with the {@code .corrupt} suffix instead of being written over.
+ */
+public class SettingsStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SettingsStore.class);
+
+    private static final int FORMAT_VERSION = 1;
+    private static final long WRITE_DELAY = 200;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String TYPE_BOOLEAN = "boolean";
+    private static final String TYPE_INT = "int";
+    private static final String TYPE_LONG = "long";
+    private static final String TYPE_FLOAT = "float";
+    private static final String TYPE_STRING = "string";
+    private static final String TYPE_SET = "set";
+
+    private final File file;
+    private final Set<String> separateSections;
+    private final Importer importer;
+    private final ScheduledExecutorService executor;
+    private final Object lock = new Object();
+    private final Object writeLock = new Object();
+    private final AtomicBoolean isWriteScheduled = new AtomicBoolean();
+    private final List<OnStoreChangedListener> listeners = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<Transaction> batch = new ThreadLocal<>();
+
+    private volatile Map<String, Map<String, Object>> sections;
+    //Guarded by lock.
+    private final Set<File> dirtyFiles = new HashSet<>();
+    private final Set<File> unwritableFiles = new HashSet<>();
+
+    /**
+     * Source of the values the store starts with when its file doesn't exist yet.
+     */
+    public interface Importer {
+
+        /**
+         * @return Values to import, by section and key.
+         */
+        Map<String, Map<String, ?>> read();
+
+        /**
+         * Called once the imported values are written to the store file.
+         */
+        void onImported();
+    }
+
+    /**
+     * @param separateSections Sections that are kept in files of their own next to the main file.
+     */
+    public SettingsStore(File file, Importer importer, ScheduledExecutorService executor,
+                         String... separateSections) {
+        this.file = file;
+        this.separateSections = new LinkedHashSet<>(Arrays.asList(separateSections));
+        this.importer = importer;
+        this.executor = executor;
+    }
+
+    public Object get(String section, String key) {
+        Map<String, Object> values = getSections().get(section);
+        return values != null ? values.get(key) : null;
+    }
+
+    /**
+     * @return Unmodifiable values of the section, empty if there are none.
+     */
+    public Map<String, Object> getSection(String section) {
+        Map<String, Object> values = getSections().get(section);
+        return values != null ? values : Collections.emptyMap();
+    }
+
+    public Transaction edit() {
+        return new Transaction();
+    }
+
+    /**
+     * Run the action so that every change applied by it on this thread is applied to the store
+     * and written to the disk as one change. Listeners are notified once the action is done.
+     */
+    public void inTransaction(Runnable action) {
+        if (batch.get() != null) {
+            action.run();
+            return;
+        }
+        Transaction transaction = new Transaction();
+        batch.set(transaction);
+        try {
+            action.run();
+        } finally {
+            batch.remove();
+        }
+        if (transaction.isSyncRequired) {
+            transaction.commit();
+        } else {
+            transaction.apply();
+        }
+    }
+
+    public void addOnStoreChangedListener(OnStoreChangedListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeOnStoreChangedListener(OnStoreChangedListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Write pending changes to the disk on the calling thread.
+     *
+     * @return false if the store can't be written.
+     */
+    public boolean flush() {
+        return write();
+    }
+
+    /**
+     * Write pending changes to the disk on the background thread.
+     *
+     * @return Future that is completed with false if the store can't be written.
+     */
+    public CompletableFuture<Boolean> flushAsync() {
+        return CompletableFuture.supplyAsync(this::write, executor);
+    }
+
+    private Map<String, Map<String, Object>> getSections() {
+        Map<String, Map<String, Object>> sections = this.sections;
+        if (sections != null) {
+            return sections;
+        }
+        synchronized (lock) {
+            if (this.sections == null) {
+                load();
+            }
+            return this.sections;
+        }
+    }
+
+    private void load() {
+        long startTime = System.nanoTime();
+        boolean isImport = !file.exists();
+        Map<String, Map<String, Object>> loaded = new HashMap<>(isImport ? importSections() : readFile(file));
+        for (String section : separateSections) {
+            File sectionFile = getSectionFile(section);
+            if (!isImport && loaded.containsKey(section)) {
+                //Section is still in the main file, it is moved to its own one.
+                dirtyFiles.add(file);
+                dirtyFiles.add(sectionFile);
+            }
+            if (sectionFile.exists()) {
+                Map<String, Object> values = readFile(sectionFile).get(section);
+                if (values != null) {
+                    loaded.put(section, values);
+                } else {
+                    loaded.remove(section);
+                }
+            }
+        }
+        sections = Collections.unmodifiableMap(loaded);
+
+        if (!isImport) {
+            if (!dirtyFiles.isEmpty()) {
+                scheduleWrite();
+            }
+            LOGGER.info("Settings store is read in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) + " ms");
+            return;
+        }
+        try {
+            //Main file is written last, it marks the import as done.
+            for (File target : getFiles()) {
+                writeFile(target, getSections(sections, target));
+            }
+            importer.onImported();
+            LOGGER.info("Settings are imported in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) + " ms");
+        } catch (IOException exception) {
+            //Imported values stay in memory, the import is done again on the next start.
+            LOGGER.error("Unable to write imported settings", exception);
+            dirtyFiles.addAll(getFiles());
+        }
+    }
+
+    private Map<String, Map<String, Object>> importSections() {
+        Map<String, Map<String, Object>> imported = new HashMap<>();
+        for (Map.Entry<String, Map<String, ?>> section : importer.read().entrySet()) {
+            Map<String, Object> values = new HashMap<>();
+            for (Map.Entry<String, ?> entry : section.getValue().entrySet()) {
+                if (entry.getValue() != null) {
+                    values.put(entry.getKey(), copy(entry.getValue()));
+                }
+            }
+            imported.put(section.getKey(), Collections.unmodifiableMap(values));
+        }
+        return imported;
+    }
+
+    //Should be called with the lock held.
+    private Map<String, Map<String, Object>> readFile(File file) {
+        try {
+            return read(file);
+        } catch (IOException | RuntimeException exception) {
+            LOGGER.error("Unable to read " + file, exception);
+            File corrupt = new File(file.getPath() + ".corrupt");
+            //Only the last broken copy is kept.
+            corrupt.delete();
+            if (!file.renameTo(corrupt)) {
+                //Values can still be recovered from the file, so it is never written over.
+                LOGGER.error("Unable to move " + file + " aside, it won't be written");
+                unwritableFiles.add(file);
+            }
+            return Collections.emptyMap();
+        }
+    }
+
+    private boolean apply(Transaction transaction, boolean isSync) {
+        Transaction current = batch.get();
+        if (current != null && current != transaction) {
+            current.merge(transaction);
+            current.isSyncRequired |= isSync;
+            return true;
+        }
+
+        Map<String, Set<String>> changes = new LinkedHashMap<>();
+        synchronized (lock) {
+            Map<String, Map<String, Object>> sections = getSections();
+            Map<String, Map<String, Object>> next = new HashMap<>(sections);
+            Set<String> touchedSections = new HashSet<>(transaction.cleared);
+            touchedSections.addAll(transaction.changes.keySet());
+            for (String section : touchedSections) {
+                Map<String, Object> previous = sections.get(section);
+                if (previous == null) {
+                    previous = Collections.emptyMap();
+                }
+                Map<String, Object> values = new HashMap<>();
+                if (!transaction.cleared.contains(section)) {
+                    values.putAll(previous);
+                }
+                Map<String, Object> sectionChanges = transaction.changes.get(section);
+                if (sectionChanges != null) {
+                    for (Map.Entry<String, Object> change : sectionChanges.entrySet()) {
+                        if (change.getValue() == null) {
+                            values.remove(change.getKey());
+                        } else {
+                            values.put(change.getKey(), change.getValue());
+                        }
+                    }
+                }
+                Set<String> changedKeys = new HashSet<>(previous.keySet());
+                changedKeys.addAll(values.keySet());
+                Iterator<String> keys = changedKeys.iterator();
+                while (keys.hasNext()) {
+                    String key = keys.next();
+                    Object value = values.get(key);
+                    if (value != null && value.equals(previous.get(key))) {
+                        keys.remove();
+                    }
+                }
+                if (!changedKeys.isEmpty()) {
+                    next.put(section, Collections.unmodifiableMap(values));
+                    changes.put(section, changedKeys);
+                }
+            }
+            if (!changes.isEmpty()) {
+                this.sections = Collections.unmodifiableMap(next);
+                for (String section : changes.keySet()) {
+                    dirtyFiles.add(getFile(section));
+                }
+            }
+        }
+
+        boolean isWritten = true;
+        if (isSync) {
+            isWritten = write();
+        } else if (!changes.isEmpty()) {
+            scheduleWrite();
+        }
+        for (Map.Entry<String, Set<String>> change : changes.entrySet()) {
+            Set<String> keys = Collections.unmodifiableSet(change.getValue());
+            for (OnStoreChangedListener listener : listeners) {
+                listener.onStoreChanged(change.getKey(), keys);
+            }
+        }
+        return isWritten;
+    }
+
+    private void scheduleWrite() {
+        if (isWriteScheduled.compareAndSet(false, true)) {
+            executor.schedule(() -> {
+                isWriteScheduled.set(false);
+                write();
+            }, WRITE_DELAY, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private boolean write() {
+        synchronized (writeLock) {
+            Map<String, Map<String, Object>> sections;
+            List<File> files = new ArrayList<>();
+            boolean isWritten = true;
+            synchronized (lock) {
+                sections = getSections();
+                for (File target : getFiles()) {
+                    if (!dirtyFiles.contains(target)) {
+                        continue;
+                    }
+                    if (unwritableFiles.contains(target)) {
+                        isWritten = false;
+                    } else {
+                        files.add(target);
+                    }
+                }
+                dirtyFiles.clear();
+            }
+            for (File target : files) {
+                try {
+                    writeFile(target, getSections(sections, target));
+                } catch (IOException exception) {
+                    LOGGER.error("Unable to write " + target, exception);
+                    synchronized (lock) {
+                        dirtyFiles.add(target);
+                    }
+                    isWritten = false;
+                }
+            }
+            return isWritten;
+        }
+    }
+
+    //Separate files go first, so a section moved out of the main file is never lost on the way.
+    private List<File> getFiles() {
+        List<File> files = new ArrayList<>();
+        for (String section : separateSections) {
+            files.add(getSectionFile(section));
+        }
+        files.add(file);
+        return files;
+    }
+
+    private File getFile(String section) {
+        return separateSections.contains(section) ? getSectionFile(section) : file;
+    }
+
+    private File getSectionFile(String section) {
+        String name = file.getName();
+        int extension = name.lastIndexOf('.');
+        String sectionName = extension > 0
+                ? name.substring(0, extension) + "." + section + name.substring(extension)
+                : name + "." + section;
+        return new File(file.getParentFile(), sectionName);
+    }
+
+    private Map<String, Map<String, Object>> getSections(Map<String, Map<String, Object>> sections, File target) {
+        Map<String, Map<String, Object>> fileSections = new HashMap<>();
+        for (Map.Entry<String, Map<String, Object>> section : sections.entrySet()) {
+            if (getFile(section.getKey()).equals(target)) {
+                fileSections.put(section.getKey(), section.getValue());
+            }
+        }
+        return fileSections;
+    }
+
+    //The new content is synced to a temporary file first, so a crash never leaves a broken store.
+    private void writeFile(File file, Map<String, Map<String, Object>> sections) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create " + parent);
+        }
+        File temporary = new File(file.getPath() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temporary)) {
+            JsonWriter writer = new JsonWriter(new OutputStreamWriter(stream, UTF_8));
+            writer.beginObject();
+            writer.name("version").value(FORMAT_VERSION);
+            writer.name("sections").beginObject();
+            for (Map.Entry<String, Map<String, Object>> section : sections.entrySet()) {
+                writer.name(section.getKey()).beginObject();
+                for (Map.Entry<String, Object> entry : section.getValue().entrySet()) {
+                    writer.name(entry.getKey());
+                    writeValue(writer, entry.getValue());
+                }
+                writer.endObject();
+            }
+            writer.endObject();
+            writer.endObject();
+            writer.flush();
+            stream.getFD().sync();
+        }
+        if (!temporary.renameTo(file)) {
+            throw new IOException("Unable to replace " + file);
+        }
+    }
+
+    private void writeValue(JsonWriter writer, Object value) throws IOException {
+        writer.beginArray();
+        if (value instanceof Boolean) {
+            writer.value(TYPE_BOOLEAN).value((Boolean) value);
+        } else if (value instanceof Integer) {
+            writer.value(TYPE_INT).value((Integer) value);
+        } else if (value instanceof Long) {
+            writer.value(TYPE_LONG).value((Long) value);
+        } else if (value instanceof Float) {
+            writer.value(TYPE_FLOAT).value((Float) value);
+        } else if (value instanceof String) {
+            writer.value(TYPE_STRING).value((String) value);
+        } else {
+            writer.value(TYPE_SET).beginArray();
+            for (Object item : (Set<?>) value) {
+                writer.value((String) item);
+            }
+            writer.endArray();
+        }
+        writer.endArray();
+    }
+
+    private Map<String, Map<String, Object>> read(File file) throws IOException {
+        Map<String, Map<String, Object>> sections = new HashMap<>();
+        try (JsonReader reader = new JsonReader(new InputStreamReader(new FileInputStream(file), UTF_8))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (!name.equals("sections")) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String section = reader.nextName();
+                    Map<String, Object> values = new HashMap<>();
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        values.put(reader.nextName(), readValue(reader));
+                    }
+                    reader.endObject();
+                    sections.put(section, Collections.unmodifiableMap(values));
+                }
+                reader.endObject();
+            }
+            reader.endObject();
+        }
+        return Collections.unmodifiableMap(sections);
+    }
+
+    private Object readValue(JsonReader reader) throws IOException {
+        reader.beginArray();
+        String type = reader.nextString();
+        Object value;
+        switch (type) {
+            case TYPE_BOOLEAN:
+                value = reader.nextBoolean();
+                break;
+            case TYPE_INT:
+                value = reader.nextInt();
+                break;
+            case TYPE_LONG:
+                value = reader.nextLong();
+                break;
+            case TYPE_FLOAT:
+                value = (float) reader.nextDouble();
+                break;
+            case TYPE_STRING:
+                value = reader.nextString();
+                break;
+            case TYPE_SET:
+                Set<String> set = new HashSet<>();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    set.add(reader.nextString());
+                }
+                reader.endArray();
+                value = Collections.unmodifiableSet(set);
+                break;
+            default:
+                throw new IOException("Unknown type " + type);
+        }
+        reader.endArray();
+        return value;
+    }
+
+    private static Object copy(Object value) {
+        if (value instanceof Set) {
+            Set<String> set = new HashSet<>();
+            for (Object item : (Set<?>) value) {
+                set.add((String) item);
+            }
+            return Collections.unmodifiableSet(set);
+        }
+        if (value instanceof Boolean || value instanceof Integer || value instanceof Long
+                || value instanceof Float || value instanceof String) {
+            return value;
+        }
+        throw new IllegalArgumentException("Unsupported value " + value.getClass().getName());
+    }
+
+    /**
+     * Set of changes that is applied to the store at once. Sections are cleared before the values
+     * are put, whatever the order of calls is.
+     */
+    public class Transaction {
+
+        private final Map<String, Map<String, Object>> changes = new HashMap<>();
+        private final Set<String> cleared = new HashSet<>();
+        private boolean isSyncRequired;
+
+        private Transaction() {
+        }
+
+        /**
+         * Put the value, null removes the key.
+         */
+        public Transaction put(String section, String key, Object value) {
+            Map<String, Object> sectionChanges = changes.get(section);
+            if (sectionChanges == null) {
+                sectionChanges = new HashMap<>();
+                changes.put(section, sectionChanges);
+            }
+            sectionChanges.put(key, value != null ? copy(value) : null);
+            return this;
+        }
+
+        public Transaction remove(String section, String key) {
+            return put(section, key, null);
+        }
+
+        public Transaction clear(String section) {
+            cleared.add(section);
+            return this;
+        }
+
+        /**
+         * Apply changes to the memory and write them to the disk later on a background thread.
+         */
+        public void apply() {
+            SettingsStore.this.apply(this, false);
+        }
+
+        /**
+         * Apply changes and write the store to the disk on the calling thread.
+         *
+         * @return false if the store can't be written.
+         */
+        public boolean commit() {
+            return SettingsStore.this.apply(this, true);
+        }
+
+        private void merge(Transaction transaction) {
+            for (String section : transaction.cleared) {
+                cleared.add(section);
+                changes.remove(section);
+            }
+            for (Map.Entry<String, Map<String, Object>> section : transaction.changes.entrySet()) {
+                for (Map.Entry<String, Object> change : section.getValue().entrySet()) {
+                    put(section.getKey(), change.getKey(), change.getValue());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package net.ivpn.client.common.prefs;
+
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * SharedPreferences view of one section of {@link SettingsStore}, so preferences keep their
+ * usual API. Listeners are notified on the main thread, as SharedPreferences does, but they
+ * are kept by strong references and have to be unregistered.
+ */
+class StoreSharedPreferences implements SharedPreferences, OnStoreChangedListener {
+
+    private final SettingsStore store;
+    private final String section;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final List<OnSharedPreferenceChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    StoreSharedPreferences(SettingsStore store, String section) {
+        this.store = store;
+        this.section = section;
+        store.addOnStoreChangedListener(this);
+    }
+
+    @Override
+    public Map<String, ?> getAll() {
+        return new HashMap<>(store.getSection(section));
+    }
+
+    @Nullable
+    @Override
+    public String getString(String key, @Nullable String defValue) {
+        Object value = store.get(section, key);
+        return value != null ? (String) value : defValue;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Nullable
+    @Override
+    public Set<String> getStringSet(String key, @Nullable Set<String> defValues) {
+        Object value = store.get(section, key);
+        return value != null ? (Set<String>) value : defValues;
+    }
+
+    @Override
+    public int getInt(String key, int defValue) {
+        Object value = store.get(section, key);
+        return value != null ? (Integer) value : defValue;
+    }
+
+    @Override
+    public long getLong(String key, long defValue) {
+        Object value = store.get(section, key);
+        return value != null ? (Long) value : defValue;
+    }
+
+    @Override
+    public float getFloat(String key, float defValue) {
+        Object value = store.get(section, key);
+        return value != null ? (Float) value : defValue;
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean defValue) {
+        Object value = store.get(section, key);
+        return value != null ? (Boolean) value : defValue;
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return store.get(section, key) != null;
+    }
+
+    @Override
+    public Editor edit() {
+        return new StoreEditor();
+    }
+
+    @Override
+    public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void onStoreChanged(String section, Set<String> keys) {
+        if (!this.section.equals(section) || listeners.isEmpty()) {
+            return;
+        }
+        handler.post(() -> {
+            for (String key : keys) {
+                for (OnSharedPreferenceChangeListener listener : listeners) {
+                    listener.onSharedPreferenceChanged(this, key);
+                }
+            }
+        });
+    }
+
+    private class StoreEditor implements Editor {
+
+        private final SettingsStore.Transaction transaction = store.edit();
+
+        @Override
+        public Editor putString(String key, @Nullable String value) {
+            transaction.put(section, key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putStringSet(String key, @Nullable Set<String> values) {
+            transaction.put(section, key, values);
+            return this;
+        }
+
+        @Override
+        public Editor putInt(String key, int value) {
+            transaction.put(section, key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putLong(String key, long value) {
+            transaction.put(section, key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putFloat(String key, float value) {
+            transaction.put(section, key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putBoolean(String key, boolean value) {
+            transaction.put(section, key, value);
+            return this;
+        }
+
+        @Override
+        public Editor remove(String key) {
+            transaction.remove(section, key);
+            return this;
+        }
+
+        @Override
+        public Editor clear() {
+            transaction.clear(section);
+            return this;
+        }
+
+        @Override
+        public boolean commit() {
+            return transaction.commit();
+        }
+
+        @Override
+        public void apply() {
+            transaction.apply();
+        }
+    }
+}
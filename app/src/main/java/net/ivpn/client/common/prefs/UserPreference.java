@@ -14,6 +14,7 @@ public class UserPreference {
     private static final String PAYMENT_METHOD = "PAYMENT_METHOD";
     private static final String CURRENT_PLAN = "CURRENT_PLAN";
     private static final String IS_ACTIVE = "IS_ACTIVE";
+    private static final String SESSION_STATUS_UPDATE_TIME = "SESSION_STATUS_UPDATE_TIME";
 
     private static final String SESSION_TOKEN = "SESSION_TOKEN";
     private static final String SESSION_VPN_USERNAME = "SESSION_VPN_USERNAME";
@@ -26,6 +27,13 @@ public class UserPreference {
         this.preference = preference;
     }
 
+    /**
+     * Save account data put by the action as one change.
+     */
+    public void inTransaction(Runnable action) {
+        preference.inTransaction(action);
+    }
+
     public void putSessionToken(String sessionToken) {
         SharedPreferences sharedPreferences = preference.getAccountSharedPreferences();
         sharedPreferences.edit()
@@ -157,4 +165,16 @@ public class UserPreference {
                 .putBoolean(IS_ACTIVE, isActive)
                 .apply();
     }
+
+    public void putSessionStatusUpdateTime(long updateTime) {
+        SharedPreferences sharedPreferences = preference.getAccountSharedPreferences();
+        sharedPreferences.edit()
+                .putLong(SESSION_STATUS_UPDATE_TIME, updateTime)
+                .apply();
+    }
+
+    public long getSessionStatusUpdateTime() {
+        SharedPreferences sharedPreferences = preference.getAccountSharedPreferences();
+        return sharedPreferences.getLong(SESSION_STATUS_UPDATE_TIME, 0);
+    }
 }
@@ -0,0 +1,50 @@
+package net.ivpn.client.common.scheduler;
+
+import net.ivpn.client.common.prefs.Settings;
+import net.ivpn.client.common.utils.DateUtil;
+import net.ivpn.client.vpn.Protocol;
+import net.ivpn.client.vpn.ProtocolController;
+import net.ivpn.client.vpn.controller.VpnBehaviorController;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+
+public class KeyRotationTask implements MaintenanceTask {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KeyRotationTask.class);
+
+    private Settings settings;
+    private ProtocolController protocolController;
+    private VpnBehaviorController vpnBehaviorController;
+
+    @Inject
+    KeyRotationTask(Settings settings, ProtocolController protocolController,
+                    VpnBehaviorController vpnBehaviorController) {
+        this.settings = settings;
+        this.protocolController = protocolController;
+        this.vpnBehaviorController = vpnBehaviorController;
+    }
+
+    //Keys for not active VPN are regenerated on the next connection attempt.
+    //Postponed rotation is continued even if the new key is in use already, the old one isn't retired yet.
+    @Override
+    public boolean isNeeded() {
+        return Protocol.WIREGUARD.equals(protocolController.getCurrentProtocol())
+                && vpnBehaviorController.isVPNActive()
+                && (isKeysExpired() || settings.getWireGuardKeyRotation() != null);
+    }
+
+    //Task is finished once the rotation is done, a failed one is retried by the job backoff.
+    @Override
+    public void run(OnTaskFinishedListener listener) {
+        LOGGER.info("Regenerate WireGuard keys");
+        vpnBehaviorController.regenerate(listener::onTaskFinished);
+    }
+
+    private boolean isKeysExpired() {
+        return System.currentTimeMillis() > settings.getGenerationTime()
+                + settings.getRegenerationPeriod() * DateUtil.DAY;
+    }
+}
@@ -0,0 +1,130 @@
+package net.ivpn.client.common.scheduler;
+
+import android.app.job.JobParameters;
+import android.app.job.JobService;
+import android.util.SparseArray;
+
+import net.ivpn.client.IVPNApplication;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.inject.Inject;
+
+/**
+ * Runs all deferrable tasks scheduled by {@link MaintenanceScheduler} in one wakeup.
+ * Tasks of a job stopped by the system are detached from it, their results are ignored
+ * and the job is retried by the system.
+ */
+public class MaintenanceJobService extends JobService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MaintenanceJobService.class);
+
+    @Inject
+    KeyRotationTask keyRotationTask;
+    @Inject
+    ServerListTask serverListTask;
+    @Inject
+    SessionStatusTask sessionStatusTask;
+    @Inject
+    UpdateCheckTask updateCheckTask;
+    @Inject
+    MaintenanceScheduler maintenanceScheduler;
+
+    private final SparseArray<JobRun> runs = new SparseArray<>();
+
+    @Override
+    public void onCreate() {
+        IVPNApplication.getApplication().appComponent.inject(this);
+        super.onCreate();
+    }
+
+    @Override
+    public boolean onStartJob(JobParameters jobParameters) {
+        LOGGER.info("On start job " + jobParameters.getJobId());
+        List<MaintenanceTask> tasks = new ArrayList<>();
+        boolean isKeyRotationJob = jobParameters.getJobId() == MaintenanceScheduler.KEY_ROTATION_JOB_ID;
+        if (isKeyRotationJob) {
+            addIfNeeded(tasks, keyRotationTask);
+        } else {
+            //Catches a rotation that the exact job has missed.
+            addIfNeeded(tasks, keyRotationTask);
+            addIfNeeded(tasks, serverListTask);
+            addIfNeeded(tasks, sessionStatusTask);
+            addIfNeeded(tasks, updateCheckTask);
+        }
+
+        if (tasks.isEmpty()) {
+            LOGGER.info("Nothing to do");
+            return false;
+        }
+
+        JobRun run = new JobRun(jobParameters, tasks.size());
+        runs.put(jobParameters.getJobId(), run);
+        if (isKeyRotationJob) {
+            maintenanceScheduler.onKeyRotationJobStarted();
+        }
+        for (MaintenanceTask task : tasks) {
+            task.run(isSuccessful -> onTaskFinished(run, task, isSuccessful));
+        }
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters jobParameters) {
+        LOGGER.info("On stop job " + jobParameters.getJobId());
+        JobRun run = runs.get(jobParameters.getJobId());
+        if (run != null) {
+            run.isStopped = true;
+            runs.remove(jobParameters.getJobId());
+        }
+        if (jobParameters.getJobId() == MaintenanceScheduler.KEY_ROTATION_JOB_ID) {
+            maintenanceScheduler.onKeyRotationJobStopped();
+        }
+        return true;
+    }
+
+    private void onTaskFinished(JobRun run, MaintenanceTask task, boolean isSuccessful) {
+        LOGGER.info(task.getClass().getSimpleName() + " is finished, isSuccessful = " + isSuccessful);
+        if (run.isStopped) {
+            return;
+        }
+        //Only the key rotation job has a backoff policy, periodic job just waits for its next run.
+        if (!isSuccessful && run.isKeyRotationJob()) {
+            run.isRescheduleNeeded = true;
+        }
+        if (--run.pendingTasks > 0) {
+            return;
+        }
+        runs.remove(run.parameters.getJobId());
+        jobFinished(run.parameters, run.isRescheduleNeeded);
+        if (run.isKeyRotationJob()) {
+            maintenanceScheduler.onKeyRotationJobFinished(run.isRescheduleNeeded);
+        }
+    }
+
+    private void addIfNeeded(List<MaintenanceTask> tasks, MaintenanceTask task) {
+        if (task.isNeeded()) {
+            tasks.add(task);
+        }
+    }
+
+    private static class JobRun {
+        private final JobParameters parameters;
+        private int pendingTasks;
+        private boolean isRescheduleNeeded;
+        private boolean isStopped;
+
+        private JobRun(JobParameters parameters, int pendingTasks) {
+            this.parameters = parameters;
+            this.pendingTasks = pendingTasks;
+        }
+
+        private boolean isKeyRotationJob() {
+            return parameters.getJobId() == MaintenanceScheduler.KEY_ROTATION_JOB_ID;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package net.ivpn.client.common.scheduler;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.app.job.JobInfo;
+import android.app.job.JobScheduler;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+
+import net.ivpn.client.common.dagger.ApplicationScope;
+import net.ivpn.client.common.prefs.SettingsPreference;
+import net.ivpn.client.common.utils.DateUtil;
+import net.ivpn.client.vpn.Protocol;
+import net.ivpn.client.vpn.ProtocolController;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+
+import static android.content.Context.ALARM_SERVICE;
+
+/**
+ * Single place that schedules all background work of the application.
+ * Key rotation check is scheduled exactly for the key expiration time, everything else is
+ * batched in one periodic job that runs only when network is available. The periodic job checks
+ * key rotation too, in case the exact job was missed.
+ * Scheduling a job with the id of a running job stops it, so the key rotation job isn't scheduled
+ * while it runs. It is scheduled once it is finished, see {@link #onKeyRotationJobFinished(boolean)}.
+ */
+@ApplicationScope
+public class MaintenanceScheduler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MaintenanceScheduler.class);
+
+    static final int KEY_ROTATION_JOB_ID = 177;
+    static final int MAINTENANCE_JOB_ID = 178;
+
+    private static final int LEGACY_UPDATES_JOB_ID = 721;
+    private static final String LEGACY_KEYS_RECEIVER = "net.ivpn.client.vpn.controller.WireGuardKeyBroadcastReceiver";
+
+    private static final long MAINTENANCE_PERIOD = DateUtil.HOUR * 12;
+    private static final long KEY_ROTATION_RETRY_PERIOD = DateUtil.HOUR;
+
+    private Context context;
+    private SettingsPreference settingsPreference;
+    private ProtocolController protocolController;
+    private boolean isKeyRotationJobRunning;
+
+    @Inject
+    MaintenanceScheduler(Context context, SettingsPreference settingsPreference, ProtocolController protocolController) {
+        this.context = context;
+        this.settingsPreference = settingsPreference;
+        this.protocolController = protocolController;
+    }
+
+    public void init() {
+        LOGGER.info("init");
+        cancelLegacySchedules();
+        checkForKeysGenerationDate();
+        if (Protocol.WIREGUARD.equals(protocolController.getCurrentProtocol())) {
+            scheduleKeyRotation();
+        }
+        scheduleMaintenance();
+    }
+
+    public void scheduleKeyRotation() {
+        long expirationTime = settingsPreference.getGenerationTime()
+                + settingsPreference.getRegenerationPeriod() * DateUtil.DAY;
+        long delay = Math.max(0, expirationTime - System.currentTimeMillis());
+        LOGGER.info("scheduleKeyRotation: in " + delay + " ms");
+        scheduleKeyRotation(delay);
+    }
+
+    public void scheduleKeyRotationRetry() {
+        LOGGER.info("scheduleKeyRotationRetry: in " + KEY_ROTATION_RETRY_PERIOD + " ms");
+        scheduleKeyRotation(KEY_ROTATION_RETRY_PERIOD);
+    }
+
+    void onKeyRotationJobStarted() {
+        isKeyRotationJobRunning = true;
+    }
+
+    /**
+     * @param isRescheduleNeeded true if the job is retried by its backoff policy and shouldn't
+     *                           be scheduled for the next key expiration yet.
+     */
+    void onKeyRotationJobFinished(boolean isRescheduleNeeded) {
+        isKeyRotationJobRunning = false;
+        if (!isRescheduleNeeded) {
+            scheduleKeyRotation();
+        }
+    }
+
+    //Stopped job is rescheduled by the system.
+    void onKeyRotationJobStopped() {
+        isKeyRotationJobRunning = false;
+    }
+
+    public void cancelKeyRotation() {
+        getJobScheduler().cancel(KEY_ROTATION_JOB_ID);
+    }
+
+    public void scheduleMaintenance() {
+        if (isScheduled(MAINTENANCE_JOB_ID)) {
+            return;
+        }
+        LOGGER.info("scheduleMaintenance: every " + MAINTENANCE_PERIOD + " ms");
+        JobInfo info = new JobInfo.Builder(MAINTENANCE_JOB_ID, getServiceName())
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_ANY)
+                .setPersisted(true)
+                .setPeriodic(MAINTENANCE_PERIOD)
+                .build();
+        getJobScheduler().schedule(info);
+    }
+
+    public void cancelAll() {
+        LOGGER.info("cancelAll");
+        getJobScheduler().cancel(KEY_ROTATION_JOB_ID);
+        getJobScheduler().cancel(MAINTENANCE_JOB_ID);
+    }
+
+    private void scheduleKeyRotation(long delay) {
+        if (isKeyRotationJobRunning) {
+            LOGGER.info("scheduleKeyRotation: job is running, it is scheduled once finished");
+            return;
+        }
+        //Override deadline let the job run on time even if network is not reported as available.
+        JobInfo info = new JobInfo.Builder(KEY_ROTATION_JOB_ID, getServiceName())
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_ANY)
+                .setMinimumLatency(delay)
+                .setOverrideDeadline(delay + KEY_ROTATION_RETRY_PERIOD)
+                .setBackoffCriteria(DateUtil.FIVE_MINUTES, JobInfo.BACKOFF_POLICY_EXPONENTIAL)
+                .setPersisted(true)
+                .build();
+        getJobScheduler().schedule(info);
+    }
+
+    private void cancelLegacySchedules() {
+        getJobScheduler().cancel(LEGACY_UPDATES_JOB_ID);
+
+        Intent intent = new Intent();
+        intent.setClassName(context, LEGACY_KEYS_RECEIVER);
+        PendingIntent pendingIntent = PendingIntent.getBroadcast(context, KEY_ROTATION_JOB_ID, intent,
+                PendingIntent.FLAG_NO_CREATE);
+        if (pendingIntent != null) {
+            AlarmManager alarmManager = (AlarmManager) context.getSystemService(ALARM_SERVICE);
+            alarmManager.cancel(pendingIntent);
+            pendingIntent.cancel();
+        }
+    }
+
+    private void checkForKeysGenerationDate() {
+        if (settingsPreference.getSettingsWgPrivateKey().equals("")) {
+            return;
+        }
+        if (settingsPreference.isGenerationTimeExist()) {
+            return;
+        }
+
+        settingsPreference.putGenerationTime(System.currentTimeMillis());
+    }
+
+    private boolean isScheduled(int jobId) {
+        for (JobInfo info : getJobScheduler().getAllPendingJobs()) {
+            if (info.getId() == jobId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private ComponentName getServiceName() {
+        return new ComponentName(context, MaintenanceJobService.class);
+    }
+
+    private JobScheduler getJobScheduler() {
+        return (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+    }
+}
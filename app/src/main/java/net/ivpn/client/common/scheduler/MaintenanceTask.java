@@ -0,0 +1,15 @@
+package net.ivpn.client.common.scheduler;
+
+/**
+ * Deferrable piece of work that is executed in a batch by {@link MaintenanceJobService}.
+ */
+public interface MaintenanceTask {
+
+    boolean isNeeded();
+
+    void run(OnTaskFinishedListener listener);
+
+    interface OnTaskFinishedListener {
+        void onTaskFinished(boolean isSuccessful);
+    }
+}
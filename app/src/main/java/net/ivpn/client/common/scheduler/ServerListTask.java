@@ -0,0 +1,71 @@
+package net.ivpn.client.common.scheduler;
+
+import net.ivpn.client.common.dagger.ApplicationScope;
+import net.ivpn.client.common.prefs.OnServerListUpdatedListener;
+import net.ivpn.client.common.prefs.ServersRepository;
+import net.ivpn.client.common.prefs.UserPreference;
+import net.ivpn.client.common.utils.DateUtil;
+import net.ivpn.client.rest.data.model.Server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+import javax.inject.Inject;
+
+@ApplicationScope
+public class ServerListTask implements MaintenanceTask, OnServerListUpdatedListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ServerListTask.class);
+    private static final long UPDATE_PERIOD = DateUtil.HOUR * 6;
+
+    private ServersRepository serversRepository;
+    private UserPreference userPreference;
+    private OnTaskFinishedListener listener;
+
+    @Inject
+    ServerListTask(ServersRepository serversRepository, UserPreference userPreference) {
+        this.serversRepository = serversRepository;
+        this.userPreference = userPreference;
+
+        serversRepository.addOnServersListUpdatedListener(this);
+    }
+
+    @Override
+    public boolean isNeeded() {
+        String sessionToken = userPreference.getSessionToken();
+        return sessionToken != null && !sessionToken.isEmpty()
+                && System.currentTimeMillis() - serversRepository.getServersListUpdateTime() > UPDATE_PERIOD;
+    }
+
+    @Override
+    public void run(OnTaskFinishedListener listener) {
+        LOGGER.info("Update server list");
+        this.listener = listener;
+        serversRepository.updateServerList(false);
+    }
+
+    @Override
+    public void onSuccess(List<Server> servers, boolean isForced) {
+        finish(true);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        finish(false);
+    }
+
+    @Override
+    public void onError() {
+        finish(false);
+    }
+
+    private void finish(boolean isSuccessful) {
+        if (listener == null) {
+            return;
+        }
+        listener.onTaskFinished(isSuccessful);
+        listener = null;
+    }
+}
@@ -0,0 +1,138 @@
+package net.ivpn.client.common.scheduler;
+
+import net.ivpn.client.common.Mapper;
+import net.ivpn.client.common.dagger.ApplicationScope;
+import net.ivpn.client.common.prefs.ServersRepository;
+import net.ivpn.client.common.prefs.Settings;
+import net.ivpn.client.common.prefs.UserPreference;
+import net.ivpn.client.common.utils.DateUtil;
+import net.ivpn.client.rest.HttpClientFactory;
+import net.ivpn.client.rest.RequestListener;
+import net.ivpn.client.rest.Responses;
+import net.ivpn.client.rest.data.model.ServiceStatus;
+import net.ivpn.client.rest.data.session.SessionStatusRequestBody;
+import net.ivpn.client.rest.data.session.SessionStatusResponse;
+import net.ivpn.client.rest.data.wireguard.ErrorResponse;
+import net.ivpn.client.rest.requests.common.Request;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+
+/**
+ * Requests session status and keeps the result in {@link UserPreference}, so UI is able to
+ * show cached values instead of requesting them on every resume.
+ */
+@ApplicationScope
+public class SessionStatusTask implements MaintenanceTask {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SessionStatusTask.class);
+    private static final long UPDATE_PERIOD = DateUtil.HOUR;
+
+    private Settings settings;
+    private UserPreference userPreference;
+    private Request<SessionStatusResponse> sessionStatusRequest;
+
+    @Inject
+    SessionStatusTask(Settings settings, UserPreference userPreference, HttpClientFactory httpClientFactory,
+                      ServersRepository serversRepository) {
+        this.settings = settings;
+        this.userPreference = userPreference;
+
+        sessionStatusRequest = new Request<>(settings, httpClientFactory, serversRepository, Request.Duration.SHORT);
+    }
+
+    @Override
+    public boolean isNeeded() {
+        String sessionToken = userPreference.getSessionToken();
+        return sessionToken != null && !sessionToken.isEmpty() && !isUpToDate();
+    }
+
+    @Override
+    public void run(OnTaskFinishedListener listener) {
+        update(new OnSessionStatusListener() {
+            @Override
+            public void onSessionStatusUpdated(ServiceStatus serviceStatus) {
+                listener.onTaskFinished(true);
+            }
+
+            @Override
+            public void onSessionStatusError(ErrorResponse errorResponse) {
+                listener.onTaskFinished(false);
+            }
+        });
+    }
+
+    public boolean isUpToDate() {
+        return System.currentTimeMillis() - userPreference.getSessionStatusUpdateTime() < UPDATE_PERIOD;
+    }
+
+    public void update(OnSessionStatusListener listener) {
+        SessionStatusRequestBody body = new SessionStatusRequestBody(userPreference.getSessionToken());
+        LOGGER.info("SessionStatusRequestBody = " + body);
+        sessionStatusRequest.start(api -> api.sessionStatus(body),
+                new RequestListener<SessionStatusResponse>() {
+                    @Override
+                    public void onSuccess(SessionStatusResponse response) {
+                        if (response.getStatus() != null && response.getStatus().equals(Responses.SUCCESS)) {
+                            LOGGER.info("Session status response received successfully");
+                            LOGGER.info(response.toString());
+                            saveSessionStatus(response.getServiceStatus());
+                            listener.onSessionStatusUpdated(response.getServiceStatus());
+                        } else {
+                            listener.onSessionStatusError(null);
+                        }
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable) {
+                        LOGGER.error("Failed updating session status ", throwable);
+                        listener.onSessionStatusError(null);
+                    }
+
+                    @Override
+                    public void onError(String error) {
+                        LOGGER.error("Error while getting account status to see the confirmation" + error);
+                        ErrorResponse errorResponse = Mapper.errorResponseFrom(error);
+                        if (errorResponse != null && errorResponse.getStatus() != null
+                                && errorResponse.getStatus() == Responses.SERVICE_IS_NOT_ACTIVE) {
+                            userPreference.putIsActive(false);
+                        }
+                        listener.onSessionStatusError(errorResponse);
+                    }
+                });
+    }
+
+    private void saveSessionStatus(ServiceStatus serviceStatus) {
+        if (serviceStatus.getIsOnFreeTrial() == null
+                || serviceStatus.getActiveUntil() == 0) {
+            return;
+        }
+
+        userPreference.inTransaction(() -> putSessionStatus(serviceStatus));
+    }
+
+    private void putSessionStatus(ServiceStatus serviceStatus) {
+        userPreference.putIsUserOnTrial(Boolean.valueOf(serviceStatus.getIsOnFreeTrial()));
+        userPreference.putAvailableUntil(serviceStatus.getActiveUntil());
+        userPreference.putCurrentPlan(serviceStatus.getCurrentPlan());
+        userPreference.putPaymentMethod(serviceStatus.getPaymentMethod());
+        userPreference.putIsActive(serviceStatus.getIsActive());
+        if (serviceStatus.getCapabilities() != null) {
+            userPreference.putIsUserOnPrivateEmailBeta(serviceStatus.getCapabilities().contains(Responses.PRIVATE_EMAILS));
+            boolean multiHopCapabilities = serviceStatus.getCapabilities().contains(Responses.MULTI_HOP);
+            userPreference.putCapabilityMultiHop(serviceStatus.getCapabilities().contains(Responses.MULTI_HOP));
+            if (!multiHopCapabilities) {
+                settings.enableMultiHop(false);
+            }
+        }
+        userPreference.putSessionStatusUpdateTime(System.currentTimeMillis());
+    }
+
+    public interface OnSessionStatusListener {
+        void onSessionStatusUpdated(ServiceStatus serviceStatus);
+
+        void onSessionStatusError(ErrorResponse errorResponse);
+    }
+}
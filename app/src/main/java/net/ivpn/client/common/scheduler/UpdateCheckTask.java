@@ -0,0 +1,70 @@
+package net.ivpn.client.common.scheduler;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import net.ivpn.client.BuildConfig;
+import net.ivpn.client.common.prefs.Settings;
+import net.ivpn.client.common.updater.OnUpdateCheckListener;
+import net.ivpn.client.common.updater.Update;
+import net.ivpn.client.common.updater.UpdateHelper;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+
+public class UpdateCheckTask implements MaintenanceTask {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(UpdateCheckTask.class);
+
+    private UpdateHelper updateHelper;
+    private Settings settings;
+    private Handler handler;
+
+    @Inject
+    UpdateCheckTask(UpdateHelper updateHelper, Settings settings) {
+        this.updateHelper = updateHelper;
+        this.settings = settings;
+        this.handler = new Handler(Looper.getMainLooper());
+    }
+
+    @Override
+    public boolean isNeeded() {
+        return BuildConfig.BUILD_VARIANT.equals("site") && settings.isAutoUpdateEnabled();
+    }
+
+    @Override
+    public void run(OnTaskFinishedListener listener) {
+        updateHelper.subscribe(new OnUpdateCheckListener() {
+            @Override
+            public void onUpdateAvailable(@NotNull Update update) {
+                LOGGER.info("New update is available");
+                finish(this, listener, true);
+            }
+
+            @Override
+            public void onVersionUpToDate() {
+                LOGGER.info("Current version is up to date");
+                finish(this, listener, true);
+            }
+
+            @Override
+            public void onError(@NotNull Exception exception) {
+                LOGGER.error("Got error while searching the newest version");
+                finish(this, listener, false);
+            }
+        });
+        updateHelper.checkForUpdates();
+    }
+
+    //Callbacks are delivered while helper iterates over its listeners, so unsubscribe later.
+    private void finish(OnUpdateCheckListener updateCheckListener, OnTaskFinishedListener listener,
+                        boolean isSuccessful) {
+        handler.post(() -> {
+            updateHelper.unsubscribe(updateCheckListener);
+            listener.onTaskFinished(isSuccessful);
+        });
+    }
+}
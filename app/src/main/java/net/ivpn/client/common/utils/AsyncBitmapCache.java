@@ -0,0 +1,144 @@
+package net.ivpn.client.common.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Bitmaps for image views in lists, kept in an LRU keyed by source and target size.
+ * Bitmaps are decoded off the main thread at the size of the view, concurrent requests
+ * for the same bitmap share one decode. Image view is cleared until its bitmap is ready
+ * and a view rebound to another source in the meantime doesn't get the stale one.
+ * All methods except {@link #decode(String, int)} are called on the main thread.
+ * Subclasses, such as country flags and application icons, share one pool of decode threads.
+ */
+public abstract class AsyncBitmapCache {
+
+    private static final int THREADS = 2;
+
+    private static final ExecutorService DECODER = Executors.newFixedThreadPool(THREADS);
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Map<String, List<ImageView>> pending = new HashMap<>();
+    private final Map<ImageView, String> requestedKeys = new WeakHashMap<>();
+    private final Set<String> missingSources = new HashSet<>();
+    private final LruCache<String, Bitmap> cache;
+
+    protected AsyncBitmapCache(int maxSize) {
+        int size = (int) Math.min(maxSize, Runtime.getRuntime().maxMemory() / 32);
+        cache = new LruCache<String, Bitmap>(size) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * @param source Source of the bitmap, {@code null} clears the view.
+     */
+    public void load(ImageView imageView, String source) {
+        if (source == null) {
+            //A recycled view must not keep the bitmap of its previous row, nor get it later.
+            requestedKeys.remove(imageView);
+            imageView.setImageDrawable(null);
+            return;
+        }
+        String normalizedSource = normalize(source);
+        int size = getTargetSize(imageView);
+        String key = normalizedSource + ":" + size;
+
+        requestedKeys.put(imageView, key);
+        Bitmap bitmap = cache.get(key);
+        if (bitmap != null) {
+            setBitmap(imageView, bitmap);
+            return;
+        }
+        imageView.setImageDrawable(null);
+        if (missingSources.contains(normalizedSource)) {
+            return;
+        }
+
+        List<ImageView> views = pending.get(key);
+        if (views != null) {
+            views.add(imageView);
+            return;
+        }
+        views = new ArrayList<>();
+        views.add(imageView);
+        pending.put(key, views);
+        DECODER.execute(() -> {
+            Bitmap decoded = decode(normalizedSource, size);
+            handler.post(() -> onDecoded(normalizedSource, key, decoded));
+        });
+    }
+
+    /**
+     * Called on the main thread when the source is gone or changed, e.g. an application was updated.
+     */
+    public void invalidate(String source) {
+        String normalizedSource = normalize(source);
+        missingSources.remove(normalizedSource);
+        for (String key : new ArrayList<>(cache.snapshot().keySet())) {
+            if (key.startsWith(normalizedSource + ":")) {
+                cache.remove(key);
+            }
+        }
+    }
+
+    protected String normalize(String source) {
+        return source;
+    }
+
+    /**
+     * Called on a worker thread.
+     *
+     * @param size Target size in pixels, 0 if the size of the view isn't known yet.
+     * @return Decoded bitmap, {@code null} if there is nothing to decode.
+     */
+    protected abstract Bitmap decode(String source, int size);
+
+    private void onDecoded(String source, String key, Bitmap bitmap) {
+        List<ImageView> views = pending.remove(key);
+        if (bitmap == null) {
+            missingSources.add(source);
+            return;
+        }
+        cache.put(key, bitmap);
+        if (views == null) {
+            return;
+        }
+        for (ImageView view : views) {
+            if (key.equals(requestedKeys.get(view))) {
+                setBitmap(view, bitmap);
+            }
+        }
+    }
+
+    private void setBitmap(ImageView imageView, Bitmap bitmap) {
+        imageView.setImageDrawable(new BitmapDrawable(imageView.getResources(), bitmap));
+    }
+
+    //Size of the view if it is known already.
+    private static int getTargetSize(ImageView imageView) {
+        ViewGroup.LayoutParams params = imageView.getLayoutParams();
+        if (params != null && params.width > 0 && params.height > 0) {
+            return Math.min(params.width, params.height);
+        }
+        return Math.min(imageView.getWidth(), imageView.getHeight());
+    }
+}
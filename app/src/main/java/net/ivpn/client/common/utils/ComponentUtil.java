@@ -1,35 +1,79 @@
 package net.ivpn.client.common.utils;
 
+import android.app.Activity;
+import android.app.Application;
 import android.content.Context;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import androidx.appcompat.app.AppCompatDelegate;
 import android.util.Log;
 
 import net.ivpn.client.BuildConfig;
-import net.ivpn.client.IVPNApplication;
 import net.ivpn.client.common.dagger.ApplicationScope;
 import net.ivpn.client.common.migration.MigrationController;
 import net.ivpn.client.common.prefs.Preference;
 import net.ivpn.client.common.prefs.ServersRepository;
+import net.ivpn.client.common.scheduler.MaintenanceScheduler;
 import net.ivpn.client.common.updater.UpdateHelper;
-import net.ivpn.client.ui.updates.UpdatesJobServiceUtil;
 import net.ivpn.client.vpn.GlobalBehaviorController;
+import net.ivpn.client.vpn.OnTunnelEstablishedListener;
 import net.ivpn.client.vpn.ProtocolController;
+import net.ivpn.client.vpn.controller.VpnBehaviorController;
 import net.ivpn.client.vpn.local.NetworkController;
 import net.ivpn.client.vpn.openvpn.ProfileManager;
 import net.ivpn.client.vpn.wireguard.ConfigManager;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.slf4j.bridge.SLF4JBridgeHandler;
 
-import javax.inject.Inject;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
+import javax.inject.Inject;
 
+/**
+ * Initialises application components on start. Components that are needed for the first frame or
+ * for the VPN started by the system (always-on, boot) are initialised before the application
+ * returns from onCreate, the rest are deferred to a background thread or to the first idle
+ * moment of the main thread. Deferred components wait for the first activity, or for the tunnel
+ * when the VPN is started by the system, see {@link #connectHeadless(VpnBehaviorController)}.
+ */
 @ApplicationScope
 public class ComponentUtil {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(ComponentUtil.class);
+
+    private static final String SENTRY = "Sentry";
+    private static final String LOGGER_BRIDGE = "Logger";
+    private static final String VECTOR_DRAWABLES = "Vector drawables";
+    private static final String MIGRATION = "Migration";
+    private static final String WIREGUARD = "WireGuard";
+    private static final String PROTOCOL = "Protocol";
+    private static final String GLOBAL_BEHAVIOR = "Global behavior";
+    private static final String NETWORK_RULES = "Network rules";
+    private static final String OPENVPN_PROFILE = "OpenVPN profile";
+    private static final String API_IP_LIST = "API IP list";
+    private static final String DOMAIN_RESOLVER = "Domain resolver";
+    private static final String MAINTENANCE = "Maintenance";
+    private static final String BILLING = "Billing";
+    private static final String UI_OR_TUNNEL = "UI or tunnel";
+    private static final long RESET_TIMEOUT = 5;
+    //Deferred components are started anyway if the process is started neither for UI nor for VPN.
+    private static final long GATE_TIMEOUT = 30 * DateUtil.SECOND;
+
+    private final StartupGraph startupGraph = new StartupGraph();
+    private long startUptime;
+    private OnTunnelEstablishedListener headlessTunnelListener;
+
     private Context context;
     private UpdateHelper updateHelper;
     private Preference preference;
-    private UpdatesJobServiceUtil updatesJobServiceUtil;
+    private MaintenanceScheduler maintenanceScheduler;
     private ServersRepository serversRepository;
     private GlobalBehaviorController globalBehaviorController;
     private ProtocolController protocolController;
@@ -38,17 +82,19 @@ public class ComponentUtil {
     private ProfileManager profileManager;
     private MigrationController migrationController;
     private SentryUtil sentryUtil;
+    private DomainResolver domainResolver;
 
     @Inject
     ComponentUtil(Context context, UpdateHelper updateHelper, Preference preference,
-                  UpdatesJobServiceUtil updatesJobServiceUtil, ServersRepository serversRepository,
+                  MaintenanceScheduler maintenanceScheduler, ServersRepository serversRepository,
                   GlobalBehaviorController globalBehaviorController, ProtocolController protocolController,
                   NetworkController networkController, ConfigManager configManager,
-                  ProfileManager profileManager, MigrationController migrationController, SentryUtil sentryUtil) {
+                  ProfileManager profileManager, MigrationController migrationController, SentryUtil sentryUtil,
+                  DomainResolver domainResolver) {
         this.context = context;
         this.updateHelper = updateHelper;
         this.preference = preference;
-        this.updatesJobServiceUtil = updatesJobServiceUtil;
+        this.maintenanceScheduler = maintenanceScheduler;
         this.serversRepository = serversRepository;
         this.globalBehaviorController = globalBehaviorController;
         this.protocolController = protocolController;
@@ -57,39 +103,117 @@ public class ComponentUtil {
         this.profileManager = profileManager;
         this.migrationController = migrationController;
         this.sentryUtil = sentryUtil;
+        this.domainResolver = domainResolver;
     }
 
     public void performBaseComponentsInit() {
-        initSentry();
-        initLogger();
-        initWireGuard();
-        initProfile();
-        initApiAccessImprovement();
-        initBillings();
-        AppCompatDelegate.setCompatVectorFromResourcesEnabled(true);
-        migrationController.checkForUpdates();
-        IVPNApplication.getApplication().appComponent.provideGlobalWireGuardAlarm();
+        startUptime = SystemClock.uptimeMillis();
+        //Idle threads are released once the deferred components are done.
+        Executor background = Executors.newCachedThreadPool();
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        Executor mainIdle = command -> mainHandler.post(() -> Looper.myQueue().addIdleHandler(() -> {
+            command.run();
+            return false;
+        }));
+
+        startupGraph.addCritical(LOGGER_BRIDGE, this::initLogger);
+        startupGraph.addCritical(VECTOR_DRAWABLES, () -> AppCompatDelegate.setCompatVectorFromResourcesEnabled(true));
+        //Settings are migrated before the controllers read them.
+        startupGraph.addCritical(MIGRATION, migrationController::checkForUpdates);
+        startupGraph.addCritical(WIREGUARD, this::initWireGuard);
+        startupGraph.addCritical(PROTOCOL, protocolController::init, MIGRATION);
+        startupGraph.addCritical(GLOBAL_BEHAVIOR, globalBehaviorController::init, MIGRATION);
+        startupGraph.addCritical(NETWORK_RULES, networkController::init, MIGRATION);
+
+        //ProfileManager reads the profile itself if it is asked for it earlier.
+        startupGraph.addDeferred(OPENVPN_PROFILE, background, profileManager::readDefaultProfile);
+        startupGraph.addGate(UI_OR_TUNNEL);
+        startupGraph.addDeferred(SENTRY, mainIdle, this::initSentry, UI_OR_TUNNEL);
+        startupGraph.addDeferred(API_IP_LIST, background, serversRepository::tryUpdateIpList,
+                MIGRATION, UI_OR_TUNNEL);
+        startupGraph.addDeferred(MAINTENANCE, background, maintenanceScheduler::init, PROTOCOL, UI_OR_TUNNEL);
+        startupGraph.addDeferred(DOMAIN_RESOLVER, mainIdle, domainResolver::init, UI_OR_TUNNEL);
+        startupGraph.addDeferred(BILLING, mainIdle, this::initBillings, UI_OR_TUNNEL);
+
+        startupGraph.start();
+
+        ((Application) context).registerActivityLifecycleCallbacks(new ActivityCreatedCallback());
+        mainHandler.postDelayed(this::openUiOrTunnelGate, GATE_TIMEOUT);
+    }
+
+    /**
+     * Connect the VPN started by the system (always-on, boot) without waiting for the components
+     * that are not needed for it, they are initialised once the tunnel is established or the
+     * connection fails.
+     */
+    public void connectHeadless(VpnBehaviorController vpnBehaviorController) {
+        long connectUptime = SystemClock.uptimeMillis();
+        removeHeadlessTunnelListener();
+        headlessTunnelListener = new OnTunnelEstablishedListener() {
+            @Override
+            public void onTunnelEstablished() {
+                long now = SystemClock.uptimeMillis();
+                LOGGER.info("Tunnel is established in " + (now - connectUptime) + " ms after connect, "
+                        + (now - startUptime) + " ms after application start, "
+                        + SystemClock.elapsedRealtime() + " ms after boot");
+                openUiOrTunnelGate();
+            }
+
+            @Override
+            public void onTunnelDown() {
+                LOGGER.info("Tunnel is down " + (SystemClock.uptimeMillis() - connectUptime) + " ms after connect");
+                openUiOrTunnelGate();
+            }
+        };
+        globalBehaviorController.addOnTunnelEstablishedListener(headlessTunnelListener);
+        vpnBehaviorController.connectActionByRules();
+    }
+
+    //Whatever opens the gate first, nothing waits for the headless tunnel afterwards.
+    private void openUiOrTunnelGate() {
+        startupGraph.open(UI_OR_TUNNEL);
+        removeHeadlessTunnelListener();
+    }
+
+    private void removeHeadlessTunnelListener() {
+        if (headlessTunnelListener != null) {
+            globalBehaviorController.removeOnTunnelEstablishedListener(headlessTunnelListener);
+            headlessTunnelListener = null;
+        }
+    }
+
+    /**
+     * @return Initialisation time in milliseconds of every component that is done so far.
+     */
+    public Map<String, Long> getStartupTimings() {
+        return startupGraph.getTimings();
+    }
+
+    /**
+     * Block until deferred components are initialised as well.
+     *
+     * @return false if the timeout is reached first.
+     */
+    public boolean awaitStartup(long timeout, TimeUnit unit) throws InterruptedException {
+        return startupGraph.awaitAll(timeout, unit);
     }
 
     public void resetComponents() {
+        //Schedules must not be restored by a late initialisation after they are cancelled.
+        try {
+            if (!startupGraph.await(MAINTENANCE, RESET_TIMEOUT, TimeUnit.SECONDS)) {
+                LOGGER.error("Maintenance is not initialised before reset");
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
         preference.removeAll();
         globalBehaviorController.finishAll();
         networkController.finishAll();
-        updatesJobServiceUtil.clearUpdateJob(IVPNApplication.getApplication());
+        maintenanceScheduler.cancelAll();
         updateHelper.skipUpdate();
     }
 
-    private void initProfile() {
-        protocolController.init();
-        profileManager.readDefaultProfile();
-        globalBehaviorController.init();
-        networkController.init();
-    }
-
-    private void initApiAccessImprovement() {
-        serversRepository.tryUpdateIpList();
-    }
-
     private void initSentry() {
         if (!BuildConfig.BUILD_VARIANT.equals("fdroid")) {
             sentryUtil.init();
@@ -108,4 +232,37 @@ public class ComponentUtil {
     private void initBillings() {
 
     }
+
+    private class ActivityCreatedCallback implements Application.ActivityLifecycleCallbacks {
+
+        @Override
+        public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+            ((Application) context).unregisterActivityLifecycleCallbacks(this);
+            openUiOrTunnelGate();
+        }
+
+        @Override
+        public void onActivityStarted(Activity activity) {
+        }
+
+        @Override
+        public void onActivityResumed(Activity activity) {
+        }
+
+        @Override
+        public void onActivityPaused(Activity activity) {
+        }
+
+        @Override
+        public void onActivityStopped(Activity activity) {
+        }
+
+        @Override
+        public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+        }
+
+        @Override
+        public void onActivityDestroyed(Activity activity) {
+        }
+    }
 }
@@ -1,84 +1,281 @@
 package net.ivpn.client.common.utils;
 
-import android.os.Handler;
-import android.os.HandlerThread;
-import android.util.Log;
-
 import net.ivpn.client.common.dagger.ApplicationScope;
+import net.ivpn.client.common.prefs.OnFavouriteServersChangedListener;
 import net.ivpn.client.common.prefs.ServerType;
 import net.ivpn.client.common.prefs.ServersRepository;
+import net.ivpn.client.common.prefs.Settings;
+import net.ivpn.client.rest.data.model.Host;
 import net.ivpn.client.rest.data.model.Server;
+import net.ivpn.client.vpn.dns.DnsUpstreams;
+import net.ivpn.client.vpn.dns.LocalDnsResolver;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
 import java.net.InetAddress;
 import java.net.URL;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
 
 import javax.inject.Inject;
 
+import java9.util.concurrent.CompletableFuture;
+
+/**
+ * Resolves gateway and host names of servers ahead of connection and keeps the addresses for
+ * {@link #CACHE_TTL}. Names are resolved in parallel and concurrent requests for the same name
+ * share one lookup. Favourites and the current entry and exit servers are resolved in advance,
+ * so OpenVPN remotes and WireGuard endpoints are built from cached addresses without waiting for DNS.
+ * While custom DNS has an encrypted upstream, names are looked up over it through
+ * {@link LocalDnsResolver}, the system resolver is used otherwise or if that lookup fails.
+ */
 @ApplicationScope
 public class DomainResolver implements Serializable {
 
-    private static final String TAG = DomainResolver.class.getSimpleName();
+    private static final Logger LOGGER = LoggerFactory.getLogger(DomainResolver.class);
+
+    private static final long CACHE_TTL = 10 * DateUtil.MINUTE;
+    private static final long NEGATIVE_CACHE_TTL = 30 * DateUtil.SECOND;
+    private static final int THREADS = 4;
+    private static final Pattern IPV4_PATTERN = Pattern.compile("^\\d{1,3}(\\.\\d{1,3}){3}$");
 
-    private Handler handler;
-    private boolean isResolved;
+    private final transient ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    //Lookups block on the upstream, so it has its own threads.
+    private final transient ExecutorService upstreamExecutor = Executors.newCachedThreadPool();
+    private final transient Map<String, Entry> cache = new HashMap<>();
+    private final transient Map<String, CompletableFuture<List<InetAddress>>> inFlight = new HashMap<>();
+    private volatile String lastGateway;
+    private String upstream = "";
 
     private ServersRepository serversRepository;
+    private LocalDnsResolver localDnsResolver;
+    private Settings settings;
 
     @Inject
-    DomainResolver(ServersRepository serversRepository) {
+    DomainResolver(ServersRepository serversRepository, LocalDnsResolver localDnsResolver, Settings settings) {
         this.serversRepository = serversRepository;
+        this.localDnsResolver = localDnsResolver;
+        this.settings = settings;
+    }
+
+    public void init() {
+        serversRepository.addFavouriteServerListener(new OnFavouriteServersChangedListener() {
+            @Override
+            public void notifyFavouriteServerAdded(Server server) {
+                preResolve(Collections.singletonList(server));
+            }
+
+            @Override
+            public void notifyFavouriteServerRemoved(Server server) {
+            }
+        });
+        serversRepository.setOnServerChangedListener(this::preResolveCurrentServers);
+        updateUpstream();
+        preResolveCurrentServers();
+        preResolve(serversRepository.getFavouritesServers());
+    }
+
+    /**
+     * Should be called when custom DNS is toggled or its encrypted upstream is changed.
+     * Names cached through the previous upstream are dropped.
+     */
+    public void updateUpstream() {
+        String spec = settings.isCustomDNSEnabled() ? settings.getCustomDNSUpstream() : "";
+        synchronized (this) {
+            if (spec.equals(upstream)) {
+                return;
+            }
+            upstream = spec;
+            cache.clear();
+        }
+        LOGGER.info("updateUpstream: " + spec);
+        if (DnsUpstreams.isEncrypted(spec)) {
+            localDnsResolver.start(DnsUpstreams.create(spec, upstreamExecutor));
+        } else {
+            localDnsResolver.stop();
+        }
     }
 
     public void tryResolveCurrentServerDomain(OnDomainResolvedListener listener) {
         Server currentServer = serversRepository.getCurrentServer(ServerType.ENTRY);
         tryResolveServerDomain(currentServer, listener);
+        preResolve(Collections.singletonList(serversRepository.getCurrentServer(ServerType.EXIT)));
     }
 
     public void tryResolveServerDomain(Server server, OnDomainResolvedListener listener) {
-        Log.d(TAG, "tryResolveServerDomain: ");
-        isResolved = false;
-        Handler handler = getHandler();
-        handler.removeCallbacksAndMessages(null);
-        handler.post(getRunnable(server, listener));
+        LOGGER.info("tryResolveServerDomain: server = " + server);
+        if (server == null) {
+            return;
+        }
+        String gateway = getHostName(server.getGateway());
+        lastGateway = gateway;
+        preResolve(Collections.singletonList(server));
+        resolve(gateway).whenComplete((addresses, throwable) -> {
+            boolean isResolved = addresses != null && !addresses.isEmpty();
+            LOGGER.info("Gateway " + gateway + " isResolved = " + isResolved);
+            if (listener != null) {
+                listener.onResult(isResolved);
+            }
+        });
     }
 
-    private Runnable getRunnable(final Server server, final OnDomainResolvedListener listener) {
-        return () -> {
-            try {
-                URL url = new URL("https://" + server.getGateway());
-                InetAddress address = InetAddress.getByName(url.getHost());
-                isResolved = address != null;
-                Log.d(TAG, "run: isResolved = " + isResolved);
-                if (listener != null) {
-                    listener.onResult(isResolved);
-                }
-            } catch (Exception exception) {
-                Log.d(TAG, "run: isResolved = false");
-                exception.printStackTrace();
-                if (listener != null) {
-                    listener.onResult(false);
+    /**
+     * Resolve gateways and hosts of the servers in background, already cached names are skipped.
+     */
+    public void preResolve(Collection<Server> servers) {
+        if (servers == null) {
+            return;
+        }
+        for (Server server : servers) {
+            if (server == null) {
+                continue;
+            }
+            resolve(getHostName(server.getGateway()));
+            if (server.getHosts() != null) {
+                for (Host host : server.getHosts()) {
+                    resolve(host.getHost());
                 }
             }
-        };
+        }
+    }
+
+    /**
+     * @return Future of all addresses of the name, served from the cache when possible.
+     */
+    public CompletableFuture<List<InetAddress>> resolve(String hostName) {
+        if (hostName == null || hostName.isEmpty()) {
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+        if (isIpLiteral(hostName)) {
+            //Literal is parsed without any lookup.
+            return CompletableFuture.completedFuture(lookup(hostName));
+        }
+        CompletableFuture<List<InetAddress>> future;
+        synchronized (this) {
+            Entry entry = getEntry(hostName);
+            if (entry != null) {
+                return CompletableFuture.completedFuture(entry.addresses);
+            }
+            future = inFlight.get(hostName);
+            if (future != null) {
+                return future;
+            }
+            future = CompletableFuture.supplyAsync(() -> lookup(hostName), executor);
+            inFlight.put(hostName, future);
+        }
+        future.whenComplete((addresses, throwable) -> {
+            synchronized (this) {
+                inFlight.remove(hostName);
+                boolean isResolved = addresses != null && !addresses.isEmpty();
+                long ttl = isResolved ? CACHE_TTL : NEGATIVE_CACHE_TTL;
+                cache.put(hostName, new Entry(isResolved ? addresses : Collections.emptyList(),
+                        System.currentTimeMillis() + ttl));
+            }
+        });
+        return future;
+    }
+
+    /**
+     * @return Cached addresses of the name without blocking, {@code null} if there are none.
+     */
+    public synchronized List<InetAddress> getCachedAddresses(String hostName) {
+        if (hostName == null) {
+            return null;
+        }
+        Entry entry = getEntry(getHostName(hostName));
+        return entry != null && !entry.addresses.isEmpty() ? entry.addresses : null;
+    }
+
+    /**
+     * @return Cached address of the name, the name itself if it is an IP literal or isn't resolved yet.
+     */
+    public String getCachedAddress(String hostName) {
+        if (hostName == null || isIpLiteral(hostName)) {
+            return hostName;
+        }
+        List<InetAddress> addresses = getCachedAddresses(hostName);
+        return addresses != null ? addresses.get(0).getHostAddress() : hostName;
     }
 
     public boolean isResolved() {
-        Log.d(TAG, "isResolved: ");
-        return isResolved;
+        return getCachedAddresses(lastGateway) != null;
+    }
+
+    private void preResolveCurrentServers() {
+        preResolve(Arrays.asList(serversRepository.getCurrentServer(ServerType.ENTRY),
+                serversRepository.getCurrentServer(ServerType.EXIT)));
     }
 
-    private Handler getHandler() {
-        if (handler == null) {
-            HandlerThread handlerThread = new HandlerThread(DomainResolver.class.getSimpleName());
-            handlerThread.start();
-            handler = new Handler(handlerThread.getLooper());
+    private Entry getEntry(String hostName) {
+        if (isIpLiteral(hostName)) {
+            return null;
+        }
+        Entry entry = cache.get(hostName);
+        if (entry != null && entry.expiresAt < System.currentTimeMillis()) {
+            cache.remove(hostName);
+            return null;
         }
+        return entry;
+    }
 
-        return handler;
+    private List<InetAddress> lookup(String hostName) {
+        if (localDnsResolver.isRunning() && !isIpLiteral(hostName)) {
+            try {
+                List<InetAddress> addresses = localDnsResolver.lookup(hostName).join();
+                if (!addresses.isEmpty()) {
+                    return Collections.unmodifiableList(addresses);
+                }
+            } catch (CompletionException | CancellationException exception) {
+                LOGGER.info("Unable to resolve " + hostName + " through local resolver");
+            }
+        }
+        try {
+            return Collections.unmodifiableList(new ArrayList<>(Arrays.asList(InetAddress.getAllByName(hostName))));
+        } catch (UnknownHostException | SecurityException exception) {
+            LOGGER.info("Unable to resolve " + hostName);
+            return Collections.emptyList();
+        }
+    }
+
+    private static String getHostName(String gateway) {
+        if (gateway == null) {
+            return null;
+        }
+        try {
+            return new URL("https://" + gateway).getHost();
+        } catch (Exception exception) {
+            return gateway;
+        }
+    }
+
+    private static boolean isIpLiteral(String hostName) {
+        return hostName.indexOf(':') != -1 || IPV4_PATTERN.matcher(hostName).matches();
+    }
+
+    private static final class Entry {
+        private final List<InetAddress> addresses;
+        private final long expiresAt;
+
+        private Entry(List<InetAddress> addresses, long expiresAt) {
+            this.addresses = addresses;
+            this.expiresAt = expiresAt;
+        }
     }
 
     public interface OnDomainResolvedListener {
         void onResult(boolean isResolved);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,74 @@
+package net.ivpn.client.common.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import net.ivpn.client.common.dagger.ApplicationScope;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+
+import javax.inject.Inject;
+
+/**
+ * Decoded country flags from assets, keyed by country code and down-sampled to the size of the view.
+ */
+@ApplicationScope
+public class FlagCache extends AsyncBitmapCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FlagCache.class);
+
+    private static final String FLAG_DIRECTORY = "flag";
+    private static final int MAX_CACHE_SIZE = 4 * 1024 * 1024;
+
+    private Context context;
+
+    @Inject
+    FlagCache(Context context) {
+        super(MAX_CACHE_SIZE);
+        this.context = context;
+    }
+
+    @Override
+    protected String normalize(String countryCode) {
+        String code = countryCode.toLowerCase(Locale.ENGLISH);
+        return code.equals("uk") ? "gb" : code;
+    }
+
+    @Override
+    protected Bitmap decode(String code, int size) {
+        String path = FLAG_DIRECTORY + File.separator + code + ".png";
+        try {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            if (size > 0) {
+                options.inJustDecodeBounds = true;
+                try (InputStream stream = context.getAssets().open(path)) {
+                    BitmapFactory.decodeStream(stream, null, options);
+                }
+                options.inSampleSize = getSampleSize(options.outWidth, options.outHeight, size);
+                options.inJustDecodeBounds = false;
+            }
+            try (InputStream stream = context.getAssets().open(path)) {
+                return BitmapFactory.decodeStream(stream, null, options);
+            }
+        } catch (IOException exception) {
+            LOGGER.error("Unable to decode flag " + path, exception);
+            return null;
+        }
+    }
+
+    //Largest power of two that keeps both sides not smaller than the target.
+    private static int getSampleSize(int width, int height, int size) {
+        int sampleSize = 1;
+        while (width / (sampleSize * 2) >= size && height / (sampleSize * 2) >= size) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+}
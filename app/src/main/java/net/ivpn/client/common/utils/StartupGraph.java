@@ -0,0 +1,207 @@
+package net.ivpn.client.common.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dependency graph of application components that are initialised on start.
+ * Critical components are initialised on the calling thread before {@link #start()} returns,
+ * deferred ones are dispatched to their executors as soon as their dependencies are done,
+ * so independent components are initialised in parallel. Gates hold their dependents until
+ * they are opened from outside. Components are added after their dependencies, which keeps
+ * the graph free of cycles.
+ */
+class StartupGraph {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StartupGraph.class);
+    //Gates are done on open only.
+    private static final Executor GATE = command -> {
+    };
+
+    private final Map<String, Node> nodes = new LinkedHashMap<>();
+    private volatile boolean isStarted;
+    private long graphStartTime;
+
+    void addCritical(String name, Runnable action, String... dependencies) {
+        add(name, null, action, dependencies);
+    }
+
+    void addDeferred(String name, Executor executor, Runnable action, String... dependencies) {
+        add(name, executor, action, dependencies);
+    }
+
+    /**
+     * Add a component that is done once {@link #open(String)} is called for it.
+     */
+    void addGate(String name) {
+        add(name, GATE, null);
+    }
+
+    /**
+     * Release components that depend on the gate. Opening the gate again has no effect.
+     */
+    void open(String name) {
+        Node node = getNode(name);
+        if (node.executor != GATE) {
+            throw new IllegalArgumentException("Component " + name + " is not a gate");
+        }
+        if (!isStarted) {
+            throw new IllegalStateException("Startup graph is not started");
+        }
+        if (node.isOpened.compareAndSet(false, true)) {
+            node.duration = System.nanoTime() - graphStartTime;
+            LOGGER.info(name + " is opened in " + toMillis(node.duration) + " ms after start");
+            complete(node);
+        }
+    }
+
+    void start() {
+        if (isStarted) {
+            throw new IllegalStateException("Startup graph is already started");
+        }
+        graphStartTime = System.nanoTime();
+        isStarted = true;
+        for (Node node : nodes.values()) {
+            if (!node.isCritical() && node.pendingDependencies.get() == 0) {
+                dispatch(node);
+            }
+        }
+        for (Node node : nodes.values()) {
+            if (node.isCritical()) {
+                run(node);
+            }
+        }
+        LOGGER.info("Critical components are initialised in " + toMillis(System.nanoTime() - graphStartTime) + " ms");
+    }
+
+    /**
+     * Block until the component is initialised, for the code that can't work without it.
+     *
+     * @return false if the timeout is reached first.
+     */
+    boolean await(String name, long timeout, TimeUnit unit) throws InterruptedException {
+        return getNode(name).done.await(timeout, unit);
+    }
+
+    /**
+     * Block until every component is initialised.
+     *
+     * @return false if the timeout is reached first.
+     */
+    boolean awaitAll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Node node : nodes.values()) {
+            if (!node.done.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Initialisation time in milliseconds of every component that is done, in order of addition.
+     */
+    Map<String, Long> getTimings() {
+        Map<String, Long> timings = new LinkedHashMap<>();
+        for (Node node : nodes.values()) {
+            if (node.done.getCount() == 0) {
+                timings.put(node.name, toMillis(node.duration));
+            }
+        }
+        return Collections.unmodifiableMap(timings);
+    }
+
+    private void add(String name, Executor executor, Runnable action, String... dependencies) {
+        if (isStarted) {
+            throw new IllegalStateException("Startup graph is already started");
+        }
+        if (nodes.containsKey(name)) {
+            throw new IllegalArgumentException("Component " + name + " is already added");
+        }
+        Node node = new Node(name, executor, action, dependencies.length);
+        for (String dependency : dependencies) {
+            Node dependencyNode = getNode(dependency);
+            if (node.isCritical() && !dependencyNode.isCritical()) {
+                throw new IllegalArgumentException("Critical component " + name
+                        + " can't depend on deferred " + dependency);
+            }
+            dependencyNode.dependents.add(node);
+        }
+        nodes.put(name, node);
+    }
+
+    private Node getNode(String name) {
+        Node node = nodes.get(name);
+        if (node == null) {
+            throw new IllegalArgumentException("Component " + name + " is not added");
+        }
+        return node;
+    }
+
+    private void dispatch(Node node) {
+        node.executor.execute(() -> {
+            try {
+                run(node);
+            } catch (RuntimeException exception) {
+                //Dependents are still released, a failed deferred component must not block the rest.
+                LOGGER.error("Unable to initialise " + node.name, exception);
+                complete(node);
+            }
+        });
+    }
+
+    private void run(Node node) {
+        long startTime = System.nanoTime();
+        node.action.run();
+        node.duration = System.nanoTime() - startTime;
+        LOGGER.info(node.name + " is initialised in " + toMillis(node.duration) + " ms on "
+                + Thread.currentThread().getName());
+        complete(node);
+    }
+
+    private void complete(Node node) {
+        node.done.countDown();
+        for (Node dependent : node.dependents) {
+            if (dependent.pendingDependencies.decrementAndGet() == 0 && !dependent.isCritical()) {
+                dispatch(dependent);
+            }
+        }
+    }
+
+    private static long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    private static class Node {
+        private final String name;
+        private final Executor executor;
+        private final Runnable action;
+        private final AtomicInteger pendingDependencies;
+        private final List<Node> dependents = new ArrayList<>();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final AtomicBoolean isOpened = new AtomicBoolean();
+        private volatile long duration;
+
+        Node(String name, Executor executor, Runnable action, int dependencies) {
+            this.name = name;
+            this.executor = executor;
+            this.action = action;
+            this.pendingDependencies = new AtomicInteger(dependencies);
+        }
+
+        boolean isCritical() {
+            return executor == null;
+        }
+    }
+}
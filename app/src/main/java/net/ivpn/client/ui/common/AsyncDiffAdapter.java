@@ -0,0 +1,135 @@
+package net.ivpn.client.ui.common;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.AsyncDifferConfig;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListUpdateCallback;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Adapter that diffs a new list against the current one on a background thread and dispatches
+ * only the changed rows, so an update costs as much as the change and not as the whole list.
+ * Items are matched by a stable key. Every key gets its own id the first time it is seen, so
+ * ids are stable and distinct keys never share one.
+ * Subclasses may show header rows before the items, see {@link #getHeaderCount()}.
+ */
+public abstract class AsyncDiffAdapter<T> extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+
+    private final AsyncListDiffer<T> differ;
+    //Ids are only read on the main thread.
+    private final Map<String, Long> ids = new HashMap<>();
+    private long nextId;
+
+    protected AsyncDiffAdapter() {
+        differ = new AsyncListDiffer<>(new OffsetListUpdateCallback(),
+                new AsyncDifferConfig.Builder<>(new KeyItemCallback()).build());
+        setHasStableIds(true);
+    }
+
+    /**
+     * @return Key that identifies the item across lists, e.g. gateway of a server.
+     */
+    protected abstract String getKey(T item);
+
+    protected abstract boolean areContentsTheSame(T oldItem, T newItem);
+
+    /**
+     * @return Payload for a partial bind of the changed item, {@code null} for a full bind.
+     */
+    @Nullable
+    protected Object getChangePayload(T oldItem, T newItem) {
+        return null;
+    }
+
+    /**
+     * Number of rows before the items. Header rows are notified by the subclass itself.
+     */
+    protected int getHeaderCount() {
+        return 0;
+    }
+
+    /**
+     * Replace the items, the diff is dispatched once it is calculated. A copy of the list is kept,
+     * so the caller is free to change it afterwards. {@code null} clears the items immediately.
+     */
+    public void submitList(@Nullable List<T> items) {
+        differ.submitList(items != null ? new ArrayList<>(items) : null);
+    }
+
+    public List<T> getItems() {
+        return differ.getCurrentList();
+    }
+
+    protected T getItem(int position) {
+        return differ.getCurrentList().get(position - getHeaderCount());
+    }
+
+    @Override
+    public int getItemCount() {
+        return getHeaderCount() + differ.getCurrentList().size();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        if (position < getHeaderCount()) {
+            //Header ids are negative and never clash with RecyclerView.NO_ID.
+            return -2 - position;
+        }
+        String key = getKey(getItem(position));
+        Long id = ids.get(key);
+        if (id == null) {
+            id = nextId++;
+            ids.put(key, id);
+        }
+        return id;
+    }
+
+    private class KeyItemCallback extends DiffUtil.ItemCallback<T> {
+
+        @Override
+        public boolean areItemsTheSame(@NonNull T oldItem, @NonNull T newItem) {
+            return getKey(oldItem).equals(getKey(newItem));
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull T oldItem, @NonNull T newItem) {
+            return AsyncDiffAdapter.this.areContentsTheSame(oldItem, newItem);
+        }
+
+        @Nullable
+        @Override
+        public Object getChangePayload(@NonNull T oldItem, @NonNull T newItem) {
+            return AsyncDiffAdapter.this.getChangePayload(oldItem, newItem);
+        }
+    }
+
+    private class OffsetListUpdateCallback implements ListUpdateCallback {
+
+        @Override
+        public void onInserted(int position, int count) {
+            notifyItemRangeInserted(position + getHeaderCount(), count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            notifyItemRangeRemoved(position + getHeaderCount(), count);
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            notifyItemMoved(fromPosition + getHeaderCount(), toPosition + getHeaderCount());
+        }
+
+        @Override
+        public void onChanged(int position, int count, @Nullable Object payload) {
+            notifyItemRangeChanged(position + getHeaderCount(), count, payload);
+        }
+    }
+}
@@ -30,6 +30,7 @@ import net.ivpn.client.IVPNApplication;
 import net.ivpn.client.R;
 import net.ivpn.client.common.SnackbarUtil;
 import net.ivpn.client.common.prefs.ServerType;
+import net.ivpn.client.common.scheduler.MaintenanceScheduler;
 import net.ivpn.client.common.utils.IntentUtils;
 import net.ivpn.client.common.utils.ViewUtil;
 import net.ivpn.client.databinding.ActivityConnectBinding;
@@ -41,7 +42,6 @@ import net.ivpn.client.ui.serverlist.ServersListActivity;
 import net.ivpn.client.ui.settings.SettingsActivity;
 import net.ivpn.client.ui.subscription.SubscriptionActivity;
 import net.ivpn.client.ui.tutorial.TutorialActivity;
-import net.ivpn.client.ui.updates.UpdatesJobServiceUtil;
 import net.ivpn.client.vpn.ServiceConstants;
 import net.ivpn.client.vpn.model.NetworkState;
 
@@ -58,7 +58,7 @@ public class ConnectActivity extends ViewModelActivity implements ConnectionNavi
     @Inject
     ConnectViewModel viewModel;
     @Inject
-    UpdatesJobServiceUtil updatesJobServiceUtil;
+    MaintenanceScheduler maintenanceScheduler;
 
     private GestureDetectorCompat gestureDetector;
     private CreateSessionFragment createSessionFragment;
@@ -108,7 +108,7 @@ public class ConnectActivity extends ViewModelActivity implements ConnectionNavi
         tryKillSwitch();
         tryWifiWatcher();
 
-        updatesJobServiceUtil.pushUpdateJob(IVPNApplication.getApplication());
+        maintenanceScheduler.scheduleMaintenance();
     }
 
     @Override
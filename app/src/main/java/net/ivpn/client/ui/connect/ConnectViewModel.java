@@ -18,6 +18,7 @@ import net.ivpn.client.common.prefs.ServerType;
 import net.ivpn.client.common.prefs.ServersRepository;
 import net.ivpn.client.common.prefs.Settings;
 import net.ivpn.client.common.prefs.UserPreference;
+import net.ivpn.client.common.scheduler.SessionStatusTask;
 import net.ivpn.client.common.utils.ComponentUtil;
 import net.ivpn.client.common.utils.ConnectivityUtil;
 import net.ivpn.client.common.utils.StringUtil;
@@ -29,8 +30,6 @@ import net.ivpn.client.rest.data.model.ServiceStatus;
 import net.ivpn.client.rest.data.model.WireGuard;
 import net.ivpn.client.rest.data.session.SessionNewRequestBody;
 import net.ivpn.client.rest.data.session.SessionNewResponse;
-import net.ivpn.client.rest.data.session.SessionStatusRequestBody;
-import net.ivpn.client.rest.data.session.SessionStatusResponse;
 import net.ivpn.client.rest.data.wireguard.ErrorResponse;
 import net.ivpn.client.rest.requests.common.Request;
 import net.ivpn.client.ui.dialog.Dialogs;
@@ -73,6 +72,7 @@ public class ConnectViewModel extends ViewModelBase implements OnNetworkSourceCh
     private PingProvider pingProvider;
     private NetworkProtectionPreference networkProtectionPreference;
     private BillingManagerWrapper billingManager;
+    private SessionStatusTask sessionStatusTask;
 
     public final ObservableField<Long> activeUntil = new ObservableField<>();
     public final ObservableBoolean isPaused = new ObservableBoolean();
@@ -102,7 +102,6 @@ public class ConnectViewModel extends ViewModelBase implements OnNetworkSourceCh
         currentState.set(state);
     };
 
-    private Request<SessionStatusResponse> sessionStatusRequest;
     private Request<SessionNewResponse> sessionNewRequest;
 
     CommandVM privateEmailCommand = new CommandVM() {
@@ -159,7 +158,8 @@ public class ConnectViewModel extends ViewModelBase implements OnNetworkSourceCh
                      NetworkProtectionPreference networkProtectionPreference,
                      HttpClientFactory httpClientFactory, ComponentUtil componentUtil,
                      ProtocolController protocolController, VpnBehaviorController vpnBehaviorController,
-                     NetworkController networkController, PingProvider pingProvider, BillingManagerWrapper billingManager) {
+                     NetworkController networkController, PingProvider pingProvider, BillingManagerWrapper billingManager,
+                     SessionStatusTask sessionStatusTask) {
         this.context = context;
         this.settings = settings;
         this.userPreference = userPreference;
@@ -172,8 +172,8 @@ public class ConnectViewModel extends ViewModelBase implements OnNetworkSourceCh
         this.pingProvider = pingProvider;
         this.networkProtectionPreference = networkProtectionPreference;
         this.billingManager = billingManager;
+        this.sessionStatusTask = sessionStatusTask;
 
-        sessionStatusRequest = new Request<>(settings, httpClientFactory, serversRepository, Request.Duration.SHORT);
         sessionNewRequest = new Request<>(settings, httpClientFactory, serversRepository, Request.Duration.SHORT);
         activeUntil.set(getAvailableUntil());
         defaultState.set(networkProtectionPreference.getDefaultNetworkState());
@@ -371,51 +371,36 @@ public class ConnectViewModel extends ViewModelBase implements OnNetworkSourceCh
 
     private void updateStatus() {
         String sessionToken = getSessionToken();
-        if (sessionToken != null && !sessionToken.isEmpty()) {
-            updateSessionStatus();
+        if (sessionToken == null || sessionToken.isEmpty()) {
+            return;
         }
+        if (sessionStatusTask.isUpToDate()) {
+            LOGGER.info("Session status is up to date, use cached value");
+            return;
+        }
+        updateSessionStatus();
     }
 
     private void updateSessionStatus() {
-        SessionStatusRequestBody body = new SessionStatusRequestBody(getSessionToken());
-        LOGGER.info("SessionStatusRequestBody = " + body);
-        sessionStatusRequest.start(api -> api.sessionStatus(body),
-                new RequestListener<SessionStatusResponse>() {
-                    @Override
-                    public void onSuccess(SessionStatusResponse response) {
-                        if (response.getStatus() != null && response.getStatus().equals(Responses.SUCCESS)) {
-                            LOGGER.info("Session status response received successfully");
-                            LOGGER.info(response.toString());
-                            saveSessionStatus(response.getServiceStatus());
-                            if (response.getServiceStatus().getActiveUntil() != 0) {
-                                activeUntil.set(response.getServiceStatus().getActiveUntil());
-                            }
-                        }
-                    }
-
-                    @Override
-                    public void onError(Throwable throwable) {
-                        LOGGER.error("Failed updating session status ", throwable);
-                    }
-
-                    @Override
-                    public void onError(String error) {
-                        LOGGER.error("Error while getting account status to see the confirmation" + error);
-                        ErrorResponse errorResponse = Mapper.errorResponseFrom(error);
-                        if (errorResponse == null || errorResponse.getStatus() == null) {
-                            return;
-                        }
-
-                        switch (errorResponse.getStatus()) {
-                            case Responses.SESSION_NOT_FOUND:
-                                navigator.logout();
-                                break;
-                            case Responses.SERVICE_IS_NOT_ACTIVE:
-                                userPreference.putIsActive(false);
-                                break;
-                        }
-                    }
-                });
+        sessionStatusTask.update(new SessionStatusTask.OnSessionStatusListener() {
+            @Override
+            public void onSessionStatusUpdated(ServiceStatus serviceStatus) {
+                if (serviceStatus.getActiveUntil() != 0) {
+                    activeUntil.set(serviceStatus.getActiveUntil());
+                }
+            }
+
+            @Override
+            public void onSessionStatusError(ErrorResponse errorResponse) {
+                if (errorResponse == null || errorResponse.getStatus() == null) {
+                    return;
+                }
+
+                if (errorResponse.getStatus() == Responses.SESSION_NOT_FOUND) {
+                    navigator.logout();
+                }
+            }
+        });
     }
 
     boolean isVpnActive() {
@@ -443,27 +428,6 @@ public class ConnectViewModel extends ViewModelBase implements OnNetworkSourceCh
         return networkProtectionPreference.getDefaultNetworkState();
     }
 
-    private void saveSessionStatus(ServiceStatus serviceStatus) {
-        if (serviceStatus.getIsOnFreeTrial() == null
-                || serviceStatus.getActiveUntil() == 0) {
-            return;
-        }
-
-        userPreference.putIsUserOnTrial(Boolean.valueOf(serviceStatus.getIsOnFreeTrial()));
-        userPreference.putAvailableUntil(serviceStatus.getActiveUntil());
-        userPreference.putCurrentPlan(serviceStatus.getCurrentPlan());
-        userPreference.putPaymentMethod(serviceStatus.getPaymentMethod());
-        userPreference.putIsActive(serviceStatus.getIsActive());
-        if (serviceStatus.getCapabilities() != null) {
-            userPreference.putIsUserOnPrivateEmailBeta(serviceStatus.getCapabilities().contains(Responses.PRIVATE_EMAILS));
-            boolean multiHopCapabilities = serviceStatus.getCapabilities().contains(Responses.MULTI_HOP);
-            userPreference.putCapabilityMultiHop(serviceStatus.getCapabilities().contains(Responses.MULTI_HOP));
-            if (!multiHopCapabilities) {
-                settings.enableMultiHop(false);
-            }
-        }
-    }
-
     private String getSessionToken() {
         return userPreference.getSessionToken();
     }
@@ -20,11 +20,14 @@ class AnimationUtils {
     static final int FULL_CIRCLE = 360;
 
     static RectF getProgressRect(int width, int height) {
+        return getProgressRect(width, height, new RectF());
+    }
+
+    static RectF getProgressRect(int width, int height, RectF rect) {
         int actualWidth = 2 * width / 5;
         int actualHeight = height / 2;
         int size = actualHeight < actualWidth ? actualHeight : actualWidth;
 
-        RectF rect = new RectF();
         rect.left = width / 2 - size / 2;
         rect.right = rect.left + size;
         rect.top = (height - size) / 2;
@@ -34,9 +37,12 @@ class AnimationUtils {
     }
 
     static Rect getIconRect(RectF rectF) {
+        return getIconRect(rectF, new Rect());
+    }
+
+    static Rect getIconRect(RectF rectF, Rect rect) {
         float size = rectF.width();
 
-        Rect rect = new Rect();
         rect.left = (int) (rectF.left + size / 4);
         rect.right = (int) (rectF.right - size / 4);
         rect.top = (int) (rectF.top + size / 4);
@@ -46,9 +52,12 @@ class AnimationUtils {
     }
 
     static Rect getActionIconRect(Rect rect) {
+        return getActionIconRect(rect, new Rect());
+    }
+
+    static Rect getActionIconRect(Rect rect, Rect iconRect) {
         float size = rect.width();
 
-        Rect iconRect = new Rect();
         iconRect.left = (int) (rect.left + size / 5);
         iconRect.right = (int) (rect.right - size / 5);
         iconRect.top = (int) (rect.top + size / 5);
@@ -58,8 +67,11 @@ class AnimationUtils {
     }
 
     static Rect getConnectedBtnRect(RectF rectF, float animationProgress) {
+        return getConnectedBtnRect(rectF, animationProgress, new Rect());
+    }
+
+    static Rect getConnectedBtnRect(RectF rectF, float animationProgress, Rect rect) {
         float size = rectF.width();
-        Rect rect = new Rect();
         //magic coefficient
         float correctionFactor = 7.2f;
         float animationFactor = -(size / 3) * (1 - animationProgress) + size / correctionFactor;
@@ -72,9 +84,12 @@ class AnimationUtils {
     }
 
     static Rect getPauseBtnRect(RectF rectF) {
+        return getPauseBtnRect(rectF, new Rect());
+    }
+
+    static Rect getPauseBtnRect(RectF rectF, Rect rect) {
         float size = rectF.width() / 3;
         float shadowFactor = size * 0.15f;
-        Rect rect = new Rect();
         rect.left = (int) (rectF.right);
         rect.right = (int) (rectF.right + size + 2 * shadowFactor);
         rect.top = (int) (rectF.bottom - size - shadowFactor);
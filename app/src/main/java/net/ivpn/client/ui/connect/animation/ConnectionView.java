@@ -11,9 +11,9 @@ import android.graphics.RectF;
 import android.graphics.drawable.Drawable;
 import android.os.Handler;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import androidx.core.content.ContextCompat;
 import android.util.AttributeSet;
-import android.util.Log;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.animation.AccelerateDecelerateInterpolator;
@@ -25,9 +25,14 @@ import net.ivpn.client.ui.connect.ConnectionState;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Connect button with its animations. Everything {@link #onDraw(Canvas)} needs is prepared in advance:
+ * icons are tinted once, geometry is computed on size change into reused rects and animated values
+ * are read as fractions, so frames don't allocate. Wave loop and running animators are paused
+ * while the view isn't visible.
+ */
 public class ConnectionView extends View {
 
-    private static final String TAG = ConnectionView.class.getSimpleName();
     private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionView.class);
 
     private ConnectionAnimationState state;
@@ -37,8 +42,10 @@ public class ConnectionView extends View {
     private ValueAnimator finalConnectionProgressAnimator;
     private ValueAnimator disconnectionAnimator;
     private ValueAnimator connectionAnimator;
+    private ValueAnimator waveAnimator;
 
     private Handler waveHandler;
+    private final Runnable waveRunnable = new WaveRunnable();
 
     private Paint paintProgress;
     private Paint paintProgressBackground;
@@ -51,6 +58,19 @@ public class ConnectionView extends View {
     private Drawable pauseBackgroundDrawable;
     private Drawable connectBackgroundDrawable;
     private Drawable stopBackgroundDrawable;
+    private Drawable grayIconDrawable;
+    private Drawable whiteIconDrawable;
+    private Drawable pauseIconDrawable;
+    private Drawable stopIconDrawable;
+
+    private final RectF progressRect = new RectF();
+    private final Rect iconRect = new Rect();
+    private final Rect pauseBtnRect = new Rect();
+    private final Rect actionIconRect = new Rect();
+    private final Rect connectedBtnRect = new Rect();
+    private final Rect animatedBtnRect = new Rect();
+    private int backgroundColor;
+    private int whiteColor;
 
     private float progressAngle = 0;
     private float progressConnection = 0;
@@ -86,11 +106,43 @@ public class ConnectionView extends View {
         pauseBackgroundDrawable = ContextCompat.getDrawable(getContext(), R.drawable.pause_round_btn);
         connectBackgroundDrawable = ContextCompat.getDrawable(getContext(), R.drawable.connection_round_btn);
         stopBackgroundDrawable = ContextCompat.getDrawable(getContext(), R.drawable.connection_round_btn);
+        grayIconDrawable = getTintedDrawable(R.drawable.ic_logo_sq, R.color.color_animation_gray);
+        whiteIconDrawable = getTintedDrawable(R.drawable.ic_logo_sq, R.color.color_animation_white);
+        pauseIconDrawable = getTintedDrawable(R.drawable.ic_pause, R.color.color_animation_white);
+        stopIconDrawable = getTintedDrawable(R.drawable.ic_stop, R.color.color_animation_white);
+        backgroundColor = ContextCompat.getColor(getContext(), R.color.color_animation_background);
+        whiteColor = ContextCompat.getColor(getContext(), R.color.color_animation_white);
         waveHandler = new Handler();
     }
 
-    private void initPaints(int width, int height) {
-        RectF rect = AnimationUtils.getProgressRect(width, height);
+    //Drawables of the same resource share state, so every tinted one is mutated.
+    private Drawable getTintedDrawable(int drawableRes, int tintColor) {
+        Drawable drawable = ContextCompat.getDrawable(getContext(), drawableRes);
+        if (drawable == null) {
+            return null;
+        }
+        drawable = drawable.mutate();
+        drawable.setTint(ContextCompat.getColor(getContext(), tintColor));
+        return drawable;
+    }
+
+    private void initGeometry(int width, int height) {
+        AnimationUtils.getProgressRect(width, height, progressRect);
+        AnimationUtils.getIconRect(progressRect, iconRect);
+        AnimationUtils.getPauseBtnRect(progressRect, pauseBtnRect);
+        AnimationUtils.getActionIconRect(pauseBtnRect, actionIconRect);
+        AnimationUtils.getConnectedBtnRect(progressRect, 1f, connectedBtnRect);
+
+        setBounds(grayIconDrawable, iconRect);
+        setBounds(whiteIconDrawable, iconRect);
+        setBounds(pauseIconDrawable, actionIconRect);
+        setBounds(stopIconDrawable, actionIconRect);
+        setBounds(pauseBackgroundDrawable, pauseBtnRect);
+        setBounds(stopBackgroundDrawable, pauseBtnRect);
+    }
+
+    private void initPaints() {
+        RectF rect = progressRect;
         strokeProgressWidth = rect.width() / 17;
 
         paintProgress = new Paint();
@@ -119,7 +171,7 @@ public class ConnectionView extends View {
         paintCircleBackground = new Paint();
         paintCircleBackground.setAntiAlias(true);
         paintCircleBackground.setStyle(Paint.Style.FILL);
-        paintCircleBackground.setColor(ContextCompat.getColor(getContext(), R.color.color_animation_background));
+        paintCircleBackground.setColor(backgroundColor);
 
         paintCircleActive = new Paint();
         paintCircleActive.setAntiAlias(true);
@@ -153,34 +205,27 @@ public class ConnectionView extends View {
     }
 
     private void drawNotConnected(Canvas canvas) {
-        RectF rect = AnimationUtils.getProgressRect(getWidth(), getHeight());
+        RectF rect = progressRect;
         canvas.drawArc(rect, AnimationUtils.START_ANGLE, AnimationUtils.FULL_CIRCLE, false, paintProgressBackground);
 
-        int grayIconAlpha = AnimationUtils.MAX_ALPHA;
-        getIcon(rect, R.color.color_animation_gray, grayIconAlpha).draw(canvas);
-        Log.d(TAG, "drawNotConnected: isPaused = " + isPaused);
+        drawDrawable(canvas, grayIconDrawable, AnimationUtils.MAX_ALPHA);
         if (isPaused) {
-            if (stopBackgroundDrawable != null) {
-                stopBackgroundDrawable.setBounds(AnimationUtils.getPauseBtnRect(rect));
-                stopBackgroundDrawable.draw(canvas);
-            }
-            getStopIcon(AnimationUtils.getPauseBtnRect(rect), R.color.color_animation_white, AnimationUtils.MAX_ALPHA).draw(canvas);
+            drawStopButton(canvas);
         }
     }
 
     private void drawConnectingProgress(Canvas canvas) {
-        RectF rect = AnimationUtils.getProgressRect(getWidth(), getHeight());
+        RectF rect = progressRect;
         canvas.drawArc(rect, AnimationUtils.START_ANGLE, AnimationUtils.FULL_CIRCLE, false, paintProgressBackground);
 
-        int grayIconAlpha = AnimationUtils.MAX_ALPHA;
-        getIcon(rect, R.color.color_animation_gray, grayIconAlpha).draw(canvas);
+        drawDrawable(canvas, grayIconDrawable, AnimationUtils.MAX_ALPHA);
 
         float angle = Math.min(progressAngle * AnimationUtils.FULL_CIRCLE, AnimationUtils.FULL_CIRCLE);
         canvas.drawArc(rect, AnimationUtils.START_ANGLE, angle, false, paintProgress);
     }
 
     private void drawConnection(Canvas canvas) {
-        RectF rect = AnimationUtils.getProgressRect(getWidth(), getHeight());
+        RectF rect = progressRect;
         int bigCircleRadius = getWidth();
         paintProgress.setAlpha((int) (AnimationUtils.MAX_ALPHA * (1 - progressConnection)));
         canvas.drawArc(rect, AnimationUtils.START_ANGLE, AnimationUtils.FULL_CIRCLE, false, paintProgress);
@@ -190,45 +235,39 @@ public class ConnectionView extends View {
         paintCircleWave.setAlpha((int) (AnimationUtils.MAX_ALPHA * (1 - progressConnection) / 3));
         canvas.drawCircle(rect.centerX(), rect.centerY(), bigCircleRadius * progressConnection, paintCircleWave);
 
-        Drawable connectedBtnBackground = ContextCompat.getDrawable(getContext(), R.drawable.connection_round_btn);
-        if (connectedBtnBackground != null) {
-            connectedBtnBackground.setBounds(AnimationUtils.getConnectedBtnRect(rect, progressConnection));
-            connectedBtnBackground.draw(canvas);
+        if (connectBackgroundDrawable != null) {
+            connectBackgroundDrawable.setBounds(AnimationUtils.getConnectedBtnRect(rect, progressConnection, animatedBtnRect));
+            connectBackgroundDrawable.draw(canvas);
         }
 
-        int grayIconAlpha = (int) (AnimationUtils.MAX_ALPHA * (1 - progressConnection));
-        getIcon(rect, R.color.color_animation_gray, grayIconAlpha).draw(canvas);
-
-        int whiteIconAlpha = (int) (AnimationUtils.MAX_ALPHA * progressConnection);
-        getIcon(rect, R.color.color_animation_white, whiteIconAlpha).draw(canvas);
+        drawDrawable(canvas, grayIconDrawable, (int) (AnimationUtils.MAX_ALPHA * (1 - progressConnection)));
+        drawDrawable(canvas, whiteIconDrawable, (int) (AnimationUtils.MAX_ALPHA * progressConnection));
     }
 
     private void drawConnected(Canvas canvas) {
-        RectF rect = AnimationUtils.getProgressRect(getWidth(), getHeight());
-        canvas.drawColor(ContextCompat.getColor(getContext(), R.color.color_animation_background));
+        RectF rect = progressRect;
+        canvas.drawColor(backgroundColor);
         if (shouldBeWaved) {
             drawWave(canvas, rect);
         }
 
         if (connectBackgroundDrawable != null) {
-            connectBackgroundDrawable.setBounds(AnimationUtils.getConnectedBtnRect(rect, 1f));
+            connectBackgroundDrawable.setBounds(connectedBtnRect);
             connectBackgroundDrawable.draw(canvas);
         }
         if (pauseBackgroundDrawable != null) {
-            pauseBackgroundDrawable.setBounds(AnimationUtils.getPauseBtnRect(rect));
             pauseBackgroundDrawable.draw(canvas);
         }
 
-        int iconAlpha = AnimationUtils.MAX_ALPHA;
-        getIcon(rect, R.color.color_animation_white, iconAlpha).draw(canvas);
-        getPauseIcon(AnimationUtils.getPauseBtnRect(rect), R.color.color_animation_white, iconAlpha).draw(canvas);
+        drawDrawable(canvas, whiteIconDrawable, AnimationUtils.MAX_ALPHA);
+        drawDrawable(canvas, pauseIconDrawable, AnimationUtils.MAX_ALPHA);
     }
 
     private void drawDisconnection(Canvas canvas) {
-        RectF rect = AnimationUtils.getProgressRect(getWidth(), getHeight());
+        RectF rect = progressRect;
         int bigCircleRadius = getWidth();
 
-        canvas.drawColor(ContextCompat.getColor(getContext(), R.color.color_animation_white));
+        canvas.drawColor(whiteColor);
         paintCircleWave.setAlpha((int) (AnimationUtils.MAX_ALPHA * (1 - progressConnection) / 3));
         canvas.drawCircle(rect.centerX(), rect.centerY(), bigCircleRadius * progressConnection, paintCircleWave);
 
@@ -238,73 +277,48 @@ public class ConnectionView extends View {
         paintCircleActive.setAlpha(Math.max((int) (AnimationUtils.MAX_ALPHA * (1 - 1.3f * progressConnection)), 0));
         canvas.drawCircle(rect.centerX(), rect.centerY(), radius, paintCircleActive);
 
-        int whiteIconAlpha = (int) (AnimationUtils.MAX_ALPHA * (1 - progressConnection));
-        getIcon(rect, R.color.color_animation_white, whiteIconAlpha).draw(canvas);
-
-        int grayIconAlpha = (int) (AnimationUtils.MAX_ALPHA * (progressConnection));
-        getIcon(rect, R.color.color_animation_gray, grayIconAlpha).draw(canvas);
+        drawDrawable(canvas, whiteIconDrawable, (int) (AnimationUtils.MAX_ALPHA * (1 - progressConnection)));
+        drawDrawable(canvas, grayIconDrawable, (int) (AnimationUtils.MAX_ALPHA * progressConnection));
 
         if (isPaused) {
-            if (stopBackgroundDrawable != null) {
-                stopBackgroundDrawable.setBounds(AnimationUtils.getPauseBtnRect(rect));
-                stopBackgroundDrawable.draw(canvas);
-            }
-            getStopIcon(AnimationUtils.getPauseBtnRect(rect), R.color.color_animation_white, AnimationUtils.MAX_ALPHA).draw(canvas);
+            drawStopButton(canvas);
         }
     }
 
     private void drawDisconnectingProgress(Canvas canvas) {
-        RectF rect = AnimationUtils.getProgressRect(getWidth(), getHeight());
+        RectF rect = progressRect;
         paintProgress.setAlpha(AnimationUtils.MAX_ALPHA);
         canvas.drawArc(rect, AnimationUtils.START_ANGLE, AnimationUtils.FULL_CIRCLE, false, paintProgress);
 
-        int grayIconAlpha = AnimationUtils.MAX_ALPHA;
-        getIcon(rect, R.color.color_animation_gray, grayIconAlpha).draw(canvas);
+        drawDrawable(canvas, grayIconDrawable, AnimationUtils.MAX_ALPHA);
 
         float angle = Math.min(progressAngle * AnimationUtils.FULL_CIRCLE, AnimationUtils.FULL_CIRCLE);
         paintProgressBackground.setAlpha(AnimationUtils.MAX_ALPHA);
         canvas.drawArc(rect, AnimationUtils.START_ANGLE, -angle, false, paintProgressBackground);
 
         if (isPaused) {
-            if (stopBackgroundDrawable != null) {
-                stopBackgroundDrawable.setBounds(AnimationUtils.getPauseBtnRect(rect));
-                stopBackgroundDrawable.draw(canvas);
-            }
-            getStopIcon(AnimationUtils.getPauseBtnRect(rect), R.color.color_animation_white, AnimationUtils.MAX_ALPHA).draw(canvas);
+            drawStopButton(canvas);
         }
     }
 
-    private Drawable getIcon(RectF rect, int tintColor, int alpha) {
-        Drawable iconDrawable = ContextCompat.getDrawable(getContext(), R.drawable.ic_logo_sq);
-        if (iconDrawable != null) {
-            iconDrawable.setTint(ContextCompat.getColor(getContext(), tintColor));
-            iconDrawable.setBounds(AnimationUtils.getIconRect(rect));
-            iconDrawable.setAlpha(alpha);
+    private void drawStopButton(Canvas canvas) {
+        if (stopBackgroundDrawable != null) {
+            stopBackgroundDrawable.draw(canvas);
         }
-
-        return iconDrawable;
+        drawDrawable(canvas, stopIconDrawable, AnimationUtils.MAX_ALPHA);
     }
 
-    private Drawable getPauseIcon(Rect rect, int tintColor, int alpha) {
-        Drawable iconDrawable = ContextCompat.getDrawable(getContext(), R.drawable.ic_pause);
-        if (iconDrawable != null) {
-            iconDrawable.setTint(ContextCompat.getColor(getContext(), tintColor));
-            iconDrawable.setBounds(AnimationUtils.getActionIconRect(rect));
-            iconDrawable.setAlpha(alpha);
+    private static void drawDrawable(Canvas canvas, Drawable drawable, int alpha) {
+        if (drawable != null) {
+            drawable.setAlpha(alpha);
+            drawable.draw(canvas);
         }
-
-        return iconDrawable;
     }
 
-    private Drawable getStopIcon(Rect rect, int tintColor, int alpha) {
-        Drawable iconDrawable = ContextCompat.getDrawable(getContext(), R.drawable.ic_stop);
-        if (iconDrawable != null) {
-            iconDrawable.setTint(ContextCompat.getColor(getContext(), tintColor));
-            iconDrawable.setBounds(AnimationUtils.getActionIconRect(rect));
-            iconDrawable.setAlpha(alpha);
+    private static void setBounds(Drawable drawable, Rect bounds) {
+        if (drawable != null) {
+            drawable.setBounds(bounds);
         }
-
-        return iconDrawable;
     }
 
     private void drawWave(Canvas canvas, RectF rect) {
@@ -319,7 +333,73 @@ public class ConnectionView extends View {
     @Override
     protected void onSizeChanged(int width, int height, int oldWidth, int oldHeight) {
         super.onSizeChanged(width, height, oldWidth, oldHeight);
-        initPaints(width, height);
+        initGeometry(width, height);
+        initPaints();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        onVisibilityUpdated();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        onVisibilityUpdated();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        onVisibilityUpdated();
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        onVisibilityUpdated();
+    }
+
+    private boolean isOnScreen() {
+        return isAttachedToWindow() && getWindowVisibility() == VISIBLE && isShown();
+    }
+
+    //Nothing is drawn off-screen, so frame callbacks are stopped until the view is visible again.
+    private void onVisibilityUpdated() {
+        if (waveHandler == null) {
+            return;
+        }
+        boolean isOnScreen = isOnScreen();
+        ValueAnimator[] animators = {connectionProgressAnimator, disconnectionProgressAnimator,
+                finalDisconnectionProgressAnimator, finalConnectionProgressAnimator,
+                disconnectionAnimator, connectionAnimator};
+        for (ValueAnimator animator : animators) {
+            if (animator == null || !animator.isStarted()) {
+                continue;
+            }
+            if (isOnScreen) {
+                animator.resume();
+            } else {
+                animator.pause();
+            }
+        }
+        updateWaveLoop();
+    }
+
+    private void updateWaveLoop() {
+        waveHandler.removeCallbacks(waveRunnable);
+        if (shouldBeWaved && state == ConnectionAnimationState.CONNECTED && isOnScreen()) {
+            waveHandler.postDelayed(waveRunnable, AnimationUtils.WAVES_ANIMATION_GAP_DURATION / 2);
+        } else if (waveAnimator != null) {
+            waveAnimator.cancel();
+            progressWave = 0;
+        }
+    }
+
+    //Boxed animated value is allocated on every frame, interpolated fraction isn't.
+    private static float getValue(ValueAnimator animator, float from, float to) {
+        return from + (to - from) * animator.getAnimatedFraction();
     }
 
     private void startConnectionProgressAnimation() {
@@ -334,7 +414,7 @@ public class ConnectionView extends View {
         connectionProgressAnimator.setDuration(AnimationUtils.CONNECTION_PROGRESS_ANIMATION_DURATION);
 
         connectionProgressAnimator.addUpdateListener(valueAnimator -> {
-            progressAngle = (float) valueAnimator.getAnimatedValue();
+            progressAngle = getValue(valueAnimator, 0f, 0.87f);
             invalidate();
         });
 
@@ -349,7 +429,7 @@ public class ConnectionView extends View {
         connectionAnimator.setDuration(AnimationUtils.CONNECT_ANIMATION_DURATION);
         connectionAnimator.setInterpolator(new DecelerateInterpolator(2f));
         connectionAnimator.addUpdateListener(valueAnimator -> {
-            progressConnection = (float) valueAnimator.getAnimatedValue();
+            progressConnection = valueAnimator.getAnimatedFraction();
             invalidate();
         });
         connectionAnimator.addListener(new AnimatorListenerAdapter() {
@@ -372,11 +452,12 @@ public class ConnectionView extends View {
             connectionProgressAnimator.cancel();
         }
 
-        finalConnectionProgressAnimator = ValueAnimator.ofFloat(progressAngle, 1f);
+        final float startAngle = progressAngle;
+        finalConnectionProgressAnimator = ValueAnimator.ofFloat(startAngle, 1f);
         finalConnectionProgressAnimator.setDuration(AnimationUtils.FINAL_PROGRESS_ANIMATION_DURATION);
 
         finalConnectionProgressAnimator.addUpdateListener(valueAnimator -> {
-            progressAngle = (float) valueAnimator.getAnimatedValue();
+            progressAngle = getValue(valueAnimator, startAngle, 1f);
             invalidate();
         });
         finalConnectionProgressAnimator.addListener(new AnimatorListenerAdapter() {
@@ -402,7 +483,7 @@ public class ConnectionView extends View {
         disconnectionAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
             @Override
             public void onAnimationUpdate(ValueAnimator valueAnimator) {
-                progressConnection = (float) valueAnimator.getAnimatedValue();
+                progressConnection = valueAnimator.getAnimatedFraction();
                 invalidate();
             }
         });
@@ -435,7 +516,7 @@ public class ConnectionView extends View {
         disconnectionProgressAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
             @Override
             public void onAnimationUpdate(ValueAnimator valueAnimator) {
-                progressAngle = (float) valueAnimator.getAnimatedValue();
+                progressAngle = getValue(valueAnimator, 0f, 0.7f);
                 invalidate();
             }
         });
@@ -453,20 +534,20 @@ public class ConnectionView extends View {
 
         setupDisconnectionProgressAnimation();
 
-        finalDisconnectionProgressAnimator = ValueAnimator.ofFloat(progressAngle, 1f);
+        final float startAngle = progressAngle;
+        finalDisconnectionProgressAnimator = ValueAnimator.ofFloat(startAngle, 1f);
         finalDisconnectionProgressAnimator.setDuration(AnimationUtils.FINAL_PROGRESS_ANIMATION_DURATION);
 
         finalDisconnectionProgressAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
             @Override
             public void onAnimationUpdate(ValueAnimator valueAnimator) {
-                progressAngle = (float) valueAnimator.getAnimatedValue();
+                progressAngle = getValue(valueAnimator, startAngle, 1f);
                 invalidate();
             }
         });
         finalDisconnectionProgressAnimator.addListener(new AnimatorListenerAdapter() {
             @Override
             public void onAnimationEnd(Animator animation) {
-                Log.d(TAG, "onAnimationEnd: finalDisconnectionProgressAnimator");
                 state = ConnectionAnimationState.NOT_CONNECTED;
             }
         });
@@ -479,14 +560,16 @@ public class ConnectionView extends View {
             return;
         }
         progressAngle = 1 - progressAngle;
-        disconnectionProgressAnimator = ValueAnimator.ofFloat(progressAngle, 1 - (1 - progressAngle) * 0.3f);
+        final float startAngle = progressAngle;
+        final float endAngle = 1 - (1 - progressAngle) * 0.3f;
+        disconnectionProgressAnimator = ValueAnimator.ofFloat(startAngle, endAngle);
         disconnectionProgressAnimator.setInterpolator(new AccelerateDecelerateInterpolator());
         disconnectionProgressAnimator.setDuration(AnimationUtils.DISCONNECTION_PROGRESS_ANIMATION_DURATION);
 
         disconnectionProgressAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
             @Override
             public void onAnimationUpdate(ValueAnimator valueAnimator) {
-                progressAngle = (float) valueAnimator.getAnimatedValue();
+                progressAngle = getValue(valueAnimator, startAngle, endAngle);
                 invalidate();
             }
         });
@@ -494,29 +577,32 @@ public class ConnectionView extends View {
         disconnectionProgressAnimator.start();
     }
 
-    private void startWaveAnimation() {
+    @VisibleForTesting
+    void startWaveAnimation() {
         if (!isInit) {
             return;
         }
-        ValueAnimator waveAnimator = ValueAnimator.ofFloat(0f, 1f);
-        waveAnimator.setDuration(AnimationUtils.WAVES_ANIMATION_DURATION);
-        waveAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator valueAnimator) {
-                progressWave = (float) valueAnimator.getAnimatedValue();
-                if (shouldBeWaved) {
-                    invalidate();
+        //One animator is restarted for every wave instead of creating a new one each time.
+        if (waveAnimator == null) {
+            waveAnimator = ValueAnimator.ofFloat(0f, 1f);
+            waveAnimator.setDuration(AnimationUtils.WAVES_ANIMATION_DURATION);
+            waveAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+                @Override
+                public void onAnimationUpdate(ValueAnimator valueAnimator) {
+                    progressWave = valueAnimator.getAnimatedFraction();
+                    if (shouldBeWaved) {
+                        invalidate();
+                    }
                 }
-            }
-        });
+            });
+        }
 
         waveAnimator.start();
     }
 
     private void initWaveAnimation() {
         shouldBeWaved = true;
-        waveHandler.removeCallbacks(null);
-        waveHandler.postDelayed(getWaveRunnable(), AnimationUtils.WAVES_ANIMATION_GAP_DURATION / 2);
+        updateWaveLoop();
     }
 
     public void updateConnectionState(ConnectionState connectionState) {
@@ -684,7 +770,7 @@ public class ConnectionView extends View {
         shouldBeWaved = false;
         progressAngle = 0;
         paintProgress.setAlpha(AnimationUtils.MAX_ALPHA);
-        paintCircleBackground.setColor(ContextCompat.getColor(getContext(), R.color.color_animation_white));
+        paintCircleBackground.setColor(whiteColor);
     }
 
     private void setupConnectionProgressAnimation() {
@@ -694,7 +780,7 @@ public class ConnectionView extends View {
         shouldBeWaved = false;
         paintProgress.setAlpha(AnimationUtils.MAX_ALPHA);
         paintProgressBackground.setAlpha(AnimationUtils.MAX_ALPHA);
-        paintCircleBackground.setColor(ContextCompat.getColor(getContext(), R.color.color_animation_background));
+        paintCircleBackground.setColor(backgroundColor);
 
         //fix for mystic bug with different size of two arc that actually are same!
         paintProgress.setStrokeWidth(strokeProgressWidth);
@@ -712,35 +798,25 @@ public class ConnectionView extends View {
     }
 
     public int getStatusTopMargin() {
-        int height = getHeight();
-        int width = getWidth();
-
-        RectF rect = AnimationUtils.getProgressRect(width, height);
-
-        return (int) ((height - rect.height()) / 4);
+        return (int) ((getHeight() - progressRect.height()) / 4);
     }
 
     public boolean validateMainTouchEvent(MotionEvent event) {
-        RectF rectF = AnimationUtils.getProgressRect(getWidth(), getHeight());
-        return rectF.contains(event.getX(), event.getY());
+        return progressRect.contains(event.getX(), event.getY());
     }
 
     public boolean validateStopTouchEvent(MotionEvent event) {
         if (state == null || !(state.equals(ConnectionAnimationState.NOT_CONNECTED) && isPaused)) {
             return false;
         }
-        RectF rectF = AnimationUtils.getProgressRect(getWidth(), getHeight());
-        Rect pauseRect = AnimationUtils.getPauseBtnRect(rectF);
-        return pauseRect.contains((int) event.getX(), (int) event.getY());
+        return pauseBtnRect.contains((int) event.getX(), (int) event.getY());
     }
 
     public boolean validatePauseTouchEvent(MotionEvent event) {
         if (state == null || !state.equals(ConnectionAnimationState.CONNECTED)) {
             return false;
         }
-        RectF rectF = AnimationUtils.getProgressRect(getWidth(), getHeight());
-        Rect pauseRect = AnimationUtils.getPauseBtnRect(rectF);
-        return pauseRect.contains((int) event.getX(), (int) event.getY());
+        return pauseBtnRect.contains((int) event.getX(), (int) event.getY());
     }
 
     public void reset() {
@@ -753,8 +829,20 @@ public class ConnectionView extends View {
         return state;
     }
 
-    private Runnable getWaveRunnable() {
-        return new WaveRunnable();
+    /**
+     * @return Started animator which the current frames are drawn from, {@code null} if there is none.
+     */
+    @VisibleForTesting
+    ValueAnimator getRunningAnimator() {
+        ValueAnimator[] animators = {finalConnectionProgressAnimator, connectionProgressAnimator,
+                connectionAnimator, disconnectionAnimator, finalDisconnectionProgressAnimator,
+                disconnectionProgressAnimator, waveAnimator};
+        for (ValueAnimator animator : animators) {
+            if (animator != null && animator.isStarted()) {
+                return animator;
+            }
+        }
+        return null;
     }
 
     private class WaveRunnable implements Runnable {
@@ -763,7 +851,7 @@ public class ConnectionView extends View {
         public void run() {
             startWaveAnimation();
             if (shouldBeWaved && state == ConnectionAnimationState.CONNECTED) {
-                waveHandler.postDelayed(getWaveRunnable(), AnimationUtils.WAVES_ANIMATION_GAP_DURATION);
+                waveHandler.postDelayed(this, AnimationUtils.WAVES_ANIMATION_GAP_DURATION);
             }
         }
     }
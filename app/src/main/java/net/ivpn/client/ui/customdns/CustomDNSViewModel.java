@@ -5,6 +5,7 @@ import androidx.databinding.ObservableField;
 import android.widget.CompoundButton;
 
 import net.ivpn.client.common.prefs.Settings;
+import net.ivpn.client.common.utils.DomainResolver;
 
 import javax.inject.Inject;
 
@@ -18,10 +19,12 @@ public class CustomDNSViewModel {
     public CompoundButton.OnCheckedChangeListener enableCustomDNS = (compoundButton, value) -> enableCustomDNS(value);
 
     private Settings settings;
+    private DomainResolver domainResolver;
 
     @Inject
-    CustomDNSViewModel(Settings settings) {
+    CustomDNSViewModel(Settings settings, DomainResolver domainResolver) {
         this.settings = settings;
+        this.domainResolver = domainResolver;
         init();
     }
 
@@ -37,5 +40,6 @@ public class CustomDNSViewModel {
 
     private void enableCustomDNS(boolean value) {
         settings.enableCustomDNS(value);
+        domainResolver.updateUpstream();
     }
 }
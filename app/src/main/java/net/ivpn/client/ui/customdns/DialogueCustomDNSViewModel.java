@@ -4,7 +4,9 @@ import android.content.Context;
 import androidx.databinding.ObservableField;
 
 import net.ivpn.client.common.prefs.Settings;
+import net.ivpn.client.common.utils.DomainResolver;
 import net.ivpn.client.common.utils.ToastUtil;
+import net.ivpn.client.vpn.dns.DnsUpstreams;
 
 import java.util.regex.Pattern;
 
@@ -20,15 +22,18 @@ public class DialogueCustomDNSViewModel {
     public final ObservableField<String> second = new ObservableField<>();
     public final ObservableField<String> third = new ObservableField<>();
     public final ObservableField<String> forth = new ObservableField<>();
+    public final ObservableField<String> upstream = new ObservableField<>();
 
     private Context context;
     private Settings settings;
+    private DomainResolver domainResolver;
     private OnDNSChangedListener listener;
 
     @Inject
-    public DialogueCustomDNSViewModel(Context context, Settings settings) {
+    public DialogueCustomDNSViewModel(Context context, Settings settings, DomainResolver domainResolver) {
         this.context = context;
         this.settings = settings;
+        this.domainResolver = domainResolver;
         init();
     }
 
@@ -41,6 +46,7 @@ public class DialogueCustomDNSViewModel {
             third.set(splitDNS[2]);
             forth.set(splitDNS[3]);
         }
+        upstream.set(settings.getCustomDNSUpstream());
     }
 
     public void setOnDnsChangedListener(OnDNSChangedListener listener) {
@@ -54,8 +60,15 @@ public class DialogueCustomDNSViewModel {
                 .append(third.get()).append(DOT)
                 .append(forth.get());
         String dns = dnsAddressBuilder.toString();
+        String upstreamValue = upstream.get() != null ? upstream.get().trim() : "";
+        if (!upstreamValue.isEmpty() && !DnsUpstreams.isEncrypted(upstreamValue)) {
+            ToastUtil.toast(context, "The encrypted DNS " + upstreamValue + " is invalid. Please, use https:// or tls:// address.");
+            return false;
+        }
         if (validate(dns)) {
             settings.setCustomDNSValue(dns);
+            settings.setCustomDNSUpstream(upstreamValue);
+            domainResolver.updateUpstream();
             listener.onCustomDNSChanged(dns);
             return true;
         }
@@ -44,6 +44,9 @@ public class DialogBuilder {
     public static void createOptionDialog(Context context, Dialogs dialogAttr,
                                           DialogInterface.OnClickListener listener) {
         LOGGER.info("Create dialog " + dialogAttr);
+        if (((Activity) context).isFinishing()) {
+            return;
+        }
         AlertDialog.Builder builder = new AlertDialog.Builder(context, R.style.AlertDialog);
         builder.setTitle(context.getString(dialogAttr.getTitleId()));
         builder.setMessage(context.getString(dialogAttr.getMessageId()));
@@ -51,9 +54,6 @@ public class DialogBuilder {
             builder.setPositiveButton(context.getString(dialogAttr.getPositiveBtnId()), listener);
         }
         builder.setNegativeButton(context.getString(dialogAttr.getNegativeBtnId()), null);
-        if (((Activity) context).isFinishing()) {
-            return;
-        }
         try {
             Dialog dialog = builder.show();
 
@@ -66,13 +66,13 @@ public class DialogBuilder {
 
     public static void createNotificationDialog(Context context, Dialogs dialogAttr) {
         LOGGER.info("Create dialog " + dialogAttr);
+        if (((Activity) context).isFinishing()) {
+            return;
+        }
         AlertDialog.Builder builder = new AlertDialog.Builder(context, R.style.AlertDialog);
         builder.setTitle(context.getString(dialogAttr.getTitleId()));
         builder.setMessage(context.getString(dialogAttr.getMessageId()));
         builder.setNegativeButton(context.getString(dialogAttr.getNegativeBtnId()), null);
-        if (((Activity) context).isFinishing()) {
-            return;
-        }
         try {
             Dialog dialog = builder.show();
 
@@ -85,13 +85,13 @@ public class DialogBuilder {
 
     public static void createCustomNotificationDialog(Context context, Dialogs dialogAttr, String msg) {
         LOGGER.info("Create dialog " + dialogAttr);
+        if (((Activity) context).isFinishing()) {
+            return;
+        }
         AlertDialog.Builder builder = new AlertDialog.Builder(context, R.style.AlertDialog);
         builder.setTitle(context.getString(dialogAttr.getTitleId()));
         builder.setMessage(msg);
         builder.setNegativeButton(context.getString(dialogAttr.getNegativeBtnId()), null);
-        if (((Activity) context).isFinishing()) {
-            return;
-        }
         try {
             Dialog dialog = builder.show();
 
@@ -104,13 +104,13 @@ public class DialogBuilder {
 
     public static void createFullCustomNotificationDialog(Context context, String title, String msg) {
         LOGGER.info("Create dialog ");
+        if (((Activity) context).isFinishing()) {
+            return;
+        }
         AlertDialog.Builder builder = new AlertDialog.Builder(context, R.style.AlertDialog);
         builder.setTitle(title);
         builder.setMessage(msg);
         builder.setNegativeButton(context.getString(R.string.dialogs_ok), null);
-        if (((Activity) context).isFinishing()) {
-            return;
-        }
         try {
             Dialog dialog = builder.show();
 
@@ -124,6 +124,9 @@ public class DialogBuilder {
     public static void createFullCustomNotificationDialog(Context context, String title, String msg,
                                                           final DialogInterface.OnCancelListener cancelListener) {
         LOGGER.info("Create dialog ");
+        if (((Activity) context).isFinishing()) {
+            return;
+        }
         AlertDialog.Builder builder = new AlertDialog.Builder(context, R.style.AlertDialog);
         builder.setTitle(title);
         builder.setMessage(msg);
@@ -133,9 +136,6 @@ public class DialogBuilder {
                     cancelListener.onCancel(dialog);
                 }
             });
-        if (((Activity) context).isFinishing()) {
-            return;
-        }
         try {
             Dialog dialog = builder.show();
 
@@ -149,6 +149,9 @@ public class DialogBuilder {
     public static void createNonCancelableDialog(Context context, Dialogs dialogAttr, DialogInterface.OnClickListener listener,
                                                  final DialogInterface.OnCancelListener cancelListener) {
         LOGGER.info("Create dialog " + dialogAttr);
+        if (((Activity) context).isFinishing()) {
+            return;
+        }
         AlertDialog.Builder builder = new AlertDialog.Builder(context, R.style.AlertDialog);
         builder.setTitle(context.getString(dialogAttr.getTitleId()));
         builder.setMessage(context.getString(dialogAttr.getMessageId()));
@@ -163,9 +166,6 @@ public class DialogBuilder {
                 }
             });
         }
-        if (((Activity) context).isFinishing()) {
-            return;
-        }
         try {
             Dialog dialog = builder.show();
 
@@ -178,6 +178,9 @@ public class DialogBuilder {
 
     public static void createPrivateEmailNewFeatureDialog(Context context, final PrivateEmailActionListener listener) {
         LOGGER.info("Create private email dialog");
+        if (((Activity) context).isFinishing()) {
+            return;
+        }
         AlertDialog.Builder builder = new AlertDialog.Builder(context, R.style.AlertDialog);
         LayoutInflater inflater = (LayoutInflater) context.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
         View dialogView = inflater.inflate(R.layout.dialog_private_email_new_feature, null);
@@ -192,9 +195,6 @@ public class DialogBuilder {
 
         alertDialog.setOnCancelListener(dialogInterface -> listener.onWatchedFeatureInfo());
 
-        if (((Activity) context).isFinishing()) {
-            return;
-        }
         try {
             alertDialog.show();
         } catch (Exception exception) {
@@ -205,6 +205,9 @@ public class DialogBuilder {
     public static void createPredefinedTimePickerDialog(Context context,
                                                         final OnDelayOptionSelected onDelayOptionSelected) {
         LOGGER.info("Create time picker dialog");
+        if (((Activity) context).isFinishing()) {
+            return;
+        }
         AlertDialog.Builder builder = new AlertDialog.Builder(context, R.style.AlertDialog);
         LayoutInflater inflater = (LayoutInflater) context.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
         View dialogView = inflater.inflate(R.layout.dialog_predefined_time_picker, null);
@@ -236,9 +239,6 @@ public class DialogBuilder {
 //                listener.onWatchedFeatureInfo();
         });
 
-        if (((Activity) context).isFinishing()) {
-            return;
-        }
         try {
             alertDialog.show();
         } catch (Exception exception) {
@@ -249,6 +249,9 @@ public class DialogBuilder {
     public static void createCustomTimePickerDialog(Context context,
                                                     final OnDelayOptionSelected onDelayOptionSelected) {
         LOGGER.info("Create custom time picker dialog");
+        if (((Activity) context).isFinishing()) {
+            return;
+        }
         AlertDialog.Builder builder = new AlertDialog.Builder(context, R.style.AlertDialog);
         LayoutInflater inflater = (LayoutInflater) context.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
         View dialogView = inflater.inflate(R.layout.dialog_custom_time_picker, null);
@@ -273,9 +276,6 @@ public class DialogBuilder {
 
         alertDialog.setOnCancelListener(dialogInterface -> onDelayOptionSelected.onCancelAction());
 
-        if (((Activity) context).isFinishing()) {
-            return;
-        }
         try {
             alertDialog.show();
         } catch (Exception exception) {
@@ -285,6 +285,9 @@ public class DialogBuilder {
 
     public static void createAdvancedKillSwitchDialog(Context context, final AdvancedKillSwitchActionListener listener) {
         LOGGER.info("Create advanced killswitch dialog");
+        if (((Activity) context).isFinishing()) {
+            return;
+        }
         AlertDialog.Builder builder = new AlertDialog.Builder(context, R.style.AlertDialog);
         LayoutInflater inflater = (LayoutInflater) context.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
         if (inflater == null) return;
@@ -310,9 +313,6 @@ public class DialogBuilder {
             alertDialog.dismiss();
         });
 
-        if (((Activity) context).isFinishing()) {
-            return;
-        }
         try {
             alertDialog.show();
         } catch (Exception exception) {
@@ -323,6 +323,9 @@ public class DialogBuilder {
     public static void createWireGuardDetailsDialog(Context context, WireGuardDialogInfo info,
                                                     final WireGuardDetailsDialogListener listener) {
         LOGGER.info("Create wireguard details dialog");
+        if (((Activity) context).isFinishing()) {
+            return;
+        }
         AlertDialog.Builder builder = new AlertDialog.Builder(context, R.style.AlertDialog);
         LayoutInflater inflater = (LayoutInflater) context.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
         if (inflater == null) return;
@@ -344,9 +347,6 @@ public class DialogBuilder {
         dialogView.findViewById(R.id.clipboard_copy).setOnClickListener(view -> listener.copyPublicKeyToClipboard());
         dialogView.findViewById(R.id.ip_clipboard_copy).setOnClickListener(view -> listener.copyIpAddressToClipboard());
 
-        if (((Activity) context).isFinishing()) {
-            return;
-        }
         try {
             alertDialog.show();
         } catch (Exception exception) {
@@ -356,6 +356,9 @@ public class DialogBuilder {
 
     public static void createConnectionInfoDialog(Context context) {
         LOGGER.info("Create connection info dialog");
+        if (((Activity) context).isFinishing()) {
+            return;
+        }
         AlertDialog.Builder builder = new AlertDialog.Builder(context, R.style.AlertDialog);
         LayoutInflater inflater = (LayoutInflater) context.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
         if (inflater == null) return;
@@ -375,9 +378,6 @@ public class DialogBuilder {
         binding.chronometer.setBase(SystemClock.elapsedRealtime() - viewModel.vpnBehaviorController.getConnectionTime());
         binding.chronometer.start();
 
-        if (((Activity) context).isFinishing()) {
-            return;
-        }
         try {
             alertDialog.show();
             viewModel.start();
@@ -388,6 +388,9 @@ public class DialogBuilder {
 
     public static void createCustomDNSDialogue(Context context, OnDNSChangedListener listener) {
         LOGGER.info("Create connection info dialog");
+        if (((Activity) context).isFinishing()) {
+            return;
+        }
         AlertDialog.Builder builder = new AlertDialog.Builder(context, R.style.AlertDialog);
         LayoutInflater inflater = (LayoutInflater) context.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
         if (inflater == null) return;
@@ -406,7 +409,7 @@ public class DialogBuilder {
         binding.secondValue.setFilters(new InputFilter[]{new InputFilterMinMax(0, 255)});
         binding.thirdValue.setFilters(new InputFilter[]{new InputFilterMinMax(0, 255)});
         binding.forthValue.setFilters(new InputFilter[]{new InputFilterMinMax(0, 255)});
-        binding.forthValue.setOnEditorActionListener((v, actionId, event) -> {
+        binding.upstreamValue.setOnEditorActionListener((v, actionId, event) -> {
             if (actionId == EditorInfo.IME_ACTION_DONE) {
                 if (viewModel.validateDNS()) {
                     alertDialog.dismiss();
@@ -422,9 +425,6 @@ public class DialogBuilder {
         });
         binding.cancelAction.setOnClickListener(view -> alertDialog.dismiss());
 
-        if (((Activity) context).isFinishing()) {
-            return;
-        }
         try {
             alertDialog.show();
         } catch (Exception exception) {
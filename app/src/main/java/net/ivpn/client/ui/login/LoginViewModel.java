@@ -200,7 +200,10 @@ public class LoginViewModel {
 
     private void putUserData(String username, SessionNewResponse response) {
         LOGGER.info("Save account data");
+        userPreference.inTransaction(() -> putAccountData(username, response));
+    }
 
+    private void putAccountData(String username, SessionNewResponse response) {
         userPreference.putSessionToken(response.getToken());
         userPreference.putSessionUsername(response.getVpnUsername());
         userPreference.putSessionPassword(response.getVpnPassword());
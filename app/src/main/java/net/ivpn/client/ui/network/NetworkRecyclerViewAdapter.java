@@ -11,18 +11,20 @@ import net.ivpn.client.IVPNApplication;
 import net.ivpn.client.databinding.ViewCommonNetworkBehaviourBinding;
 import net.ivpn.client.databinding.ViewNetworkMainBinding;
 import net.ivpn.client.databinding.ViewWifiItemBinding;
+import net.ivpn.client.ui.common.AsyncDiffAdapter;
 import net.ivpn.client.vpn.model.NetworkState;
 import net.ivpn.client.vpn.model.WifiItem;
 
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Objects;
 
 import javax.inject.Inject;
 
 import static net.ivpn.client.vpn.model.NetworkState.DEFAULT;
 import static net.ivpn.client.vpn.model.NetworkState.NONE;
 
-public class NetworkRecyclerViewAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+public class NetworkRecyclerViewAdapter extends AsyncDiffAdapter<WifiItem> {
     private static final int WIFI_ITEM = 0;
     private static final int NETWORK_FEATURE_DESCRIPTION = 1;
     private static final int COMMON_ITEM = 2;
@@ -52,12 +54,19 @@ public class NetworkRecyclerViewAdapter extends RecyclerView.Adapter<RecyclerVie
     }
 
     @Override
-    public int getItemCount() {
-        if (isNetworkRulesEnabled) {
-            return wifiItemList.size() + 2;
-        } else {
-            return 1;
-        }
+    protected int getHeaderCount() {
+        return isNetworkRulesEnabled ? 2 : 1;
+    }
+
+    @Override
+    protected String getKey(WifiItem wifiItem) {
+        return wifiItem.getSsid();
+    }
+
+    @Override
+    protected boolean areContentsTheSame(WifiItem oldItem, WifiItem newItem) {
+        return Objects.equals(oldItem.getTitle(), newItem.getTitle())
+                && oldItem.getNetworkState() == newItem.getNetworkState();
     }
 
     @NonNull
@@ -83,7 +92,7 @@ public class NetworkRecyclerViewAdapter extends RecyclerView.Adapter<RecyclerVie
     @Override
     public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
         if (holder instanceof WifiItemViewHolder) {
-            ((WifiItemViewHolder) holder).bind(wifiItemList.get(position - 2));
+            ((WifiItemViewHolder) holder).bind(getItem(position));
         } else if (holder instanceof CommonNetworkViewHolder) {
             ((CommonNetworkViewHolder) holder).bind();
         } else if (holder instanceof NetworkFeatureViewHolder) {
@@ -93,13 +102,29 @@ public class NetworkRecyclerViewAdapter extends RecyclerView.Adapter<RecyclerVie
 
     public void setWifiItemList(List<WifiItem> wifiItemList) {
         this.wifiItemList = wifiItemList;
+        if (isNetworkRulesEnabled) {
+            submitList(wifiItemList);
+        }
     }
 
     public void setNetworkRulesEnabled(boolean isNetworkWatcherFeatureEnabled) {
         if (isNetworkRulesEnabled != isNetworkWatcherFeatureEnabled) {
-            this.isNetworkRulesEnabled = isNetworkWatcherFeatureEnabled;
-            notifyDataSetChanged();
+            applyNetworkRulesState(isNetworkWatcherFeatureEnabled);
+        }
+    }
+
+    //Wifi items and common behaviour row are shown only while network rules are enabled.
+    private void applyNetworkRulesState(boolean isEnabled) {
+        if (isEnabled) {
+            isNetworkRulesEnabled = true;
+            notifyItemInserted(1);
+            submitList(wifiItemList);
+        } else {
+            submitList(null);
+            isNetworkRulesEnabled = false;
+            notifyItemRemoved(1);
         }
+        notifyItemChanged(0);
     }
 
     public void setDefaultNetworkState(NetworkState defaultState) {
@@ -112,7 +137,8 @@ public class NetworkRecyclerViewAdapter extends RecyclerView.Adapter<RecyclerVie
 
     private void updateUIWithDefaultValue(NetworkState defaultState) {
         setDefaultNetworkState(defaultState);
-        notifyDataSetChanged();
+        //Every row depends on the default state, but their number and order stay the same.
+        notifyItemRangeChanged(0, getItemCount());
     }
 
     public void setOnNetworkFeatureStateChanged(OnNetworkFeatureStateChanged onNetworkFeatureStateChanged) {
@@ -169,12 +195,11 @@ public class NetworkRecyclerViewAdapter extends RecyclerView.Adapter<RecyclerVie
             if (isChecked == isNetworkRulesEnabled) {
                 return;
             }
-            isNetworkRulesEnabled = isChecked;
-            binding.setIsNetworkFilterEnabled(isNetworkRulesEnabled);
+            binding.setIsNetworkFilterEnabled(isChecked);
+            applyNetworkRulesState(isChecked);
             if (onNetworkFeatureStateChanged != null) {
                 onNetworkFeatureStateChanged.onNetworkFeatureStateChanged(isChecked);
             }
-            notifyDataSetChanged();
         }
     }
 
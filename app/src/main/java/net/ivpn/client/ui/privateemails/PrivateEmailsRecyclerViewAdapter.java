@@ -12,15 +12,13 @@ import android.view.ViewGroup;
 import net.ivpn.client.R;
 import net.ivpn.client.databinding.EmailItemBinding;
 import net.ivpn.client.rest.data.privateemails.Email;
+import net.ivpn.client.ui.common.AsyncDiffAdapter;
 
-import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Objects;
 
-public class PrivateEmailsRecyclerViewAdapter
-        extends RecyclerView.Adapter<PrivateEmailsRecyclerViewAdapter.PrivateEmailViewHolder> {
+public class PrivateEmailsRecyclerViewAdapter extends AsyncDiffAdapter<Email> {
 
-    private List<Email> emails = new LinkedList<>();
     private PrivateEmailsNavigator navigator;
     private Email lastUpdatedEmail;
 
@@ -30,25 +28,29 @@ public class PrivateEmailsRecyclerViewAdapter
 
     @NonNull
     @Override
-    public PrivateEmailViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+    public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         LayoutInflater layoutInflater = LayoutInflater.from(parent.getContext());
         EmailItemBinding binding = EmailItemBinding.inflate(layoutInflater, parent, false);
         return new PrivateEmailViewHolder(binding);
     }
 
     @Override
-    public void onBindViewHolder(@NonNull PrivateEmailViewHolder holder, int position) {
-        holder.bind(emails.get(position));
+    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
+        ((PrivateEmailViewHolder) holder).bind(getItem(position));
     }
 
     @Override
-    public int getItemCount() {
-        return emails.size();
+    protected String getKey(Email email) {
+        return email.getEmail();
+    }
+
+    @Override
+    protected boolean areContentsTheSame(Email oldEmail, Email newEmail) {
+        return Objects.equals(oldEmail.getNote(), newEmail.getNote());
     }
 
     public void setEmails(List<Email> emails) {
-        this.emails = new ArrayList<>(emails);
-        notifyDataSetChanged();
+        submitList(emails);
     }
 
     class PrivateEmailViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
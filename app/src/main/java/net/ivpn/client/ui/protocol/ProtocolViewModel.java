@@ -135,7 +135,7 @@ public class ProtocolViewModel {
     private void tryEnableWgProtocol() {
         LOGGER.info("Try to enable WireGuard protocol");
         if (wireGuardPublicKey == null || wireGuardPublicKey.isEmpty()) {
-            keyController.generateKeys();
+            keyController.regenerateKeys(null);
             return;
         }
 
@@ -144,7 +144,7 @@ public class ProtocolViewModel {
 
     void reGenerateKeys() {
         LOGGER.info(TAG, "Regenerate keys");
-        keyController.regenerateKeys();
+        keyController.regenerateKeys(null);
     }
 
     private void setProtocol(Protocol protocol) {
@@ -212,6 +212,13 @@ public class ProtocolViewModel {
                 wireGuardPublicKey = settings.getWireGuardPublicKey();
             }
 
+            @Override
+            public void onKeyRotated() {
+                LOGGER.info("WireGuard public key was added to server and applied to the live tunnel");
+                dataLoading.set(false);
+                wireGuardPublicKey = settings.getWireGuardPublicKey();
+            }
+
             @Override
             public void onKeyGeneratedError(String error, Throwable throwable) {
                 LOGGER.info("onKeyGeneratedError error = " + error + " throwable = " + throwable);
@@ -0,0 +1,233 @@
+package net.ivpn.client.ui.serverlist;
+
+import net.ivpn.client.rest.data.model.Server;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Search and sort index of a server list. Country, city and country code of every server are split
+ * into normalized tokens and put into a prefix trie, where every node keeps the servers under it,
+ * so a query costs its length plus the number of matches. Name order is fixed on build and latency
+ * order is recalculated on {@link #updateLatencies(LatencyProvider)}, so a query only sorts its matches.
+ */
+public class ServerIndex {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    //Index, rank and favourite flag are packed into one long for sorting, see query.
+    private static final int INDEX_BITS = 21;
+    private static final long INDEX_MASK = (1L << INDEX_BITS) - 1;
+
+    public enum Order {
+        NAME,
+        LATENCY
+    }
+
+    private final List<Server> servers;
+    private final Map<String, Integer> positions = new HashMap<>();
+    private final TrieNode root = new TrieNode();
+    private final int[] latencyRanks;
+
+    public ServerIndex(Collection<Server> servers) {
+        this.servers = new ArrayList<>(servers);
+        Collections.sort(this.servers, Server.comparator);
+        for (int i = 0; i < this.servers.size(); i++) {
+            Server server = this.servers.get(i);
+            positions.put(server.getGateway(), i);
+            for (String token : getTokens(server)) {
+                insert(token, i);
+            }
+        }
+        root.seal();
+        latencyRanks = new int[this.servers.size()];
+        for (int i = 0; i < latencyRanks.length; i++) {
+            latencyRanks[i] = i;
+        }
+    }
+
+    /**
+     * @return true if the index is built from the same server instances, so it doesn't need to be rebuilt.
+     */
+    public boolean isBuiltFrom(Collection<Server> servers) {
+        if (servers.size() != this.servers.size()) {
+            return false;
+        }
+        for (Server server : servers) {
+            Integer position = positions.get(server.getGateway());
+            if (position == null || this.servers.get(position) != server) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int size() {
+        return servers.size();
+    }
+
+    /**
+     * Recalculate latency order, servers without latency go last in name order.
+     */
+    public void updateLatencies(LatencyProvider provider) {
+        int size = servers.size();
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            long latency = provider.getLatency(servers.get(i));
+            long latencyKey = latency < 0 ? INDEX_MASK : Math.min(latency, INDEX_MASK - 1);
+            keys[i] = latencyKey << INDEX_BITS | i;
+        }
+        Arrays.sort(keys);
+        for (int rank = 0; rank < size; rank++) {
+            latencyRanks[(int) (keys[rank] & INDEX_MASK)] = rank;
+        }
+    }
+
+    /**
+     * @param query              Words typed by the user, every word has to be a prefix of some token
+     *                           of the server. Empty query matches every server.
+     * @param favouriteGateways  Gateways of servers that go first, may be empty.
+     */
+    public List<Server> query(String query, Order order, Collection<String> favouriteGateways) {
+        int[] matches = match(query);
+        long[] keys = new long[matches.length];
+        for (int i = 0; i < matches.length; i++) {
+            int index = matches[i];
+            long rank = order == Order.LATENCY ? latencyRanks[index] : index;
+            long favouriteKey = favouriteGateways.contains(servers.get(index).getGateway()) ? 0 : 1;
+            keys[i] = favouriteKey << (2 * INDEX_BITS) | rank << INDEX_BITS | index;
+        }
+        Arrays.sort(keys);
+        List<Server> result = new ArrayList<>(keys.length);
+        for (long key : keys) {
+            result.add(servers.get((int) (key & INDEX_MASK)));
+        }
+        return result;
+    }
+
+    int[] match(String query) {
+        List<String> words = normalize(query == null ? "" : query);
+        if (words.isEmpty()) {
+            int[] all = new int[servers.size()];
+            for (int i = 0; i < all.length; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+        int[] result = null;
+        for (String word : words) {
+            TrieNode node = find(word);
+            if (node == null) {
+                return new int[0];
+            }
+            result = result == null ? node.servers : intersect(result, node.servers);
+        }
+        return result;
+    }
+
+    static List<String> normalize(String text) {
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFD);
+        normalized = MARKS.matcher(normalized).replaceAll("").toLowerCase(Locale.ENGLISH);
+        List<String> words = new ArrayList<>();
+        for (String word : SEPARATORS.split(normalized)) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    private static List<String> getTokens(Server server) {
+        List<String> tokens = new ArrayList<>();
+        for (String field : new String[]{server.getCountryCode(), server.getCountry(), server.getCity()}) {
+            if (field != null) {
+                tokens.addAll(normalize(field));
+            }
+        }
+        return tokens;
+    }
+
+    private void insert(String token, int index) {
+        TrieNode node = root;
+        for (int i = 0; i < token.length(); i++) {
+            node = node.getOrCreateChild(token.charAt(i));
+            node.add(index);
+        }
+    }
+
+    private TrieNode find(String prefix) {
+        TrieNode node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.children.get(prefix.charAt(i));
+        }
+        return node;
+    }
+
+    //Both arrays are sorted.
+    private static int[] intersect(int[] first, int[] second) {
+        int[] result = new int[Math.min(first.length, second.length)];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                result[size++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    public interface LatencyProvider {
+        /**
+         * @return Latency in milliseconds, negative if it is unknown.
+         */
+        long getLatency(Server server);
+    }
+
+    private static class TrieNode {
+        private final Map<Character, TrieNode> children = new HashMap<>();
+        private int[] servers = new int[2];
+        private int size;
+
+        private TrieNode getOrCreateChild(char character) {
+            TrieNode child = children.get(character);
+            if (child == null) {
+                child = new TrieNode();
+                children.put(character, child);
+            }
+            return child;
+        }
+
+        //Servers are added in increasing order, a server with several tokens under the node is kept once.
+        private void add(int index) {
+            if (size > 0 && servers[size - 1] == index) {
+                return;
+            }
+            if (size == servers.length) {
+                servers = Arrays.copyOf(servers, size * 2);
+            }
+            servers[size++] = index;
+        }
+
+        private void seal() {
+            servers = Arrays.copyOf(servers, size);
+            for (TrieNode child : children.values()) {
+                child.seal();
+            }
+        }
+    }
+}
@@ -5,7 +5,9 @@ import androidx.databinding.DataBindingUtil;
 import android.os.Bundle;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.SearchView;
 import androidx.appcompat.widget.Toolbar;
+import android.view.Menu;
 import android.view.MenuItem;
 
 import net.ivpn.client.IVPNApplication;
@@ -24,6 +26,8 @@ import javax.inject.Inject;
 public class ServersListActivity extends AppCompatActivity implements ServersListNavigator {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ServersListActivity.class);
+    private static final String QUERY_STATE = "QUERY_STATE";
+    private static final String ORDER_STATE = "ORDER_STATE";
 
     private ActivityServerListBinding binding;
     private ServersListPagerAdapter adapter;
@@ -31,12 +35,18 @@ public class ServersListActivity extends AppCompatActivity implements ServersLis
     ServersListCommonViewModel viewModel;
 
     private ServerType serverType;
+    private String query = "";
+    private ServerIndex.Order order = ServerIndex.Order.NAME;
 
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
         IVPNApplication.getApplication().appComponent.provideActivityComponent().create().inject(this);
         super.onCreate(savedInstanceState);
         LOGGER.info("onCreate");
+        if (savedInstanceState != null) {
+            query = savedInstanceState.getString(QUERY_STATE, "");
+            order = (ServerIndex.Order) savedInstanceState.getSerializable(ORDER_STATE);
+        }
         initExtras();
         init();
         initToolbar();
@@ -52,12 +62,59 @@ public class ServersListActivity extends AppCompatActivity implements ServersLis
         viewModel.onResume();
     }
 
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putString(QUERY_STATE, query);
+        outState.putSerializable(ORDER_STATE, order);
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.menu_server_list, menu);
+        menu.findItem(R.id.action_sort_by_latency).setChecked(order == ServerIndex.Order.LATENCY);
+        MenuItem searchItem = menu.findItem(R.id.action_search);
+        SearchView searchView = (SearchView) searchItem.getActionView();
+        searchView.setQueryHint(getString(R.string.servers_list_search));
+        if (!query.isEmpty()) {
+            //Restored before the listener is set, the fragments already have the query.
+            searchItem.expandActionView();
+            searchView.setQuery(query, false);
+        }
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                searchView.clearFocus();
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String query) {
+                //Index lookup is cheap enough to filter on every key.
+                ServersListActivity.this.query = query;
+                if (adapter != null) {
+                    adapter.setQuery(query);
+                }
+                return true;
+            }
+        });
+        return true;
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem menuItem) {
         if (menuItem.getItemId() == android.R.id.home) {
             onBackPressed();
             return false;
         }
+        if (menuItem.getItemId() == R.id.action_sort_by_latency) {
+            menuItem.setChecked(!menuItem.isChecked());
+            order = menuItem.isChecked() ? ServerIndex.Order.LATENCY : ServerIndex.Order.NAME;
+            if (adapter != null) {
+                adapter.setOrder(order);
+            }
+            return true;
+        }
         return super.onOptionsItemSelected(menuItem);
     }
 
@@ -131,4 +188,12 @@ public class ServersListActivity extends AppCompatActivity implements ServersLis
     public ServerType getServerType() {
         return serverType;
     }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public ServerIndex.Order getOrder() {
+        return order;
+    }
 }
\ No newline at end of file
@@ -78,4 +78,34 @@ public class ServersListPagerAdapter extends FragmentStatePagerAdapter {
         ((FavouriteServersListFragment) registeredFragments.get(0)).applyPendingAction();
         ((ServersListFragment) registeredFragments.get(1)).applyPendingAction();
     }
+
+    /**
+     * Apply the query to the fragments that are shown. Fragments created later take it
+     * from {@link ServersListActivity#getQuery()}.
+     */
+    public void setQuery(String query) {
+        Fragment favourites = registeredFragments.get(0);
+        if (favourites != null) {
+            ((FavouriteServersListFragment) favourites).setQuery(query);
+        }
+        Fragment all = registeredFragments.get(1);
+        if (all != null) {
+            ((ServersListFragment) all).setQuery(query);
+        }
+    }
+
+    /**
+     * Apply the order to the fragments that are shown. Fragments created later take it
+     * from {@link ServersListActivity#getOrder()}.
+     */
+    public void setOrder(ServerIndex.Order order) {
+        Fragment favourites = registeredFragments.get(0);
+        if (favourites != null) {
+            ((FavouriteServersListFragment) favourites).setOrder(order);
+        }
+        Fragment all = registeredFragments.get(1);
+        if (all != null) {
+            ((ServersListFragment) all).setOrder(order);
+        }
+    }
 }
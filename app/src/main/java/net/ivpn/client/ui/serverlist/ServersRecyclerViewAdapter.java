@@ -8,35 +8,68 @@ import android.view.LayoutInflater;
 import android.view.ViewGroup;
 
 import net.ivpn.client.IVPNApplication;
-import net.ivpn.client.common.pinger.OnPingFinishListener;
+import net.ivpn.client.common.pinger.OnPingResultsListener;
 import net.ivpn.client.common.pinger.PingProvider;
 import net.ivpn.client.common.pinger.PingResultFormatter;
+import net.ivpn.client.common.utils.DateUtil;
 import net.ivpn.client.databinding.FastestServerItemBinding;
 import net.ivpn.client.databinding.ServerItemBinding;
 import net.ivpn.client.rest.data.model.Server;
+import net.ivpn.client.ui.common.AsyncDiffAdapter;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 import javax.inject.Inject;
 
-public class ServersRecyclerViewAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+public class ServersRecyclerViewAdapter extends AsyncDiffAdapter<Server> {
 
     private static final int FASTEST_SERVER_ITEM = 0;
     private static final int SERVER_ITEM = 1;
+    private static final Object PING_PAYLOAD = new Object();
+    private static final long RERANK_PERIOD = DateUtil.SECOND;
 
+    private final OnPingResultsListener pingResultsListener = this::onPingResults;
+    private final ServerIndex.LatencyProvider latencyProvider = this::getLatency;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable rerankTask = this::rerank;
     private List<Server> servers = Collections.emptyList();
+    private ServerIndex index = new ServerIndex(servers);
+    private String query = "";
+    private ServerIndex.Order order = ServerIndex.Order.NAME;
+    private Set<String> favouriteGateways = Collections.emptySet();
     private FastestServerItemBinding binding;
     private Server forbiddenServer;
     private ServersListNavigator navigator;
     private boolean isFastestServerAllowed;
+    private boolean isRerankScheduled;
+    @Inject PingProvider pingProvider;
 
     public ServersRecyclerViewAdapter(ServersListNavigator navigator, boolean allowFastestServer) {
+        IVPNApplication.getApplication().appComponent.provideActivityComponent().create().inject(this);
         this.navigator = navigator;
         this.isFastestServerAllowed = allowFastestServer;
     }
 
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        pingProvider.addOnPingResultsListener(pingResultsListener);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        pingProvider.removeOnPingResultsListener(pingResultsListener);
+        handler.removeCallbacks(rerankTask);
+        isRerankScheduled = false;
+    }
+
     @Override
     public int getItemViewType(int position) {
         if (isFastestServerAllowed && position == 0) {
@@ -61,13 +94,34 @@ public class ServersRecyclerViewAdapter extends RecyclerView.Adapter<RecyclerVie
     @Override
     public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
         if (holder instanceof ServerViewHolder) {
-            ((ServerViewHolder) holder).bind(getServerFor(position));
+            ((ServerViewHolder) holder).bind(getItem(position));
         }
     }
 
     @Override
-    public int getItemCount() {
-        return isFastestServerAllowed ? servers.size() + 1 : servers.size();
+    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (holder instanceof ServerViewHolder && !payloads.isEmpty() && payloads.contains(PING_PAYLOAD)) {
+            ((ServerViewHolder) holder).bindPing(pingProvider.getPingResult(getItem(position)));
+            return;
+        }
+        super.onBindViewHolder(holder, position, payloads);
+    }
+
+    @Override
+    protected int getHeaderCount() {
+        return isFastestServerAllowed ? 1 : 0;
+    }
+
+    @Override
+    protected String getKey(Server server) {
+        return server.getGateway();
+    }
+
+    @Override
+    protected boolean areContentsTheSame(Server oldServer, Server newServer) {
+        return Objects.equals(oldServer.getCity(), newServer.getCity())
+                && Objects.equals(oldServer.getCountryCode(), newServer.getCountryCode())
+                && Objects.equals(oldServer.getCountry(), newServer.getCountry());
     }
 
     public void replaceData(List<Server> servers) {
@@ -75,85 +129,136 @@ public class ServersRecyclerViewAdapter extends RecyclerView.Adapter<RecyclerVie
     }
 
     public void removeServer(Server server) {
-        if (!servers.contains(server)) {
+        List<Server> servers = new ArrayList<>(this.servers);
+        if (!servers.remove(server)) {
             return;
         }
-
-        int position = getPositionFor(server);
-        servers.remove(server);
-        if (binding != null) {
-            binding.setIsServerListEmpty(servers.isEmpty());
-            binding.executePendingBindings();
-        }
-        notifyItemRemoved(position);
+        setServers(servers);
     }
 
     public void addServer(Server server) {
+        List<Server> servers = new ArrayList<>(this.servers);
         if (servers.contains(server)) {
             return;
         }
-
         servers.add(server);
-        Collections.sort(servers, Server.comparator);
+        setServers(servers);
+    }
 
-        int position = getPositionFor(server);
-        if (binding != null) {
-            binding.setIsServerListEmpty(servers.isEmpty());
-            binding.executePendingBindings();
+    /**
+     * Show only servers whose country, city or country code starts with every word of the query.
+     */
+    public void setQuery(String query) {
+        this.query = query != null ? query : "";
+        applyFilter();
+    }
+
+    public void setOrder(ServerIndex.Order order) {
+        this.order = order;
+        if (order == ServerIndex.Order.LATENCY) {
+            index.updateLatencies(latencyProvider);
         }
-        notifyItemInserted(position);
+        applyFilter();
+    }
+
+    /**
+     * Favourite servers go first in any order.
+     */
+    public void setFavouriteServers(List<Server> favourites) {
+        Set<String> gateways = new HashSet<>();
+        for (Server server : favourites) {
+            gateways.add(server.getGateway());
+        }
+        favouriteGateways = gateways;
+        applyFilter();
     }
 
     private void setServers(List<Server> servers) {
-        Collections.sort(servers, Server.comparator);
         this.servers = servers;
+        //Servers are refreshed far more often than they are changed, the index is kept for the same servers.
+        if (!index.isBuiltFrom(servers)) {
+            index = new ServerIndex(servers);
+            if (order == ServerIndex.Order.LATENCY) {
+                index.updateLatencies(latencyProvider);
+            }
+        }
+        applyFilter();
         if (binding != null) {
             binding.setIsServerListEmpty(servers.isEmpty());
             binding.executePendingBindings();
         }
-        notifyDataSetChanged();
+    }
+
+    private void applyFilter() {
+        submitList(index.query(query, order, favouriteGateways));
+    }
+
+    private long getLatency(Server server) {
+        PingResultFormatter result = pingProvider.getPingResult(server);
+        return result != null && result.isPingAvailable() ? result.getPing() : -1;
     }
 
     public void setForbiddenServer(Server server) {
         forbiddenServer = server;
     }
 
-    private int getPositionFor(Server server) {
-        return isFastestServerAllowed ? servers.indexOf(server) + 1 : servers.indexOf(server);
+    //Only the ping lights of the rows are rebound when a batch of results arrives.
+    private void onPingResults(Map<String, PingResultFormatter> results) {
+        List<Server> servers = getItems();
+        for (int i = 0; i < servers.size(); i++) {
+            if (results.containsKey(servers.get(i).getGateway())) {
+                notifyItemChanged(i + getHeaderCount(), PING_PAYLOAD);
+            }
+        }
+        if (order == ServerIndex.Order.LATENCY) {
+            scheduleRerank();
+        }
     }
 
-    private Server getServerFor(int position) {
-        return isFastestServerAllowed ? servers.get(position - 1) : servers.get(position);
+    //Batches come every 100 ms during a ping round, sorting on each of them would keep the rows
+    //moving. The list is re-ranked at most once per RERANK_PERIOD, the last batch included.
+    private void scheduleRerank() {
+        if (isRerankScheduled) {
+            return;
+        }
+        isRerankScheduled = true;
+        handler.postDelayed(rerankTask, RERANK_PERIOD);
     }
 
-    public class ServerViewHolder extends RecyclerView.ViewHolder implements OnPingFinishListener {
+    private void rerank() {
+        isRerankScheduled = false;
+        if (order != ServerIndex.Order.LATENCY) {
+            return;
+        }
+        index.updateLatencies(latencyProvider);
+        applyFilter();
+    }
+
+    public class ServerViewHolder extends RecyclerView.ViewHolder {
 
         private ServerItemBinding binding;
-        private Handler handler;
-        @Inject PingProvider pingProvider;
 
         ServerViewHolder(ServerItemBinding binding) {
             super(binding.getRoot());
-            IVPNApplication.getApplication().appComponent.provideActivityComponent().create().inject(this);
             this.binding = binding;
-            handler = new Handler(Looper.getMainLooper());
         }
 
         public void bind(Server server) {
+            PingResultFormatter status = pingProvider.getPingResult(server);
             binding.setServer(server);
-            binding.setPingstatus(null);
+            binding.setPingstatus(status);
             binding.setForbiddenServer(forbiddenServer);
             binding.setNavigator(navigator);
             binding.executePendingBindings();
-            pingProvider.ping(server, this);
+            if (status == null) {
+                //Result comes with the next batch.
+                pingProvider.ping(server, null);
+            }
         }
 
-        @Override
-        public void onPingFinish(final PingResultFormatter status) {
-            handler.post(() -> {
-                binding.setPingstatus(status);
-                binding.executePendingBindings();
-            });
+        void bindPing(PingResultFormatter status) {
+            binding.setPingstatus(status);
+            binding.executePendingBindings();
         }
     }
 
@@ -18,6 +18,7 @@ import net.ivpn.client.databinding.FragmentServerListBinding;
 import net.ivpn.client.rest.data.model.Server;
 import net.ivpn.client.ui.dialog.DialogBuilder;
 import net.ivpn.client.ui.dialog.Dialogs;
+import net.ivpn.client.ui.serverlist.ServerIndex;
 import net.ivpn.client.ui.serverlist.ServersListActivity;
 import net.ivpn.client.ui.serverlist.ServersListNavigator;
 import net.ivpn.client.ui.serverlist.ServersRecyclerViewAdapter;
@@ -35,6 +36,7 @@ public class ServersListFragment extends Fragment implements ServersListNavigato
     private FragmentServerListBinding binding;
     @Inject
     ServersListViewModel viewmodel;
+    private ServersRecyclerViewAdapter adapter;
     private ServersListNavigator navigator;
 
     private ServerType serverType;
@@ -78,6 +80,7 @@ public class ServersListFragment extends Fragment implements ServersListNavigato
     public void onResume() {
         super.onResume();
         viewmodel.start(serverType);
+        adapter.setFavouriteServers(viewmodel.getFavouriteServers());
     }
 
     @Override
@@ -90,8 +93,10 @@ public class ServersListFragment extends Fragment implements ServersListNavigato
         viewmodel.setServerType(serverType);
         binding.setViewmodel(viewmodel);
 
-        ServersRecyclerViewAdapter adapter = new ServersRecyclerViewAdapter(this,
-                viewmodel.isFastestServerAllowed());
+        adapter = new ServersRecyclerViewAdapter(this, viewmodel.isFastestServerAllowed());
+        ServersListActivity activity = (ServersListActivity) getActivity();
+        adapter.setQuery(activity.getQuery());
+        adapter.setOrder(activity.getOrder());
         binding.recyclerView.setAdapter(adapter);
         binding.recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
         binding.swipeRefreshLayout.setColorSchemeResources(R.color.colorPrimary,
@@ -101,6 +106,7 @@ public class ServersListFragment extends Fragment implements ServersListNavigato
     public void applyPendingAction() {
         LOGGER.info("applyPendingAction");
         viewmodel.applyPendingAction();
+        adapter.setFavouriteServers(viewmodel.getFavouriteServers());
     }
 
     public void cancel() {
@@ -108,6 +114,18 @@ public class ServersListFragment extends Fragment implements ServersListNavigato
         viewmodel.cancel();
     }
 
+    public void setQuery(String query) {
+        if (adapter != null) {
+            adapter.setQuery(query);
+        }
+    }
+
+    public void setOrder(ServerIndex.Order order) {
+        if (adapter != null) {
+            adapter.setOrder(order);
+        }
+    }
+
     @Override
     public void onServerSelected(Server server, Server forbiddenServer) {
         LOGGER.info("Server = " + server + " forbidden server = " + forbiddenServer);
@@ -123,6 +141,7 @@ public class ServersListFragment extends Fragment implements ServersListNavigato
     public void onServerLongClick(Server server) {
         LOGGER.info("onServerLongClick server = " + server);
         viewmodel.addFavouriteServer(server);
+        adapter.setFavouriteServers(viewmodel.getFavouriteServers());
         ((ServersListActivity) getActivity()).notifyFavouritesChanged(true);
     }
 
@@ -104,6 +104,10 @@ public class ServersListViewModel extends BaseObservable {
         pendingServer = server;
     }
 
+    List<Server> getFavouriteServers() {
+        return serversRepository.getFavouritesServers();
+    }
+
     void setSettingFastestServer() {
         serversRepository.fastestServerSelected();
     }
@@ -10,19 +10,20 @@ import android.widget.CompoundButton;
 import net.ivpn.client.R;
 import net.ivpn.client.databinding.ViewFastestSettingServerItemBinding;
 import net.ivpn.client.rest.data.model.Server;
+import net.ivpn.client.ui.common.AsyncDiffAdapter;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
 
-public class FastestSettingViewAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+public class FastestSettingViewAdapter extends AsyncDiffAdapter<Server> {
 
     private static final int SERVER_ITEM = 0;
     private static final int DESCRIPTION_ITEM = 1;
 
-    private List<Server> servers = Collections.emptyList();
     private Set<Server> excludedServers = Collections.emptySet();
 
     private OnFastestSettingChangedListener listener;
@@ -56,13 +57,24 @@ public class FastestSettingViewAdapter extends RecyclerView.Adapter<RecyclerView
     @Override
     public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
         if (holder instanceof ServerViewHolder) {
-            ((ServerViewHolder) holder).bind(getServerFor(position - 1));
+            ((ServerViewHolder) holder).bind(getItem(position));
         }
     }
 
     @Override
-    public int getItemCount() {
-        return servers.size() + 1;
+    protected int getHeaderCount() {
+        return 1;
+    }
+
+    @Override
+    protected String getKey(Server server) {
+        return server.getGateway();
+    }
+
+    @Override
+    protected boolean areContentsTheSame(Server oldServer, Server newServer) {
+        return Objects.equals(oldServer.getCity(), newServer.getCity())
+                && Objects.equals(oldServer.getCountryCode(), newServer.getCountryCode());
     }
 
     public void replaceData(List<Server> servers) {
@@ -71,8 +83,7 @@ public class FastestSettingViewAdapter extends RecyclerView.Adapter<RecyclerView
 
     private void setServers(List<Server> servers) {
         Collections.sort(servers, Server.comparator);
-        this.servers = servers;
-        notifyDataSetChanged();
+        submitList(servers);
     }
 
     public void setExcludedServers(List<Server> excludedServers) {
@@ -83,10 +94,6 @@ public class FastestSettingViewAdapter extends RecyclerView.Adapter<RecyclerView
         this.listener = listener;
     }
 
-    private Server getServerFor(int position) {
-        return servers.get(position);
-    }
-
     class ServerViewHolder extends RecyclerView.ViewHolder
         implements CompoundButton.OnCheckedChangeListener, View.OnClickListener {
 
@@ -122,7 +129,7 @@ public class FastestSettingViewAdapter extends RecyclerView.Adapter<RecyclerView
         @Override
         public void onClick(View view) {
             boolean isExcluded = excludedServers.contains(server);
-            boolean isLastServer = servers.size() - excludedServers.size() <= 1;
+            boolean isLastServer = getItems().size() - excludedServers.size() <= 1;
             if (isExcluded || !isLastServer) {
                 binding.checkbox.setChecked(isExcluded);
             } else {
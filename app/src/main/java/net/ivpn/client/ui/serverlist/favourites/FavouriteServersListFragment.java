@@ -18,6 +18,7 @@ import net.ivpn.client.databinding.FragmentFavouriteServersListBinding;
 import net.ivpn.client.rest.data.model.Server;
 import net.ivpn.client.ui.dialog.DialogBuilder;
 import net.ivpn.client.ui.dialog.Dialogs;
+import net.ivpn.client.ui.serverlist.ServerIndex;
 import net.ivpn.client.ui.serverlist.ServersListActivity;
 import net.ivpn.client.ui.serverlist.ServersListNavigator;
 import net.ivpn.client.ui.serverlist.ServersRecyclerViewAdapter;
@@ -101,6 +102,9 @@ public class FavouriteServersListFragment extends Fragment implements ServersLis
         binding.setViewmodel(viewmodel);
 
         adapter = new ServersRecyclerViewAdapter(this, viewmodel.isFastestServerAllowed());
+        ServersListActivity activity = (ServersListActivity) getActivity();
+        adapter.setQuery(activity.getQuery());
+        adapter.setOrder(activity.getOrder());
         binding.recyclerView.setAdapter(adapter);
         binding.recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
         binding.recyclerView.setEmptyView(view.findViewById(R.id.empty_view));
@@ -113,6 +117,18 @@ public class FavouriteServersListFragment extends Fragment implements ServersLis
     public void cancel() {
     }
 
+    public void setQuery(String query) {
+        if (adapter != null) {
+            adapter.setQuery(query);
+        }
+    }
+
+    public void setOrder(ServerIndex.Order order) {
+        if (adapter != null) {
+            adapter.setOrder(order);
+        }
+    }
+
     @Override
     public void onServerSelected(Server server, Server forbiddenServer) {
         LOGGER.info("onServerSelected server = " + server + " forbiddenServer = " + forbiddenServer);
@@ -4,6 +4,9 @@ import android.app.Activity;
 import android.content.ActivityNotFoundException;
 import android.content.Intent;
 import androidx.databinding.DataBindingUtil;
+import androidx.databinding.Observable;
+import androidx.databinding.ObservableBoolean;
+import androidx.databinding.ViewStubProxy;
 import android.net.Uri;
 import android.net.VpnService;
 import android.os.Build;
@@ -79,6 +82,13 @@ public class SettingsActivity extends AppCompatActivity
         viewModel.onResume();
     }
 
+    @Override
+    protected void onPause() {
+        LOGGER.info("onPause");
+        super.onPause();
+        viewModel.onPause();
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem menuItem) {
         if (menuItem.getItemId() == android.R.id.home) {
@@ -120,6 +130,29 @@ public class SettingsActivity extends AppCompatActivity
     private void init() {
         viewModel.setNavigator(this);
         binding.contentLayout.setViewmodel(viewModel);
+        bindSection(binding.contentLayout.sectionAccount, viewModel.authenticated);
+        bindSection(binding.contentLayout.sectionLoading, viewModel.dataLoading);
+    }
+
+    //Sections are inflated the first time they are shown, most users never see them.
+    private void bindSection(ViewStubProxy section, ObservableBoolean isShown) {
+        showSection(section, isShown.get());
+        isShown.addOnPropertyChangedCallback(new Observable.OnPropertyChangedCallback() {
+            @Override
+            public void onPropertyChanged(Observable sender, int propertyId) {
+                showSection(section, isShown.get());
+            }
+        });
+    }
+
+    private void showSection(ViewStubProxy section, boolean isShown) {
+        if (!section.isInflated()) {
+            if (!isShown) {
+                return;
+            }
+            section.getViewStub().inflate();
+        }
+        section.getRoot().setVisibility(isShown ? View.VISIBLE : View.GONE);
     }
 
     private void initToolbar() {
@@ -7,6 +7,8 @@ import androidx.databinding.ObservableField;
 import androidx.databinding.ObservableLong;
 import android.net.Uri;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.MotionEvent;
 import android.view.View;
 import android.widget.CompoundButton.OnCheckedChangeListener;
@@ -21,9 +23,12 @@ import net.ivpn.client.common.billing.SubscriptionState;
 import net.ivpn.client.common.pinger.OnPingFinishListener;
 import net.ivpn.client.common.pinger.PingProvider;
 import net.ivpn.client.common.pinger.PingResultFormatter;
+import net.ivpn.client.common.prefs.OnSettingsChangedListener;
 import net.ivpn.client.common.prefs.ServerType;
 import net.ivpn.client.common.prefs.ServersRepository;
 import net.ivpn.client.common.prefs.Settings;
+import net.ivpn.client.common.prefs.SettingsSnapshot;
+import net.ivpn.client.common.prefs.SettingsSnapshotProvider;
 import net.ivpn.client.common.prefs.UserPreference;
 import net.ivpn.client.common.utils.FileUtils;
 import net.ivpn.client.common.utils.SentryUtil;
@@ -41,6 +46,8 @@ import net.ivpn.client.vpn.controller.VpnBehaviorController;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Objects;
+
 import javax.inject.Inject;
 
 public class SettingsViewModel extends BaseObservable {
@@ -59,6 +66,7 @@ public class SettingsViewModel extends BaseObservable {
     public final ObservableBoolean fastestServer = new ObservableBoolean();
     public final ObservableBoolean logging = new ObservableBoolean();
     public final ObservableBoolean crashLogging = new ObservableBoolean();
+    public final ObservableBoolean idlePause = new ObservableBoolean();
     public final ObservableBoolean multiHop = new ObservableBoolean();
     public final ObservableBoolean killSwitch = new ObservableBoolean();
     public final ObservableBoolean isSentryEnabled = new ObservableBoolean();
@@ -73,10 +81,32 @@ public class SettingsViewModel extends BaseObservable {
     public final ObservableField<PingResultFormatter> pingResultExitServer = new ObservableField<>();
     public final ObservableField<PingResultFormatter> pingResultEnterServer = new ObservableField<>();
 
-    public OnCheckedChangeListener enableLoggingListener = (compoundButton, value) -> enableLogging(value);
-    public OnCheckedChangeListener enableCrashLoggingListener = (compoundButton, value) -> enableCrashLogging(value);
-    public OnCheckedChangeListener enableMultiHopListener = (compoundButton, value) -> enableMultiHop(value);
-    public OnCheckedChangeListener enableKillSwitch = (compoundButton, value) -> enableKillSwitch(value);
+    //Switches are bound to the fields, so a switch that only follows its field is not a user's change.
+    public OnCheckedChangeListener enableLoggingListener = (compoundButton, value) -> {
+        if (value != logging.get()) {
+            enableLogging(value);
+        }
+    };
+    public OnCheckedChangeListener enableCrashLoggingListener = (compoundButton, value) -> {
+        if (value != crashLogging.get()) {
+            enableCrashLogging(value);
+        }
+    };
+    public OnCheckedChangeListener enableIdlePauseListener = (compoundButton, value) -> {
+        if (value != idlePause.get()) {
+            enableIdlePause(value);
+        }
+    };
+    public OnCheckedChangeListener enableMultiHopListener = (compoundButton, value) -> {
+        if (value != multiHop.get()) {
+            enableMultiHop(value);
+        }
+    };
+    public OnCheckedChangeListener enableKillSwitch = (compoundButton, value) -> {
+        if (value != killSwitch.get()) {
+            enableKillSwitch(value);
+        }
+    };
 
     public View.OnTouchListener multiHopTouchListener = new View.OnTouchListener() {
         @Override
@@ -129,11 +159,15 @@ public class SettingsViewModel extends BaseObservable {
         }
     };
 
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final OnSettingsChangedListener settingsChangedListener = this::applySnapshot;
     private SettingsNavigator navigator;
+    private SettingsSnapshot snapshot;
+    private boolean isPingRequired;
 
     private Settings settings;
+    private SettingsSnapshotProvider snapshotProvider;
     private UserPreference userPreference;
-    private ServersRepository serversRepository;
     private GlobalBehaviorController globalBehaviorController;
     private ProtocolController protocolController;
     private VpnBehaviorController vpnBehaviorController;
@@ -148,10 +182,11 @@ public class SettingsViewModel extends BaseObservable {
                              UserPreference userPreference, HttpClientFactory clientFactory,
                              GlobalBehaviorController globalBehaviorController,
                              ProtocolController protocolController, VpnBehaviorController vpnBehaviorController,
-                             PingProvider pingProvider, BillingManagerWrapper billingManager, SentryUtil sentryUtil) {
+                             PingProvider pingProvider, BillingManagerWrapper billingManager, SentryUtil sentryUtil,
+                             SettingsSnapshotProvider snapshotProvider) {
         this.settings = settings;
+        this.snapshotProvider = snapshotProvider;
         this.userPreference = userPreference;
-        this.serversRepository = serversRepository;
         this.globalBehaviorController = globalBehaviorController;
         this.protocolController = protocolController;
         this.vpnBehaviorController = vpnBehaviorController;
@@ -167,32 +202,52 @@ public class SettingsViewModel extends BaseObservable {
     }
 
     void onResume() {
-        logging.set(isLoggingEnabled());
-        multiHop.set(isMultiHopChecked());
-        isMultiHopEnabled.set(isMultiHopUIEnabled());
-        killSwitch.set(isKillSwitchEnabled());
-        fastestServer.set(isFastestServerEnabled());
         isAlwaysOnVpnSupported.set(Build.VERSION.SDK_INT >= Build.VERSION_CODES.N);
-        enterServer.set(getCurrentServer(ServerType.ENTRY));
-        exitServer.set(getCurrentServer(ServerType.EXIT));
         pingResultExitServer.set(null);
         pingResultEnterServer.set(null);
-        username.set(getUsername());
-        accountType.set(getUserAccountType());
-        isOnFreeTrial.set(isOnFreeTrial());
-        availableUntil.set(getAvailableUntil());
-        isAntiTrackerEnabled.set(isAntiTrackerEnabled());
-        authenticated.set(isAuthenticated());
-        isNativeSubscription.set(isNativeSubscription());
         isStartOnBootEnabled.set(Build.VERSION.SDK_INT <= Build.VERSION_CODES.P);
+        crashLogging.set(sentryUtil.isEnabled);
+        isPingRequired = true;
+
+        //Preferences are read on a background thread, the last state is shown meanwhile.
+        snapshotProvider.addOnSettingsChangedListener(settingsChangedListener);
+        snapshotProvider.getSnapshot().thenAcceptAsync(this::applySnapshot, handler::post);
+    }
+
+    void onPause() {
+        snapshotProvider.removeOnSettingsChangedListener(settingsChangedListener);
+    }
+
+    private void applySnapshot(SettingsSnapshot snapshot) {
+        this.snapshot = snapshot;
+        //Servers are pinged once per resume and again when they are changed.
+        if (isPingRequired || !Objects.equals(enterServer.get(), snapshot.getEntryServer())) {
+            enterServer.set(snapshot.getEntryServer());
+            ping(enterServer.get(), getPingFinishListener(ServerType.ENTRY));
+        }
+        if (isPingRequired || !Objects.equals(exitServer.get(), snapshot.getExitServer())) {
+            exitServer.set(snapshot.getExitServer());
+            ping(exitServer.get(), getPingFinishListener(ServerType.EXIT));
+        }
+        isPingRequired = false;
+        isAntiTrackerEnabled.set(snapshot.isAntiTrackerEnabled());
+        isSentryEnabled.set(snapshot.isSentryEnabled());
+        isUpdatesEnabled.set(snapshot.isUpdatesEnabled());
+        logging.set(snapshot.isLoggingEnabled());
+        idlePause.set(snapshot.isIdlePauseEnabled());
+        multiHop.set(snapshot.isMultiHopEnabled() && isMultihopAllowedByProtocol());
+        isMultiHopEnabled.set(snapshot.isMultiHopCapable());
+        killSwitch.set(snapshot.isKillSwitchEnabled());
+        fastestServer.set(isFastestServerEnabled());
+        username.set(snapshot.getUserLogin());
+        accountType.set(snapshot.getCurrentPlan());
+        isOnFreeTrial.set(snapshot.isUserOnTrial());
+        availableUntil.set(snapshot.getAvailableUntil());
+        authenticated.set(!snapshot.getSessionToken().isEmpty());
+        isNativeSubscription.set(isNativeSubscription());
         subscriptionState.set(getSubscriptionState());
         subscriptionPlan.set(getSubscriptionPlan());
         isManageSubscriptionAvailable.set(isManageSubscriptionAvailable());
-        crashLogging.set(sentryUtil.isEnabled);
-        isSentryEnabled.set(isSentryEnabled());
-        isUpdatesEnabled.set(isUpdatesEnabled());
-        ping(enterServer.get(), getPingFinishListener(ServerType.ENTRY));
-        ping(exitServer.get(), getPingFinishListener(ServerType.EXIT));
     }
 
     private void enableLogging(boolean value) {
@@ -200,6 +255,11 @@ public class SettingsViewModel extends BaseObservable {
         settings.enableLogging(value);
     }
 
+    private void enableIdlePause(boolean value) {
+        idlePause.set(value);
+        settings.enableIdlePause(value);
+    }
+
     private void enableCrashLogging(boolean value) {
         crashLogging.set(value);
         sentryUtil.setState(value);
@@ -266,18 +326,10 @@ public class SettingsViewModel extends BaseObservable {
         };
     }
 
-    private Server getCurrentServer(ServerType serverType) {
-        return serversRepository.getCurrentServer(serverType);
-    }
-
     public String getUsername() {
         return userPreference.getUserLogin();
     }
 
-    private String getUserAccountType() {
-        return userPreference.getCurrentPlan();
-    }
-
     public String getSessionToken() {
         return userPreference.getSessionToken();
     }
@@ -321,76 +373,38 @@ public class SettingsViewModel extends BaseObservable {
         return protocolController.getCurrentProtocol().equals(Protocol.OPENVPN);
     }
 
-    private boolean isLoggingEnabled() {
-        return settings.isLoggingEnabled();
-    }
-
-    private boolean isMultiHopChecked() {
-        return settings.isMultiHopEnabled() && isMultihopAllowedByProtocol();
-    }
-
-    private boolean isMultiHopUIEnabled() {
-        LOGGER.info("Capabilities multihop = " + userPreference.getCapabilityMultiHop());
-        return userPreference.getCapabilityMultiHop();
-    }
-
-    private boolean isKillSwitchEnabled() {
-        return settings.isKillSwitchEnabled();
-    }
-
     private boolean isFastestServerEnabled() {
         if (multiHop.get() || isVpnActive()) {
             return false;
         }
 
-        return settings.isFastestServerEnabled();
+        return snapshot.isFastestServerEnabled();
     }
 
     private boolean isAdvancedKillSwitchDialogEnabled() {
-        return settings.isAdvancedKillSwitchDialogEnabled();
-    }
-
-    private boolean isOnFreeTrial() {
-        return userPreference.isUserOnTrial();
-    }
-
-    private boolean isAntiTrackerEnabled() {
-        return BuildConfig.BUILD_VARIANT.equals("site") || BuildConfig.BUILD_VARIANT.equals("fdroid");
-    }
-
-    private boolean isUpdatesEnabled() {
-        return BuildConfig.BUILD_VARIANT.equals("site");
-    }
-
-    private boolean isAuthenticated() {
-        String token = userPreference.getSessionToken();
-        return !token.isEmpty();
-    }
-
-    private boolean isSentryEnabled() {
-        return !BuildConfig.BUILD_VARIANT.equals("fdroid");
+        return snapshot.isAdvancedKillSwitchDialogEnabled();
     }
 
     private boolean isManageSubscriptionAvailable() {
-        if (!userPreference.getIsActive()) {
+        if (!snapshot.isActive()) {
             return true;
         }
 
-        String paymentMethod = userPreference.getPaymentMethod();
+        String paymentMethod = snapshot.getPaymentMethod();
         Purchase purchase = billingManager.getPurchase();
 
         return paymentMethod.equals("ivpnandroidiap") && purchase != null;
     }
 
     private boolean isNativeSubscription() {
-        String paymentMethod = userPreference.getPaymentMethod();
+        String paymentMethod = snapshot.getPaymentMethod();
         Purchase purchase = billingManager.getPurchase();
         return paymentMethod.equals("ivpnandroidiap") && purchase != null && purchase.isAutoRenewing();
     }
 
     private String getSubscriptionPlan() {
-        String plan = userPreference.getCurrentPlan();
-        if (!userPreference.getIsActive()) {
+        String plan = snapshot.getCurrentPlan();
+        if (!snapshot.isActive()) {
             plan += " (inactive)";
             return plan;
         }
@@ -410,7 +424,7 @@ public class SettingsViewModel extends BaseObservable {
     }
 
     private SubscriptionState getSubscriptionState() {
-        if (!userPreference.getIsActive()) {
+        if (!snapshot.isActive()) {
             return SubscriptionState.INACTIVE;
         }
         Purchase purchase = billingManager.getPurchase();
@@ -425,7 +439,7 @@ public class SettingsViewModel extends BaseObservable {
     }
 
     boolean isActive() {
-        return userPreference.getIsActive();
+        return snapshot != null ? snapshot.isActive() : userPreference.getIsActive();
     }
 
     private void deleteSession(String token) {
@@ -479,8 +493,4 @@ public class SettingsViewModel extends BaseObservable {
                 billingManager.getPurchase().getSku() + "&package=" +
                 BuildConfig.APPLICATION_ID);
     }
-
-    private long getAvailableUntil() {
-        return userPreference.getAvailableUntil();
-    }
 }
\ No newline at end of file
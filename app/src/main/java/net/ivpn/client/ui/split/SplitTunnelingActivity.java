@@ -83,7 +83,7 @@ public class SplitTunnelingActivity extends ViewModelActivity {
     }
 
     private void getAllApplications() {
-        viewModel.getApplicationsList(getPackageManager());
+        viewModel.getApplicationsList();
     }
 
 }
\ No newline at end of file
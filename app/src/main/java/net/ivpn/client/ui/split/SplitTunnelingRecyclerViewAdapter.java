@@ -9,6 +9,7 @@ import android.widget.CompoundButton;
 
 import net.ivpn.client.R;
 import net.ivpn.client.databinding.ApplicationItemBinding;
+import net.ivpn.client.ui.common.AsyncDiffAdapter;
 import net.ivpn.client.ui.split.data.ApplicationItem;
 
 import java.util.ArrayList;
@@ -20,12 +21,11 @@ import java.util.Set;
 
 import javax.inject.Inject;
 
-public class SplitTunnelingRecyclerViewAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+public class SplitTunnelingRecyclerViewAdapter extends AsyncDiffAdapter<ApplicationItem> {
 
     private static final int APP_ITEM = 0;
     private static final int DESCRIPTION_ITEM = 1;
 
-    private List<ApplicationItem> allApps = new LinkedList<>();
     private Set<String> disallowedApps = new HashSet<>();
     private List<ApplicationItemBinding> bindings = new LinkedList<>();
     private OnApplicationItemSelectionChangedListener listener;
@@ -61,13 +61,23 @@ public class SplitTunnelingRecyclerViewAdapter extends RecyclerView.Adapter<Recy
     @Override
     public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
         if (holder instanceof ApplicationInfoViewHolder) {
-            ((ApplicationInfoViewHolder) holder).bind(allApps.get(position - 1));
+            ((ApplicationInfoViewHolder) holder).bind(getItem(position));
         }
     }
 
     @Override
-    public int getItemCount() {
-        return allApps.size() + 1;
+    protected int getHeaderCount() {
+        return 1;
+    }
+
+    @Override
+    protected String getKey(ApplicationItem item) {
+        return item.getPackageName();
+    }
+
+    @Override
+    protected boolean areContentsTheSame(ApplicationItem oldItem, ApplicationItem newItem) {
+        return oldItem.getApplicationName().equals(newItem.getApplicationName());
     }
 
     public void setSelectionChangedListener(OnApplicationItemSelectionChangedListener listener) {
@@ -79,9 +89,9 @@ public class SplitTunnelingRecyclerViewAdapter extends RecyclerView.Adapter<Recy
     }
 
     public void setApplicationsInfoList(List<ApplicationItem> infoList) {
-        this.allApps = new ArrayList<>(infoList);
-        Collections.sort(allApps, ApplicationItem.comparator);
-        notifyDataSetChanged();
+        List<ApplicationItem> apps = new ArrayList<>(infoList);
+        Collections.sort(apps, ApplicationItem.comparator);
+        submitList(apps);
     }
 
     public void setDisallowedApps(List<String> disallowedApps) {
@@ -100,7 +110,7 @@ public class SplitTunnelingRecyclerViewAdapter extends RecyclerView.Adapter<Recy
 
     private void deselectAll() {
         disallowedApps = new HashSet<>();
-        for (ApplicationItem app : allApps) {
+        for (ApplicationItem app : getItems()) {
             disallowedApps.add(app.getPackageName());
         }
         listener.onItemsSelectionStateChanged(false);
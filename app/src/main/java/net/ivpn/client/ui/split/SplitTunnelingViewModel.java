@@ -1,21 +1,19 @@
 package net.ivpn.client.ui.split;
 
-import android.content.pm.ApplicationInfo;
-import android.content.pm.PackageManager;
 import androidx.databinding.ObservableArrayList;
 import androidx.databinding.ObservableBoolean;
 import androidx.databinding.ObservableField;
 import androidx.databinding.ObservableList;
-import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
 
 import com.todtenkopf.mvvm.ViewModelBase;
 
+import net.ivpn.client.common.apps.AppCatalog;
 import net.ivpn.client.common.prefs.PackagesPreference;
 import net.ivpn.client.ui.split.data.ApplicationItem;
 
 import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Set;
 
 import javax.inject.Inject;
@@ -71,20 +69,29 @@ public class SplitTunnelingViewModel extends ViewModelBase {
     private SplitTunnelingRecyclerViewAdapter.MenuHandler menuHandler;
     private boolean isAllItemsAllowed;
     private PackagesPreference preference;
+    private AppCatalog appCatalog;
+    private Handler handler = new Handler(Looper.getMainLooper());
 
     @Inject
-    SplitTunnelingViewModel(SplitTunnelingRecyclerViewAdapter adapter, PackagesPreference preference) {
+    SplitTunnelingViewModel(SplitTunnelingRecyclerViewAdapter adapter, PackagesPreference preference,
+                            AppCatalog appCatalog) {
         this.adapter.set(adapter);
         this.menuHandler = adapter.getMenuHandler();
         this.preference = preference;
+        this.appCatalog = appCatalog;
 
         disallowedApps.clear();
         disallowedApps.addAll(getDisallowedPackages());
         updateMenuFlag();
     }
 
-    void getApplicationsList(PackageManager packageManager) {
-        new InflateApplicationInfoAsyncTask(packageManager).execute();
+    void getApplicationsList() {
+        dataLoading.set(true);
+        appCatalog.getApplications().thenAcceptAsync(applicationItems -> {
+            apps.clear();
+            apps.addAll(applicationItems);
+            dataLoading.set(false);
+        }, handler::post);
     }
 
     private void disallowAllApps(Set<ApplicationItem> applicationItems) {
@@ -119,44 +126,4 @@ public class SplitTunnelingViewModel extends ViewModelBase {
     private Set<String> getDisallowedPackages() {
         return preference.getDisallowedPackages();
     }
-
-    private class InflateApplicationInfoAsyncTask extends AsyncTask<Void, Void, List<ApplicationItem>> {
-
-        private List<ApplicationInfo> applicationInfoList;
-        private PackageManager packageManager;
-
-        InflateApplicationInfoAsyncTask(PackageManager packageManager) {
-            this.packageManager = packageManager;
-            this.applicationInfoList = packageManager.getInstalledApplications(PackageManager.GET_META_DATA);
-        }
-
-        @Override
-        protected void onPreExecute() {
-            super.onPreExecute();
-            dataLoading.set(true);
-        }
-
-        @Override
-        protected List<ApplicationItem> doInBackground(Void... voids) {
-            List<ApplicationItem> items = new LinkedList<>();
-            for (ApplicationInfo info : applicationInfoList) {
-                try {
-                    if (null != packageManager.getLaunchIntentForPackage(info.packageName)) {
-                        items.add(new ApplicationItem(info.loadLabel(packageManager).toString(), info.packageName,
-                                info.loadIcon(packageManager)));
-                    }
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            }
-            return items;
-        }
-
-        @Override
-        protected void onPostExecute(List<ApplicationItem> applicationItems) {
-            apps.clear();
-            apps.addAll(applicationItems);
-            dataLoading.set(false);
-        }
-    }
-}
\ No newline at end of file
+}
@@ -1,20 +1,16 @@
 package net.ivpn.client.ui.split.data;
 
-import android.graphics.drawable.Drawable;
-
 import java.util.Comparator;
 
 public class ApplicationItem {
     private String applicationName;
     private String packageName;
-    private Drawable icon;
     private boolean isAllowed;
 
     public static Comparator<ApplicationItem> comparator = (item1, item2) -> item1.getApplicationName().toLowerCase().compareTo(item2.getApplicationName().toLowerCase());
 
-    public ApplicationItem(String applicationName, String packageName, Drawable icon) {
+    public ApplicationItem(String applicationName, String packageName) {
         this.applicationName = applicationName;
-        this.icon = icon;
         this.packageName = packageName;
     }
 
@@ -34,14 +30,6 @@ public class ApplicationItem {
         this.packageName = packageName;
     }
 
-    public Drawable getIcon() {
-        return icon;
-    }
-
-    public void setIcon(Drawable icon) {
-        this.icon = icon;
-    }
-
     public boolean isAllowed() {
         return isAllowed;
     }
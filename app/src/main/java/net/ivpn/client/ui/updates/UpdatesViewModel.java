@@ -4,8 +4,8 @@ import androidx.databinding.ObservableBoolean;
 import androidx.databinding.ObservableField;
 import android.widget.CompoundButton;
 
-import net.ivpn.client.IVPNApplication;
 import net.ivpn.client.common.prefs.Settings;
+import net.ivpn.client.common.scheduler.MaintenanceScheduler;
 import net.ivpn.client.common.updater.OnUpdateCheckListener;
 import net.ivpn.client.common.updater.Update;
 import net.ivpn.client.common.updater.UpdateHelper;
@@ -31,13 +31,13 @@ public class UpdatesViewModel {
 
     private Settings settings;
     private UpdateHelper updateHelper;
-    private UpdatesJobServiceUtil updatesJobServiceUtil;
+    private MaintenanceScheduler maintenanceScheduler;
 
     @Inject
-    public UpdatesViewModel(UpdateHelper updateHelper, UpdatesJobServiceUtil updatesJobServiceUtil, Settings settings) {
+    public UpdatesViewModel(UpdateHelper updateHelper, MaintenanceScheduler maintenanceScheduler, Settings settings) {
         this.settings = settings;
         this.updateHelper = updateHelper;
-        this.updatesJobServiceUtil = updatesJobServiceUtil;
+        this.maintenanceScheduler = maintenanceScheduler;
         init();
     }
 
@@ -68,10 +68,9 @@ public class UpdatesViewModel {
         LOGGER.info("Is auto update enabled? " + isEnabled);
         settings.enableAutoUpdate(isEnabled);
         isAutoUpdateEnabled.set(isEnabled);
+        //Update check is a part of maintenance job, it is skipped while auto update is disabled.
         if (isEnabled) {
-            updatesJobServiceUtil.pushUpdateJob(IVPNApplication.getApplication());
-        } else {
-            updatesJobServiceUtil.clearUpdateJob(IVPNApplication.getApplication());
+            maintenanceScheduler.scheduleMaintenance();
         }
     }
 
@@ -6,6 +6,7 @@ import android.os.Build;
 import androidx.annotation.Nullable;
 
 import net.ivpn.client.IVPNApplication;
+import net.ivpn.client.common.utils.ComponentUtil;
 import net.ivpn.client.vpn.controller.VpnBehaviorController;
 import net.ivpn.client.vpn.local.PermissionActivity;
 
@@ -20,6 +21,8 @@ public class AlwaysOnVpnService extends VpnService {
 
     @Inject
     VpnBehaviorController vpnBehaviorController;
+    @Inject
+    ComponentUtil componentUtil;
 
     @Override
     public int onStartCommand(@Nullable final Intent intent, final int flags, final int startId) {
@@ -27,7 +30,7 @@ public class AlwaysOnVpnService extends VpnService {
         if (intent == null || intent.getComponent() == null || !intent.getComponent().getPackageName().equals(getPackageName())) {
             LOGGER.info("Service started by Always-on VPN feature");
             if (Build.VERSION.SDK_INT > Build.VERSION_CODES.P) {
-                vpnBehaviorController.connectActionByRules();
+                componentUtil.connectHeadless(vpnBehaviorController);
             } else {
                 Intent vpnIntent = new Intent(this, PermissionActivity.class);
                 vpnIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
@@ -6,13 +6,18 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.net.VpnService;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
 import net.ivpn.client.IVPNApplication;
+import net.ivpn.client.common.connectivity.ConnectionProbe;
 import net.ivpn.client.common.dagger.ApplicationScope;
 import net.ivpn.client.common.prefs.Settings;
+import net.ivpn.client.common.utils.DateUtil;
 import net.ivpn.client.ui.settings.SettingsActivity;
 import net.ivpn.client.vpn.controller.VpnBehaviorController;
+import net.ivpn.client.vpn.fallback.PortSelector;
 import net.ivpn.client.vpn.local.KillSwitchService;
 import net.ivpn.client.vpn.local.PermissionActivity;
 import net.ivpn.client.vpn.model.KillSwitchRule;
@@ -35,26 +40,49 @@ import static net.ivpn.client.vpn.model.KillSwitchRule.DISABLE;
 import static net.ivpn.client.vpn.model.KillSwitchRule.ENABLE;
 import static net.ivpn.client.vpn.model.KillSwitchRule.NOTHING;
 
+/**
+ * Kill switch and tunnel are handed over make-before-break. Android keeps only the most recently
+ * established interface of the app, so the next TUN is established while the previous one is still
+ * held and the previous one is released afterwards. Traffic is never left without any of them.
+ * Whether the kill switch is running is tracked by {@link KillSwitchHandover}, apart from the state.
+ * Connection started by network rules waits for {@link ConnectionProbe}: behind a captive portal
+ * or without internet it is deferred and retried, on a lossy path to the gateway {@link PortSelector}
+ * picks another port.
+ */
 @ApplicationScope
 public class GlobalBehaviorController implements ServiceConstants {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(GlobalBehaviorController.class);
 
+    private static final long DEFER_DELAY = 30 * DateUtil.SECOND;
+    private static final int MAX_DEFER_ATTEMPTS = 10;
+
     private VPNState state = NONE;
     private boolean isVpnDisconnecting;
+    private KillSwitchHandover handover = new KillSwitchHandover();
+    private int deferAttempts;
     private List<OnVpnStatusChangedListener> listeners = new ArrayList<>();
+    private List<OnTunnelEstablishedListener> tunnelListeners = new ArrayList<>();
     private KillSwitchRule killSwitchRule = NOTHING;
     private VPNRule vpnRule = VPNRule.NOTHING;
 
     private BroadcastReceiver securityGuardActionsReceiver;
+    private Handler handler = new Handler(Looper.getMainLooper());
+    private Runnable deferredConnection = this::probeAndConnectVpn;
     private Settings settings;
     private VpnBehaviorController vpnBehaviorController;
+    private ConnectionProbe connectionProbe;
+    private PortSelector portSelector;
 
     @Inject
     public GlobalBehaviorController(Settings settings,
-                                    VpnBehaviorController vpnBehaviorController) {
+                                    VpnBehaviorController vpnBehaviorController,
+                                    ConnectionProbe connectionProbe,
+                                    PortSelector portSelector) {
         this.settings = settings;
         this.vpnBehaviorController = vpnBehaviorController;
+        this.connectionProbe = connectionProbe;
+        this.portSelector = portSelector;
     }
 
     public void init() {
@@ -126,11 +154,13 @@ public class GlobalBehaviorController implements ServiceConstants {
 
     public void onConnectingToVpn() {
         LOGGER.info("onConnectingToVpn: state BEFORE = " + state);
+        //Kill switch keeps blocking until the tunnel TUN replaces it, see onTunnelEstablished.
+        //It may run in any state, e.g. it is started for a pause without leaving VPN or BOTH.
+        handover.onConnecting();
         switch (state) {
             case BOTH:
                 break;
             case KILL_SWITCH:
-                stopKillSwitch();
                 state = BOTH;
                 break;
             case VPN:
@@ -140,8 +170,39 @@ public class GlobalBehaviorController implements ServiceConstants {
         }
     }
 
+    /**
+     * Should be called once the tunnel TUN is established, the system has already moved traffic
+     * to it, so kill switch can release its own TUN.
+     */
+    public void onTunnelEstablished() {
+        LOGGER.info("onTunnelEstablished");
+        //Listeners may remove themselves.
+        for (OnTunnelEstablishedListener listener : new ArrayList<>(tunnelListeners)) {
+            listener.onTunnelEstablished();
+        }
+        if (handover.onTunnelEstablished()) {
+            stopKillSwitch();
+        }
+    }
+
     public void onDisconnectingFromVpn() {
+        LOGGER.info("onDisconnectingFromVpn: state = " + state);
         isVpnDisconnecting = true;
+        //Kill switch takes the interface over before the tunnel is torn down.
+        if (isKillSwitchNeededWithoutVpn()) {
+            startKillSwitch();
+        }
+        handover.onDisconnecting();
+    }
+
+    private boolean isKillSwitchNeededWithoutVpn() {
+        switch (state) {
+            case KILL_SWITCH:
+            case BOTH:
+                return killSwitchRule.equals(ENABLE) || killSwitchRule.equals(NOTHING);
+            default:
+                return killSwitchRule.equals(ENABLE);
+        }
     }
 
     public void stopVPN() {
@@ -205,17 +266,52 @@ public class GlobalBehaviorController implements ServiceConstants {
 
     private void tryToConnectVpn() {
         LOGGER.info("tryToConnectVpn");
+        handler.removeCallbacks(deferredConnection);
+        deferAttempts = 0;
         if (isVpnActive()) {
             return;
         }
 
         if (isVPNPermissionGranted()) {
-            vpnBehaviorController.connectActionByRules();
+            probeAndConnectVpn();
         } else {
             askPermissionAndStartVpn();
         }
     }
 
+    private void probeAndConnectVpn() {
+        connectionProbe.probe().thenAccept(result -> handler.post(() -> onProbeFinished(result)));
+    }
+
+    private void onProbeFinished(ConnectionProbe.Result result) {
+        LOGGER.info("onProbeFinished: result = " + result);
+        if (!vpnRule.equals(VPNRule.CONNECT) || isVpnActive()) {
+            return;
+        }
+        switch (result.getVerdict()) {
+            case DEFER: {
+                if (++deferAttempts > MAX_DEFER_ATTEMPTS) {
+                    LOGGER.info("Network is still unusable, connect anyway");
+                    vpnBehaviorController.connectActionByRules();
+                } else {
+                    handler.postDelayed(deferredConnection, DEFER_DELAY);
+                }
+                break;
+            }
+            case ANOTHER_PORT: {
+                portSelector.onFailure().thenAccept(port -> handler.post(() -> {
+                    if (vpnRule.equals(VPNRule.CONNECT) && !isVpnActive()) {
+                        vpnBehaviorController.connectActionByRules();
+                    }
+                }));
+                break;
+            }
+            default: {
+                vpnBehaviorController.connectActionByRules();
+            }
+        }
+    }
+
     private boolean isVPNPermissionGranted() {
         Context context = IVPNApplication.getApplication();
 
@@ -238,20 +334,25 @@ public class GlobalBehaviorController implements ServiceConstants {
     }
 
     public void startKillSwitch() {
-        LOGGER.info("startKillSwitch");
+        //Tunnel may have already replaced kill switch TUN, so it is established again in this case.
+        boolean reestablish = handover.isReestablishNeeded();
+        LOGGER.info("startKillSwitch: reestablish = " + reestablish);
         Context context = IVPNApplication.getApplication();
 
         Intent killSwitchIntent = new Intent(context, KillSwitchService.class);
         killSwitchIntent.setAction(START_KILL_SWITCH);
+        killSwitchIntent.putExtra(KILL_SWITCH_REESTABLISH_EXTRA, reestablish);
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
             context.startForegroundService(killSwitchIntent);
         } else {
             context.startService(killSwitchIntent);
         }
+        handover.onKillSwitchStarted();
     }
 
     private void stopKillSwitch() {
         LOGGER.info("stopKillSwitch");
+        handover.onKillSwitchStopped();
         if (!KillSwitchService.isRunning.get()) {
             return;
         }
@@ -273,6 +374,7 @@ public class GlobalBehaviorController implements ServiceConstants {
 
     public void finishAll() {
         LOGGER.info("finishAll");
+        handler.removeCallbacks(deferredConnection);
         stopVPN();
         stopKillSwitch();
         state = NONE;
@@ -286,6 +388,14 @@ public class GlobalBehaviorController implements ServiceConstants {
         listeners.remove(listener);
     }
 
+    public void addOnTunnelEstablishedListener(OnTunnelEstablishedListener listener) {
+        tunnelListeners.add(listener);
+    }
+
+    public void removeOnTunnelEstablishedListener(OnTunnelEstablishedListener listener) {
+        tunnelListeners.remove(listener);
+    }
+
     private void registerReceiver() {
         securityGuardActionsReceiver = new BroadcastReceiver() {
             @Override
@@ -337,16 +447,25 @@ public class GlobalBehaviorController implements ServiceConstants {
                 onVpnConnected();
                 break;
             case DISCONNECTED:
+                notifyTunnelDown();
                 if (!isVpnDisconnecting) return;
 
                 isVpnDisconnecting = false;
                 onVpnDisconnected();
                 break;
             case ERROR:
+                notifyTunnelDown();
                 break;
         }
     }
 
+    private void notifyTunnelDown() {
+        //Listeners may remove themselves.
+        for (OnTunnelEstablishedListener listener : new ArrayList<>(tunnelListeners)) {
+            listener.onTunnelDown();
+        }
+    }
+
     private void onVpnDisconnected() {
         LOGGER.info("onVpnDisconnected: state = " + state);
         LOGGER.info("onVpnDisconnected: killSwitchRule = " + killSwitchRule);
@@ -0,0 +1,58 @@
+package net.ivpn.client.vpn;
+
+/**
+ * Tracks the kill switch TUN across tunnel connects and disconnects. It is kept apart from
+ * {@link VPNState}, which follows the settings and the reported connection state: a pause or a
+ * reconnect starts the kill switch without changing the state, yet the kill switch has to be
+ * handed over to the next tunnel all the same.
+ */
+class KillSwitchHandover {
+
+    private boolean isKillSwitchRunning;
+    private boolean isHandoverPending;
+    //Tunnel has established its TUN after the kill switch established its own.
+    private boolean isKillSwitchTunReplaced;
+
+    void onKillSwitchStarted() {
+        isKillSwitchRunning = true;
+        isKillSwitchTunReplaced = false;
+    }
+
+    void onKillSwitchStopped() {
+        isKillSwitchRunning = false;
+        isHandoverPending = false;
+        isKillSwitchTunReplaced = false;
+    }
+
+    void onConnecting() {
+        if (isKillSwitchRunning) {
+            isHandoverPending = true;
+        }
+    }
+
+    /**
+     * @return true if the kill switch was waiting for this tunnel and should be stopped now.
+     */
+    boolean onTunnelEstablished() {
+        if (isKillSwitchRunning) {
+            isKillSwitchTunReplaced = true;
+        }
+        if (!isHandoverPending) {
+            return false;
+        }
+        isHandoverPending = false;
+        return true;
+    }
+
+    void onDisconnecting() {
+        isHandoverPending = false;
+    }
+
+    /**
+     * @return true if the kill switch is running, but a tunnel has or may have replaced its TUN,
+     * so the kill switch has to establish it again to block traffic.
+     */
+    boolean isReestablishNeeded() {
+        return isKillSwitchRunning && (isKillSwitchTunReplaced || isHandoverPending);
+    }
+}
@@ -6,6 +6,7 @@ import android.content.Intent;
 import android.os.Build;
 
 import net.ivpn.client.IVPNApplication;
+import net.ivpn.client.common.utils.ComponentUtil;
 import net.ivpn.client.common.prefs.Settings;
 import net.ivpn.client.vpn.controller.VpnBehaviorController;
 import net.ivpn.client.vpn.local.PermissionActivity;
@@ -21,6 +22,7 @@ public class OnBootBroadcastReceiver extends BroadcastReceiver {
 
     @Inject Settings settings;
     @Inject VpnBehaviorController vpnBehaviorController;
+    @Inject ComponentUtil componentUtil;
 
     @Override
     public void onReceive(Context context, Intent intent) {
@@ -29,7 +31,7 @@ public class OnBootBroadcastReceiver extends BroadcastReceiver {
         LOGGER.info("onReceive: isStartOnBootEnabled = " + isStartOnBootEnabled);
         if (isStartOnBootEnabled) {
             if (Build.VERSION.SDK_INT > Build.VERSION_CODES.P) {
-                vpnBehaviorController.connectActionByRules();
+                componentUtil.connectHeadless(vpnBehaviorController);
             } else {
                 Intent vpnIntent = new Intent(context, PermissionActivity.class);
                 vpnIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
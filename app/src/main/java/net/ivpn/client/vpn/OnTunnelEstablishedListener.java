@@ -0,0 +1,11 @@
+package net.ivpn.client.vpn;
+
+public interface OnTunnelEstablishedListener {
+
+    void onTunnelEstablished();
+
+    /**
+     * Connection has failed or the VPN is disconnected, so no tunnel is established for now.
+     */
+    void onTunnelDown();
+}
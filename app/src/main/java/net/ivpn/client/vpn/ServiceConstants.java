@@ -32,6 +32,7 @@ public interface ServiceConstants {
     String APP_SETTINGS_ACTION = "APP_SETTINGS_ACTION";
     String KILL_SWITCH_ACTION = "KILL_SWITCH_ACTION";
     String KILL_SWITCH_ACTION_EXTRA = "KILL_SWITCH_ACTION_EXTRA";
+    String KILL_SWITCH_REESTABLISH_EXTRA = "KILL_SWITCH_REESTABLISH_EXTRA";
     String KILL_SWITCH_CHANNEL = PACKAGE_NAME + ".KILL_SWITCH_CHANNEL";
 
     //Wifi watcher service
@@ -39,11 +40,7 @@ public interface ServiceConstants {
     String STOP_WIFI_WATCHER = "STOP_WIFI_WATCHER";
     String WIFI_WATCHER_ACTION = "WIFI_WATCHER_ACTION";
     String WIFI_WATCHER_ACTION_EXTRA = "WIFI_WATCHER_ACTION_EXTRA";
-    String WIFI_WATCHER_ACTION_VALUE = "WIFI_WATCHER_ACTION_VALUE";
-    String WIFI_CHANGED_ACTION = "WIFI_CHANGED_ACTION";
     String WIFI_WATCHER_CHANNEL = "net.ivpn.client.WIFI_WATCHER_CHANNEL";
-    String ON_MOBILE_DATA_ACTION = "ON_MOBILE_DATA_ACTION";
-    String NO_NETWORK_ACTION = "NO_NETWORK_ACTION";
 
     //WireGuard UI service actions
     String WIREGUARD_CONNECTING = "WIREGUARD_CONNECTING";
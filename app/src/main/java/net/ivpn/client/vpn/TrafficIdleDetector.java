@@ -0,0 +1,75 @@
+package net.ivpn.client.vpn;
+
+/**
+ * Sums bytes transferred through the tunnel over a sliding window. Tunnel is idle if it was observed
+ * for the whole window and less than the limit went through it. Samples are kept in a ring,
+ * so feeding it from the byte counter callbacks doesn't allocate.
+ */
+public class TrafficIdleDetector {
+
+    public static final long DEFAULT_WINDOW = 60 * 1000;
+    public static final long DEFAULT_LIMIT = 64 * 1024;
+
+    private static final int CAPACITY = 64;
+
+    private final long window;
+    private final long limit;
+    private final long[] times = new long[CAPACITY];
+    private final long[] bytes = new long[CAPACITY];
+    private int head;
+    private int size;
+    private long startTime = -1;
+
+    public TrafficIdleDetector() {
+        this(DEFAULT_WINDOW, DEFAULT_LIMIT);
+    }
+
+    public TrafficIdleDetector(long window, long limit) {
+        this.window = window;
+        this.limit = limit;
+    }
+
+    public void reset(long now) {
+        head = 0;
+        size = 0;
+        startTime = now;
+    }
+
+    /**
+     * @param now   Time of the sample in milliseconds.
+     * @param delta Bytes in both directions since the previous sample.
+     */
+    public void add(long now, long delta) {
+        if (startTime < 0) {
+            startTime = now;
+        }
+        if (delta <= 0) {
+            return;
+        }
+        int index = (head + size) % CAPACITY;
+        if (size == CAPACITY) {
+            //The oldest sample is dropped, samples come far less often than window / capacity anyway.
+            head = (head + 1) % CAPACITY;
+        } else {
+            size++;
+        }
+        times[index] = now;
+        bytes[index] = delta;
+    }
+
+    public long getTraffic(long now) {
+        while (size > 0 && now - times[head] > window) {
+            head = (head + 1) % CAPACITY;
+            size--;
+        }
+        long traffic = 0;
+        for (int i = 0; i < size; i++) {
+            traffic += bytes[(head + i) % CAPACITY];
+        }
+        return traffic;
+    }
+
+    public boolean isIdle(long now) {
+        return startTime >= 0 && now - startTime >= window && getTraffic(now) < limit;
+    }
+}
@@ -24,6 +24,8 @@ import net.ivpn.client.vpn.GlobalBehaviorController;
 import net.ivpn.client.vpn.OnVpnStatusChangedListener;
 import net.ivpn.client.vpn.ServiceConstants;
 import net.ivpn.client.vpn.VPNConnectionState;
+import net.ivpn.client.vpn.controller.WireGuardKeyController.OnKeyRotationFinishedListener;
+import net.ivpn.client.vpn.fallback.PortSelector;
 import net.ivpn.client.vpn.openvpn.IVPNService;
 
 import org.slf4j.Logger;
@@ -59,8 +61,11 @@ public class OpenVpnBehavior implements VpnBehavior, OnVpnStatusChangedListener,
     private VpnBehaviorController vpnBehaviorController;
     private PingProvider pingProvider;
     private DomainResolver domainResolver;
+    private PortSelector portSelector;
     private BroadcastReceiver connectionStatusReceiver;
     private long connectionTime;
+    //Incremented by every action of the user, so the pending port fallback can see it is obsolete.
+    private int fallbackGeneration;
 
     private Handler handler;
     private Runnable commonRunnable = () -> {
@@ -92,7 +97,7 @@ public class OpenVpnBehavior implements VpnBehavior, OnVpnStatusChangedListener,
     @Inject
     OpenVpnBehavior(GlobalBehaviorController globalBehaviorController, ServersRepository serversRepository,
                     Settings settings, VpnBehaviorController vpnBehaviorController, PingProvider pingProvider,
-                    DomainResolver domainResolver) {
+                    DomainResolver domainResolver, PortSelector portSelector) {
         LOGGER.info("OpenVpn behaviour");
         this.globalBehaviorController = globalBehaviorController;
         this.serversRepository = serversRepository;
@@ -100,6 +105,7 @@ public class OpenVpnBehavior implements VpnBehavior, OnVpnStatusChangedListener,
         this.vpnBehaviorController = vpnBehaviorController;
         this.pingProvider = pingProvider;
         this.domainResolver = domainResolver;
+        this.portSelector = portSelector;
         handler = new Handler(Looper.myLooper());
 
         init();
@@ -132,6 +138,8 @@ public class OpenVpnBehavior implements VpnBehavior, OnVpnStatusChangedListener,
     @Override
     public void disconnect() {
         LOGGER.info("disconnect state = " + state);
+        fallbackGeneration++;
+        portSelector.reset();
         //ToDo should we use NOT_CONNECTED state too?
         if (state == CONNECTING || state == CONNECTED) {
             state = DISCONNECTING;
@@ -164,6 +172,8 @@ public class OpenVpnBehavior implements VpnBehavior, OnVpnStatusChangedListener,
     @Override
     public void stop() {
         LOGGER.info("Stop, state = " + state);
+        fallbackGeneration++;
+        portSelector.reset();
         timer.stopTimer();
         state = NOT_CONNECTED;
         sendConnectionState();
@@ -173,6 +183,7 @@ public class OpenVpnBehavior implements VpnBehavior, OnVpnStatusChangedListener,
     @Override
     public void startConnecting() {
         LOGGER.info("startConnecting, state = " + state);
+        fallbackGeneration++;
         if (state == NOT_CONNECTED || state == PAUSED) {
             if (isFastestServerEnabled()) {
                 startConnectWithFastestServer();
@@ -244,8 +255,9 @@ public class OpenVpnBehavior implements VpnBehavior, OnVpnStatusChangedListener,
     }
 
     @Override
-    public void regenerateKeys() {
-
+    public void regenerateKeys(OnKeyRotationFinishedListener listener) {
+        //OpenVPN doesn't use WireGuard keys.
+        listener.onKeyRotationFinished(false);
     }
 
     private void registerReceivers() {
@@ -395,10 +407,12 @@ public class OpenVpnBehavior implements VpnBehavior, OnVpnStatusChangedListener,
             stateListener.notifyAnotherPortUsedToConnect();
         }
 
-        new Handler().postDelayed(() -> {
-            selectNextPort();
-            performConnectionAction();
-        }, 500);
+        final int generation = ++fallbackGeneration;
+        new Handler().postDelayed(() -> portSelector.onFailure().thenAccept(port -> handler.post(() -> {
+            if (generation == fallbackGeneration) {
+                performConnectionAction();
+            }
+        })), 500);
     }
 
     private void onTimeOut() {
@@ -409,11 +423,6 @@ public class OpenVpnBehavior implements VpnBehavior, OnVpnStatusChangedListener,
         }
     }
 
-    private void selectNextPort() {
-        LOGGER.info("selectNextPort");
-        settings.nextPort();
-    }
-
     private void onReceiveConnectionStatus(ConnectionStatus status) {
         if (status == null) {
             return;
@@ -423,6 +432,9 @@ public class OpenVpnBehavior implements VpnBehavior, OnVpnStatusChangedListener,
         LOGGER.info("onReceiveConnectionStatus: state = " + state);
         switch (status) {
             case LEVEL_CONNECTED:
+                //TUN is established before OpenVPN reports the connection.
+                globalBehaviorController.onTunnelEstablished();
+                portSelector.onSuccess();
                 globalBehaviorController.updateVpnConnectionState(VPNConnectionState.CONNECTED);
                 state = CONNECTED;
                 connectionTime = System.currentTimeMillis();
@@ -529,6 +541,8 @@ public class OpenVpnBehavior implements VpnBehavior, OnVpnStatusChangedListener,
 
     private void reconnectVpn() {
         globalBehaviorController.onConnectingToVpn();
+        portSelector.applyPreferredPort();
+        portSelector.onAttempt();
         Context context = IVPNApplication.getApplication();
         Intent reconnectIntent = new Intent(context, IVPNService.class);
         reconnectIntent.setAction(RECONNECTING_VPN);
@@ -538,6 +552,8 @@ public class OpenVpnBehavior implements VpnBehavior, OnVpnStatusChangedListener,
     private void startVpn() {
         Log.d(TAG, "startVpn: ");
         globalBehaviorController.onConnectingToVpn();
+        portSelector.applyPreferredPort();
+        portSelector.onAttempt();
         Context context = IVPNApplication.getApplication();
         Intent startServiceIntent = new Intent(context, IVPNService.class);
         startService(context, startServiceIntent);
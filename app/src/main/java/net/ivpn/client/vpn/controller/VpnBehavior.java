@@ -1,5 +1,7 @@
 package net.ivpn.client.vpn.controller;
 
+import net.ivpn.client.vpn.controller.WireGuardKeyController.OnKeyRotationFinishedListener;
+
 public interface VpnBehavior {
 
     void pause(long pauseDuration);
@@ -18,7 +20,7 @@ public interface VpnBehavior {
 
     void reconnect();
 
-    void regenerateKeys();
+    void regenerateKeys(OnKeyRotationFinishedListener listener);
 
     void setStateListener(VpnStateListener vpnStateListener);
 
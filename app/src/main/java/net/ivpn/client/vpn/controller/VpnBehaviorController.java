@@ -14,6 +14,7 @@ import net.ivpn.client.ui.timepicker.TimePickerActivity;
 import net.ivpn.client.vpn.OnProtocolChangedListener;
 import net.ivpn.client.vpn.Protocol;
 import net.ivpn.client.vpn.ProtocolController;
+import net.ivpn.client.vpn.controller.WireGuardKeyController.OnKeyRotationFinishedListener;
 import net.ivpn.client.vpn.openvpn.IVPNService;
 import net.ivpn.client.vpn.wireguard.ConfigManager;
 
@@ -89,6 +90,13 @@ public class VpnBehaviorController {
         }
     }
 
+    public void reconnect() {
+        LOGGER.info("reconnect");
+        if (isVPNActive()) {
+            behavior.reconnect();
+        }
+    }
+
     public void connectActionByRules() {
         LOGGER.info("connectActionByRules");
         behavior.startConnecting(true);
@@ -99,9 +107,9 @@ public class VpnBehaviorController {
         behavior.actionByUser();
     }
 
-    public void regenerate() {
+    public void regenerate(OnKeyRotationFinishedListener listener) {
         LOGGER.info("regenerate");
-        behavior.regenerateKeys();
+        behavior.regenerateKeys(listener);
     }
 
     public void notifyVpnState() {
@@ -6,6 +6,7 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.os.Build;
 import android.os.Handler;
+import android.os.Looper;
 
 import com.wireguard.android.backend.WireGuardUiService;
 
@@ -27,12 +28,19 @@ import net.ivpn.client.ui.dialog.Dialogs;
 import net.ivpn.client.vpn.GlobalBehaviorController;
 import net.ivpn.client.vpn.ServiceConstants;
 import net.ivpn.client.vpn.VPNConnectionState;
+import net.ivpn.client.vpn.controller.WireGuardKeyController.OnKeyRotationFinishedListener;
 import net.ivpn.client.vpn.controller.WireGuardKeyController.WireGuardKeysEventsListener;
+import net.ivpn.client.vpn.fallback.PortSelector;
 import net.ivpn.client.vpn.wireguard.ConfigManager;
+import net.ivpn.client.vpn.wireguard.ConnectPipeline;
+import net.ivpn.client.vpn.wireguard.TunnelHealthMonitor;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+
 import javax.inject.Inject;
 
 import static net.ivpn.client.ui.connect.ConnectionState.*;
@@ -54,12 +62,17 @@ public class WireGuardBehavior implements VpnBehavior, ServiceConstants {
     private VpnBehaviorController vpnBehaviorController;
     private ConfigManager configManager;
     private PingProvider pingProvider;
+    private TunnelHealthMonitor healthMonitor;
+    private ConnectPipeline connectPipeline;
+    private PortSelector portSelector;
+    private Handler handler = new Handler(Looper.getMainLooper());
 
     @Inject
     WireGuardBehavior(Settings settings, WireGuardKeyController wireGuardKeyController,
                       GlobalBehaviorController globalBehaviorController, ServersRepository serversRepository,
                       VpnBehaviorController vpnBehaviorController, ConfigManager configManager,
-                      PingProvider pingProvider) {
+                      PingProvider pingProvider, TunnelHealthMonitor healthMonitor,
+                      ConnectPipeline connectPipeline, PortSelector portSelector) {
         LOGGER.info("Creating");
         this.settings = settings;
         keyController = wireGuardKeyController;
@@ -68,12 +81,16 @@ public class WireGuardBehavior implements VpnBehavior, ServiceConstants {
         this.vpnBehaviorController = vpnBehaviorController;
         this.configManager = configManager;
         this.pingProvider = pingProvider;
+        this.healthMonitor = healthMonitor;
+        this.connectPipeline = connectPipeline;
+        this.portSelector = portSelector;
 
         init();
     }
 
     private void init() {
         keyController.setKeysEventsListener(getWireGuardKeysEventsListener());
+        keyController.resumePendingRotation();
         timer = new PauseTimer(new PauseTimer.PauseTimerListener() {
             @Override
             public void onTick(long millisUntilFinished) {
@@ -227,7 +244,6 @@ public class WireGuardBehavior implements VpnBehavior, ServiceConstants {
     private void resumeVpn() {
         LOGGER.info("resumeVpn: state = " + state);
         startWireGuard();
-        connectionTime = System.currentTimeMillis();
     }
 
     @Override
@@ -239,7 +255,7 @@ public class WireGuardBehavior implements VpnBehavior, ServiceConstants {
         LOGGER.info("startConnecting, state = " + state);
 
         if (!forceConnecting && keyController.isKeysExpired()) {
-            keyController.regenerateLiveKeys();
+            keyController.regenerateKeys(null);
             return;
         }
 
@@ -248,6 +264,8 @@ public class WireGuardBehavior implements VpnBehavior, ServiceConstants {
         }
 
         if (isFastestServerEnabled()) {
+            //Service start and apps resolution don't depend on the server, run them during detection.
+            connectPipeline.prepare();
             findFastestServerAndConnect();
         } else {
             connect();
@@ -260,16 +278,46 @@ public class WireGuardBehavior implements VpnBehavior, ServiceConstants {
         setState(CONNECTING);
         updateNotification();
         startWireGuard();
-        connectionTime = System.currentTimeMillis();
-        globalBehaviorController.updateVpnConnectionState(VPNConnectionState.CONNECTED);
     }
 
     private void startWireGuard() {
         LOGGER.info("startWireGuard: state = " + state);
         globalBehaviorController.onConnectingToVpn();
-        configManager.startWireGuard();
+        //Handshake result is reported to the port selector by the health monitor.
+        portSelector.applyPreferredPort();
+        portSelector.onAttempt();
+        connectPipeline.connect().whenComplete((tunnelState, throwable) -> {
+            if (throwable == null) {
+                handler.post(this::onTunnelUp);
+                return;
+            }
+            Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+            if (!(cause instanceof CancellationException)) {
+                handler.post(this::onConnectionFailed);
+            }
+        });
+        healthMonitor.start();
+    }
+
+    //State is CONNECTED only once the pipeline has brought the tunnel up.
+    private void onTunnelUp() {
+        LOGGER.info("onTunnelUp: state = " + state);
+        if (state != CONNECTING) {
+            return;
+        }
+        connectionTime = System.currentTimeMillis();
         setState(CONNECTED);
         updateNotification();
+        globalBehaviorController.updateVpnConnectionState(VPNConnectionState.CONNECTED);
+        globalBehaviorController.onTunnelEstablished();
+    }
+
+    private void onConnectionFailed() {
+        LOGGER.info("onConnectionFailed: state = " + state);
+        if (state == CONNECTING || state == CONNECTED) {
+            ToastUtil.toast(R.string.connect_unable_to_connect);
+            stopVpn();
+        }
     }
 
     private boolean isFastestServerEnabled() {
@@ -279,6 +327,7 @@ public class WireGuardBehavior implements VpnBehavior, ServiceConstants {
     @Override
     public void disconnect() {
         LOGGER.info("Disconnect, state = " + state);
+        portSelector.reset();
         if (state == CONNECTING || state == CONNECTED) {
             startDisconnectProcess();
             return;
@@ -307,6 +356,8 @@ public class WireGuardBehavior implements VpnBehavior, ServiceConstants {
         globalBehaviorController.onDisconnectingFromVpn();
         setState(PAUSING);
         updateNotification(pauseDuration);
+        healthMonitor.stop();
+        connectPipeline.cancel();
         configManager.stopWireGuard();
         setState(PAUSED);
         updateNotification(pauseDuration);
@@ -330,11 +381,15 @@ public class WireGuardBehavior implements VpnBehavior, ServiceConstants {
         LOGGER.info("reconnect: state = " + state);
         setState(DISCONNECTING);
         updateNotification();
+        //Kill switch blocks the gap and is handed over to the new tunnel.
+        globalBehaviorController.onDisconnectingFromVpn();
         stopWireGuard();
         new Handler().postDelayed(this::startConnecting, 1000);
     }
 
     private void stopWireGuard() {
+        healthMonitor.stop();
+        connectPipeline.cancel();
         configManager.stopWireGuard();
         setState(NOT_CONNECTED);
         updateNotification();
@@ -344,9 +399,9 @@ public class WireGuardBehavior implements VpnBehavior, ServiceConstants {
     }
 
     @Override
-    public void regenerateKeys() {
+    public void regenerateKeys(OnKeyRotationFinishedListener listener) {
         LOGGER.info("regenerateKeys");
-        keyController.regenerateLiveKeys();
+        keyController.regenerateKeys(listener);
     }
 
     private void sendConnectionState() {
@@ -464,6 +519,14 @@ public class WireGuardBehavior implements VpnBehavior, ServiceConstants {
                 }
             }
 
+            @Override
+            public void onKeyRotated() {
+                LOGGER.info("New key is applied to the live tunnel, state = " + state);
+                if (stateListener != null) {
+                    stateListener.onRegenerationSuccess();
+                }
+            }
+
             @Override
             public void onKeyGeneratedError(String error, Throwable throwable) {
                 switch (state) {
@@ -492,7 +555,7 @@ public class WireGuardBehavior implements VpnBehavior, ServiceConstants {
                                 stateListener.onRegenerationError(Dialogs.WG_UPGRADE_ERROR);
                             }
                         } else {
-                            WireGuardBehavior.this.keyController.startShortPeriodAlarm();
+                            WireGuardBehavior.this.keyController.scheduleRotationRetry();
                             startConnecting(true);
                         }
                         break;
@@ -1,5 +1,9 @@
 package net.ivpn.client.vpn.controller;
 
+import android.os.Handler;
+import android.os.Looper;
+
+import com.wireguard.android.backend.GoBackend;
 import com.wireguard.android.crypto.Keypair;
 
 import net.ivpn.client.IVPNApplication;
@@ -13,29 +17,46 @@ import net.ivpn.client.rest.Responses;
 import net.ivpn.client.rest.data.wireguard.AddWireGuardPublicKeyRequestBody;
 import net.ivpn.client.rest.data.wireguard.AddWireGuardPublicKeyResponse;
 import net.ivpn.client.rest.requests.common.Request;
+import net.ivpn.client.vpn.wireguard.KeyRotation;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.inject.Inject;
 
 public class WireGuardKeyController {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(WireGuardKeyController.class);
 
+    private static final int MAX_ATTEMPTS = 6;
+    private static final long BASE_RETRY_DELAY = 2 * DateUtil.SECOND;
+    private static final long MAX_RETRY_DELAY = DateUtil.FIVE_MINUTES;
+
     private WireGuardKeysEventsListener keysEventsListener;
     private Settings settings;
     private UserPreference userPreference;
+    private GoBackend goBackend;
+    private Handler handler;
+    private boolean isRotating;
+    private final List<OnKeyRotationFinishedListener> rotationFinishedListeners = new ArrayList<>();
 
     private Request<AddWireGuardPublicKeyResponse> addKeyRequest;
+    private Request<AddWireGuardPublicKeyResponse> retireKeyRequest;
 
     @Inject
     public WireGuardKeyController(Settings settings, UserPreference userPreference,
-                                  HttpClientFactory clientFactory, ServersRepository serversRepository) {
+                                  HttpClientFactory clientFactory, ServersRepository serversRepository,
+                                  GoBackend goBackend) {
         this.settings = settings;
         this.userPreference = userPreference;
+        this.goBackend = goBackend;
+        this.handler = new Handler(Looper.getMainLooper());
 
         addKeyRequest = new Request<>(settings, clientFactory, serversRepository, Request.Duration.SHORT);
+        retireKeyRequest = new Request<>(settings, clientFactory, serversRepository, Request.Duration.SHORT);
     }
 
     public void setKeysEventsListener(WireGuardKeysEventsListener keysEventsListener) {
@@ -64,88 +85,241 @@ public class WireGuardKeyController {
 
     public void putRegenerationPeriod(int regenerationPeriodI) {
         settings.putRegenerationPeriod(regenerationPeriodI);
-        IVPNApplication.getApplication().appComponent.provideGlobalWireGuardAlarm().start();
+        IVPNApplication.getApplication().appComponent.provideMaintenanceScheduler().scheduleKeyRotation();
     }
 
-    void startShortPeriodAlarm() {
-        IVPNApplication.getApplication().appComponent.provideGlobalWireGuardAlarm().startShortPeriod();
+    void scheduleRotationRetry() {
+        IVPNApplication.getApplication().appComponent.provideMaintenanceScheduler().scheduleKeyRotationRetry();
     }
 
-    public void generateKeys() {
-        LOGGER.info("generateKeys");
-        keysEventsListener.onKeyGenerating();
-        if (!getSessionToken().isEmpty()) {
-            setKey();
-        } else {
-            //This case should not happen but for integrity, it should be here.
-            keysEventsListener.onKeyGeneratedError(null, null);
+    /**
+     * Generate a new key and rotate it, or continue the rotation kept in the journal.
+     *
+     * @param listener Notified once the rotation is finished or postponed, may be null.
+     */
+    public void regenerateKeys(OnKeyRotationFinishedListener listener) {
+        LOGGER.info("regenerateKeys");
+        if (listener != null) {
+            rotationFinishedListeners.add(listener);
         }
-    }
-
-    void regenerateLiveKeys() {
         keysEventsListener.onKeyGenerating();
         if (!getSessionToken().isEmpty()) {
             setKey();
         } else {
             //This case should not happen but for integrity, it should be here.
+            notifyRotationFinished(false);
             keysEventsListener.onKeyGeneratedError(null, null);
         }
     }
 
-    public void regenerateKeys() {
-        LOGGER.info("regenerateKeys");
-        keysEventsListener.onKeyGenerating();
-        if (!getSessionToken().isEmpty()) {
-            setKey();
-        } else {
-            //This case should not happen but for integrity, it should be here.
-            keysEventsListener.onKeyGeneratedError(null, null);
+    void resumePendingRotation() {
+        KeyRotation rotation = settings.getWireGuardKeyRotation();
+        if (rotation == null || isRotating) {
+            return;
         }
+        LOGGER.info("Resume key rotation from journal: " + rotation);
+        isRotating = true;
+        continueRotation(rotation);
     }
 
     private void setKey() {
         LOGGER.info("Set WireGuard public key. Session token = " + getSessionToken());
+        if (isRotating) {
+            LOGGER.info("Key rotation is already in progress");
+            return;
+        }
+
+        isRotating = true;
+        KeyRotation rotation = settings.getWireGuardKeyRotation();
+        if (rotation != null) {
+            continueRotation(rotation);
+            return;
+        }
+
         Keypair keys = settings.generateWireGuardKeys();
-        String oldPublicKey = settings.getWireGuardPublicKey();
-        LOGGER.info("Old public key = " + oldPublicKey);
-        LOGGER.info("New Public key = " + keys.getPublicKey());
+        KeyRotation newRotation = new KeyRotation(keys.getPrivateKey(), keys.getPublicKey(),
+                settings.getWireGuardPublicKey());
+        LOGGER.info("Old public key = " + newRotation.getOldPublicKey());
+        LOGGER.info("New Public key = " + newRotation.getPublicKey());
+        //Private key has to be on the disk before its public key is registered.
+        settings.putWireGuardKeyRotation(newRotation).thenAcceptAsync(isWritten -> {
+            if (isWritten) {
+                performStep(newRotation);
+            } else {
+                stopRotation(false);
+                keysEventsListener.onKeyGeneratedError(null, null);
+            }
+        }, handler::post);
+    }
 
+    //Resumed rotation gets all its attempts again, starting from the shortest delay.
+    private void continueRotation(KeyRotation rotation) {
+        rotation.resetAttempts();
+        settings.putWireGuardKeyRotation(rotation);
+        performStep(rotation);
+    }
+
+    private void performStep(KeyRotation rotation) {
+        LOGGER.info("performStep: " + rotation);
+        switch (rotation.getStep()) {
+            case REGISTER: {
+                registerKey(rotation);
+                break;
+            }
+            case SWAP: {
+                swapKey(rotation);
+                break;
+            }
+            case RETIRE: {
+                retireKey(rotation);
+                break;
+            }
+        }
+    }
+
+    //Register new key without a connected key, so the old one is still valid on server.
+    private void registerKey(KeyRotation rotation) {
         AddWireGuardPublicKeyRequestBody requestBody = new AddWireGuardPublicKeyRequestBody(getSessionToken(),
-                keys.getPublicKey(), oldPublicKey);
+                rotation.getPublicKey(), "");
 
         addKeyRequest.start(api -> api.setWireGuardPublicKey(requestBody),
                 new RequestListener<AddWireGuardPublicKeyResponse>() {
             @Override
             public void onSuccess(AddWireGuardPublicKeyResponse response) {
-                LOGGER.info("generateKeys onSuccess " + response);
-                if (response == null) {
+                LOGGER.info("registerKey onSuccess " + response);
+                if (response == null || response.getStatus() != Responses.SUCCESS) {
+                    stopRotation(false);
                     keysEventsListener.onKeyGeneratedError(null, null);
                     return;
                 }
 
-                if (response.getStatus() == Responses.SUCCESS) {
-                    settings.setWireGuardIpAddress(response.getIpAddress());
-                    settings.saveWireGuardKeypair(keys);
-                    keysEventsListener.onKeyGeneratedSuccess();
-                } else {
-                    keysEventsListener.onKeyGeneratedError(null, null);
-                }
+                rotation.setIpAddress(response.getIpAddress());
+                rotation.setStep(KeyRotation.Step.SWAP);
+                settings.putWireGuardKeyRotation(rotation);
+                swapKey(rotation);
             }
 
             @Override
             public void onError(Throwable throwable) {
-                LOGGER.info("generateKeys onError throwable = " + throwable);
-                keysEventsListener.onKeyGeneratedError(null, throwable);
+                LOGGER.info("registerKey onError throwable = " + throwable);
+                retry(rotation, throwable);
             }
 
             @Override
             public void onError(String error) {
-                LOGGER.info("generateKeys error = " + error);
+                LOGGER.info("registerKey error = " + error);
+                stopRotation(false);
                 keysEventsListener.onKeyGeneratedError(error, null);
             }
         });
     }
 
+    //Apply new key to the live tunnel. Reconnection is needed only if the tunnel ip address is changed.
+    private void swapKey(KeyRotation rotation) {
+        boolean isSameAddress = rotation.getIpAddress() != null
+                && rotation.getIpAddress().equals(settings.getWireGuardIpAddress());
+        if (!isSameAddress) {
+            commitKey(rotation, false);
+            return;
+        }
+
+        goBackend.updatePrivateKey(rotation.getPrivateKey())
+                .thenAccept(isSwapped -> handler.post(() -> commitKey(rotation, isSwapped)));
+    }
+
+    private void commitKey(KeyRotation rotation, boolean isSwapped) {
+        LOGGER.info("commitKey, isSwapped = " + isSwapped);
+        settings.setWireGuardIpAddress(rotation.getIpAddress());
+        settings.saveWireGuardKeypair(new Keypair(rotation.getPrivateKey()));
+        rotation.setStep(KeyRotation.Step.RETIRE);
+        settings.putWireGuardKeyRotation(rotation);
+
+        if (isSwapped) {
+            keysEventsListener.onKeyRotated();
+        } else {
+            keysEventsListener.onKeyGeneratedSuccess();
+        }
+        retireKey(rotation);
+    }
+
+    //Replace the old key (connected key) with the new one, so server drops the old key.
+    private void retireKey(KeyRotation rotation) {
+        String oldPublicKey = rotation.getOldPublicKey();
+        if (oldPublicKey == null || oldPublicKey.isEmpty()) {
+            stopRotation(true);
+            return;
+        }
+        AddWireGuardPublicKeyRequestBody requestBody = new AddWireGuardPublicKeyRequestBody(getSessionToken(),
+                rotation.getPublicKey(), oldPublicKey);
+
+        retireKeyRequest.start(api -> api.setWireGuardPublicKey(requestBody),
+                new RequestListener<AddWireGuardPublicKeyResponse>() {
+            @Override
+            public void onSuccess(AddWireGuardPublicKeyResponse response) {
+                LOGGER.info("retireKey onSuccess " + response);
+                if (response == null || response.getStatus() != Responses.SUCCESS) {
+                    postponeRotation(rotation, null, null);
+                    return;
+                }
+                stopRotation(true);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                LOGGER.info("retireKey onError throwable = " + throwable);
+                retry(rotation, throwable);
+            }
+
+            @Override
+            public void onError(String error) {
+                LOGGER.info("retireKey error = " + error);
+                //Old key is still valid on server, so the journal is kept until it is retired.
+                postponeRotation(rotation, error, null);
+            }
+        });
+    }
+
+    private void retry(KeyRotation rotation, Throwable throwable) {
+        if (rotation.getAttempt() >= MAX_ATTEMPTS) {
+            postponeRotation(rotation, null, throwable);
+            return;
+        }
+        long delay = Math.min(BASE_RETRY_DELAY << rotation.getAttempt(), MAX_RETRY_DELAY);
+        rotation.nextAttempt();
+        settings.putWireGuardKeyRotation(rotation);
+        LOGGER.info("Retry key rotation in " + delay + " ms");
+        handler.postDelayed(() -> performStep(rotation), delay);
+    }
+
+    //Journal is kept for the next try, which is made by the key rotation job or on the next start.
+    private void postponeRotation(KeyRotation rotation, String error, Throwable throwable) {
+        LOGGER.info("Key rotation is postponed: " + rotation);
+        rotation.resetAttempts();
+        settings.putWireGuardKeyRotation(rotation);
+        isRotating = false;
+        scheduleRotationRetry();
+        notifyRotationFinished(false);
+        //New key is already in use after registration, so only a failed registration is reported.
+        if (rotation.getStep() == KeyRotation.Step.REGISTER) {
+            keysEventsListener.onKeyGeneratedError(error, throwable);
+        }
+    }
+
+    //Rotation is finished or can't be continued, the journal isn't needed anymore.
+    private void stopRotation(boolean isSuccessful) {
+        settings.removeWireGuardKeyRotation();
+        isRotating = false;
+        notifyRotationFinished(isSuccessful);
+    }
+
+    private void notifyRotationFinished(boolean isSuccessful) {
+        List<OnKeyRotationFinishedListener> listeners = new ArrayList<>(rotationFinishedListeners);
+        rotationFinishedListeners.clear();
+        for (OnKeyRotationFinishedListener listener : listeners) {
+            listener.onKeyRotationFinished(isSuccessful);
+        }
+    }
+
     private String getSessionToken() {
         return userPreference.getSessionToken();
     }
@@ -155,6 +329,12 @@ public class WireGuardKeyController {
 
         void onKeyGeneratedSuccess();
 
+        void onKeyRotated();
+
         void onKeyGeneratedError(String error, Throwable throwable);
     }
+
+    public interface OnKeyRotationFinishedListener {
+        void onKeyRotationFinished(boolean isSuccessful);
+    }
 }
\ No newline at end of file
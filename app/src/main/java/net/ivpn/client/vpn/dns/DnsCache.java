@@ -0,0 +1,89 @@
+package net.ivpn.client.vpn.dns;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of DNS responses keyed by question. Responses are stored as they came from
+ * upstream, TTLs are decreased when a copy is taken out.
+ */
+class DnsCache {
+
+    private static final long MAX_TTL = 24 * 60 * 60;
+    private static final long MAX_NEGATIVE_TTL = 5 * 60;
+
+    private final LinkedHashMap<String, Entry> entries;
+
+    DnsCache(final int capacity) {
+        entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @param response Response from upstream.
+     * @param now      Current time in milliseconds, monotonic.
+     */
+    synchronized void put(String key, byte[] response, long now) {
+        long ttl = DnsMessage.getCacheTtl(response);
+        if (ttl <= 0) {
+            entries.remove(key);
+            return;
+        }
+        boolean isNegative = u16(response, 6) == 0;
+        ttl = Math.min(ttl, isNegative ? MAX_NEGATIVE_TTL : MAX_TTL);
+        entries.put(key, new Entry(response, now, ttl * 1000));
+    }
+
+    /**
+     * @return Live entry for the key, {@code null} if there is none or it has expired.
+     */
+    synchronized Entry get(String key, long now) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (now >= entry.expiresAt) {
+            entries.remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private static int u16(byte[] data, int offset) {
+        return ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
+    }
+
+    static final class Entry {
+        private final byte[] response;
+        private final long storedAt;
+        private final long expiresAt;
+
+        private Entry(byte[] response, long storedAt, long lifetime) {
+            this.response = response;
+            this.storedAt = storedAt;
+            this.expiresAt = storedAt + lifetime;
+        }
+
+        /**
+         * @return Copy of the response with the given ID and TTLs decreased by the time spent in the cache.
+         */
+        byte[] getResponse(int id, long now) {
+            byte[] copy = response.clone();
+            DnsMessage.setId(copy, id);
+            DnsMessage.decreaseTtl(copy, (now - storedAt) / 1000);
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package net.ivpn.client.vpn.dns;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Minimal reader of DNS messages in wire format, only what is needed to cache responses:
+ * question key, cache lifetime and TTL rewriting, and addresses for the lookups of the app.
+ * Messages are never fully decoded.
+ */
+final class DnsMessage {
+
+    static final int HEADER_SIZE = 12;
+    static final int MAX_SIZE = 4096;
+
+    static final int TYPE_A = 1;
+    static final int TYPE_AAAA = 28;
+
+    private static final int TYPE_SOA = 6;
+    private static final int CLASS_IN = 1;
+    private static final int FLAG_RECURSION_DESIRED = 0x01;
+    private static final int TYPE_OPT = 41;
+
+    private static final int RCODE_NOERROR = 0;
+    private static final int RCODE_NXDOMAIN = 3;
+
+    private static final int FLAG_TRUNCATED = 0x02;
+
+    private DnsMessage() {
+    }
+
+    static int getId(byte[] message) {
+        return u16(message, 0);
+    }
+
+    static void setId(byte[] message, int id) {
+        message[0] = (byte) (id >> 8);
+        message[1] = (byte) id;
+    }
+
+    /**
+     * @return Key of the single question of the message, {@code null} if message has no single question.
+     */
+    static String getQuestionKey(byte[] message) {
+        if (message.length < HEADER_SIZE || u16(message, 4) != 1) {
+            return null;
+        }
+        StringBuilder builder = new StringBuilder();
+        int position = HEADER_SIZE;
+        while (position < message.length) {
+            int labelLength = message[position] & 0xFF;
+            if (labelLength == 0) {
+                position++;
+                if (position + 4 > message.length) {
+                    return null;
+                }
+                return builder.toString().toLowerCase(Locale.US) + "/" + u16(message, position)
+                        + "/" + u16(message, position + 2);
+            }
+            //Compression is not used in questions of queries.
+            if ((labelLength & 0xC0) != 0 || position + 1 + labelLength > message.length) {
+                return null;
+            }
+            for (int i = position + 1; i <= position + labelLength; i++) {
+                builder.append((char) (message[i] & 0xFF));
+            }
+            builder.append('.');
+            position += labelLength + 1;
+        }
+        return null;
+    }
+
+    /**
+     * @return Recursive query for the records of the type, {@code null} if the name is not valid.
+     */
+    static byte[] createQuery(String name, int type) {
+        String[] labels = name.endsWith(".") ? name.substring(0, name.length() - 1).split("\\.")
+                : name.split("\\.");
+        int length = HEADER_SIZE + 1 + 4;
+        for (String label : labels) {
+            if (label.isEmpty() || label.length() > 63) {
+                return null;
+            }
+            length += label.length() + 1;
+        }
+        byte[] query = new byte[length];
+        query[2] = FLAG_RECURSION_DESIRED;
+        query[5] = 1;
+        int position = HEADER_SIZE;
+        for (String label : labels) {
+            query[position++] = (byte) label.length();
+            for (int i = 0; i < label.length(); i++) {
+                query[position++] = (byte) label.charAt(i);
+            }
+        }
+        position++;
+        query[position] = (byte) (type >> 8);
+        query[position + 1] = (byte) type;
+        query[position + 3] = CLASS_IN;
+        return query;
+    }
+
+    /**
+     * @return A and AAAA addresses in the answer section, empty list if there are none.
+     */
+    static List<InetAddress> getAddresses(byte[] message) {
+        List<InetAddress> addresses = new ArrayList<>();
+        if (message.length < HEADER_SIZE || (message[3] & 0x0F) != RCODE_NOERROR) {
+            return addresses;
+        }
+        int answers = u16(message, 6);
+        int position = skipQuestions(message);
+        for (int i = 0; i < answers && position >= 0; i++) {
+            int rdata = skipName(message, position) + 10;
+            if (rdata < 10 || rdata > message.length) {
+                break;
+            }
+            int type = u16(message, rdata - 10);
+            int rdataLength = u16(message, rdata - 2);
+            if (rdata + rdataLength > message.length) {
+                break;
+            }
+            if ((type == TYPE_A && rdataLength == 4) || (type == TYPE_AAAA && rdataLength == 16)) {
+                try {
+                    addresses.add(InetAddress.getByAddress(Arrays.copyOfRange(message, rdata, rdata + rdataLength)));
+                } catch (UnknownHostException ignored) {
+                }
+            }
+            position = rdata + rdataLength;
+        }
+        return addresses;
+    }
+
+    /**
+     * Calculates how long the response can be cached. Positive answers live for the smallest TTL of
+     * their records, negative ones (RFC 2308) for the SOA minimum in the authority section.
+     *
+     * @return Lifetime in seconds, {@code -1} if the response should not be cached.
+     */
+    static long getCacheTtl(byte[] message) {
+        if (message.length < HEADER_SIZE || (message[2] & FLAG_TRUNCATED) != 0) {
+            return -1;
+        }
+        int rcode = message[3] & 0x0F;
+        if (rcode != RCODE_NOERROR && rcode != RCODE_NXDOMAIN) {
+            return -1;
+        }
+        int answers = u16(message, 6);
+        int authorities = u16(message, 8);
+
+        int position = skipQuestions(message);
+        if (position < 0) {
+            return -1;
+        }
+        long ttl = Long.MAX_VALUE;
+        for (int i = 0; i < answers + authorities; i++) {
+            int rdata = skipName(message, position) + 10;
+            if (rdata < 10 || rdata > message.length) {
+                return -1;
+            }
+            int type = u16(message, rdata - 10);
+            long recordTtl = u32(message, rdata - 6);
+            int rdataLength = u16(message, rdata - 2);
+            if (i < answers) {
+                ttl = Math.min(ttl, recordTtl);
+            } else if (answers == 0 && type == TYPE_SOA) {
+                int minimum = skipName(message, skipName(message, rdata)) + 16;
+                if (minimum < 16 || minimum + 4 > message.length) {
+                    return -1;
+                }
+                ttl = Math.min(ttl, Math.min(recordTtl, u32(message, minimum)));
+            }
+            position = rdata + rdataLength;
+        }
+        //Negative response without SOA can't tell its lifetime.
+        return ttl == Long.MAX_VALUE ? -1 : ttl;
+    }
+
+    /**
+     * Decrease TTL of every record by the time the response spent in the cache.
+     */
+    static void decreaseTtl(byte[] message, long seconds) {
+        if (message.length < HEADER_SIZE) {
+            return;
+        }
+        int records = u16(message, 6) + u16(message, 8) + u16(message, 10);
+        int position = skipQuestions(message);
+        for (int i = 0; i < records && position >= 0; i++) {
+            int rdata = skipName(message, position) + 10;
+            if (rdata < 10 || rdata > message.length) {
+                return;
+            }
+            if (u16(message, rdata - 10) != TYPE_OPT) {
+                long ttl = Math.max(0, u32(message, rdata - 6) - seconds);
+                put32(message, rdata - 6, ttl);
+            }
+            position = rdata + u16(message, rdata - 2);
+        }
+    }
+
+    private static int skipQuestions(byte[] message) {
+        int questions = u16(message, 4);
+        int position = HEADER_SIZE;
+        for (int i = 0; i < questions; i++) {
+            position = skipName(message, position);
+            if (position < 0) {
+                return -1;
+            }
+            position += 4;
+        }
+        return position;
+    }
+
+    //Returns the position right after the name, or -1 if it is malformed.
+    private static int skipName(byte[] message, int position) {
+        if (position < 0) {
+            return -1;
+        }
+        while (position < message.length) {
+            int labelLength = message[position] & 0xFF;
+            if (labelLength == 0) {
+                return position + 1;
+            }
+            if ((labelLength & 0xC0) == 0xC0) {
+                return position + 2 <= message.length ? position + 2 : -1;
+            }
+            position += labelLength + 1;
+        }
+        return -1;
+    }
+
+    private static int u16(byte[] data, int offset) {
+        return ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
+    }
+
+    private static long u32(byte[] data, int offset) {
+        return ((long) u16(data, offset) << 16) | u16(data, offset + 2);
+    }
+
+    private static void put32(byte[] data, int offset, long value) {
+        data[offset] = (byte) (value >> 24);
+        data[offset + 1] = (byte) (value >> 16);
+        data[offset + 2] = (byte) (value >> 8);
+        data[offset + 3] = (byte) value;
+    }
+}
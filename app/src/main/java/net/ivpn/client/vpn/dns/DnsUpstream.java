@@ -0,0 +1,20 @@
+package net.ivpn.client.vpn.dns;
+
+import java9.util.concurrent.CompletableFuture;
+
+/**
+ * Resolver which {@link LocalDnsResolver} sends its lookups to.
+ */
+public interface DnsUpstream {
+
+    /**
+     * @param query DNS query in wire format.
+     * @return Future of the response in wire format.
+     */
+    CompletableFuture<byte[]> query(byte[] query);
+
+    /**
+     * Release connections held by the upstream.
+     */
+    void close();
+}
@@ -0,0 +1,67 @@
+package net.ivpn.client.vpn.dns;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.UnknownHostException;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.regex.Pattern;
+
+/**
+ * Creates upstreams from their user facing form: {@code https://host/path} for DNS over HTTPS,
+ * {@code tls://host[:port]} for DNS over TLS and a plain IPv4 address for DNS over UDP.
+ */
+public final class DnsUpstreams {
+
+    private static final String HTTPS_SCHEME = "https";
+    private static final String TLS_SCHEME = "tls";
+    private static final Pattern IPV4_PATTERN = Pattern.compile(
+            "^(?:(?:^|\\.)(?:2(?:5[0-5]|[0-4]\\d)|1?\\d?\\d)){4}$");
+
+    private DnsUpstreams() {
+    }
+
+    public static boolean isValid(String spec) {
+        return spec != null && (IPV4_PATTERN.matcher(spec).matches() || parseEncrypted(spec) != null);
+    }
+
+    public static boolean isEncrypted(String spec) {
+        return spec != null && parseEncrypted(spec) != null;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the spec is not valid.
+     */
+    public static DnsUpstream create(String spec, Executor executor) {
+        if (spec != null && IPV4_PATTERN.matcher(spec).matches()) {
+            try {
+                return new UdpDnsUpstream(InetAddress.getByName(spec), executor);
+            } catch (UnknownHostException e) {
+                throw new IllegalArgumentException(spec, e);
+            }
+        }
+        URI uri = spec != null ? parseEncrypted(spec) : null;
+        if (uri == null) {
+            throw new IllegalArgumentException("Unsupported DNS upstream " + spec);
+        }
+        if (HTTPS_SCHEME.equals(uri.getScheme().toLowerCase(Locale.US))) {
+            return new HttpsDnsUpstream(spec);
+        }
+        int port = uri.getPort() != -1 ? uri.getPort() : TlsDnsUpstream.DEFAULT_PORT;
+        return new TlsDnsUpstream(uri.getHost(), port, executor);
+    }
+
+    private static URI parseEncrypted(String spec) {
+        try {
+            URI uri = new URI(spec.trim());
+            if (uri.getScheme() == null || uri.getHost() == null) {
+                return null;
+            }
+            String scheme = uri.getScheme().toLowerCase(Locale.US);
+            return HTTPS_SCHEME.equals(scheme) || TLS_SCHEME.equals(scheme) ? uri : null;
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+}
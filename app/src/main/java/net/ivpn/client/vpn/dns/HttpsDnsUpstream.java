@@ -0,0 +1,90 @@
+package net.ivpn.client.vpn.dns;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import java9.util.concurrent.CompletableFuture;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * DNS over HTTPS (RFC 8484). Client keeps its connection alive and prefers HTTP/2,
+ * so concurrent queries are multiplexed as streams of one connection.
+ */
+public class HttpsDnsUpstream implements DnsUpstream {
+
+    private static final MediaType DNS_MESSAGE = MediaType.get("application/dns-message");
+    private static final int TIMEOUT = 5;
+    private static final int KEEP_ALIVE = 5;
+
+    private final String url;
+    private final OkHttpClient httpClient;
+
+    public HttpsDnsUpstream(String url) {
+        this.url = url;
+        httpClient = new OkHttpClient.Builder()
+                .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .connectionPool(new ConnectionPool(1, KEEP_ALIVE, TimeUnit.MINUTES))
+                .connectTimeout(TIMEOUT, TimeUnit.SECONDS)
+                .readTimeout(TIMEOUT, TimeUnit.SECONDS)
+                .build();
+    }
+
+    @Override
+    public CompletableFuture<byte[]> query(byte[] query) {
+        int id = DnsMessage.getId(query);
+        //RFC 8484 recommends ID 0, the same question then has the same request body.
+        byte[] message = query.clone();
+        DnsMessage.setId(message, 0);
+        Request request = new Request.Builder()
+                .url(url)
+                .header("Accept", DNS_MESSAGE.toString())
+                .post(RequestBody.create(DNS_MESSAGE, message))
+                .build();
+
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+        httpClient.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (ResponseBody body = response.body()) {
+                    if (!response.isSuccessful() || body == null) {
+                        throw new IOException("Unexpected response " + response.code());
+                    }
+                    byte[] bytes = body.bytes();
+                    if (bytes.length < DnsMessage.HEADER_SIZE) {
+                        throw new IOException("Malformed response");
+                    }
+                    DnsMessage.setId(bytes, id);
+                    future.complete(bytes);
+                } catch (IOException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public void close() {
+        httpClient.connectionPool().evictAll();
+    }
+
+    @Override
+    public String toString() {
+        return url;
+    }
+}
@@ -0,0 +1,160 @@
+package net.ivpn.client.vpn.dns;
+
+import net.ivpn.client.common.dagger.ApplicationScope;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+
+import java9.util.concurrent.CompletableFuture;
+
+/**
+ * Looks up names for the app itself over the encrypted upstream of custom DNS, so gateway names
+ * don't leak to the network's resolver. Responses are cached for their TTL and concurrent queries
+ * for the same question share one upstream request. It is not the resolver of the tunnel: the
+ * tunnel's DNS settings still point at the configured servers.
+ */
+@ApplicationScope
+public class LocalDnsResolver {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocalDnsResolver.class);
+
+    private static final int CACHE_SIZE = 256;
+    private static final long UPSTREAM_TIMEOUT = 5000;
+
+    private final DnsCache cache = new DnsCache(CACHE_SIZE);
+    private final Map<String, CompletableFuture<byte[]>> inFlight = new HashMap<>();
+    private volatile DnsUpstream upstream;
+
+    @Inject
+    public LocalDnsResolver() {
+    }
+
+    /**
+     * Start forwarding to the given upstream, cached responses of the previous one are dropped.
+     */
+    public void start(DnsUpstream upstream) {
+        LOGGER.info("start: upstream = " + upstream);
+        DnsUpstream previous = this.upstream;
+        this.upstream = upstream;
+        cache.clear();
+        if (previous != null && previous != upstream) {
+            previous.close();
+        }
+    }
+
+    public void stop() {
+        LOGGER.info("stop");
+        DnsUpstream previous = upstream;
+        upstream = null;
+        cache.clear();
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    public boolean isRunning() {
+        return upstream != null;
+    }
+
+    /**
+     * Look up IPv4 and IPv6 addresses of the name through the upstream.
+     *
+     * @return Future of the addresses, it fails if neither of the lookups succeeds.
+     */
+    public CompletableFuture<List<InetAddress>> lookup(String hostName) {
+        byte[] queryA = DnsMessage.createQuery(hostName, DnsMessage.TYPE_A);
+        byte[] queryAaaa = DnsMessage.createQuery(hostName, DnsMessage.TYPE_AAAA);
+        if (queryA == null || queryAaaa == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Malformed name " + hostName));
+        }
+        DnsMessage.setId(queryA, ThreadLocalRandom.current().nextInt(0x10000));
+        DnsMessage.setId(queryAaaa, ThreadLocalRandom.current().nextInt(0x10000));
+        CompletableFuture<List<InetAddress>> ipv4 = resolve(queryA).thenApply(DnsMessage::getAddresses);
+        CompletableFuture<List<InetAddress>> ipv6 = resolve(queryAaaa).thenApply(DnsMessage::getAddresses);
+        //IPv4 goes first, gateways are connected over IPv4 when both are known.
+        return ipv4.handle((addresses, throwable) -> addresses)
+                .thenCombine(ipv6.handle((addresses, throwable) -> addresses), (v4, v6) -> {
+                    if (v4 == null && v6 == null) {
+                        throw new IllegalStateException("Unable to look up " + hostName);
+                    }
+                    List<InetAddress> addresses = new ArrayList<>();
+                    if (v4 != null) {
+                        addresses.addAll(v4);
+                    }
+                    if (v6 != null) {
+                        addresses.addAll(v6);
+                    }
+                    return addresses;
+                });
+    }
+
+    /**
+     * @param query DNS query in wire format.
+     * @return Future of the response with the ID of the query.
+     */
+    private CompletableFuture<byte[]> resolve(byte[] query) {
+        DnsUpstream upstream = this.upstream;
+        if (upstream == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Resolver is stopped"));
+        }
+        if (query.length < DnsMessage.HEADER_SIZE) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Malformed query"));
+        }
+        int id = DnsMessage.getId(query);
+        String key = DnsMessage.getQuestionKey(query);
+        if (key == null) {
+            return forward(upstream, query);
+        }
+
+        long now = now();
+        DnsCache.Entry entry = cache.get(key, now);
+        if (entry != null) {
+            return CompletableFuture.completedFuture(entry.getResponse(id, now));
+        }
+
+        return fetch(upstream, key, query).thenApply(response -> {
+            byte[] copy = response.clone();
+            DnsMessage.setId(copy, id);
+            return copy;
+        });
+    }
+
+    private CompletableFuture<byte[]> fetch(DnsUpstream upstream, String key, byte[] query) {
+        CompletableFuture<byte[]> future;
+        synchronized (inFlight) {
+            future = inFlight.get(key);
+            if (future != null) {
+                return future;
+            }
+            future = forward(upstream, query);
+            inFlight.put(key, future);
+        }
+        future.whenComplete((response, throwable) -> {
+            synchronized (inFlight) {
+                inFlight.remove(key);
+            }
+            if (response != null && this.upstream == upstream) {
+                cache.put(key, response, now());
+            }
+        });
+        return future;
+    }
+
+    private CompletableFuture<byte[]> forward(DnsUpstream upstream, byte[] query) {
+        return upstream.query(query).orTimeout(UPSTREAM_TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+}
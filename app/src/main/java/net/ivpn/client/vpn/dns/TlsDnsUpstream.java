@@ -0,0 +1,210 @@
+package net.ivpn.client.vpn.dns;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+import java9.util.concurrent.CompletableFuture;
+
+/**
+ * DNS over TLS (RFC 7858). One TLS connection is kept open and reused: queries are pipelined
+ * with their own IDs and responses are matched back on a reader thread in any order, so
+ * the handshake is paid once per connection instead of once per query.
+ * Connection is closed after {@link #IDLE_TIMEOUT} without queries.
+ */
+public class TlsDnsUpstream implements DnsUpstream {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TlsDnsUpstream.class);
+
+    static final int DEFAULT_PORT = 853;
+    private static final int CONNECT_TIMEOUT = 5000;
+    private static final int IDLE_TIMEOUT = 30000;
+
+    private final String host;
+    private final int port;
+    private final Executor executor;
+
+    private final Map<Integer, Pending> pending = new HashMap<>();
+    private SSLSocket socket;
+    private OutputStream output;
+    private int nextId;
+
+    public TlsDnsUpstream(String host, int port, Executor executor) {
+        this.host = host;
+        this.port = port;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<byte[]> query(byte[] query) {
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+        executor.execute(() -> send(query, future));
+        return future;
+    }
+
+    @Override
+    public synchronized void close() {
+        closeSocket(socket, new IOException("Upstream is closed"));
+    }
+
+    private synchronized void send(byte[] query, CompletableFuture<byte[]> future) {
+        if (future.isDone()) {
+            //Timed out or cancelled while waiting for the executor.
+            return;
+        }
+        int id = 0;
+        try {
+            if (socket == null) {
+                connect();
+            }
+            id = takeId();
+            pending.put(id, new Pending(future, DnsMessage.getId(query)));
+            int sentId = id;
+            //Caller may give up on the query with a timeout, its entry shouldn't keep the connection busy.
+            future.whenComplete((response, throwable) -> {
+                if (throwable != null) {
+                    forget(sentId, future);
+                }
+            });
+
+            byte[] message = query.clone();
+            DnsMessage.setId(message, id);
+            byte[] frame = new byte[message.length + 2];
+            frame[0] = (byte) (message.length >> 8);
+            frame[1] = (byte) message.length;
+            System.arraycopy(message, 0, frame, 2, message.length);
+            output.write(frame);
+            output.flush();
+        } catch (IOException e) {
+            pending.remove(id);
+            future.completeExceptionally(e);
+            closeSocket(socket, e);
+        }
+    }
+
+    private void connect() throws IOException {
+        LOGGER.info("Connect to " + host + ":" + port);
+        Socket plainSocket = new Socket();
+        SSLSocket socket;
+        try {
+            plainSocket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT);
+            socket = (SSLSocket) ((SSLSocketFactory) SSLSocketFactory.getDefault())
+                    .createSocket(plainSocket, host, port, true);
+            socket.startHandshake();
+            if (!HttpsURLConnection.getDefaultHostnameVerifier().verify(host, socket.getSession())) {
+                throw new SSLException("Certificate doesn't match " + host);
+            }
+            socket.setSoTimeout(IDLE_TIMEOUT);
+        } catch (IOException e) {
+            plainSocket.close();
+            throw e;
+        }
+        this.socket = socket;
+        output = socket.getOutputStream();
+        SSLSocket connected = socket;
+        Thread reader = new Thread(() -> read(connected), TlsDnsUpstream.class.getSimpleName());
+        reader.start();
+    }
+
+    private void read(SSLSocket socket) {
+        try {
+            DataInputStream input = new DataInputStream(socket.getInputStream());
+            while (true) {
+                int length;
+                try {
+                    length = input.readUnsignedShort();
+                } catch (SocketTimeoutException e) {
+                    synchronized (this) {
+                        if (pending.isEmpty()) {
+                            LOGGER.info("Close idle connection");
+                            closeSocket(socket, e);
+                            return;
+                        }
+                    }
+                    continue;
+                }
+                byte[] response = new byte[length];
+                input.readFully(response);
+                if (length < DnsMessage.HEADER_SIZE) {
+                    continue;
+                }
+                Pending request;
+                synchronized (this) {
+                    request = pending.remove(DnsMessage.getId(response));
+                }
+                if (request != null) {
+                    DnsMessage.setId(response, request.id);
+                    request.future.complete(response);
+                }
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                closeSocket(socket, e);
+            }
+        }
+    }
+
+    private synchronized void forget(int id, CompletableFuture<byte[]> future) {
+        Pending request = pending.get(id);
+        if (request != null && request.future == future) {
+            pending.remove(id);
+        }
+    }
+
+    private int takeId() {
+        //IDs are unique among queries in flight on the connection, 0 is never used.
+        do {
+            nextId = (nextId + 1) & 0xFFFF;
+        } while (nextId == 0 || pending.containsKey(nextId));
+        return nextId;
+    }
+
+    //Should be called with the lock held. Requests of the closed connection are failed.
+    private void closeSocket(SSLSocket socket, IOException cause) {
+        if (socket == null || socket != this.socket) {
+            return;
+        }
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+        this.socket = null;
+        output = null;
+        List<Pending> requests = new ArrayList<>(pending.values());
+        pending.clear();
+        for (Pending request : requests) {
+            request.future.completeExceptionally(cause);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "tls://" + host + ":" + port;
+    }
+
+    private static final class Pending {
+        private final CompletableFuture<byte[]> future;
+        private final int id;
+
+        private Pending(CompletableFuture<byte[]> future, int id) {
+            this.future = future;
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package net.ivpn.client.vpn.dns;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import java9.util.concurrent.CompletableFuture;
+
+/**
+ * Plain DNS over UDP. Every query uses its own socket with a random source port, sockets created
+ * by the app are routed through the tunnel, so queries never leave the device in clear.
+ */
+public class UdpDnsUpstream implements DnsUpstream {
+
+    private static final int PORT = 53;
+    private static final int TIMEOUT = 3000;
+
+    private final InetAddress server;
+    private final Executor executor;
+
+    public UdpDnsUpstream(InetAddress server, Executor executor) {
+        this.server = server;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<byte[]> query(byte[] query) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return exchange(query);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private byte[] exchange(byte[] query) throws IOException {
+        try (DatagramSocket socket = new DatagramSocket()) {
+            socket.setSoTimeout(TIMEOUT);
+            socket.send(new DatagramPacket(query, query.length, server, PORT));
+            byte[] buffer = new byte[DnsMessage.MAX_SIZE];
+            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            long deadline = System.currentTimeMillis() + TIMEOUT;
+            while (true) {
+                socket.receive(packet);
+                //Responses from other hosts or to other queries are ignored.
+                if (server.equals(packet.getAddress()) && packet.getLength() >= DnsMessage.HEADER_SIZE
+                        && DnsMessage.getId(buffer) == DnsMessage.getId(query)) {
+                    return Arrays.copyOf(buffer, packet.getLength());
+                }
+                if (System.currentTimeMillis() > deadline) {
+                    throw new SocketTimeoutException("No response from " + server);
+                }
+                packet.setLength(buffer.length);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "udp://" + server.getHostAddress();
+    }
+}
@@ -0,0 +1,162 @@
+package net.ivpn.client.vpn.fallback;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.annotations.Expose;
+
+import net.ivpn.client.ui.protocol.port.Port;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Handshake results of every port on one network. Ports are ranked by smoothed success rate,
+ * slow handshakes lower the score a bit and a port that failed after its last success is penalized.
+ * Port of the last successful connection is the winner and always goes first.
+ */
+public class ConnectionHistory {
+
+    private static final float UNKNOWN_SCORE = 0.5f;
+    private static final float FAILING_PENALTY = 0.5f;
+    private static final float MAX_TIME_PENALTY = 0.1f;
+    private static final long SLOW_CONNECT_TIME = 30000;
+    private static final float TIME_WEIGHT = 0.3f;
+    //Counters are halved after this number of attempts, so old results fade out.
+    private static final int MAX_ATTEMPTS = 20;
+
+    @Expose
+    private Map<String, Stats> stats = new HashMap<>();
+    @Expose
+    private String winner;
+    @Expose
+    private long lastUsed;
+
+    public static ConnectionHistory from(String json) {
+        if (json == null || json.isEmpty()) {
+            return new ConnectionHistory();
+        }
+        try {
+            ConnectionHistory history = new Gson().fromJson(json, ConnectionHistory.class);
+            if (history == null) {
+                return new ConnectionHistory();
+            }
+            if (history.stats == null) {
+                history.stats = new HashMap<>();
+            }
+            return history;
+        } catch (JsonParseException exception) {
+            return new ConnectionHistory();
+        }
+    }
+
+    public void onSuccess(Port port, long connectTime, long now) {
+        Stats portStats = getStats(port);
+        portStats.successes++;
+        portStats.connectTime = portStats.connectTime == 0 ? connectTime
+                : (long) (TIME_WEIGHT * connectTime + (1 - TIME_WEIGHT) * portStats.connectTime);
+        portStats.lastSuccess = now;
+        portStats.fade();
+        winner = port.name();
+        lastUsed = now;
+    }
+
+    public void onFailure(Port port, long now) {
+        Stats portStats = getStats(port);
+        portStats.failures++;
+        portStats.lastFailure = now;
+        portStats.fade();
+        if (port.name().equals(winner)) {
+            winner = null;
+        }
+        lastUsed = now;
+    }
+
+    public Port getWinner() {
+        return winner != null ? valueOf(winner) : null;
+    }
+
+    /**
+     * @return true if the last attempt on the port failed.
+     */
+    public boolean isFailing(Port port) {
+        Stats portStats = stats.get(port.name());
+        return portStats != null && portStats.lastFailure > portStats.lastSuccess;
+    }
+
+    public long getLastUsed() {
+        return lastUsed;
+    }
+
+    /**
+     * @param candidates Ports in the preferred order, it is kept for ports with equal score.
+     * @return Candidates from the best to the worst.
+     */
+    public List<Port> rank(List<Port> candidates) {
+        List<Port> ranked = new ArrayList<>(candidates);
+        Map<Port, Float> scores = new HashMap<>();
+        for (Port port : ranked) {
+            scores.put(port, port.name().equals(winner) ? Float.MAX_VALUE : getScore(port));
+        }
+        Collections.sort(ranked, (first, second) -> Float.compare(scores.get(second), scores.get(first)));
+        return ranked;
+    }
+
+    float getScore(Port port) {
+        Stats portStats = stats.get(port.name());
+        if (portStats == null) {
+            return UNKNOWN_SCORE;
+        }
+        float score = (portStats.successes + 1f) / (portStats.successes + portStats.failures + 2f);
+        if (portStats.lastFailure > portStats.lastSuccess) {
+            score *= FAILING_PENALTY;
+        }
+        if (portStats.successes > 0) {
+            score -= MAX_TIME_PENALTY * Math.min(portStats.connectTime, SLOW_CONNECT_TIME) / SLOW_CONNECT_TIME;
+        }
+        return score;
+    }
+
+    public String toJson() {
+        return new Gson().toJson(this);
+    }
+
+    private Stats getStats(Port port) {
+        Stats portStats = stats.get(port.name());
+        if (portStats == null) {
+            portStats = new Stats();
+            stats.put(port.name(), portStats);
+        }
+        return portStats;
+    }
+
+    private static Port valueOf(String name) {
+        try {
+            return Port.valueOf(name);
+        } catch (IllegalArgumentException exception) {
+            return null;
+        }
+    }
+
+    private static class Stats {
+        @Expose
+        private int successes;
+        @Expose
+        private int failures;
+        @Expose
+        private long connectTime;
+        @Expose
+        private long lastSuccess;
+        @Expose
+        private long lastFailure;
+
+        private void fade() {
+            if (successes + failures > MAX_ATTEMPTS) {
+                successes /= 2;
+                failures /= 2;
+            }
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package net.ivpn.client.vpn.fallback;
+
+import android.os.SystemClock;
+
+import net.ivpn.client.common.connectivity.ConnectivityEngine;
+import net.ivpn.client.common.connectivity.ConnectivityEvent;
+import net.ivpn.client.common.dagger.ApplicationScope;
+import net.ivpn.client.common.prefs.ConnectionHistoryPreference;
+import net.ivpn.client.common.prefs.ServerType;
+import net.ivpn.client.common.prefs.ServersRepository;
+import net.ivpn.client.common.prefs.Settings;
+import net.ivpn.client.common.utils.DomainResolver;
+import net.ivpn.client.rest.data.model.Server;
+import net.ivpn.client.ui.protocol.port.Port;
+import net.ivpn.client.vpn.Protocol;
+import net.ivpn.client.vpn.ProtocolController;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.inject.Inject;
+
+import java9.util.concurrent.CompletableFuture;
+
+/**
+ * Picks the port for the next connection attempt from the handshake history of the current network.
+ * Every attempt is reported back with {@link #onAttempt()}, {@link #onSuccess()} and {@link #onFailure()}.
+ * After a failure the next best port is taken, preferring the other transport as a failed UDP port
+ * usually means UDP is blocked at all. TCP candidates are probed in parallel and the best reachable
+ * one is used. Port that worked last time on the network is used again if the chosen one fails there.
+ * Port chosen this way overrides the port selected by the user only on the network it is chosen for
+ * and until the user disconnects, config generation takes it from {@link #getPort(Protocol)}.
+ * Only the port of the current protocol is changed, there is no fallback between OpenVPN and WireGuard.
+ */
+@ApplicationScope
+public class PortSelector {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PortSelector.class);
+
+    private static final int PROBE_TIMEOUT = 3000;
+    private static final int MAX_NETWORKS = 32;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Set<Port> triedPorts = new HashSet<>();
+    private String attemptFingerprint;
+    private Port attemptPort;
+    private long attemptTime;
+    private Port overridePort;
+    private Port overriddenPort;
+    private String overrideFingerprint;
+
+    private Settings settings;
+    private ProtocolController protocolController;
+    private ConnectivityEngine connectivityEngine;
+    private ConnectionHistoryPreference historyPreference;
+    private ServersRepository serversRepository;
+    private DomainResolver domainResolver;
+
+    @Inject
+    PortSelector(Settings settings, ProtocolController protocolController, ConnectivityEngine connectivityEngine,
+                 ConnectionHistoryPreference historyPreference, ServersRepository serversRepository,
+                 DomainResolver domainResolver) {
+        this.settings = settings;
+        this.protocolController = protocolController;
+        this.connectivityEngine = connectivityEngine;
+        this.historyPreference = historyPreference;
+        this.serversRepository = serversRepository;
+        this.domainResolver = domainResolver;
+    }
+
+    /**
+     * @return Port for the next connection with the protocol, either the one selected by the user
+     * or the one chosen instead of it on the current network.
+     */
+    public synchronized Port getPort(Protocol protocol) {
+        Port selectedPort = getSelectedPort(protocol);
+        if (overridePort == null || selectedPort != overriddenPort || !isOf(overridePort, protocol)
+                || !Objects.equals(overrideFingerprint, getCurrentFingerprint())) {
+            return selectedPort;
+        }
+        return overridePort;
+    }
+
+    /**
+     * Switch to the last winner of the current network if the port failed there after its last success.
+     * Selected port is kept on networks where it works, so the choice of the user isn't overridden needlessly.
+     */
+    public synchronized void applyPreferredPort() {
+        ConnectivityEvent event = connectivityEngine.getCurrentEvent();
+        if (!event.isConnected()) {
+            return;
+        }
+        Protocol protocol = getProtocol();
+        Port port = getPort(protocol);
+        ConnectionHistory history = getHistory(event.getFingerprint());
+        Port winner = history.getWinner();
+        if (winner != null && winner != port && history.isFailing(port) && isOf(winner, protocol)) {
+            LOGGER.info("Use " + winner + " instead of " + port + " on " + event.getFingerprint());
+            setOverride(protocol, winner);
+        }
+    }
+
+    public synchronized void onAttempt() {
+        ConnectivityEvent event = connectivityEngine.getCurrentEvent();
+        attemptFingerprint = event.isConnected() ? event.getFingerprint() : null;
+        attemptPort = getPort(getProtocol());
+        attemptTime = SystemClock.elapsedRealtime();
+    }
+
+    public synchronized void onSuccess() {
+        if (attemptPort == null) {
+            return;
+        }
+        long connectTime = SystemClock.elapsedRealtime() - attemptTime;
+        LOGGER.info("Connected with " + attemptPort + " in " + connectTime + " ms");
+        if (isSameNetwork()) {
+            ConnectionHistory history = getHistory(attemptFingerprint);
+            history.onSuccess(attemptPort, connectTime, System.currentTimeMillis());
+            putHistory(attemptFingerprint, history);
+        }
+        attemptPort = null;
+        triedPorts.clear();
+    }
+
+    /**
+     * Record the failure of the current attempt and select the next port.
+     *
+     * @return Future that is completed with the selected port once it is applied, it never completes exceptionally.
+     */
+    public CompletableFuture<Port> onFailure() {
+        List<Port> candidates;
+        Protocol protocol;
+        synchronized (this) {
+            protocol = getProtocol();
+            Port failedPort = attemptPort != null ? attemptPort : getPort(protocol);
+            LOGGER.info("Unable to connect with " + failedPort);
+            ConnectivityEvent event = connectivityEngine.getCurrentEvent();
+            ConnectionHistory history = getHistory(event.getFingerprint());
+            if (attemptPort != null && isSameNetwork()) {
+                history.onFailure(failedPort, System.currentTimeMillis());
+                putHistory(attemptFingerprint, history);
+            }
+            attemptPort = null;
+
+            triedPorts.add(failedPort);
+            candidates = getCandidates(protocol, failedPort);
+            if (candidates.isEmpty()) {
+                //Every port is tried, start the next round.
+                triedPorts.clear();
+                triedPorts.add(failedPort);
+                candidates = getCandidates(protocol, failedPort);
+            }
+            candidates = history.rank(candidates);
+        }
+        LOGGER.info("Candidates: " + candidates);
+        if (candidates.isEmpty()) {
+            return CompletableFuture.completedFuture(getPort(protocol));
+        }
+
+        final List<Port> ranked = candidates;
+        return choose(ranked)
+                .exceptionally(throwable -> ranked.get(0))
+                .thenApply(port -> {
+                    LOGGER.info("Next port is " + port);
+                    synchronized (this) {
+                        setOverride(protocol, port);
+                    }
+                    return port;
+                });
+    }
+
+    /**
+     * Called when the user disconnects, the next connection starts from the selected port.
+     */
+    public synchronized void reset() {
+        attemptPort = null;
+        triedPorts.clear();
+        overridePort = null;
+    }
+
+    //Ports which aren't tried yet, ports of the other transport go first.
+    private List<Port> getCandidates(Protocol protocol, Port failedPort) {
+        List<Port> sameTransport = new ArrayList<>();
+        List<Port> otherTransport = new ArrayList<>();
+        for (Port port : Port.valuesFor(protocol)) {
+            if (triedPorts.contains(port)) {
+                continue;
+            }
+            if (port.isUDP() == failedPort.isUDP()) {
+                sameTransport.add(port);
+            } else {
+                otherTransport.add(port);
+            }
+        }
+        otherTransport.addAll(sameTransport);
+        return otherTransport;
+    }
+
+    //UDP port can't be checked without the handshake itself, TCP ports are checked by connection to the gateway.
+    private CompletableFuture<Port> choose(List<Port> ranked) {
+        Port best = ranked.get(0);
+        if (best.isUDP()) {
+            return CompletableFuture.completedFuture(best);
+        }
+        Server server = serversRepository.getCurrentServer(ServerType.ENTRY);
+        if (server == null) {
+            return CompletableFuture.completedFuture(best);
+        }
+        return domainResolver.resolve(server.getGateway()).thenCompose(addresses -> {
+            if (addresses.isEmpty()) {
+                return CompletableFuture.completedFuture(best);
+            }
+            InetAddress address = addresses.get(0);
+            List<Port> tcpPorts = new ArrayList<>();
+            List<CompletableFuture<Boolean>> probes = new ArrayList<>();
+            CompletableFuture<Port> chosen = new CompletableFuture<>();
+            for (Port port : ranked) {
+                if (!port.isUDP()) {
+                    tcpPorts.add(port);
+                    probes.add(CompletableFuture.supplyAsync(() -> isReachable(address, port), executor));
+                }
+            }
+            for (CompletableFuture<Boolean> probe : probes) {
+                probe.whenComplete((isReachable, throwable) -> chooseReachable(chosen, tcpPorts, probes, best));
+            }
+            return chosen;
+        });
+    }
+
+    //First reachable port in the ranked order is taken as soon as all ports ranked above it are unreachable,
+    //a blackholed port ranked below doesn't hold the choice until its timeout.
+    private static void chooseReachable(CompletableFuture<Port> chosen, List<Port> ports,
+                                        List<CompletableFuture<Boolean>> probes, Port fallback) {
+        for (int i = 0; i < ports.size(); i++) {
+            CompletableFuture<Boolean> probe = probes.get(i);
+            if (!probe.isDone()) {
+                return;
+            }
+            if (!probe.isCompletedExceptionally() && probe.join()) {
+                chosen.complete(ports.get(i));
+                return;
+            }
+        }
+        chosen.complete(fallback);
+    }
+
+    private boolean isReachable(InetAddress address, Port port) {
+        long startTime = SystemClock.elapsedRealtime();
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(address, port.getPortNumber()), PROBE_TIMEOUT);
+            LOGGER.info(port + " is reachable in " + (SystemClock.elapsedRealtime() - startTime) + " ms");
+            return true;
+        } catch (IOException exception) {
+            LOGGER.info(port + " is unreachable: " + exception.getMessage());
+            return false;
+        }
+    }
+
+    private boolean isSameNetwork() {
+        ConnectivityEvent event = connectivityEngine.getCurrentEvent();
+        return attemptFingerprint != null && attemptFingerprint.equals(event.getFingerprint());
+    }
+
+    private ConnectionHistory getHistory(String fingerprint) {
+        return ConnectionHistory.from(historyPreference.getHistory(fingerprint));
+    }
+
+    private void putHistory(String fingerprint, ConnectionHistory history) {
+        historyPreference.putHistory(fingerprint, history.toJson());
+        Map<String, String> all = historyPreference.getAll();
+        if (all.size() <= MAX_NETWORKS) {
+            return;
+        }
+        String oldest = null;
+        long oldestTime = Long.MAX_VALUE;
+        for (Map.Entry<String, String> entry : all.entrySet()) {
+            long lastUsed = ConnectionHistory.from(entry.getValue()).getLastUsed();
+            if (!entry.getKey().equals(fingerprint) && lastUsed < oldestTime) {
+                oldest = entry.getKey();
+                oldestTime = lastUsed;
+            }
+        }
+        if (oldest != null) {
+            historyPreference.removeHistory(oldest);
+        }
+    }
+
+    private Protocol getProtocol() {
+        Protocol protocol = protocolController.getCurrentProtocol();
+        return protocol != null ? protocol : Protocol.OPENVPN;
+    }
+
+    private Port getSelectedPort(Protocol protocol) {
+        return protocol.equals(Protocol.WIREGUARD) ? settings.getWireGuardPort() : settings.getOpenVpnPort();
+    }
+
+    //Override is dropped once the user selects another port or the device moves to another network.
+    private void setOverride(Protocol protocol, Port port) {
+        overriddenPort = getSelectedPort(protocol);
+        overridePort = port != overriddenPort ? port : null;
+        overrideFingerprint = getCurrentFingerprint();
+    }
+
+    private String getCurrentFingerprint() {
+        ConnectivityEvent event = connectivityEngine.getCurrentEvent();
+        return event.isConnected() ? event.getFingerprint() : null;
+    }
+
+    private static boolean isOf(Port port, Protocol protocol) {
+        return Arrays.asList(Port.valuesFor(protocol)).contains(port);
+    }
+}
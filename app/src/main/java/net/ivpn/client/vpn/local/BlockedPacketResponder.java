@@ -0,0 +1,330 @@
+package net.ivpn.client.vpn.local;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+
+/**
+ * Builds answers for packets caught by kill switch, so blocked apps fail at once instead of waiting
+ * for their timeouts: TCP is reset, DNS query is refused and any other UDP gets ICMP port unreachable.
+ * Answer is written into the caller's buffer, nothing is allocated per packet.
+ */
+class BlockedPacketResponder {
+
+    static final int NO_PROTOCOL = -1;
+    static final int PROTOCOL_TCP = 6;
+    static final int PROTOCOL_UDP = 17;
+    private static final int PROTOCOL_ICMP = 1;
+    private static final int PROTOCOL_ICMPV6 = 58;
+
+    private static final int IPV4_HEADER = 20;
+    private static final int IPV6_HEADER = 40;
+    private static final int TCP_HEADER = 20;
+    private static final int UDP_HEADER = 8;
+    private static final int ICMP_HEADER = 8;
+    private static final int DNS_HEADER = 12;
+    private static final int IPV6_MIN_MTU = 1280;
+
+    private static final int TCP_FIN = 0x01;
+    private static final int TCP_SYN = 0x02;
+    private static final int TCP_RST = 0x04;
+    private static final int TCP_ACK = 0x10;
+
+    private static final int DNS_PORT = 53;
+    private static final int DNS_REFUSED = 5;
+
+    private byte[] packet;
+    private int protocol = NO_PROTOCOL;
+    private boolean isIpv6;
+    private int headerLength;
+    private int sourceOffset;
+    private int destinationOffset;
+    private int addressLength;
+    private int sourcePort;
+    private int destinationPort;
+
+    /**
+     * @param packet IP packet read from TUN.
+     * @param length Length of the packet.
+     * @param answer Buffer for the answer, it should be at least of {@link #IPV6_MIN_MTU} or packet size.
+     * @return Length of the answer, {@code 0} if the packet should be just dropped.
+     */
+    int respond(byte[] packet, int length, byte[] answer) {
+        this.packet = packet;
+        protocol = NO_PROTOCOL;
+        if (length < 1) {
+            return 0;
+        }
+
+        int version = (packet[0] >> 4) & 0xF;
+        int nextProtocol;
+        if (version == 4 && length >= IPV4_HEADER) {
+            isIpv6 = false;
+            headerLength = (packet[0] & 0xF) * 4;
+            //Only the first fragment has transport header.
+            if (headerLength < IPV4_HEADER || (u16(packet, 6) & 0x1FFF) != 0) {
+                return 0;
+            }
+            //Multicast and broadcast are never answered.
+            if ((packet[16] & 0xFF) >= 224) {
+                return 0;
+            }
+            length = Math.min(length, u16(packet, 2));
+            addressLength = 4;
+            sourceOffset = 12;
+            destinationOffset = 16;
+            nextProtocol = packet[9] & 0xFF;
+        } else if (version == 6 && length >= IPV6_HEADER) {
+            isIpv6 = true;
+            headerLength = IPV6_HEADER;
+            if ((packet[24] & 0xFF) == 0xFF) {
+                return 0;
+            }
+            length = Math.min(length, IPV6_HEADER + u16(packet, 4));
+            addressLength = 16;
+            sourceOffset = 8;
+            destinationOffset = 24;
+            nextProtocol = packet[6] & 0xFF;
+        } else {
+            return 0;
+        }
+
+        if (nextProtocol == PROTOCOL_TCP && length >= headerLength + TCP_HEADER) {
+            protocol = PROTOCOL_TCP;
+            readPorts();
+            return respondTcp(length, answer);
+        }
+        if (nextProtocol == PROTOCOL_UDP && length >= headerLength + UDP_HEADER) {
+            protocol = PROTOCOL_UDP;
+            readPorts();
+            return respondUdp(length, answer);
+        }
+        return 0;
+    }
+
+    /**
+     * @return Transport protocol of the last packet, {@link #NO_PROTOCOL} if it wasn't TCP or UDP.
+     */
+    int getProtocol() {
+        return protocol;
+    }
+
+    boolean isIpv6() {
+        return isIpv6;
+    }
+
+    /**
+     * @return Key of the flow of the last packet, retries of the same connection have the same key.
+     */
+    long getFlowKey() {
+        long key = protocol;
+        key = key * 31 + sourcePort;
+        key = key * 31 + destinationPort;
+        for (int i = 0; i < addressLength; i++) {
+            key = key * 31 + (packet[destinationOffset + i] & 0xFF);
+        }
+        return key;
+    }
+
+    InetSocketAddress getSource() throws UnknownHostException {
+        return new InetSocketAddress(getAddress(sourceOffset), sourcePort);
+    }
+
+    InetSocketAddress getDestination() throws UnknownHostException {
+        return new InetSocketAddress(getAddress(destinationOffset), destinationPort);
+    }
+
+    private InetAddress getAddress(int offset) throws UnknownHostException {
+        return InetAddress.getByAddress(Arrays.copyOfRange(packet, offset, offset + addressLength));
+    }
+
+    private void readPorts() {
+        sourcePort = u16(packet, headerLength);
+        destinationPort = u16(packet, headerLength + 2);
+    }
+
+    private int respondTcp(int length, byte[] answer) {
+        int offset = headerLength;
+        int flags = packet[offset + 13] & 0xFF;
+        if ((flags & TCP_RST) != 0) {
+            return 0;
+        }
+        long sequence = u32(packet, offset + 4);
+        long acknowledgment = u32(packet, offset + 8);
+        int dataOffset = ((packet[offset + 12] >> 4) & 0xF) * 4;
+        int segmentLength = Math.max(0, length - offset - dataOffset);
+        if ((flags & TCP_SYN) != 0) {
+            segmentLength++;
+        }
+        if ((flags & TCP_FIN) != 0) {
+            segmentLength++;
+        }
+
+        int tcp = writeIpHeader(answer, PROTOCOL_TCP, TCP_HEADER);
+        put16(answer, tcp, destinationPort);
+        put16(answer, tcp + 2, sourcePort);
+        //RFC 793: reset takes its sequence from the ACK field, otherwise it acknowledges the segment.
+        if ((flags & TCP_ACK) != 0) {
+            put32(answer, tcp + 4, acknowledgment);
+            put32(answer, tcp + 8, 0);
+            answer[tcp + 13] = TCP_RST;
+        } else {
+            put32(answer, tcp + 4, 0);
+            put32(answer, tcp + 8, sequence + segmentLength);
+            answer[tcp + 13] = TCP_RST | TCP_ACK;
+        }
+        answer[tcp + 12] = (TCP_HEADER / 4) << 4;
+        put16(answer, tcp + 14, 0);
+        put16(answer, tcp + 16, 0);
+        put16(answer, tcp + 18, 0);
+        put16(answer, tcp + 16, transportChecksum(answer, tcp, TCP_HEADER, PROTOCOL_TCP));
+        return tcp + TCP_HEADER;
+    }
+
+    private int respondUdp(int length, byte[] answer) {
+        int payload = headerLength + UDP_HEADER;
+        int payloadLength = length - payload;
+        if (destinationPort == DNS_PORT && payloadLength >= DNS_HEADER) {
+            return respondDns(payload, payloadLength, answer);
+        }
+        return respondUnreachable(length, answer);
+    }
+
+    private int respondDns(int payload, int payloadLength, byte[] answer) {
+        int questionEnd = findQuestionEnd(payload, payloadLength);
+        int dnsLength = questionEnd > 0 ? questionEnd - payload : DNS_HEADER;
+
+        int udp = writeIpHeader(answer, PROTOCOL_UDP, UDP_HEADER + dnsLength);
+        put16(answer, udp, destinationPort);
+        put16(answer, udp + 2, sourcePort);
+        put16(answer, udp + 4, UDP_HEADER + dnsLength);
+        put16(answer, udp + 6, 0);
+
+        int dns = udp + UDP_HEADER;
+        System.arraycopy(packet, payload, answer, dns, dnsLength);
+        //Keep ID, opcode and RD, set QR and answer with REFUSED without any records.
+        answer[dns + 2] = (byte) ((packet[payload + 2] & 0x79) | 0x80);
+        answer[dns + 3] = DNS_REFUSED;
+        put16(answer, dns + 4, questionEnd > 0 ? 1 : 0);
+        put16(answer, dns + 6, 0);
+        put16(answer, dns + 8, 0);
+        put16(answer, dns + 10, 0);
+
+        int checksum = transportChecksum(answer, udp, UDP_HEADER + dnsLength, PROTOCOL_UDP);
+        put16(answer, udp + 6, checksum == 0 ? 0xFFFF : checksum);
+        return dns + dnsLength;
+    }
+
+    //Returns the end of the single question, or -1 if the query can't be echoed.
+    private int findQuestionEnd(int payload, int payloadLength) {
+        if (u16(packet, payload + 4) != 1) {
+            return -1;
+        }
+        int end = payload + payloadLength;
+        int position = payload + DNS_HEADER;
+        while (position < end) {
+            int labelLength = packet[position] & 0xFF;
+            if (labelLength == 0) {
+                position += 1 + 4;
+                return position <= end ? position : -1;
+            }
+            if ((labelLength & 0xC0) != 0) {
+                return -1;
+            }
+            position += labelLength + 1;
+        }
+        return -1;
+    }
+
+    private int respondUnreachable(int length, byte[] answer) {
+        int quote = isIpv6
+                ? Math.min(length, IPV6_MIN_MTU - IPV6_HEADER - ICMP_HEADER)
+                : Math.min(length, headerLength + 8);
+        int icmp = writeIpHeader(answer, isIpv6 ? PROTOCOL_ICMPV6 : PROTOCOL_ICMP, ICMP_HEADER + quote);
+        //Port unreachable: type 3 code 3 for ICMP, type 1 code 4 for ICMPv6.
+        answer[icmp] = (byte) (isIpv6 ? 1 : 3);
+        answer[icmp + 1] = (byte) (isIpv6 ? 4 : 3);
+        put16(answer, icmp + 2, 0);
+        put32(answer, icmp + 4, 0);
+        System.arraycopy(packet, 0, answer, icmp + ICMP_HEADER, quote);
+        int checksum = isIpv6
+                ? transportChecksum(answer, icmp, ICMP_HEADER + quote, PROTOCOL_ICMPV6)
+                : fold(sum(answer, icmp, ICMP_HEADER + quote));
+        put16(answer, icmp + 2, checksum);
+        return icmp + ICMP_HEADER + quote;
+    }
+
+    //Writes IP header with swapped addresses and returns its length.
+    private int writeIpHeader(byte[] answer, int nextProtocol, int payloadLength) {
+        if (isIpv6) {
+            answer[0] = 0x60;
+            answer[1] = 0;
+            answer[2] = 0;
+            answer[3] = 0;
+            put16(answer, 4, payloadLength);
+            answer[6] = (byte) nextProtocol;
+            answer[7] = 64;
+            System.arraycopy(packet, destinationOffset, answer, 8, addressLength);
+            System.arraycopy(packet, sourceOffset, answer, 24, addressLength);
+            return IPV6_HEADER;
+        }
+        answer[0] = 0x45;
+        answer[1] = 0;
+        put16(answer, 2, IPV4_HEADER + payloadLength);
+        put16(answer, 4, 0);
+        put16(answer, 6, 0x4000);
+        answer[8] = 64;
+        answer[9] = (byte) nextProtocol;
+        put16(answer, 10, 0);
+        System.arraycopy(packet, destinationOffset, answer, 12, addressLength);
+        System.arraycopy(packet, sourceOffset, answer, 16, addressLength);
+        put16(answer, 10, fold(sum(answer, 0, IPV4_HEADER)));
+        return IPV4_HEADER;
+    }
+
+    private int transportChecksum(byte[] answer, int offset, int length, int nextProtocol) {
+        long sum = sum(answer, isIpv6 ? 8 : 12, addressLength * 2);
+        sum += nextProtocol + length;
+        sum += sum(answer, offset, length);
+        return fold(sum);
+    }
+
+    private static long sum(byte[] data, int offset, int length) {
+        long sum = 0;
+        int end = offset + length;
+        int i = offset;
+        for (; i + 1 < end; i += 2) {
+            sum += u16(data, i);
+        }
+        if (i < end) {
+            sum += (data[i] & 0xFF) << 8;
+        }
+        return sum;
+    }
+
+    private static int fold(long sum) {
+        while ((sum >> 16) != 0) {
+            sum = (sum & 0xFFFF) + (sum >> 16);
+        }
+        return (int) (~sum & 0xFFFF);
+    }
+
+    private static int u16(byte[] data, int offset) {
+        return ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
+    }
+
+    private static long u32(byte[] data, int offset) {
+        return ((long) u16(data, offset) << 16) | u16(data, offset + 2);
+    }
+
+    private static void put16(byte[] data, int offset, int value) {
+        data[offset] = (byte) (value >> 8);
+        data[offset + 1] = (byte) value;
+    }
+
+    private static void put32(byte[] data, int offset, long value) {
+        put16(data, offset, (int) (value >> 16) & 0xFFFF);
+        put16(data, offset + 2, (int) value & 0xFFFF);
+    }
+}
@@ -0,0 +1,75 @@
+package net.ivpn.client.vpn.local;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.os.Build;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.util.Locale;
+
+/**
+ * Finds the app which owns a blocked flow. Android 10 has an API for it, older versions
+ * expose socket owners in /proc/net. Lookup is done once per new flow, never per packet.
+ */
+class FlowOwnerResolver {
+
+    static final int UNKNOWN_UID = -1;
+
+    //Build.VERSION_CODES.Q, not available in the current compile SDK.
+    private static final int API_Q = 29;
+
+    private final ConnectivityManager connectivityManager;
+    private Method getConnectionOwnerUid;
+
+    FlowOwnerResolver(Context context) {
+        connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (Build.VERSION.SDK_INT >= API_Q) {
+            try {
+                getConnectionOwnerUid = ConnectivityManager.class.getMethod("getConnectionOwnerUid",
+                        int.class, InetSocketAddress.class, InetSocketAddress.class);
+            } catch (NoSuchMethodException ignored) {
+            }
+        }
+    }
+
+    int resolve(int protocol, boolean isIpv6, InetSocketAddress local, InetSocketAddress remote) {
+        if (getConnectionOwnerUid != null) {
+            try {
+                return (int) getConnectionOwnerUid.invoke(connectivityManager, protocol, local, remote);
+            } catch (Exception e) {
+                return UNKNOWN_UID;
+            }
+        }
+
+        String table = "/proc/net/" + (protocol == BlockedPacketResponder.PROTOCOL_TCP ? "tcp" : "udp");
+        int uid = UNKNOWN_UID;
+        if (!isIpv6) {
+            uid = readOwner(table, local.getPort());
+        }
+        //Dual stack sockets are listed in the IPv6 table even for IPv4 flows.
+        if (uid == UNKNOWN_UID) {
+            uid = readOwner(table + "6", local.getPort());
+        }
+        return uid;
+    }
+
+    private int readOwner(String table, int port) {
+        String portSuffix = String.format(Locale.US, ":%04X", port);
+        try (BufferedReader reader = new BufferedReader(new FileReader(table))) {
+            //Skip the header line.
+            String line = reader.readLine();
+            while ((line = reader.readLine()) != null) {
+                String[] columns = line.trim().split("\\s+");
+                if (columns.length > 7 && columns[1].endsWith(portSuffix)) {
+                    return Integer.parseInt(columns[7]);
+                }
+            }
+        } catch (IOException | NumberFormatException ignored) {
+        }
+        return UNKNOWN_UID;
+    }
+}
@@ -0,0 +1,198 @@
+package net.ivpn.client.vpn.local;
+
+import android.os.ParcelFileDescriptor;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.system.StructPollfd;
+import android.util.SparseIntArray;
+
+import net.ivpn.client.vpn.ServiceConstants;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads packets from the kill switch TUN and answers them with {@link BlockedPacketResponder},
+ * so blocked apps fail at once instead of retrying until their timeouts.
+ * Single thread polls TUN together with a wake-up pipe, buffers are allocated once and reused.
+ */
+class KillSwitchPacketSink {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KillSwitchPacketSink.class);
+
+    private static final int BUFFER_SIZE = Math.max(ServiceConstants.MTU, 1500);
+    private static final int MAX_TRACKED_FLOWS = 512;
+    private static final long STOP_TIMEOUT = 1000;
+
+    private final ParcelFileDescriptor tun;
+    private final FlowOwnerResolver ownerResolver;
+    private final OnBlockedFlowListener listener;
+
+    private final BlockedPacketResponder responder = new BlockedPacketResponder();
+    private final ByteBuffer packetBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final ByteBuffer answerBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final Map<Long, Boolean> flows = new LinkedHashMap<Long, Boolean>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+            return size() > MAX_TRACKED_FLOWS;
+        }
+    };
+    private final SparseIntArray flowsPerUid = new SparseIntArray();
+    private int blockedFlows;
+
+    private FileDescriptor wakeUpReader;
+    private FileDescriptor wakeUpWriter;
+    private Thread thread;
+    private volatile boolean isRunning;
+
+    KillSwitchPacketSink(ParcelFileDescriptor tun, FlowOwnerResolver ownerResolver,
+                         OnBlockedFlowListener listener) {
+        this.tun = tun;
+        this.ownerResolver = ownerResolver;
+        this.listener = listener;
+    }
+
+    void start() {
+        LOGGER.info("start");
+        try {
+            FileDescriptor[] pipe = Os.pipe();
+            wakeUpReader = pipe[0];
+            wakeUpWriter = pipe[1];
+        } catch (ErrnoException e) {
+            LOGGER.error("Unable to create wake-up pipe, blocked packets will be dropped", e);
+            return;
+        }
+        isRunning = true;
+        thread = new Thread(this::loop, KillSwitchPacketSink.class.getSimpleName());
+        thread.start();
+    }
+
+    /**
+     * Stop the loop, should be called before TUN is closed.
+     */
+    void stop() {
+        LOGGER.info("stop");
+        isRunning = false;
+        if (thread == null) {
+            return;
+        }
+        try {
+            Os.write(wakeUpWriter, new byte[]{1}, 0, 1);
+        } catch (ErrnoException | InterruptedIOException e) {
+            LOGGER.error("Unable to wake up the loop", e);
+        }
+        try {
+            thread.join(STOP_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+        close(wakeUpReader);
+        close(wakeUpWriter);
+    }
+
+    private void loop() {
+        //Streams are not closed, TUN descriptor is owned by the service.
+        FileChannel input = new FileInputStream(tun.getFileDescriptor()).getChannel();
+        FileChannel output = new FileOutputStream(tun.getFileDescriptor()).getChannel();
+
+        StructPollfd tunPoll = new StructPollfd();
+        tunPoll.fd = tun.getFileDescriptor();
+        tunPoll.events = (short) OsConstants.POLLIN;
+        StructPollfd wakeUpPoll = new StructPollfd();
+        wakeUpPoll.fd = wakeUpReader;
+        wakeUpPoll.events = (short) OsConstants.POLLIN;
+        StructPollfd[] polls = {tunPoll, wakeUpPoll};
+
+        while (isRunning) {
+            try {
+                Os.poll(polls, -1);
+            } catch (ErrnoException e) {
+                if (e.errno == OsConstants.EINTR) {
+                    continue;
+                }
+                LOGGER.error("Poll failed, blocked packets will be dropped", e);
+                return;
+            }
+            if (!isRunning || wakeUpPoll.revents != 0) {
+                return;
+            }
+            if ((tunPoll.revents & (OsConstants.POLLERR | OsConstants.POLLHUP | OsConstants.POLLNVAL)) != 0) {
+                LOGGER.info("TUN is closed");
+                return;
+            }
+            if ((tunPoll.revents & OsConstants.POLLIN) != 0) {
+                handlePacket(input, output);
+            }
+        }
+    }
+
+    private void handlePacket(FileChannel input, FileChannel output) {
+        try {
+            packetBuffer.clear();
+            int length = input.read(packetBuffer);
+            if (length <= 0) {
+                return;
+            }
+            int answerLength = responder.respond(packetBuffer.array(), length, answerBuffer.array());
+            if (responder.getProtocol() != BlockedPacketResponder.NO_PROTOCOL) {
+                countFlow();
+            }
+            if (answerLength > 0) {
+                answerBuffer.clear();
+                answerBuffer.limit(answerLength);
+                output.write(answerBuffer);
+            }
+        } catch (IOException e) {
+            LOGGER.error("Error while answering blocked packet", e);
+        }
+    }
+
+    private void countFlow() {
+        //Retries of the same connection are counted once.
+        if (flows.put(responder.getFlowKey(), Boolean.TRUE) != null) {
+            return;
+        }
+        blockedFlows++;
+
+        int uid = FlowOwnerResolver.UNKNOWN_UID;
+        try {
+            uid = ownerResolver.resolve(responder.getProtocol(), responder.isIpv6(),
+                    responder.getSource(), responder.getDestination());
+        } catch (IOException ignored) {
+        }
+        if (uid != FlowOwnerResolver.UNKNOWN_UID) {
+            flowsPerUid.put(uid, flowsPerUid.get(uid) + 1);
+        }
+        listener.onBlockedFlow(blockedFlows, flowsPerUid.size());
+    }
+
+    private void close(FileDescriptor fileDescriptor) {
+        try {
+            Os.close(fileDescriptor);
+        } catch (ErrnoException e) {
+            LOGGER.error("Error while closing wake-up pipe", e);
+        }
+    }
+
+    interface OnBlockedFlowListener {
+        /**
+         * Called on the sink thread.
+         *
+         * @param flows Number of distinct blocked flows since kill switch was started.
+         * @param apps  Number of apps these flows belong to, {@code 0} if owners are unknown.
+         */
+        void onBlockedFlow(int flows, int apps);
+    }
+}
@@ -8,6 +8,7 @@ import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.net.VpnService;
 import android.os.Build;
+import android.os.Handler;
 import android.os.ParcelFileDescriptor;
 import androidx.core.app.NotificationCompat;
 
@@ -25,12 +26,20 @@ public class KillSwitchService extends VpnService implements ServiceConstants {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(KillSwitchService.class);
 
+    private static final long NOTIFICATION_UPDATE_DELAY = 5000;
+
     public static AtomicBoolean isRunning = new AtomicBoolean(false);
 
     private ParcelFileDescriptor tun;
+    private KillSwitchPacketSink packetSink;
     private NotificationManager notificationManager;
+    private Handler handler;
 
     private int notificationId;
+    private long startTime;
+    private int blockedFlows;
+    private int blockedApps;
+    private boolean isNotificationUpdateScheduled;
 
     @Override
     public void onRevoke() {
@@ -44,6 +53,7 @@ public class KillSwitchService extends VpnService implements ServiceConstants {
         super.onCreate();
         notificationManager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
         notificationId = ServiceConstants.KILL_SWITCH_CHANNEL.hashCode();
+        handler = new Handler();
     }
 
     @Override
@@ -60,7 +70,7 @@ public class KillSwitchService extends VpnService implements ServiceConstants {
         switch (action) {
             case START_KILL_SWITCH:
                 isRunning.set(true);
-                return startKillSwitch();
+                return startKillSwitch(intent.getBooleanExtra(KILL_SWITCH_REESTABLISH_EXTRA, false));
             case CONNECT_VPN_ACTION:
                 return doSendBroadcast(CONNECT_VPN_ACTION);
             case STOP_KILL_SWITCH_ACTION:
@@ -79,18 +89,23 @@ public class KillSwitchService extends VpnService implements ServiceConstants {
         }
     }
 
-    private int startKillSwitch() {
-        LOGGER.info("startKillSwitch");
+    private int startKillSwitch(boolean reestablish) {
+        LOGGER.info("startKillSwitch: reestablish = " + reestablish);
         if (tun == null) {
+            startTime = System.currentTimeMillis();
             openTun();
+        } else if (reestablish) {
+            reestablishTun();
         }
-        showKillSwitchNotification(System.currentTimeMillis());
+        showKillSwitchNotification(startTime);
 
         return START_STICKY;
     }
 
     private int endService() {
         LOGGER.info("endService");
+        handler.removeCallbacksAndMessages(null);
+        isNotificationUpdateScheduled = false;
         notificationManager.cancelAll();
         closeTun();
         stopForeground(true);
@@ -105,6 +120,10 @@ public class KillSwitchService extends VpnService implements ServiceConstants {
 
     private void closeTun() {
         LOGGER.info("closeTun");
+        if (packetSink != null) {
+            packetSink.stop();
+            packetSink = null;
+        }
         try {
             if (tun != null) {
                 tun.close();
@@ -116,6 +135,26 @@ public class KillSwitchService extends VpnService implements ServiceConstants {
         }
     }
 
+    //The new TUN takes the interface over first, only then the old one is closed.
+    private void reestablishTun() {
+        LOGGER.info("reestablishTun");
+        ParcelFileDescriptor oldTun = tun;
+        KillSwitchPacketSink oldPacketSink = packetSink;
+        if (openTun() == null) {
+            tun = oldTun;
+            packetSink = oldPacketSink;
+            return;
+        }
+        if (oldPacketSink != null) {
+            oldPacketSink.stop();
+        }
+        try {
+            oldTun.close();
+        } catch (IOException e) {
+            LOGGER.error("Error while closing old tun", e);
+        }
+    }
+
     public ParcelFileDescriptor openTun() {
         LOGGER.info("openTun");
         Builder builder = new Builder();
@@ -140,6 +179,7 @@ public class KillSwitchService extends VpnService implements ServiceConstants {
             tun = builder.establish();
             if (tun == null)
                 throw new NullPointerException("Android establish() method returned null (Really broken network configuration?)");
+            startPacketSink();
             return tun;
         } catch (Exception e) {
             LOGGER.error(getString(R.string.tun_open_error), e);
@@ -147,6 +187,40 @@ public class KillSwitchService extends VpnService implements ServiceConstants {
         }
     }
 
+    private void startPacketSink() {
+        blockedFlows = 0;
+        blockedApps = 0;
+        packetSink = new KillSwitchPacketSink(tun, new FlowOwnerResolver(this),
+                (flows, apps) -> handler.post(() -> onBlockedFlow(flows, apps)));
+        packetSink.start();
+    }
+
+    private void onBlockedFlow(int flows, int apps) {
+        blockedFlows = flows;
+        blockedApps = apps;
+        if (isNotificationUpdateScheduled) {
+            return;
+        }
+        //Blocked apps retry a lot, so notification is updated at most once per delay.
+        isNotificationUpdateScheduled = true;
+        handler.postDelayed(() -> {
+            isNotificationUpdateScheduled = false;
+            if (isRunning.get() && tun != null) {
+                showKillSwitchNotification(startTime);
+            }
+        }, NOTIFICATION_UPDATE_DELAY);
+    }
+
+    private String getContentText() {
+        if (blockedFlows == 0) {
+            return getString(R.string.notification_ks_content);
+        }
+        if (blockedApps == 0) {
+            return getString(R.string.notification_ks_content_blocked, blockedFlows);
+        }
+        return getString(R.string.notification_ks_content_blocked_apps, blockedFlows, blockedApps);
+    }
+
     private void showKillSwitchNotification(long when) {
         int icon = R.drawable.ic_stat_name;
 
@@ -154,15 +228,17 @@ public class KillSwitchService extends VpnService implements ServiceConstants {
 
         builder.setContentTitle(getString(R.string.notification_ks_title));
 
-        builder.setContentText(getString(R.string.notification_ks_content));
+        String content = getContentText();
+        builder.setContentText(content);
         builder.setOngoing(true);
+        builder.setOnlyAlertOnce(true);
 
         builder.setSmallIcon(icon);
         builder.setContentIntent(getGraphPendingIntent());
         builder.setColor(getResources().getColor(R.color.colorAccent));
         builder.setDefaults(Notification.DEFAULT_VIBRATE);
         builder.setStyle(new NotificationCompat.BigTextStyle()
-                .bigText(getString(R.string.notification_ks_content))
+                .bigText(content)
                 .setBigContentTitle(getString(R.string.notification_ks_title)));
 
         if (when != 0) {
@@ -4,15 +4,15 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.net.ConnectivityManager;
 import android.os.Build;
-import android.util.Log;
 
 import net.ivpn.client.IVPNApplication;
+import net.ivpn.client.common.connectivity.ConnectivityEngine;
+import net.ivpn.client.common.connectivity.ConnectivityEvent;
+import net.ivpn.client.common.connectivity.OnConnectivityChangedListener;
 import net.ivpn.client.common.dagger.ApplicationScope;
 import net.ivpn.client.common.prefs.NetworkProtectionPreference;
 import net.ivpn.client.common.prefs.SettingsPreference;
-import net.ivpn.client.common.utils.NetworkUtil;
 import net.ivpn.client.ui.network.OnNetworkSourceChangedListener;
 import net.ivpn.client.ui.settings.SettingsActivity;
 import net.ivpn.client.vpn.GlobalBehaviorController;
@@ -25,18 +25,12 @@ import net.ivpn.client.vpn.model.VPNRule;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Set;
-
 import javax.inject.Inject;
 
-import static net.ivpn.client.vpn.model.KillSwitchRule.DISABLE;
-import static net.ivpn.client.vpn.model.KillSwitchRule.ENABLE;
-import static net.ivpn.client.vpn.model.KillSwitchRule.NOTHING;
 import static net.ivpn.client.vpn.model.NetworkSource.MOBILE_DATA;
 import static net.ivpn.client.vpn.model.NetworkSource.NO_NETWORK;
 import static net.ivpn.client.vpn.model.NetworkSource.WIFI;
 import static net.ivpn.client.vpn.model.NetworkState.DEFAULT;
-import static net.ivpn.client.vpn.model.NetworkState.NONE;
 import static net.ivpn.client.vpn.model.NetworkState.TRUSTED;
 import static net.ivpn.client.vpn.model.NetworkState.UNTRUSTED;
 
@@ -47,33 +41,30 @@ public class NetworkController implements ServiceConstants {
     private static final String NONE_SSID = "<unknown ssid>";
 
     private boolean isWifiWatcherSettingEnabled;
-    private WifiBroadcastReceiver receiver;
+    private OnConnectivityChangedListener connectivityListener;
     private NetworkSource source;
     private OnNetworkSourceChangedListener networkSourceChangedListener;
-    private NetworkState defaultState;
-    private NetworkState mobileState;
-    private Set<String> trustedWiFis;
-    private Set<String> untrustedWiFis;
+    private volatile NetworkRules rules;
 
     private SettingsPreference settingsPreference;
     private NetworkProtectionPreference networkProtectionPreference;
     private GlobalBehaviorController globalBehaviorController;
+    private ConnectivityEngine connectivityEngine;
 
     @Inject
     public NetworkController(NetworkProtectionPreference networkProtectionPreference,
-                             SettingsPreference settingsPreference, GlobalBehaviorController globalBehaviorController) {
+                             SettingsPreference settingsPreference, GlobalBehaviorController globalBehaviorController,
+                             ConnectivityEngine connectivityEngine) {
         this.networkProtectionPreference = networkProtectionPreference;
         this.settingsPreference = settingsPreference;
         this.globalBehaviorController = globalBehaviorController;
+        this.connectivityEngine = connectivityEngine;
     }
 
     public void init() {
         LOGGER.info("Init");
         isWifiWatcherSettingEnabled = settingsPreference.getSettingNetworkRules();
-        defaultState = networkProtectionPreference.getDefaultNetworkState();
-        mobileState = networkProtectionPreference.getMobileDataNetworkState();
-        trustedWiFis = networkProtectionPreference.getTrustedWifiList();
-        untrustedWiFis = networkProtectionPreference.getUntrustedWifiList();
+        compileRules();
         registerReceiver();
     }
 
@@ -91,6 +82,7 @@ public class NetworkController implements ServiceConstants {
     public void enableWifiWatcher() {
         LOGGER.info("enableWifiWatcher");
         isWifiWatcherSettingEnabled = true;
+        registerConnectivityListener();
         if (shouldWifiWatchedBeEnabled()) {
             startWifiWatcherService();
         }
@@ -100,26 +92,21 @@ public class NetworkController implements ServiceConstants {
         LOGGER.info("disableWifiWatcher");
         isWifiWatcherSettingEnabled = false;
         stopWifiWatcherService();
+        unregisterConnectivityListener();
     }
 
     private boolean shouldWifiWatchedBeEnabled() {
         LOGGER.info("shouldWifiWatchedBeEnabled");
-        if (!isWifiWatcherSettingEnabled) {
-            return false;
-        }
-        if (!untrustedWiFis.isEmpty()) {
-            return true;
-        }
-        if (!trustedWiFis.isEmpty()) {
-            return true;
-        }
-        if (defaultState.equals(TRUSTED) || defaultState.equals(UNTRUSTED)) {
-            return true;
-        }
-        if (mobileState.equals(TRUSTED) || mobileState.equals(UNTRUSTED)) {
-            return true;
-        }
-        return false;
+        return isWifiWatcherSettingEnabled && rules.isWatcherNeeded();
+    }
+
+    //Rules are recompiled on every edit, so a network change never touches the disk.
+    private void compileRules() {
+        rules = NetworkRules.compile(networkProtectionPreference.getWifiMarks(),
+                networkProtectionPreference.getDefaultNetworkState(),
+                networkProtectionPreference.getMobileDataNetworkState(),
+                settingsPreference.getRuleConnectToVpn(), settingsPreference.getRuleDisconnectFromVpn(),
+                settingsPreference.getRuleEnableKillSwitch(), settingsPreference.getRuleDisableKillSwitch());
     }
 
     public void updateNetworkSource(Context context) {
@@ -131,42 +118,20 @@ public class NetworkController implements ServiceConstants {
         }
         source = NetworkSource.NO_NETWORK;
         LOGGER.info("Updating network source...");
-        NetworkSource source = NetworkUtil.getCurrentSource(context);
-        switch (source) {
-            case WIFI: {
-                String currentWiFiSsid = NetworkUtil.getCurrentWifiSsid(context);
-                if (currentWiFiSsid != null) {
-                    onWifiChanged(currentWiFiSsid);
-                } else {
-                    onNoNetwork();
-                }
-                break;
-            }
-            case MOBILE_DATA: {
-                onMobileData();
-                break;
-            }
-            case NO_NETWORK: {
-                onNoNetwork();
-                break;
-            }
-            case UNDEFINED: {
-                //do nothing
-                break;
-            }
-        }
+        ConnectivityEvent event = connectivityEngine.getCurrentEvent();
+        onConnectivityChanged(event);
         if (networkSourceChangedListener != null) {
-            networkSourceChangedListener.onNetworkSourceChanged(source);
+            networkSourceChangedListener.onNetworkSourceChanged(event.getSource());
         }
     }
 
     public void updateDefaultNetworkState(NetworkState defaultState) {
         LOGGER.info("Updating default network state with " + defaultState);
-        if (this.defaultState.equals(defaultState)) {
+        if (rules.getDefaultState().equals(defaultState)) {
             return;
         }
-        this.defaultState = defaultState;
         networkProtectionPreference.setDefaultNetworkState(defaultState);
+        compileRules();
         if (shouldWifiWatchedBeEnabled()) {
             startWifiWatcherService();
         } else {
@@ -191,6 +156,8 @@ public class NetworkController implements ServiceConstants {
         }
         removeMarkFor(ssid, oldState);
         addMarkFor(ssid, newState);
+        compileRules();
+        updateWifiState(ssid, newState);
         if (shouldWifiWatchedBeEnabled()) {
             startWifiWatcherService();
         } else {
@@ -201,16 +168,13 @@ public class NetworkController implements ServiceConstants {
     private void addMarkFor(String ssid, NetworkState newState) {
         LOGGER.info("addMarkFor: ssid = " + ssid + " newState = " + newState);
 
-        updateWifiState(ssid, newState);
         switch (newState) {
             case TRUSTED: {
                 networkProtectionPreference.markWifiAsTrusted(ssid);
-                trustedWiFis.add(ssid);
                 break;
             }
             case UNTRUSTED: {
                 networkProtectionPreference.markWifiAsUntrusted(ssid);
-                untrustedWiFis.add(ssid);
                 break;
             }
             case NONE: {
@@ -225,12 +189,10 @@ public class NetworkController implements ServiceConstants {
         switch (oldState) {
             case TRUSTED: {
                 networkProtectionPreference.removeMarkWifiAsTrusted(ssid);
-                trustedWiFis.remove(ssid);
                 break;
             }
             case UNTRUSTED: {
                 networkProtectionPreference.removeMarkWifiAsUntrusted(ssid);
-                untrustedWiFis.remove(ssid);
                 break;
             }
             case NONE: {
@@ -241,17 +203,7 @@ public class NetworkController implements ServiceConstants {
     }
 
     private NetworkState getNetworkStateFor(String ssid) {
-        Set<String> trustedSsid = networkProtectionPreference.getTrustedWifiList();
-        Set<String> untrustedSsid = networkProtectionPreference.getUntrustedWifiList();
-        Set<String> noneSsid = networkProtectionPreference.getNoneWifiList();
-        NetworkState state = DEFAULT;
-        if (trustedSsid.contains(ssid)) {
-            state = TRUSTED;
-        } else if (untrustedSsid.contains(ssid)) {
-            state = UNTRUSTED;
-        } else if (noneSsid.contains(ssid)) {
-            state = NONE;
-        }
+        NetworkState state = rules.getStateFor(ssid);
         LOGGER.info("getNetworkStateFor: " + ssid + " state = " + state);
         return state;
     }
@@ -275,8 +227,6 @@ public class NetworkController implements ServiceConstants {
         } else {
             context.startService(startIntent);
         }
-
-        unregisterLocalWiFiWatcherReceiver();
     }
 
     private void stopWifiWatcherService() {
@@ -292,10 +242,6 @@ public class NetworkController implements ServiceConstants {
         } else {
             context.startService(stopIntent);
         }
-
-        if (isWifiWatcherSettingEnabled) {
-            registerLocalWiFiWatcherReceiver();
-        }
     }
 
     private void onWifiChanged(String wifiSsid) {
@@ -312,7 +258,7 @@ public class NetworkController implements ServiceConstants {
 
         NetworkState state = getNetworkStateFor(wifiSsid);
         source.setState(state);
-        source.setDefaultState(networkProtectionPreference.getDefaultNetworkState());
+        source.setDefaultState(rules.getDefaultState());
         if (networkSourceChangedListener != null) {
             networkSourceChangedListener.onNetworkSourceChanged(source);
         }
@@ -326,9 +272,9 @@ public class NetworkController implements ServiceConstants {
         LOGGER.info("onMobileData: ");
 
         source = MOBILE_DATA;
-        NetworkState state = networkProtectionPreference.getMobileDataNetworkState();
+        NetworkState state = rules.getMobileState();
         source.setState(state);
-        source.setDefaultState(networkProtectionPreference.getDefaultNetworkState());
+        source.setDefaultState(rules.getDefaultState());
         if (networkSourceChangedListener != null) {
             networkSourceChangedListener.onNetworkSourceChanged(source);
         }
@@ -348,25 +294,11 @@ public class NetworkController implements ServiceConstants {
 
     private void applyNetworkStateBehaviour(NetworkState state) {
         LOGGER.info("applyNetworkStateBehaviour: state = " + state);
-        switch (state) {
-            case TRUSTED: {
-                applyTrustedBehaviour();
-                break;
-            }
-            case UNTRUSTED: {
-                applyUntrustedBehaviour();
-                break;
-            }
-            case NONE: {
-                applyNoneBehaviour();
-                break;
-            }
-            case DEFAULT: {
-                NetworkState defaultNetworkState = networkProtectionPreference.getDefaultNetworkState();
-                applyNetworkStateBehaviour(defaultNetworkState);
-                break;
-            }
+        if (!isWifiWatcherSettingEnabled) {
+            return;
         }
+        NetworkRules.Decision decision = rules.decide(state);
+        globalBehaviorController.applyNetworkRules(decision.getKillSwitchRule(), decision.getVpnRule());
     }
 
     private void updateWifiState(String wifiSsid, NetworkState networkState) {
@@ -381,11 +313,11 @@ public class NetworkController implements ServiceConstants {
     }
 
     public void updateMobileDataState(NetworkState networkState) {
-        if (mobileState != null && mobileState.equals(networkState)) {
+        if (rules.getMobileState().equals(networkState)) {
             return;
         }
-        mobileState = networkState;
         networkProtectionPreference.setMobileDataNetworkState(networkState);
+        compileRules();
         if (shouldWifiWatchedBeEnabled()) {
             startWifiWatcherService();
         } else {
@@ -399,50 +331,6 @@ public class NetworkController implements ServiceConstants {
         applyNetworkStateBehaviour(networkState);
     }
 
-    private void applyTrustedBehaviour() {
-        LOGGER.info("Apply trusted behaviour");
-        boolean shouldDisconnectFromVPN = settingsPreference.getRuleDisconnectFromVpn();
-        boolean shouldDisableKillSwitch = settingsPreference.getRuleDisableKillSwitch();
-
-        KillSwitchRule killSwitchRule = NOTHING;
-        VPNRule vpnRule = VPNRule.NOTHING;
-        if (shouldDisconnectFromVPN) {
-            vpnRule = VPNRule.DISCONNECT;
-        }
-        if (shouldDisableKillSwitch) {
-            killSwitchRule = DISABLE;
-        }
-        if (isWifiWatcherSettingEnabled) {
-            globalBehaviorController.applyNetworkRules(killSwitchRule, vpnRule);
-        }
-    }
-
-    private void applyUntrustedBehaviour() {
-        LOGGER.info("Apply untrusted behaviour");
-        boolean shouldConnectToVpn = settingsPreference.getRuleConnectToVpn();
-        boolean shouldEnableKillSwitch = settingsPreference.getRuleEnableKillSwitch();
-
-        KillSwitchRule killSwitchRule = NOTHING;
-        VPNRule vpnRule = VPNRule.NOTHING;
-
-        if (shouldConnectToVpn) {
-            vpnRule = VPNRule.CONNECT;
-        }
-        if (shouldEnableKillSwitch) {
-            killSwitchRule = ENABLE;
-        }
-        if (isWifiWatcherSettingEnabled) {
-            globalBehaviorController.applyNetworkRules(killSwitchRule, vpnRule);
-        }
-    }
-
-    private void applyNoneBehaviour() {
-        LOGGER.info("Apply none behaviour");
-        if (isWifiWatcherSettingEnabled) {
-            globalBehaviorController.applyNetworkRules(NOTHING, VPNRule.NOTHING);
-        }
-    }
-
     private void applyWifiWatcherAction(Intent intent) {
         LOGGER.info("applyWifiWatcherAction");
         String action = intent.getStringExtra(WIFI_WATCHER_ACTION_EXTRA);
@@ -452,15 +340,6 @@ public class NetworkController implements ServiceConstants {
             case APP_SETTINGS_ACTION:
                 openSettings();
                 break;
-            case WIFI_CHANGED_ACTION:
-                onWifiChanged(intent.getStringExtra(WIFI_WATCHER_ACTION_VALUE));
-                break;
-            case ON_MOBILE_DATA_ACTION:
-                onMobileData();
-                break;
-            case NO_NETWORK_ACTION:
-                onNoNetwork();
-                break;
         }
     }
 
@@ -483,34 +362,33 @@ public class NetworkController implements ServiceConstants {
         IVPNApplication.getApplication().registerReceiver(wifiWatcherBroadcastReceiver,
                 new IntentFilter(WIFI_WATCHER_ACTION));
 
-        if (isWifiWatcherSettingEnabled && !shouldWifiWatchedBeEnabled()) {
-            registerLocalWiFiWatcherReceiver();
+        if (isWifiWatcherSettingEnabled) {
+            registerConnectivityListener();
         }
     }
 
-    private void registerLocalWiFiWatcherReceiver() {
-        if (receiver != null) {
+    private void registerConnectivityListener() {
+        if (connectivityListener != null) {
             return;
         }
-        receiver = new WifiBroadcastReceiver();
-
-        IntentFilter intentFilter = new IntentFilter();
-        intentFilter.addAction(ConnectivityManager.CONNECTIVITY_ACTION);
-        IVPNApplication.getApplication().registerReceiver(receiver, intentFilter);
+        connectivityListener = this::onConnectivityChanged;
+        connectivityEngine.addListener(connectivityListener);
     }
 
-    private void unregisterLocalWiFiWatcherReceiver() {
-        if (receiver == null) {
+    private void unregisterConnectivityListener() {
+        if (connectivityListener == null) {
             return;
         }
-
-        IVPNApplication.getApplication().unregisterReceiver(receiver);
-        receiver = null;
+        connectivityEngine.removeListener(connectivityListener);
+        connectivityListener = null;
     }
 
     public void finishAll() {
         LOGGER.info("finishAll");
         stopWifiWatcherService();
+        unregisterConnectivityListener();
+        networkProtectionPreference.reset();
+        compileRules();
         source = null;
         isWifiWatcherSettingEnabled = false;
     }
@@ -518,6 +396,7 @@ public class NetworkController implements ServiceConstants {
     public void changeConnectToVpnRule(boolean isEnabled) {
         LOGGER.info("Change connect to vpn rule: " + isEnabled);
         settingsPreference.putRuleConnectToVpn(isEnabled);
+        compileRules();
         if (source == null || source.equals(NO_NETWORK)) {
             return;
         }
@@ -530,6 +409,7 @@ public class NetworkController implements ServiceConstants {
     public void changeDisconnectFromVpnRule(boolean isEnabled) {
         LOGGER.info("changeDisconnectFromVpnRule: " + isEnabled);
         settingsPreference.putRuleDisconnectFromVpn(isEnabled);
+        compileRules();
         if (source == null || source.equals(NO_NETWORK)) {
             return;
         }
@@ -542,6 +422,7 @@ public class NetworkController implements ServiceConstants {
     public void changeEnableKillSwitchRule(boolean isEnabled) {
         LOGGER.info("changeEnableKillSwitchRule: " + isEnabled);
         settingsPreference.putRuleEnableKillSwitch(isEnabled);
+        compileRules();
         if (source == null || source.equals(NO_NETWORK)) {
             return;
         }
@@ -554,6 +435,7 @@ public class NetworkController implements ServiceConstants {
     public void changeDisableKillSwitchRule(boolean isEnabled) {
         LOGGER.info("changeDisableKillSwitchRule: " + isEnabled);
         settingsPreference.putRuleDisableKillSwitch(isEnabled);
+        compileRules();
         if (source == null || source.equals(NO_NETWORK)) {
             return;
         }
@@ -563,39 +445,29 @@ public class NetworkController implements ServiceConstants {
         }
     }
 
-    private class WifiBroadcastReceiver extends BroadcastReceiver {
-
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            String action = intent.getAction();
-            if (ConnectivityManager.CONNECTIVITY_ACTION.equals(action)) {
-                NetworkSource source = NetworkUtil.getCurrentSource(context);
-                LOGGER.info("onReceive: source = " + source);
-                switch (source) {
-                    case WIFI: {
-                        String currentWiFiSsid = NetworkUtil.getCurrentWifiSsid(context);
-                        LOGGER.info("onReceive: currentWiFiSsid = " + currentWiFiSsid);
-                        if (currentWiFiSsid != null) {
-                            onWifiChanged(currentWiFiSsid);
-                        } else {
-                            onNoNetwork();
-                        }
-                        break;
-                    }
-                    case MOBILE_DATA: {
-                        onMobileData();
-                        break;
-                    }
-                    case NO_NETWORK: {
-                        onNoNetwork();
-                        break;
-                    }
-                    case UNDEFINED: {
-                        //do nothing
-                        break;
-                    }
+    private void onConnectivityChanged(ConnectivityEvent event) {
+        LOGGER.info("onConnectivityChanged: event = " + event);
+        switch (event.getSource()) {
+            case WIFI: {
+                if (event.getSsid() != null) {
+                    onWifiChanged(event.getSsid());
+                } else {
+                    onNoNetwork();
                 }
+                break;
+            }
+            case MOBILE_DATA: {
+                onMobileData();
+                break;
+            }
+            case NO_NETWORK: {
+                onNoNetwork();
+                break;
+            }
+            case UNDEFINED: {
+                //do nothing
+                break;
             }
         }
     }
-}
\ No newline at end of file
+}
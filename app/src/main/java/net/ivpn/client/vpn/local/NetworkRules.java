@@ -0,0 +1,129 @@
+package net.ivpn.client.vpn.local;
+
+import net.ivpn.client.vpn.model.KillSwitchRule;
+import net.ivpn.client.vpn.model.NetworkState;
+import net.ivpn.client.vpn.model.VPNRule;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static net.ivpn.client.vpn.model.NetworkState.DEFAULT;
+import static net.ivpn.client.vpn.model.NetworkState.NONE;
+import static net.ivpn.client.vpn.model.NetworkState.TRUSTED;
+import static net.ivpn.client.vpn.model.NetworkState.UNTRUSTED;
+
+/**
+ * Immutable decision table of network protection. Wi-Fi marks, default and mobile data states and
+ * kill switch/VPN rules are compiled once, so every network change is decided by a map lookup
+ * and an array access. Any edit produces a new instance, which is swapped by {@link NetworkController}.
+ */
+public final class NetworkRules {
+
+    private final Map<String, NetworkState> wifiStates;
+    private final NetworkState defaultState;
+    private final NetworkState mobileState;
+    private final Decision[] decisions;
+    private final boolean isWatcherNeeded;
+
+    private NetworkRules(Map<String, NetworkState> wifiStates, NetworkState defaultState,
+                         NetworkState mobileState, Decision[] decisions, boolean isWatcherNeeded) {
+        this.wifiStates = wifiStates;
+        this.defaultState = defaultState;
+        this.mobileState = mobileState;
+        this.decisions = decisions;
+        this.isWatcherNeeded = isWatcherNeeded;
+    }
+
+    public static NetworkRules compile(Map<String, NetworkState> wifiStates, NetworkState defaultState,
+                                       NetworkState mobileState, boolean connectToVpn, boolean disconnectFromVpn,
+                                       boolean enableKillSwitch, boolean disableKillSwitch) {
+        Decision trusted = new Decision(disableKillSwitch ? KillSwitchRule.DISABLE : KillSwitchRule.NOTHING,
+                disconnectFromVpn ? VPNRule.DISCONNECT : VPNRule.NOTHING);
+        Decision untrusted = new Decision(enableKillSwitch ? KillSwitchRule.ENABLE : KillSwitchRule.NOTHING,
+                connectToVpn ? VPNRule.CONNECT : VPNRule.NOTHING);
+        Decision none = new Decision(KillSwitchRule.NOTHING, VPNRule.NOTHING);
+
+        Decision[] decisions = new Decision[NetworkState.values().length];
+        decisions[TRUSTED.ordinal()] = trusted;
+        decisions[UNTRUSTED.ordinal()] = untrusted;
+        decisions[NONE.ordinal()] = none;
+        switch (defaultState) {
+            case TRUSTED:
+                decisions[DEFAULT.ordinal()] = trusted;
+                break;
+            case UNTRUSTED:
+                decisions[DEFAULT.ordinal()] = untrusted;
+                break;
+            default:
+                decisions[DEFAULT.ordinal()] = none;
+        }
+
+        boolean isWatcherNeeded = isActive(defaultState) || isActive(mobileState);
+        Map<String, NetworkState> states = new HashMap<>();
+        for (Map.Entry<String, NetworkState> entry : wifiStates.entrySet()) {
+            if (entry.getKey() == null || entry.getValue() == null || entry.getValue() == DEFAULT) {
+                continue;
+            }
+            states.put(entry.getKey(), entry.getValue());
+            isWatcherNeeded |= isActive(entry.getValue());
+        }
+
+        return new NetworkRules(Collections.unmodifiableMap(states), defaultState, mobileState,
+                decisions, isWatcherNeeded);
+    }
+
+    private static boolean isActive(NetworkState state) {
+        return state == TRUSTED || state == UNTRUSTED;
+    }
+
+    public NetworkState getStateFor(String ssid) {
+        NetworkState state = ssid != null ? wifiStates.get(ssid) : null;
+        return state != null ? state : DEFAULT;
+    }
+
+    public Decision decide(NetworkState state) {
+        return decisions[state.ordinal()];
+    }
+
+    public Decision decideForWifi(String ssid) {
+        return decide(getStateFor(ssid));
+    }
+
+    public Decision decideForMobileData() {
+        return decide(mobileState);
+    }
+
+    public NetworkState getDefaultState() {
+        return defaultState;
+    }
+
+    public NetworkState getMobileState() {
+        return mobileState;
+    }
+
+    /**
+     * @return {@code true} if at least one network can trigger a rule, so network changes should be watched.
+     */
+    public boolean isWatcherNeeded() {
+        return isWatcherNeeded;
+    }
+
+    public static final class Decision {
+        private final KillSwitchRule killSwitchRule;
+        private final VPNRule vpnRule;
+
+        Decision(KillSwitchRule killSwitchRule, VPNRule vpnRule) {
+            this.killSwitchRule = killSwitchRule;
+            this.vpnRule = vpnRule;
+        }
+
+        public KillSwitchRule getKillSwitchRule() {
+            return killSwitchRule;
+        }
+
+        public VPNRule getVpnRule() {
+            return vpnRule;
+        }
+    }
+}
@@ -4,34 +4,32 @@ import android.app.Notification;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.app.Service;
-import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
-import android.net.ConnectivityManager;
 import android.os.Build;
 import android.os.IBinder;
 import androidx.annotation.Nullable;
 import androidx.core.app.NotificationCompat;
 
 import net.ivpn.client.R;
-import net.ivpn.client.common.utils.NetworkUtil;
 import net.ivpn.client.ui.connect.ConnectActivity;
 import net.ivpn.client.vpn.ServiceConstants;
-import net.ivpn.client.vpn.model.NetworkSource;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Keeps the app in foreground while network rules are active. Network changes themselves
+ * are delivered to {@link NetworkController} by {@link net.ivpn.client.common.connectivity.ConnectivityEngine}.
+ */
 public class WifiWatcherService extends Service implements ServiceConstants {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(WifiWatcherService.class);
 
     public static AtomicBoolean isRunning = new AtomicBoolean(false);
 
-    private WifiBroadcastReceiver receiver;
     private NotificationManager notificationManager;
 
     private int notificationId;
@@ -83,10 +81,6 @@ public class WifiWatcherService extends Service implements ServiceConstants {
     public void onDestroy() {
         LOGGER.info("onDestroy");
         super.onDestroy();
-        if (receiver != null) {
-            unregisterReceiver(receiver);
-            receiver = null;
-        }
     }
 
     private int endService() {
@@ -104,7 +98,6 @@ public class WifiWatcherService extends Service implements ServiceConstants {
     private int startWifiWatcher() {
         LOGGER.info("startWifiWatcher");
         showNotification(System.currentTimeMillis());
-        registerReceiver();
         return START_STICKY;
     }
 
@@ -113,19 +106,6 @@ public class WifiWatcherService extends Service implements ServiceConstants {
         sendBroadcast(intent);
     }
 
-    private void registerReceiver() {
-        if (receiver != null) {
-            //receiver has already registered
-            return;
-        }
-        receiver = new WifiBroadcastReceiver();
-
-        IntentFilter intentFilter = new IntentFilter();
-        intentFilter.addAction(ConnectivityManager.CONNECTIVITY_ACTION);
-        registerReceiver(receiver, intentFilter);
-        LOGGER.info("registerReceiver: successfully");
-    }
-
     private int doSendBroadcast() {
         Intent actionIntent = new Intent();
         actionIntent.setAction(WIFI_WATCHER_ACTION);
@@ -134,28 +114,6 @@ public class WifiWatcherService extends Service implements ServiceConstants {
         return START_NOT_STICKY;
     }
 
-    private void sendWifiConnectionBroadcast(String ssid) {
-        Intent actionIntent = new Intent();
-        actionIntent.setAction(WIFI_WATCHER_ACTION);
-        actionIntent.putExtra(WIFI_WATCHER_ACTION_EXTRA, WIFI_CHANGED_ACTION);
-        actionIntent.putExtra(WIFI_WATCHER_ACTION_VALUE, ssid);
-        sendBroadcast(actionIntent);
-    }
-
-    private void sendOnMobileDataBroadcast() {
-        Intent actionIntent = new Intent();
-        actionIntent.setAction(WIFI_WATCHER_ACTION);
-        actionIntent.putExtra(WIFI_WATCHER_ACTION_EXTRA, ON_MOBILE_DATA_ACTION);
-        sendBroadcast(actionIntent);
-    }
-
-    private void sendNoNetworkBroadcast() {
-        Intent actionIntent = new Intent();
-        actionIntent.setAction(WIFI_WATCHER_ACTION);
-        actionIntent.putExtra(WIFI_WATCHER_ACTION_EXTRA, NO_NETWORK_ACTION);
-        sendBroadcast(actionIntent);
-    }
-
     //ToDo Need to refactor, think how to make this code clean
     private void showNotification(long when) {
         int icon = R.drawable.ic_stat_name;
@@ -210,38 +168,4 @@ public class WifiWatcherService extends Service implements ServiceConstants {
         builder.addAction(R.drawable.ic_settings,
                 getString(R.string.notification_ks_settings_action), pendingIntent);
     }
-
-    private class WifiBroadcastReceiver extends BroadcastReceiver {
-
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            String action = intent.getAction();
-            if (ConnectivityManager.CONNECTIVITY_ACTION.equals(action)) {
-                NetworkSource source = NetworkUtil.getCurrentSource(context);
-                switch (source) {
-                    case WIFI: {
-                        String currentWiFiSsid = NetworkUtil.getCurrentWifiSsid(context);
-                        if (currentWiFiSsid != null) {
-                            sendWifiConnectionBroadcast(currentWiFiSsid);
-                        } else {
-                            sendNoNetworkBroadcast();
-                        }
-                        break;
-                    }
-                    case MOBILE_DATA: {
-                        sendOnMobileDataBroadcast();
-                        break;
-                    }
-                    case NO_NETWORK: {
-                        sendNoNetworkBroadcast();
-                        break;
-                    }
-                    case UNDEFINED: {
-                        //do nothing
-                        break;
-                    }
-                }
-            }
-        }
-    }
-}
\ No newline at end of file
+}
@@ -8,7 +8,6 @@ import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.net.ConnectivityManager;
 import android.net.VpnService;
 import android.os.Binder;
 import android.os.Build;
@@ -23,6 +22,7 @@ import android.system.OsConstants;
 
 import net.ivpn.client.IVPNApplication;
 import net.ivpn.client.R;
+import net.ivpn.client.common.connectivity.ConnectivityEngine;
 import net.ivpn.client.common.prefs.ServerType;
 import net.ivpn.client.common.prefs.ServersRepository;
 import net.ivpn.client.common.prefs.Settings;
@@ -73,6 +73,8 @@ public class IVPNService extends VpnService implements VpnStatus.StateListener,
     ProfileManager profileManager;
     @Inject
     ServiceConfiguration serviceConfiguration;
+    @Inject
+    ConnectivityEngine connectivityEngine;
 
     private int notificationId;
     private long lastTick;
@@ -421,16 +423,19 @@ public class IVPNService extends VpnService implements VpnStatus.StateListener,
 
     synchronized void registerDeviceStateReceiver(OpenVPNManagement magnagement) {
         IntentFilter filter = new IntentFilter();
-        filter.addAction(ConnectivityManager.CONNECTIVITY_ACTION);
         filter.addAction(Intent.ACTION_SCREEN_OFF);
         filter.addAction(Intent.ACTION_SCREEN_ON);
-        deviceStateReceiver = new DeviceStateReceiver(magnagement);
+        filter.addAction(Intent.ACTION_POWER_CONNECTED);
+        filter.addAction(Intent.ACTION_POWER_DISCONNECTED);
+        deviceStateReceiver = new DeviceStateReceiver(magnagement, settings.isIdlePauseEnabled());
 
         registerReceiver(deviceStateReceiver, filter);
+        connectivityEngine.addListener(deviceStateReceiver);
     }
 
     synchronized void unregisterDeviceStateReceiver() {
-        if (deviceStateReceiver != null)
+        if (deviceStateReceiver != null) {
+            connectivityEngine.removeListener(deviceStateReceiver);
             try {
                 this.unregisterReceiver(deviceStateReceiver);
             } catch (IllegalArgumentException exception) {
@@ -439,6 +444,7 @@ public class IVPNService extends VpnService implements VpnStatus.StateListener,
                 // Ignore for now ...
                 exception.printStackTrace();
             }
+        }
         deviceStateReceiver = null;
     }
 
@@ -44,7 +44,7 @@ public class ProfileManager {
      * @return current profile
      */
     @Nullable
-    VpnProfile getVpnProfile() {
+    synchronized VpnProfile getVpnProfile() {
         if (currentProfile == null) {
             readDefaultProfile();
         }
@@ -62,7 +62,7 @@ public class ProfileManager {
      * Read default profile. It should be used at the start of application to save some time.
      * Because all config have similar options and are different only by the gateways.
      */
-    public void readDefaultProfile() {
+    public synchronized void readDefaultProfile() {
         LOGGER.info("readDefaultProfile");
         currentProfile = ConfigLoader.load();
         ProfileStorage.writeProfile(currentProfile);
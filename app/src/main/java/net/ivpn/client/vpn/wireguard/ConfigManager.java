@@ -8,9 +8,12 @@ import net.ivpn.client.common.dagger.ApplicationScope;
 import net.ivpn.client.common.prefs.ServerType;
 import net.ivpn.client.common.prefs.ServersRepository;
 import net.ivpn.client.common.prefs.Settings;
+import net.ivpn.client.common.utils.DomainResolver;
 import net.ivpn.client.rest.data.model.Host;
 import net.ivpn.client.rest.data.model.Server;
 import net.ivpn.client.ui.protocol.port.Port;
+import net.ivpn.client.vpn.Protocol;
+import net.ivpn.client.vpn.fallback.PortSelector;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,20 +33,29 @@ public class ConfigManager {
 
     private Settings settings;
     private ServersRepository serversRepository;
+    private DomainResolver domainResolver;
+    private PortSelector portSelector;
 
     @Inject
-    public ConfigManager(Settings settings, ServersRepository serversRepository) {
+    public ConfigManager(Settings settings, ServersRepository serversRepository,
+                         DomainResolver domainResolver, PortSelector portSelector) {
         this.settings = settings;
         this.serversRepository = serversRepository;
+        this.domainResolver = domainResolver;
+        this.portSelector = portSelector;
     }
 
     public void init() {
         LOGGER.info("init");
     }
 
-    public void startWireGuard() {
-        applyConfigToTunnel(generateConfig());
-        tunnel.setState(Tunnel.State.UP);
+    /**
+     * Generate config for the current server and create a tunnel for it. The tunnel is marked as UP,
+     * it is brought up by {@link ConnectPipeline}.
+     */
+    public Tunnel createTunnel() {
+        tunnel = new Tunnel(WIREGUARD_TUNNEL_NAME, generateConfig(), Tunnel.State.UP);
+        return tunnel;
     }
 
     public void stopWireGuard() {
@@ -54,12 +66,8 @@ public class ConfigManager {
         tunnel.setState(Tunnel.State.DOWN);
     }
 
-    private void applyConfigToTunnel(Config config) {
-        tunnel = new Tunnel(WIREGUARD_TUNNEL_NAME, config, Tunnel.State.DOWN);
-    }
-
     private Config generateConfig() {
-        Port port = settings.getWireGuardPort();
+        Port port = portSelector.getPort(Protocol.WIREGUARD);
         Server server = serversRepository.getCurrentServer(ServerType.ENTRY);
         return generateConfig(server, port);
     }
@@ -89,7 +97,12 @@ public class ConfigManager {
         for (Host host : server.getHosts()) {
             peer = new Peer();
             peer.setAllowedIPsString("0.0.0.0/0, ::/0");
-            peer.setEndpointString(host.getHost() + ":" + port.getPortNumber());
+            //Address resolved in advance is used if there is one, so the tunnel doesn't wait for DNS.
+            String address = domainResolver.getCachedAddress(host.getHost());
+            if (address != null && address.indexOf(':') != -1) {
+                address = "[" + address + "]";
+            }
+            peer.setEndpointString(address + ":" + port.getPortNumber());
             peer.setPublicKey(host.getPublicKey());
             peers.add(peer);
         }
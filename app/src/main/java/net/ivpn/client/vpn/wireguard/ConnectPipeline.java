@@ -0,0 +1,164 @@
+package net.ivpn.client.vpn.wireguard;
+
+import android.os.SystemClock;
+
+import com.wireguard.android.backend.GoBackend;
+import com.wireguard.android.model.Tunnel;
+
+import net.ivpn.client.common.dagger.ApplicationScope;
+import net.ivpn.client.common.utils.DateUtil;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+
+import java9.util.concurrent.CompletableFuture;
+
+/**
+ * Brings the WireGuard tunnel up as a set of stages with explicit dependencies:
+ * <pre>
+ * service ─┐
+ * apps    ─┼─> turn on
+ * config  ─┘
+ * </pre>
+ * VpnService start and disallowed apps resolution don't depend on the server, so they are started
+ * by {@link #prepare()} while the fastest server is still being detected. Config is formatted to UAPI,
+ * which resolves the endpoint, in parallel with them. Every stage has its own timeout and its
+ * duration is logged.
+ */
+@ApplicationScope
+public class ConnectPipeline {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConnectPipeline.class);
+
+    private static final long SERVICE_TIMEOUT = 2 * DateUtil.SECOND;
+    private static final long APPS_TIMEOUT = 2 * DateUtil.SECOND;
+    private static final long CONFIG_TIMEOUT = 5 * DateUtil.SECOND;
+    private static final long TURN_ON_TIMEOUT = 10 * DateUtil.SECOND;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private GoBackend goBackend;
+    private ConfigManager configManager;
+
+    private CompletableFuture<GoBackend.WireGuardVpnService> serviceStage;
+    private CompletableFuture<Set<String>> appsStage;
+    private long prepareTime;
+    private int attempt;
+
+    @Inject
+    ConnectPipeline(GoBackend goBackend, ConfigManager configManager) {
+        this.goBackend = goBackend;
+        this.configManager = configManager;
+    }
+
+    /**
+     * Start stages that don't depend on the server. It is safe to call it several times,
+     * stages are started only once per connection.
+     */
+    public synchronized void prepare() {
+        if (serviceStage != null) {
+            return;
+        }
+        LOGGER.info("prepare");
+        prepareTime = SystemClock.elapsedRealtime();
+        serviceStage = stage("service", goBackend.prepareVpnService(), SERVICE_TIMEOUT);
+        appsStage = stage("apps", CompletableFuture.supplyAsync(goBackend::resolveDisallowedApps, executor),
+                APPS_TIMEOUT);
+    }
+
+    /**
+     * Create the tunnel for the current server and bring it up.
+     *
+     * @return Future that is completed with the tunnel state, or with {@link CancellationException}
+     * if {@link #cancel()} was called in the meantime. A tunnel that came up after the cancel
+     * is turned off again.
+     */
+    public synchronized CompletableFuture<Tunnel.State> connect() {
+        prepare();
+        final int currentAttempt = ++attempt;
+        final long startTime = prepareTime;
+        final long connectTime = SystemClock.elapsedRealtime();
+        final CompletableFuture<GoBackend.WireGuardVpnService> service = serviceStage;
+        final CompletableFuture<Set<String>> apps = appsStage;
+        serviceStage = null;
+        appsStage = null;
+
+        final Tunnel tunnel = configManager.createTunnel();
+        final CompletableFuture<String> config = stage("config",
+                CompletableFuture.supplyAsync(() -> format(tunnel), executor), CONFIG_TIMEOUT);
+
+        return CompletableFuture.allOf(service, apps, config)
+                .thenCompose(ignored -> {
+                    if (!isActual(currentAttempt)) {
+                        throw new CancellationException("Connection is cancelled");
+                    }
+                    return stage("turn on", goBackend.turnOn(tunnel, config.join(), apps.join()),
+                            TURN_ON_TIMEOUT);
+                })
+                .handle((state, throwable) -> {
+                    long now = SystemClock.elapsedRealtime();
+                    if (throwable == null && !isActual(currentAttempt)) {
+                        //Cancelled while the tunnel was on its way up, it shouldn't stay up.
+                        LOGGER.info("Tunnel is " + state + " after cancel, turn it off");
+                        goBackend.turnOffIfCurrent(tunnel);
+                        throw new CancellationException("Connection is cancelled");
+                    }
+                    if (throwable == null) {
+                        LOGGER.info("Tunnel is " + state + " in " + (now - startTime) + " ms, "
+                                + (now - connectTime) + " ms after connect");
+                        return state;
+                    }
+                    if (!isActual(currentAttempt)) {
+                        throw new CancellationException("Connection is cancelled");
+                    }
+                    LOGGER.error("Unable to bring tunnel up in " + (now - startTime) + " ms");
+                    throw throwable instanceof CompletionException
+                            ? (CompletionException) throwable : new CompletionException(throwable);
+                });
+    }
+
+    /**
+     * Drop prepared stages and make the running connection attempt obsolete.
+     */
+    public synchronized void cancel() {
+        LOGGER.info("cancel");
+        attempt++;
+        serviceStage = null;
+        appsStage = null;
+    }
+
+    private synchronized boolean isActual(int attempt) {
+        return this.attempt == attempt;
+    }
+
+    private String format(Tunnel tunnel) {
+        try {
+            return Objects.requireNonNull(tunnel.getConfig(), "Tunnel has no config").format();
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private <T> CompletableFuture<T> stage(String name, CompletableFuture<T> future, long timeout) {
+        final long startTime = SystemClock.elapsedRealtime();
+        return future.orTimeout(timeout, TimeUnit.MILLISECONDS)
+                .whenComplete((result, throwable) -> {
+                    long duration = SystemClock.elapsedRealtime() - startTime;
+                    if (throwable == null) {
+                        LOGGER.info("Stage " + name + " is finished in " + duration + " ms");
+                    } else {
+                        LOGGER.error("Stage " + name + " is failed in " + duration + " ms", throwable);
+                    }
+                });
+    }
+}
@@ -0,0 +1,98 @@
+package net.ivpn.client.vpn.wireguard;
+
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * Journal entry of the WireGuard key rotation. It is persisted before every step,
+ * so the rotation can be continued from the last finished step after process death.
+ */
+public class KeyRotation {
+
+    @SerializedName("step")
+    @Expose
+    private Step step;
+    @SerializedName("private_key")
+    @Expose
+    private String privateKey;
+    @SerializedName("public_key")
+    @Expose
+    private String publicKey;
+    @SerializedName("old_public_key")
+    @Expose
+    private String oldPublicKey;
+    @SerializedName("ip_address")
+    @Expose
+    private String ipAddress;
+    @SerializedName("attempt")
+    @Expose
+    private int attempt;
+
+    public KeyRotation(String privateKey, String publicKey, String oldPublicKey) {
+        this.step = Step.REGISTER;
+        this.privateKey = privateKey;
+        this.publicKey = publicKey;
+        this.oldPublicKey = oldPublicKey;
+    }
+
+    public Step getStep() {
+        return step;
+    }
+
+    public void setStep(Step step) {
+        this.step = step;
+        this.attempt = 0;
+    }
+
+    public String getPrivateKey() {
+        return privateKey;
+    }
+
+    public String getPublicKey() {
+        return publicKey;
+    }
+
+    public String getOldPublicKey() {
+        return oldPublicKey;
+    }
+
+    public String getIpAddress() {
+        return ipAddress;
+    }
+
+    public void setIpAddress(String ipAddress) {
+        this.ipAddress = ipAddress;
+    }
+
+    public int getAttempt() {
+        return attempt;
+    }
+
+    public void nextAttempt() {
+        attempt++;
+    }
+
+    public void resetAttempts() {
+        attempt = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "KeyRotation{" +
+                "step=" + step +
+                ", publicKey='" + publicKey + '\'' +
+                ", oldPublicKey='" + oldPublicKey + '\'' +
+                ", ipAddress='" + ipAddress + '\'' +
+                ", attempt=" + attempt +
+                '}';
+    }
+
+    public enum Step {
+        //New key is generated, but isn't known by server yet.
+        REGISTER,
+        //New key is registered, old key is still valid.
+        SWAP,
+        //New key is used by tunnel, old key should be removed from server.
+        RETIRE
+    }
+}
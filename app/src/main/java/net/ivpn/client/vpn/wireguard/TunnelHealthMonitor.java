@@ -0,0 +1,254 @@
+package net.ivpn.client.vpn.wireguard;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.PowerManager;
+
+import com.wireguard.android.backend.GoBackend;
+import com.wireguard.android.backend.Statistics;
+import com.wireguard.android.config.Peer;
+import com.wireguard.android.model.Tunnel;
+
+import net.ivpn.client.common.dagger.ApplicationScope;
+import net.ivpn.client.common.utils.DateUtil;
+import net.ivpn.client.vpn.TrafficIdleDetector;
+import net.ivpn.client.vpn.controller.VpnBehaviorController;
+import net.ivpn.client.vpn.fallback.PortSelector;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+
+/**
+ * Watches handshake time and transfer counters of the live WireGuard tunnel using {@link Statistics}.
+ * Tunnel is treated as stalled if there was no handshake for {@link #STALL_HANDSHAKE_AGE}
+ * while data is sent and nothing is received. Stalled tunnel is recovered step by step,
+ * starting from the cheapest action, full reconnection is the last one.
+ * Polling cadence grows while tunnel is healthy, so idle tunnel causes almost no wakeups. While the screen
+ * is off and the Go backend counters show no traffic, statistics are read only every {@link #IDLE_INTERVAL}.
+ * Tunnel itself needs no pause, WireGuard sends nothing without traffic as no persistent keepalive is set.
+ * Until the first handshake the tunnel is polled every {@link #HANDSHAKE_INTERVAL}, the handshake
+ * is reported to {@link PortSelector} and if there is none in {@link #HANDSHAKE_TIMEOUT}
+ * the next port is selected and the tunnel is reconnected.
+ */
+@ApplicationScope
+public class TunnelHealthMonitor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TunnelHealthMonitor.class);
+
+    private static final long STALL_HANDSHAKE_AGE = 180 * DateUtil.SECOND;
+    private static final long MIN_INTERVAL = 10 * DateUtil.SECOND;
+    private static final long MAX_INTERVAL = 2 * DateUtil.MINUTE;
+    private static final long IDLE_INTERVAL = 5 * DateUtil.MINUTE;
+    private static final long RECOVERY_INTERVAL = 15 * DateUtil.SECOND;
+    private static final long HANDSHAKE_INTERVAL = DateUtil.SECOND;
+    private static final long HANDSHAKE_TIMEOUT = 15 * DateUtil.SECOND;
+    private static final long STATISTICS_TIMEOUT = DateUtil.SECOND;
+
+    private GoBackend goBackend;
+    private ConfigManager configManager;
+    private VpnBehaviorController vpnBehaviorController;
+    private PortSelector portSelector;
+    private PowerManager powerManager;
+
+    private Handler handler;
+    private Handler mainHandler;
+    private boolean isRunning;
+    private boolean isHandshakePending;
+    private boolean isFallbackPending;
+    private long startTime;
+    private long interval;
+    private long lastRx;
+    private long lastTx;
+    private RecoveryAction nextAction;
+    private final TrafficIdleDetector trafficDetector = new TrafficIdleDetector();
+
+    @Inject
+    TunnelHealthMonitor(Context context, GoBackend goBackend, ConfigManager configManager,
+                        VpnBehaviorController vpnBehaviorController, PortSelector portSelector) {
+        this.goBackend = goBackend;
+        this.configManager = configManager;
+        this.vpnBehaviorController = vpnBehaviorController;
+        this.portSelector = portSelector;
+        powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+
+        HandlerThread handlerThread = new HandlerThread(TunnelHealthMonitor.class.getSimpleName());
+        handlerThread.start();
+        handler = new Handler(handlerThread.getLooper());
+        mainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    public void start() {
+        LOGGER.info("start");
+        handler.removeCallbacksAndMessages(null);
+        handler.post(() -> {
+            isRunning = true;
+            isHandshakePending = true;
+            isFallbackPending = false;
+            startTime = System.currentTimeMillis();
+            interval = MIN_INTERVAL;
+            lastRx = 0;
+            lastTx = 0;
+            nextAction = RecoveryAction.REFRESH_ENDPOINT;
+            trafficDetector.reset(startTime);
+            handler.postDelayed(this::check, HANDSHAKE_INTERVAL);
+        });
+    }
+
+    public void stop() {
+        LOGGER.info("stop");
+        handler.removeCallbacksAndMessages(null);
+        handler.post(() -> {
+            isRunning = false;
+            isFallbackPending = false;
+        });
+    }
+
+    private void check() {
+        if (!isRunning) {
+            return;
+        }
+
+        Statistics.PeerStats state = readState();
+        long now = System.currentTimeMillis();
+        long lastHandshake = state != null ? state.getLatestHandshakeEpochMillis() : 0;
+        if (isHandshakePending) {
+            checkHandshake(lastHandshake, now);
+            return;
+        }
+        if (state == null) {
+            handler.postDelayed(this::check, interval);
+            return;
+        }
+
+        long handshakeAge = now - (lastHandshake == 0 ? startTime : lastHandshake);
+        boolean isSending = state.getTxBytes() > lastTx;
+        boolean isReceiving = state.getRxBytes() > lastRx;
+        trafficDetector.add(now, Math.max(state.getRxBytes() - lastRx, 0) + Math.max(state.getTxBytes() - lastTx, 0));
+        lastRx = state.getRxBytes();
+        lastTx = state.getTxBytes();
+
+        if (handshakeAge > STALL_HANDSHAKE_AGE && isSending && !isReceiving) {
+            LOGGER.info("Tunnel is stalled, last handshake " + handshakeAge + " ms ago");
+            recover(state);
+            interval = RECOVERY_INTERVAL;
+        } else {
+            if (isReceiving) {
+                nextAction = RecoveryAction.REFRESH_ENDPOINT;
+            }
+            interval = isIdle(now) ? IDLE_INTERVAL : Math.min(interval * 2, MAX_INTERVAL);
+        }
+        handler.postDelayed(this::check, interval);
+    }
+
+    private boolean isIdle(long now) {
+        boolean isScreenOn = powerManager == null || powerManager.isInteractive();
+        return !isScreenOn && trafficDetector.isIdle(now);
+    }
+
+    private void checkHandshake(long lastHandshake, long now) {
+        if (lastHandshake != 0) {
+            LOGGER.info("First handshake in " + (lastHandshake - startTime) + " ms");
+            isHandshakePending = false;
+            portSelector.onSuccess();
+            handler.postDelayed(this::check, interval);
+        } else if (now - startTime > HANDSHAKE_TIMEOUT) {
+            LOGGER.info("No handshake in " + (now - startTime) + " ms, try another port");
+            isHandshakePending = false;
+            isRunning = false;
+            isFallbackPending = true;
+            portSelector.onFailure().thenAccept(port -> handler.post(() -> {
+                //Tunnel could be stopped while the port was selected.
+                if (isFallbackPending) {
+                    isFallbackPending = false;
+                    mainHandler.post(vpnBehaviorController::reconnect);
+                }
+            }));
+        } else {
+            handler.postDelayed(this::check, HANDSHAKE_INTERVAL);
+        }
+    }
+
+    private void recover(Statistics.PeerStats state) {
+        LOGGER.info("Recover tunnel with action = " + nextAction);
+        switch (nextAction) {
+            case REFRESH_ENDPOINT: {
+                nextAction = RecoveryAction.REBIND_SOCKETS;
+                Peer peer = findPeer(state.getPublicKey(), false);
+                if (peer != null) {
+                    peer.resetResolvedEndpoint();
+                    goBackend.updatePeer(peer);
+                    break;
+                }
+            }
+            case REBIND_SOCKETS: {
+                nextAction = RecoveryAction.SWITCH_HOST;
+                goBackend.rebindSockets();
+                break;
+            }
+            case SWITCH_HOST: {
+                nextAction = RecoveryAction.RECONNECT;
+                Peer peer = findPeer(state.getPublicKey(), true);
+                if (peer != null) {
+                    peer.resetResolvedEndpoint();
+                    goBackend.updatePeer(peer);
+                    break;
+                }
+            }
+            case RECONNECT: {
+                isRunning = false;
+                mainHandler.post(vpnBehaviorController::reconnect);
+                break;
+            }
+        }
+    }
+
+    //Returns the current peer or, if another is true, the next peer of the same server.
+    private Peer findPeer(String publicKey, boolean another) {
+        Tunnel tunnel = configManager.getTunnel();
+        if (tunnel == null || tunnel.getConfig() == null || publicKey == null) {
+            return null;
+        }
+        List<Peer> peers = tunnel.getConfig().getPeers();
+        for (int i = 0; i < peers.size(); i++) {
+            Peer peer = peers.get(i);
+            if (publicKey.equals(peer.getPublicKey())) {
+                if (!another) {
+                    return peer;
+                }
+                return peers.size() > 1 ? peers.get((i + 1) % peers.size()) : null;
+            }
+        }
+        return null;
+    }
+
+    private Statistics.PeerStats readState() {
+        Tunnel tunnel = configManager.getTunnel();
+        if (tunnel == null) {
+            return null;
+        }
+        try {
+            //Checks run on their own thread, so they wait for fresh statistics instead of the cached ones.
+            Collection<Statistics.PeerStats> peers = goBackend.readStatistics(tunnel)
+                    .get(STATISTICS_TIMEOUT, TimeUnit.MILLISECONDS).peers();
+            return peers.isEmpty() ? null : peers.iterator().next();
+        } catch (Exception e) {
+            LOGGER.error("Unable to read tunnel statistics", e);
+            return null;
+        }
+    }
+
+    private enum RecoveryAction {
+        REFRESH_ENDPOINT,
+        REBIND_SOCKETS,
+        SWITCH_HOST,
+        RECONNECT
+    }
+}
@@ -0,0 +1,96 @@
+package com.wireguard.android.backend;
+
+import com.wireguard.android.crypto.KeyEncoding;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StatisticsTest {
+
+    private static final String FIRST_KEY = "58402e695ba1772b1cc9309755f043251ea77fdcf10fbe63989ceb7e19321376";
+    private static final String SECOND_KEY = "662e14fd594556f522604703340351258903b64f35553763f19426ab2a515c58";
+
+    @Test
+    public void parseSeveralPeers() {
+        Statistics statistics = Statistics.parse("private_key=e84b5a6d2717c1003a13b431570353dbaca9146cf150c5f8575680feba52027a\n"
+                + "listen_port=12912\n"
+                + "public_key=" + FIRST_KEY + "\n"
+                + "endpoint=[abcd:23::33%2]:51820\n"
+                + "last_handshake_time_sec=1600000000\n"
+                + "last_handshake_time_nsec=500000000\n"
+                + "rx_bytes=2224\n"
+                + "tx_bytes=38333\n"
+                + "public_key=" + SECOND_KEY + "\n"
+                + "endpoint=182.122.22.19:3233\n"
+                + "last_handshake_time_sec=1600000100\n"
+                + "last_handshake_time_nsec=0\n"
+                + "rx_bytes=100\n"
+                + "tx_bytes=200\n"
+                + "errno=0\n");
+
+        List<Statistics.PeerStats> peers = new ArrayList<>(statistics.peers());
+        assertEquals(2, peers.size());
+
+        assertEquals(base64(FIRST_KEY), peers.get(0).getPublicKey());
+        assertEquals(2224, peers.get(0).getRxBytes());
+        assertEquals(38333, peers.get(0).getTxBytes());
+        assertEquals(1600000000500L, peers.get(0).getLatestHandshakeEpochMillis());
+
+        assertEquals(base64(SECOND_KEY), peers.get(1).getPublicKey());
+        assertEquals(100, peers.get(1).getRxBytes());
+        assertEquals(200, peers.get(1).getTxBytes());
+        assertEquals(1600000100000L, peers.get(1).getLatestHandshakeEpochMillis());
+    }
+
+    @Test
+    public void parseWithoutHandshake() {
+        Statistics statistics = Statistics.parse("public_key=" + FIRST_KEY + "\n"
+                + "rx_bytes=0\n"
+                + "tx_bytes=148\n"
+                + "errno=0\n");
+
+        List<Statistics.PeerStats> peers = new ArrayList<>(statistics.peers());
+        assertEquals(1, peers.size());
+        assertEquals(0, peers.get(0).getLatestHandshakeEpochMillis());
+        assertEquals(148, peers.get(0).getTxBytes());
+    }
+
+    @Test
+    public void parseMalformedLines() {
+        Statistics statistics = Statistics.parse("public_key=" + FIRST_KEY + "\n"
+                + "rx_bytes=abc\n"
+                + "garbage\n"
+                + "tx_bytes=10\n"
+                + "public_key=notakey\n"
+                + "rx_bytes=999\n"
+                + "tx_bytes=999\n"
+                + "public_key=" + SECOND_KEY + "\n"
+                + "rx_bytes=5\n");
+
+        List<Statistics.PeerStats> peers = new ArrayList<>(statistics.peers());
+        assertEquals(2, peers.size());
+
+        assertEquals(base64(FIRST_KEY), peers.get(0).getPublicKey());
+        assertEquals(0, peers.get(0).getRxBytes());
+        assertEquals(10, peers.get(0).getTxBytes());
+
+        assertEquals(base64(SECOND_KEY), peers.get(1).getPublicKey());
+        assertEquals(5, peers.get(1).getRxBytes());
+        assertEquals(0, peers.get(1).getTxBytes());
+    }
+
+    @Test
+    public void parseEmpty() {
+        assertTrue(Statistics.parse("").peers().isEmpty());
+        assertTrue(Statistics.parse("errno=0\n").peers().isEmpty());
+    }
+
+    private static String base64(String hex) {
+        return KeyEncoding.keyToBase64(KeyEncoding.keyFromHex(hex));
+    }
+}
@@ -0,0 +1,43 @@
+package net.ivpn.client.common.connectivity;
+
+import net.ivpn.client.common.connectivity.ConnectionProbe.Result.CaptivePortal;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.net.UnknownServiceException;
+
+import static org.junit.Assert.assertEquals;
+
+public class ConnectionProbeTest {
+
+    @Test
+    public void noContentMeansOpenInternet() {
+        assertEquals(CaptivePortal.NONE, CaptivePortal.of(204));
+        assertEquals(ConnectionProbe.Verdict.CONNECT, CaptivePortal.of(204).getVerdict());
+    }
+
+    @Test
+    public void otherResponseMeansCaptivePortal() {
+        assertEquals(CaptivePortal.DETECTED, CaptivePortal.of(302));
+        assertEquals(CaptivePortal.DETECTED, CaptivePortal.of(200));
+        assertEquals(ConnectionProbe.Verdict.DEFER, CaptivePortal.DETECTED.getVerdict());
+    }
+
+    @Test
+    public void cleartextPolicyFailureConnects() {
+        IOException exception = new UnknownServiceException(
+                "CLEARTEXT communication to connectivitycheck.gstatic.com not permitted by network security policy");
+        assertEquals(CaptivePortal.UNKNOWN, CaptivePortal.of(exception));
+        assertEquals(ConnectionProbe.Verdict.CONNECT, CaptivePortal.of(exception).getVerdict());
+    }
+
+    @Test
+    public void networkFailureDefers() {
+        assertEquals(CaptivePortal.UNREACHABLE, CaptivePortal.of(new UnknownHostException()));
+        assertEquals(CaptivePortal.UNREACHABLE, CaptivePortal.of(new SocketTimeoutException()));
+        assertEquals(ConnectionProbe.Verdict.DEFER, CaptivePortal.UNREACHABLE.getVerdict());
+    }
+}
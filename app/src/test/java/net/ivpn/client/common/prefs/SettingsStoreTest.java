@@ -0,0 +1,182 @@
+package net.ivpn.client.common.prefs;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SettingsStoreTest {
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private final Map<String, Map<String, ?>> legacy = new HashMap<>();
+    private int importCount;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = new File(Files.createTempDirectory("store").toFile(), "settings_store.json");
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        for (File child : file.getParentFile().listFiles()) {
+            child.delete();
+        }
+        file.getParentFile().delete();
+    }
+
+    @Test
+    public void valuesKeepTheirTypesOnDisk() {
+        Set<String> set = new HashSet<>(Arrays.asList("first", "second"));
+        createStore().edit()
+                .put("settings", "boolean", true)
+                .put("settings", "int", 7)
+                .put("settings", "long", 1L << 40)
+                .put("settings", "float", 0.5f)
+                .put("account", "string", "value")
+                .put("account", "set", set)
+                .commit();
+
+        SettingsStore store = createStore();
+        assertEquals(true, store.get("settings", "boolean"));
+        assertEquals(7, store.get("settings", "int"));
+        assertEquals(1L << 40, store.get("settings", "long"));
+        assertEquals(0.5f, store.get("settings", "float"));
+        assertEquals("value", store.get("account", "string"));
+        assertEquals(set, store.get("account", "set"));
+    }
+
+    @Test
+    public void legacyValuesAreImportedOnce() {
+        legacy.put("settings", Collections.singletonMap("logging", true));
+
+        assertEquals(true, createStore().get("settings", "logging"));
+        assertEquals(1, importCount);
+
+        legacy.clear();
+        assertEquals(true, createStore().get("settings", "logging"));
+        assertEquals(1, importCount);
+    }
+
+    @Test
+    public void transactionIsAppliedAsOneChange() {
+        SettingsStore store = createStore();
+        List<Set<String>> changes = new ArrayList<>();
+        store.addOnStoreChangedListener((section, keys) -> changes.add(keys));
+
+        store.inTransaction(() -> {
+            store.edit().put("account", "plan", "Pro").apply();
+            store.edit().put("account", "active", true).apply();
+            assertNull(store.get("account", "plan"));
+        });
+
+        assertEquals(Collections.singletonList(new HashSet<>(Arrays.asList("plan", "active"))), changes);
+        assertEquals("Pro", store.get("account", "plan"));
+    }
+
+    @Test
+    public void unchangedValuesAreNotReported() {
+        SettingsStore store = createStore();
+        store.edit().put("settings", "logging", true).apply();
+        List<Set<String>> changes = new ArrayList<>();
+        store.addOnStoreChangedListener((section, keys) -> changes.add(keys));
+
+        store.edit().put("settings", "logging", true).apply();
+
+        assertTrue(changes.isEmpty());
+    }
+
+    @Test
+    public void clearIsAppliedBeforePut() {
+        SettingsStore store = createStore();
+        store.edit().put("account", "token", "token").put("account", "plan", "Pro").apply();
+
+        store.edit().put("account", "plan", "Standard").clear("account").apply();
+
+        assertEquals(Collections.singletonMap("plan", "Standard"), store.getSection("account"));
+    }
+
+    @Test
+    public void appliedChangesAreWrittenOnFlush() {
+        SettingsStore store = createStore();
+        store.edit().put("settings", "logging", true).apply();
+        store.edit().remove("settings", "logging").put("settings", "kill_switch", true).apply();
+
+        assertTrue(store.flush());
+
+        SettingsStore reopened = createStore();
+        assertFalse(reopened.getSection("settings").containsKey("logging"));
+        assertEquals(true, reopened.get("settings", "kill_switch"));
+    }
+
+    @Test
+    public void unreadableFileIsMovedAside() throws IOException {
+        byte[] broken = "{\"version\": 1, \"sections\": {".getBytes("UTF-8");
+        Files.write(file.toPath(), broken);
+
+        SettingsStore store = createStore();
+        assertNull(store.get("settings", "logging"));
+        store.edit().put("settings", "logging", true).commit();
+
+        File corrupt = new File(file.getPath() + ".corrupt");
+        assertTrue(Arrays.equals(broken, Files.readAllBytes(corrupt.toPath())));
+        assertEquals(true, createStore().get("settings", "logging"));
+    }
+
+    @Test
+    public void separateSectionIsWrittenToItsOwnFile() throws IOException {
+        SettingsStore store = createStore("servers");
+        store.edit().put("settings", "logging", true).put("servers", "list", "[]").commit();
+        byte[] settings = Files.readAllBytes(file.toPath());
+
+        store.edit().put("servers", "list", "[{}]").commit();
+
+        assertTrue(Arrays.equals(settings, Files.readAllBytes(file.toPath())));
+        SettingsStore reopened = createStore("servers");
+        assertEquals("[{}]", reopened.get("servers", "list"));
+        assertEquals(true, reopened.get("settings", "logging"));
+    }
+
+    @Test
+    public void sectionIsMovedOutOfTheMainFile() {
+        createStore().edit().put("servers", "list", "[]").commit();
+
+        assertTrue(createStore("servers").flush());
+
+        assertEquals("[]", createStore("servers").get("servers", "list"));
+        assertNull(createStore().get("servers", "list"));
+    }
+
+    private SettingsStore createStore(String... separateSections) {
+        return new SettingsStore(file, new SettingsStore.Importer() {
+            @Override
+            public Map<String, Map<String, ?>> read() {
+                return legacy;
+            }
+
+            @Override
+            public void onImported() {
+                importCount++;
+            }
+        }, executor, separateSections);
+    }
+}
@@ -0,0 +1,139 @@
+package net.ivpn.client.common.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StartupGraphTest {
+
+    @Test
+    public void criticalComponentsAreDoneOnStart() {
+        List<String> order = new ArrayList<>();
+        StartupGraph graph = new StartupGraph();
+        graph.addCritical("first", () -> order.add("first"));
+        graph.addCritical("second", () -> order.add("second"), "first");
+
+        graph.start();
+
+        assertEquals(Arrays.asList("first", "second"), order);
+        assertEquals(Arrays.asList("first", "second"), new ArrayList<>(graph.getTimings().keySet()));
+    }
+
+    @Test
+    public void deferredComponentWaitsForDependencies() throws InterruptedException {
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        List<Runnable> queue = new ArrayList<>();
+        StartupGraph graph = new StartupGraph();
+        graph.addCritical("critical", () -> order.add("critical"));
+        graph.addDeferred("deferred", queue::add, () -> order.add("deferred"), "critical");
+        graph.addDeferred("dependent", queue::add, () -> order.add("dependent"), "deferred");
+
+        graph.start();
+        assertEquals(Collections.singletonList("critical"), order);
+        assertFalse(graph.await("deferred", 0, TimeUnit.MILLISECONDS));
+
+        queue.remove(0).run();
+        assertTrue(graph.await("deferred", 0, TimeUnit.MILLISECONDS));
+        queue.remove(0).run();
+
+        assertTrue(queue.isEmpty());
+        assertEquals(Arrays.asList("critical", "deferred", "dependent"), order);
+    }
+
+    @Test
+    public void independentDeferredComponentsRunInParallel() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Object lock = new Object();
+        int[] running = new int[2];
+        Runnable action = () -> {
+            synchronized (lock) {
+                running[0]++;
+                running[1] = Math.max(running[1], running[0]);
+                lock.notifyAll();
+                long deadline = System.currentTimeMillis() + 1000;
+                while (running[0] < 2 && System.currentTimeMillis() < deadline) {
+                    try {
+                        lock.wait(100);
+                    } catch (InterruptedException exception) {
+                        return;
+                    }
+                }
+                running[0]--;
+            }
+        };
+        StartupGraph graph = new StartupGraph();
+        graph.addDeferred("first", executor, action);
+        graph.addDeferred("second", executor, action);
+
+        graph.start();
+
+        assertTrue(graph.await("first", 2, TimeUnit.SECONDS));
+        assertTrue(graph.await("second", 2, TimeUnit.SECONDS));
+        assertEquals(2, running[1]);
+        executor.shutdown();
+    }
+
+    @Test
+    public void gateHoldsDependentsUntilOpened() {
+        List<String> order = new ArrayList<>();
+        StartupGraph graph = new StartupGraph();
+        graph.addGate("gate");
+        graph.addDeferred("deferred", Runnable::run, () -> order.add("deferred"), "gate");
+
+        graph.start();
+        assertTrue(order.isEmpty());
+
+        graph.open("gate");
+        graph.open("gate");
+        assertEquals(Collections.singletonList("deferred"), order);
+    }
+
+    @Test
+    public void failedDeferredComponentReleasesDependents() throws InterruptedException {
+        StartupGraph graph = new StartupGraph();
+        graph.addDeferred("failed", Runnable::run, () -> {
+            throw new IllegalStateException();
+        });
+        graph.addDeferred("dependent", Runnable::run, () -> {
+        }, "failed");
+
+        graph.start();
+
+        assertTrue(graph.await("dependent", 0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void criticalComponentCannotDependOnDeferred() {
+        StartupGraph graph = new StartupGraph();
+        graph.addDeferred("deferred", Runnable::run, () -> {
+        });
+        try {
+            graph.addCritical("critical", () -> {
+            }, "deferred");
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void dependencyHasToBeAddedFirst() {
+        StartupGraph graph = new StartupGraph();
+        try {
+            graph.addCritical("critical", () -> {
+            }, "unknown");
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package net.ivpn.client.ui.serverlist;
+
+import net.ivpn.client.rest.data.model.Server;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ServerIndexTest {
+
+    private final Server zurich = getServer("ch1.gw.ivpn.net", "CH", "Switzerland", "Zurich");
+    private final Server newYork = getServer("us-ny1.gw.ivpn.net", "US", "United States", "New York, NY");
+    private final Server newJersey = getServer("us-nj1.gw.ivpn.net", "US", "United States", "Secaucus, NJ");
+    private final Server saoPaulo = getServer("br1.gw.ivpn.net", "BR", "Brazil", "S\u00e3o Paulo");
+
+    private final ServerIndex index = new ServerIndex(Arrays.asList(zurich, newYork, newJersey, saoPaulo));
+
+    @Test
+    public void emptyQueryReturnsAllInNameOrder() {
+        assertEquals(Arrays.asList(saoPaulo, zurich, newYork, newJersey),
+                index.query("", ServerIndex.Order.NAME, Collections.emptySet()));
+    }
+
+    @Test
+    public void queryMatchesPrefixOfAnyWord() {
+        assertEquals(Arrays.asList(newYork, newJersey),
+                index.query("unit", ServerIndex.Order.NAME, Collections.emptySet()));
+        assertEquals(Collections.singletonList(newYork),
+                index.query("york", ServerIndex.Order.NAME, Collections.emptySet()));
+        assertEquals(Collections.singletonList(zurich),
+                index.query("ch", ServerIndex.Order.NAME, Collections.emptySet()));
+    }
+
+    @Test
+    public void queryIgnoresCaseAndDiacritics() {
+        assertEquals(Collections.singletonList(saoPaulo),
+                index.query("SAO", ServerIndex.Order.NAME, Collections.emptySet()));
+        assertEquals(Collections.singletonList(saoPaulo),
+                index.query("s\u00e3o pa", ServerIndex.Order.NAME, Collections.emptySet()));
+    }
+
+    @Test
+    public void everyWordOfQueryHasToMatch() {
+        assertEquals(Collections.singletonList(newJersey),
+                index.query("us nj", ServerIndex.Order.NAME, Collections.emptySet()));
+        assertTrue(index.query("us zurich", ServerIndex.Order.NAME, Collections.emptySet()).isEmpty());
+        assertTrue(index.query("tokyo", ServerIndex.Order.NAME, Collections.emptySet()).isEmpty());
+    }
+
+    @Test
+    public void latencyOrderPutsUnknownLast() {
+        Map<Server, Long> latencies = new HashMap<>();
+        latencies.put(zurich, 40L);
+        latencies.put(newJersey, 10L);
+        latencies.put(saoPaulo, 25L);
+        index.updateLatencies(server -> latencies.containsKey(server) ? latencies.get(server) : -1);
+
+        assertEquals(Arrays.asList(newJersey, saoPaulo, zurich, newYork),
+                index.query(null, ServerIndex.Order.LATENCY, Collections.emptySet()));
+    }
+
+    @Test
+    public void favouritesGoFirst() {
+        List<Server> servers = index.query("", ServerIndex.Order.NAME,
+                Collections.singleton(newJersey.getGateway()));
+        assertEquals(Arrays.asList(newJersey, saoPaulo, zurich, newYork), servers);
+    }
+
+    @Test
+    public void isBuiltFromComparesInstances() {
+        assertTrue(index.isBuiltFrom(Arrays.asList(newJersey, zurich, saoPaulo, newYork)));
+        assertFalse(index.isBuiltFrom(Arrays.asList(newJersey, zurich, saoPaulo)));
+        assertFalse(index.isBuiltFrom(Arrays.asList(newJersey, zurich, saoPaulo,
+                getServer(newYork.getGateway(), "US", "United States", "New York, NY"))));
+    }
+
+    private Server getServer(String gateway, String countryCode, String country, String city) {
+        Server server = new Server();
+        server.setGateway(gateway);
+        server.setCountryCode(countryCode);
+        server.setCountry(country);
+        server.setCity(city);
+        return server;
+    }
+}
@@ -0,0 +1,80 @@
+package net.ivpn.client.vpn;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class KillSwitchHandoverTest {
+
+    @Test
+    public void killSwitchIsHandedOverToTunnel() {
+        KillSwitchHandover handover = new KillSwitchHandover();
+        handover.onKillSwitchStarted();
+
+        handover.onConnecting();
+        assertTrue(handover.isReestablishNeeded());
+        assertTrue(handover.onTunnelEstablished());
+    }
+
+    @Test
+    public void pauseResumeDisconnect() {
+        KillSwitchHandover handover = new KillSwitchHandover();
+        handover.onKillSwitchStarted();
+        handover.onConnecting();
+        assertTrue(handover.onTunnelEstablished());
+        handover.onKillSwitchStopped();
+
+        //Pause starts the kill switch, the state stays VPN or BOTH.
+        assertFalse(handover.isReestablishNeeded());
+        handover.onKillSwitchStarted();
+        handover.onDisconnecting();
+
+        //Resume hands the kill switch over again.
+        handover.onConnecting();
+        assertTrue(handover.onTunnelEstablished());
+        handover.onKillSwitchStopped();
+
+        //Disconnect opens a new kill switch TUN.
+        assertFalse(handover.isReestablishNeeded());
+        handover.onKillSwitchStarted();
+        handover.onDisconnecting();
+        assertFalse(handover.isReestablishNeeded());
+    }
+
+    @Test
+    public void resumeWithoutHandoverReestablishesOnDisconnect() {
+        KillSwitchHandover handover = new KillSwitchHandover();
+        handover.onKillSwitchStarted();
+        handover.onConnecting();
+        //Kill switch stop didn't get through, tunnel holds the interface now.
+        handover.onTunnelEstablished();
+
+        assertTrue(handover.isReestablishNeeded());
+    }
+
+    @Test
+    public void replacedTunIsEstablishedAgain() {
+        KillSwitchHandover handover = new KillSwitchHandover();
+        handover.onKillSwitchStarted();
+        //Tunnel came up without connecting through the controller, kill switch is kept.
+        assertFalse(handover.onTunnelEstablished());
+
+        assertTrue(handover.isReestablishNeeded());
+        handover.onKillSwitchStarted();
+        assertFalse(handover.isReestablishNeeded());
+    }
+
+    @Test
+    public void disconnectDuringConnectReestablishes() {
+        KillSwitchHandover handover = new KillSwitchHandover();
+        handover.onKillSwitchStarted();
+        handover.onConnecting();
+
+        //Tunnel may have been established before its result is reported.
+        assertTrue(handover.isReestablishNeeded());
+        handover.onKillSwitchStarted();
+        handover.onDisconnecting();
+        assertFalse(handover.onTunnelEstablished());
+    }
+}
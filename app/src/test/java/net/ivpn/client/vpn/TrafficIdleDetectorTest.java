@@ -0,0 +1,44 @@
+package net.ivpn.client.vpn;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TrafficIdleDetectorTest {
+
+    @Test
+    public void notIdleBeforeWholeWindowIsObserved() {
+        TrafficIdleDetector detector = new TrafficIdleDetector(60000, 1000);
+        detector.reset(0);
+        assertFalse(detector.isIdle(59999));
+        assertTrue(detector.isIdle(60000));
+    }
+
+    @Test
+    public void trafficOutsideOfWindowIsForgotten() {
+        TrafficIdleDetector detector = new TrafficIdleDetector(60000, 1000);
+        detector.reset(0);
+        detector.add(10000, 5000);
+        detector.add(50000, 200);
+
+        assertFalse(detector.isIdle(65000));
+        assertEquals(200, detector.getTraffic(75000));
+        assertTrue(detector.isIdle(75000));
+    }
+
+    @Test
+    public void oldestSampleIsDroppedWhenFull() {
+        TrafficIdleDetector detector = new TrafficIdleDetector(Long.MAX_VALUE, Long.MAX_VALUE);
+        detector.reset(0);
+        for (int i = 1; i <= 100; i++) {
+            detector.add(i, i);
+        }
+        long expected = 0;
+        for (int i = 37; i <= 100; i++) {
+            expected += i;
+        }
+        assertEquals(expected, detector.getTraffic(100));
+    }
+}
@@ -0,0 +1,105 @@
+package net.ivpn.client.vpn.dns;
+
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DnsCacheTest {
+
+    private static final byte[] QUESTION = {
+            0x04, 'I', 'v', 'p', 'n', 0x03, 'n', 'e', 't', 0x00, 0x00, 0x01, 0x00, 0x01
+    };
+
+    @Test
+    public void questionKeyIgnoresCase() {
+        assertEquals("ivpn.net./1/1", DnsMessage.getQuestionKey(response(0, 0, 0, new byte[0])));
+    }
+
+    @Test
+    public void createdQueryAsksForTheName() {
+        byte[] query = DnsMessage.createQuery("IVPN.net.", DnsMessage.TYPE_A);
+        assertEquals("ivpn.net./1/1", DnsMessage.getQuestionKey(query));
+        assertNull(DnsMessage.createQuery("ivpn..net", DnsMessage.TYPE_A));
+    }
+
+    @Test
+    public void addressesAreReadFromAnswers() throws UnknownHostException {
+        byte[] answer = {
+                (byte) 0xC0, 0x0C, 0x00, 0x01, 0x00, 0x01, 0x00, 0x00, 0x01, 0x2C, 0x00, 0x04, 1, 2, 3, 4
+        };
+        assertEquals(Collections.singletonList(InetAddress.getByAddress(new byte[]{1, 2, 3, 4})),
+                DnsMessage.getAddresses(response(0, 1, 0, answer)));
+        assertTrue(DnsMessage.getAddresses(response(3, 0, 0, new byte[0])).isEmpty());
+    }
+
+    @Test
+    public void positiveResponseLivesForItsTtl() {
+        byte[] answer = {
+                (byte) 0xC0, 0x0C, 0x00, 0x01, 0x00, 0x01, 0x00, 0x00, 0x01, 0x2C, 0x00, 0x04, 1, 2, 3, 4
+        };
+        byte[] response = response(0, 1, 0, answer);
+        assertEquals(300, DnsMessage.getCacheTtl(response));
+
+        DnsCache cache = new DnsCache(10);
+        cache.put("key", response, 0);
+        DnsCache.Entry entry = cache.get("key", 100000);
+        byte[] cached = entry.getResponse(0x4321, 100000);
+        assertEquals(0x4321, DnsMessage.getId(cached));
+        assertEquals(200, cached[cached.length - 7] & 0xFF);
+        assertNull(cache.get("key", 300000));
+    }
+
+    @Test
+    public void negativeResponseLivesForSoaMinimum() {
+        byte[] authority = {
+                (byte) 0xC0, 0x11, 0x00, 0x06, 0x00, 0x01, 0x00, 0x00, 0x0E, 0x10, 0x00, 0x18,
+                (byte) 0xC0, 0x11, (byte) 0xC0, 0x11,
+                0x00, 0x00, 0x00, 0x01, 0x00, 0x00, 0x00, 0x02, 0x00, 0x00, 0x00, 0x03,
+                0x00, 0x00, 0x00, 0x04, 0x00, 0x00, 0x00, 0x3C
+        };
+        byte[] response = response(3, 0, 1, authority);
+        assertEquals(60, DnsMessage.getCacheTtl(response));
+    }
+
+    @Test
+    public void serverFailureIsNotCached() {
+        DnsCache cache = new DnsCache(10);
+        cache.put("key", response(2, 0, 0, new byte[0]), 0);
+        assertNull(cache.get("key", 0));
+    }
+
+    @Test
+    public void leastRecentlyUsedIsEvicted() {
+        byte[] answer = {
+                (byte) 0xC0, 0x0C, 0x00, 0x01, 0x00, 0x01, 0x00, 0x00, 0x01, 0x2C, 0x00, 0x04, 1, 2, 3, 4
+        };
+        DnsCache cache = new DnsCache(2);
+        cache.put("first", response(0, 1, 0, answer), 0);
+        cache.put("second", response(0, 1, 0, answer), 0);
+        cache.get("first", 0);
+        cache.put("third", response(0, 1, 0, answer), 0);
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get("second", 0));
+    }
+
+    private static byte[] response(int rcode, int answers, int authorities, byte[] records) {
+        byte[] response = new byte[DnsMessage.HEADER_SIZE + QUESTION.length + records.length];
+        response[0] = 0x12;
+        response[1] = 0x34;
+        response[2] = (byte) 0x81;
+        response[3] = (byte) (0x80 | rcode);
+        response[5] = 1;
+        response[7] = (byte) answers;
+        response[9] = (byte) authorities;
+        System.arraycopy(QUESTION, 0, response, DnsMessage.HEADER_SIZE, QUESTION.length);
+        System.arraycopy(records, 0, response, DnsMessage.HEADER_SIZE + QUESTION.length, records.length);
+        return response;
+    }
+}
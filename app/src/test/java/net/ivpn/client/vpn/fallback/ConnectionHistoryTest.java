@@ -0,0 +1,71 @@
+package net.ivpn.client.vpn.fallback;
+
+import net.ivpn.client.ui.protocol.port.Port;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ConnectionHistoryTest {
+
+    private static final List<Port> CANDIDATES = Arrays.asList(Port.TCP_443, Port.UDP_2050, Port.TCP_80);
+
+    @Test
+    public void unknownPortsKeepPreferredOrder() {
+        ConnectionHistory history = new ConnectionHistory();
+        assertEquals(CANDIDATES, history.rank(CANDIDATES));
+    }
+
+    @Test
+    public void winnerGoesFirst() {
+        ConnectionHistory history = new ConnectionHistory();
+        history.onFailure(Port.TCP_80, 0);
+        history.onSuccess(Port.TCP_80, 20000, 1);
+
+        assertEquals(Port.TCP_80, history.getWinner());
+        assertEquals(Port.TCP_80, history.rank(CANDIDATES).get(0));
+    }
+
+    @Test
+    public void failedPortGoesLast() {
+        ConnectionHistory history = new ConnectionHistory();
+        history.onSuccess(Port.TCP_443, 1000, 0);
+        history.onFailure(Port.TCP_443, 1);
+
+        assertNull(history.getWinner());
+        assertTrue(history.isFailing(Port.TCP_443));
+        assertEquals(Arrays.asList(Port.UDP_2050, Port.TCP_80, Port.TCP_443), history.rank(CANDIDATES));
+    }
+
+    @Test
+    public void fasterPortIsPreferred() {
+        ConnectionHistory history = new ConnectionHistory();
+        history.onSuccess(Port.TCP_80, 5000, 0);
+        history.onSuccess(Port.UDP_2050, 1000, 1);
+        //Winner is the last success, the slowest port takes it so it doesn't help the faster ones.
+        history.onSuccess(Port.TCP_443, 25000, 2);
+
+        assertTrue(history.getScore(Port.UDP_2050) > history.getScore(Port.TCP_80));
+        assertTrue(history.getScore(Port.TCP_80) > history.getScore(Port.TCP_443));
+        assertEquals(Arrays.asList(Port.UDP_2050, Port.TCP_80),
+                history.rank(Arrays.asList(Port.TCP_80, Port.UDP_2050)));
+    }
+
+    @Test
+    public void restoredFromJson() {
+        ConnectionHistory history = new ConnectionHistory();
+        history.onSuccess(Port.UDP_2050, 1000, 5);
+        ConnectionHistory restored = ConnectionHistory.from(history.toJson());
+
+        assertEquals(Port.UDP_2050, restored.getWinner());
+        assertEquals(5, restored.getLastUsed());
+        assertFalse(restored.isFailing(Port.UDP_2050));
+        assertNull(ConnectionHistory.from("broken").getWinner());
+    }
+}
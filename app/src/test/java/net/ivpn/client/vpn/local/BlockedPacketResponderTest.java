@@ -0,0 +1,132 @@
+package net.ivpn.client.vpn.local;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class BlockedPacketResponderTest {
+
+    private static final byte[] SOURCE = {10, 1, 10, 1};
+    private static final byte[] DESTINATION = {8, 8, 8, 8};
+
+    private final BlockedPacketResponder responder = new BlockedPacketResponder();
+    private final byte[] answer = new byte[1500];
+
+    @Test
+    public void resetTcpSyn() {
+        byte[] packet = ipv4(6, new byte[20]);
+        put16(packet, 20, 40000);
+        put16(packet, 22, 443);
+        put16(packet, 24, 0x1234);
+        put16(packet, 26, 0x5678);
+        packet[32] = 0x50;
+        packet[33] = 0x02;
+
+        int length = responder.respond(packet, packet.length, answer);
+
+        assertEquals(40, length);
+        assertEquals(0, checksum(answer, 0, 20, 0));
+        assertEquals(0, checksum(answer, 20, 20, pseudoHeader(6, 20)));
+        assertEquals(443, u16(answer, 20));
+        assertEquals(40000, u16(answer, 22));
+        assertEquals(0x12345679L, ((long) u16(answer, 28) << 16) | u16(answer, 30));
+        assertEquals(0x14, answer[33]);
+        assertEquals(8, answer[12]);
+        assertEquals(10, answer[16]);
+    }
+
+    @Test
+    public void ignoreTcpReset() {
+        byte[] packet = ipv4(6, new byte[20]);
+        packet[32] = 0x50;
+        packet[33] = 0x04;
+
+        assertEquals(0, responder.respond(packet, packet.length, answer));
+    }
+
+    @Test
+    public void refuseDnsQuery() {
+        byte[] query = {
+                0x12, 0x34, 0x01, 0x00, 0x00, 0x01, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00,
+                0x04, 'i', 'v', 'p', 'n', 0x03, 'n', 'e', 't', 0x00, 0x00, 0x01, 0x00, 0x01
+        };
+        byte[] udp = new byte[8 + query.length];
+        put16(udp, 0, 50000);
+        put16(udp, 2, 53);
+        put16(udp, 4, udp.length);
+        System.arraycopy(query, 0, udp, 8, query.length);
+        byte[] packet = ipv4(17, udp);
+
+        int length = responder.respond(packet, packet.length, answer);
+
+        assertEquals(packet.length, length);
+        assertEquals(0, checksum(answer, 20, length - 20, pseudoHeader(17, length - 20)));
+        assertEquals(0x1234, u16(answer, 28));
+        assertEquals(0x81, answer[30] & 0xFF);
+        assertEquals(5, answer[31] & 0x0F);
+        assertEquals(1, u16(answer, 32));
+        assertEquals(0, u16(answer, 34));
+    }
+
+    @Test
+    public void rejectOtherUdp() {
+        byte[] udp = new byte[8 + 100];
+        put16(udp, 0, 50000);
+        put16(udp, 2, 443);
+        put16(udp, 4, udp.length);
+        byte[] packet = ipv4(17, udp);
+
+        int length = responder.respond(packet, packet.length, answer);
+
+        assertEquals(20 + 8 + 28, length);
+        assertEquals(1, answer[9]);
+        assertEquals(3, answer[20]);
+        assertEquals(3, answer[21]);
+        assertEquals(0, checksum(answer, 20, length - 20, 0));
+    }
+
+    @Test
+    public void dropNonFirstFragment() {
+        byte[] packet = ipv4(17, new byte[8]);
+        put16(packet, 6, 0x0010);
+
+        assertEquals(0, responder.respond(packet, packet.length, answer));
+        assertEquals(BlockedPacketResponder.NO_PROTOCOL, responder.getProtocol());
+    }
+
+    private static byte[] ipv4(int protocol, byte[] payload) {
+        byte[] packet = new byte[20 + payload.length];
+        packet[0] = 0x45;
+        put16(packet, 2, packet.length);
+        packet[8] = 64;
+        packet[9] = (byte) protocol;
+        System.arraycopy(SOURCE, 0, packet, 12, 4);
+        System.arraycopy(DESTINATION, 0, packet, 16, 4);
+        System.arraycopy(payload, 0, packet, 20, payload.length);
+        return packet;
+    }
+
+    //Pseudo header of the answer, addresses are swapped, so the sum is the same.
+    private static long pseudoHeader(int protocol, int length) {
+        return u16(SOURCE, 0) + u16(SOURCE, 2) + u16(DESTINATION, 0) + u16(DESTINATION, 2) + protocol + length;
+    }
+
+    private static int checksum(byte[] data, int offset, int length, long sum) {
+        for (int i = offset; i < offset + length; i += 2) {
+            sum += i + 1 < offset + length ? u16(data, i) : (data[i] & 0xFF) << 8;
+        }
+        while ((sum >> 16) != 0) {
+            sum = (sum & 0xFFFF) + (sum >> 16);
+        }
+        return (int) (~sum & 0xFFFF);
+    }
+
+    private static int u16(byte[] data, int offset) {
+        return ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
+    }
+
+    private static void put16(byte[] data, int offset, int value) {
+        data[offset] = (byte) (value >> 8);
+        data[offset + 1] = (byte) value;
+    }
+}
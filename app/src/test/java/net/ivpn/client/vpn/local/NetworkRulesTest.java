@@ -0,0 +1,50 @@
+package net.ivpn.client.vpn.local;
+
+import net.ivpn.client.vpn.model.KillSwitchRule;
+import net.ivpn.client.vpn.model.NetworkState;
+import net.ivpn.client.vpn.model.VPNRule;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NetworkRulesTest {
+
+    @Test
+    public void decideForWifi() {
+        Map<String, NetworkState> marks = new HashMap<>();
+        marks.put("\"home\"", NetworkState.TRUSTED);
+        marks.put("\"cafe\"", NetworkState.UNTRUSTED);
+        marks.put("\"office\"", NetworkState.NONE);
+        NetworkRules rules = NetworkRules.compile(marks, NetworkState.UNTRUSTED, NetworkState.DEFAULT,
+                true, true, true, false);
+
+        assertEquals(VPNRule.DISCONNECT, rules.decideForWifi("\"home\"").getVpnRule());
+        assertEquals(KillSwitchRule.NOTHING, rules.decideForWifi("\"home\"").getKillSwitchRule());
+        assertEquals(VPNRule.CONNECT, rules.decideForWifi("\"cafe\"").getVpnRule());
+        assertEquals(KillSwitchRule.ENABLE, rules.decideForWifi("\"cafe\"").getKillSwitchRule());
+        assertEquals(VPNRule.NOTHING, rules.decideForWifi("\"office\"").getVpnRule());
+        assertEquals(NetworkState.DEFAULT, rules.getStateFor("\"unknown\""));
+        assertEquals(VPNRule.CONNECT, rules.decideForWifi("\"unknown\"").getVpnRule());
+        assertEquals(VPNRule.CONNECT, rules.decideForMobileData().getVpnRule());
+    }
+
+    @Test
+    public void isWatcherNeeded() {
+        Map<String, NetworkState> marks = new HashMap<>();
+        marks.put("\"office\"", NetworkState.NONE);
+        assertFalse(NetworkRules.compile(marks, NetworkState.NONE, NetworkState.DEFAULT,
+                true, true, false, false).isWatcherNeeded());
+
+        marks.put("\"home\"", NetworkState.TRUSTED);
+        assertTrue(NetworkRules.compile(marks, NetworkState.NONE, NetworkState.DEFAULT,
+                true, true, false, false).isWatcherNeeded());
+        assertTrue(NetworkRules.compile(new HashMap<>(), NetworkState.NONE, NetworkState.UNTRUSTED,
+                true, true, false, false).isWatcherNeeded());
+    }
+}
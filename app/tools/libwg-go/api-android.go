@@ -185,6 +185,32 @@ func wgGetConfig(tunnelHandle int32) *C.char {
 	return C.CString(settings.String())
 }
 
+//export wgSetConfig
+func wgSetConfig(tunnelHandle int32, settings string) int32 {
+	handle, ok := tunnelHandles[tunnelHandle]
+	if !ok {
+		return -1
+	}
+	err := handle.device.IpcSetOperation(bufio.NewReader(strings.NewReader(settings)))
+	if err != nil {
+		return -1
+	}
+	return 0
+}
+
+//export wgBindUpdate
+func wgBindUpdate(tunnelHandle int32) int32 {
+	handle, ok := tunnelHandles[tunnelHandle]
+	if !ok {
+		return -1
+	}
+	err := handle.device.BindUpdate()
+	if err != nil {
+		return -1
+	}
+	return 0
+}
+
 //export wgVersion
 func wgVersion() *C.char {
 	return C.CString(device.WireGuardGoVersion)